@@ -0,0 +1,291 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * The size classes of a {@link PoolArena}, modeled after the size classes of
+ * <a href="https://github.com/jemalloc/jemalloc">jemalloc</a> 4 and later.
+ * <p>
+ * The first size class and the spacing of the first group are {@code 1 << LOG2_QUANTUM} bytes. After that each
+ * doubling of the size is split into {@code 1 << LOG2_SIZE_CLASS_GROUP} size classes which are evenly spaced:
+ * <pre>
+ *   size = (1 << log2Group) + nDelta * (1 << log2Delta)
+ * </pre>
+ * With a pageSize of 8192 bytes and a chunkSize of 16 MiB the size classes look like this:
+ * <pre>
+ *   sizeIdx  size       log2Group  log2Delta  nDelta  isMultiPageSize  isSubpage
+ *   0        16         4          4          0       no               yes
+ *   1        32         4          4          1       no               yes
+ *   2        48         4          4          2       no               yes
+ *   3        64         4          4          3       no               yes
+ *
+ *   4        80         6          4          1       no               yes
+ *   5        96         6          4          2       no               yes
+ *   6        112        6          4          3       no               yes
+ *   7        128        6          4          4       no               yes
+ *
+ *   8        160        7          5          1       no               yes
+ *   ...
+ *   38       28672      14         12         3       no               yes
+ *   39       32768      14         12         4       yes              no
+ *   ...
+ *   75       16777216   23         21         4       yes              no
+ * </pre>
+ * Compared to rounding every request up to the next power of two this bounds the internal fragmentation to
+ * less than {@code 1 / (1 << LOG2_SIZE_CLASS_GROUP)} (25%) of the request size. All size classes that are smaller
+ * than {@code pageSize << LOG2_SIZE_CLASS_GROUP} are allocated as elements of a {@link PoolSubpage}, all others as
+ * a run of pages. The size classes which are multiples of the {@code pageSize} are tracked separately as page size
+ * classes, these are used by the {@link PoolChunk} to index its runs of free pages.
+ */
+abstract class SizeClasses implements SizeClassesMetric {
+
+    static final int LOG2_QUANTUM = 4;
+
+    private static final int LOG2_SIZE_CLASS_GROUP = 2;
+    private static final int LOG2_MAX_LOOKUP_SIZE = 12;
+    private static final int INTEGER_SIZE_MINUS_ONE = Integer.SIZE - 1;
+
+    protected final int pageSize;
+    protected final int pageShifts;
+    protected final int chunkSize;
+    protected final int directMemoryCacheAlignment;
+
+    /** Number of size classes. */
+    final int nSizes;
+    /** Number of size classes which are allocated out of a {@link PoolSubpage}. */
+    final int nSubpages;
+    /** Number of size classes which are multiples of the pageSize. */
+    final int nPSizes;
+    /** The biggest sizeIdx which is allocated out of a {@link PoolSubpage}. */
+    final int smallMaxSizeIdx;
+
+    private final int lookupMaxSize;
+    private final int[] sizeIdx2sizeTab;
+    private final int[] pageIdx2sizeTab;
+    // Lookup table for sizes <= lookupMaxSize, the spacing is 1 << LOG2_QUANTUM.
+    private final int[] size2idxTab;
+
+    protected SizeClasses(int pageSize, int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+        this.pageSize = pageSize;
+        this.pageShifts = pageShifts;
+        this.chunkSize = chunkSize;
+        this.directMemoryCacheAlignment = directMemoryCacheAlignment;
+
+        int groups = log2(chunkSize) + 1 - LOG2_QUANTUM;
+        int[] sizes = new int[groups << LOG2_SIZE_CLASS_GROUP];
+        int nSizes = 0;
+
+        // The first group starts at (1 << LOG2_QUANTUM) and so uses an nDelta of 0.
+        int log2Group = LOG2_QUANTUM;
+        int log2Delta = LOG2_QUANTUM;
+        int size = 0;
+        for (int nDelta = 0; nDelta < 1 << LOG2_SIZE_CLASS_GROUP; nDelta++) {
+            size = (1 << log2Group) + (nDelta << log2Delta);
+            sizes[nSizes++] = size;
+        }
+        log2Group += LOG2_SIZE_CLASS_GROUP;
+
+        // All other groups start at an nDelta of 1 and end at the next power of two.
+        while (size < chunkSize) {
+            for (int nDelta = 1; nDelta <= 1 << LOG2_SIZE_CLASS_GROUP && size < chunkSize; nDelta++) {
+                size = (1 << log2Group) + (nDelta << log2Delta);
+                sizes[nSizes++] = size;
+            }
+            log2Group++;
+            log2Delta++;
+        }
+        // The chunkSize is a power of two and so must be the last size class.
+        assert size == chunkSize;
+
+        int nSubpages = 0;
+        int nPSizes = 0;
+        int lookupMaxSize = 0;
+        for (int i = 0; i < nSizes; i++) {
+            size = sizes[i];
+            if (size >> pageShifts < 1 << LOG2_SIZE_CLASS_GROUP) {
+                nSubpages++;
+            }
+            if ((size & pageSize - 1) == 0) {
+                nPSizes++;
+            }
+            if (size <= 1 << LOG2_MAX_LOOKUP_SIZE) {
+                lookupMaxSize = size;
+            }
+        }
+        this.nSizes = nSizes;
+        this.nSubpages = nSubpages;
+        this.nPSizes = nPSizes;
+        this.lookupMaxSize = lookupMaxSize;
+        smallMaxSizeIdx = nSubpages - 1;
+
+        sizeIdx2sizeTab = new int[nSizes];
+        pageIdx2sizeTab = new int[nPSizes];
+        int pageIdx = 0;
+        for (int i = 0; i < nSizes; i++) {
+            size = sizes[i];
+            sizeIdx2sizeTab[i] = size;
+            if ((size & pageSize - 1) == 0) {
+                pageIdx2sizeTab[pageIdx++] = size;
+            }
+        }
+
+        size2idxTab = new int[lookupMaxSize >> LOG2_QUANTUM];
+        int sizeIdx = 0;
+        for (int i = 0; i < size2idxTab.length; i++) {
+            int lookupSize = i + 1 << LOG2_QUANTUM;
+            while (sizeIdx2sizeTab[sizeIdx] < lookupSize) {
+                sizeIdx++;
+            }
+            size2idxTab[i] = sizeIdx;
+        }
+    }
+
+    @Override
+    public int sizeIdx2size(int sizeIdx) {
+        return sizeIdx2sizeTab[sizeIdx];
+    }
+
+    @Override
+    public int sizeIdx2sizeCompute(int sizeIdx) {
+        return (int) idx2sizeCompute(sizeIdx, LOG2_QUANTUM);
+    }
+
+    @Override
+    public long pageIdx2size(int pageIdx) {
+        return pageIdx2sizeTab[pageIdx];
+    }
+
+    @Override
+    public long pageIdx2sizeCompute(int pageIdx) {
+        return idx2sizeCompute(pageIdx, pageShifts);
+    }
+
+    @Override
+    public int size2SizeIdx(int size) {
+        if (size == 0) {
+            // Empty buffers are served by the smallest size class, which must respect the alignment as well.
+            size = 1;
+        } else if (size > chunkSize) {
+            return nSizes;
+        }
+
+        if (directMemoryCacheAlignment > 0) {
+            size = alignSize(size);
+        }
+
+        if (size <= lookupMaxSize) {
+            return size2idxTab[size - 1 >> LOG2_QUANTUM];
+        }
+        return size2idxCompute(size, LOG2_QUANTUM);
+    }
+
+    @Override
+    public int pages2pageIdx(int pages) {
+        int size = pages << pageShifts;
+        if (size > chunkSize) {
+            return nPSizes;
+        }
+        return size2idxCompute(size, pageShifts);
+    }
+
+    @Override
+    public int pages2pageIdxFloor(int pages) {
+        int size = pages << pageShifts;
+        if (size > chunkSize) {
+            return nPSizes - 1;
+        }
+        int pageIdx = size2idxCompute(size, pageShifts);
+        if (pageIdx2sizeTab[pageIdx] > size) {
+            pageIdx--;
+        }
+        return pageIdx;
+    }
+
+    @Override
+    public int normalizeSize(int size) {
+        if (size == 0) {
+            size = 1;
+        }
+        if (directMemoryCacheAlignment > 0) {
+            size = alignSize(size);
+        }
+
+        if (size <= lookupMaxSize) {
+            int ret = sizeIdx2sizeTab[size2idxTab[size - 1 >> LOG2_QUANTUM]];
+            assert ret == normalizeSizeCompute(size);
+            return ret;
+        }
+        return normalizeSizeCompute(size);
+    }
+
+    // Round size up to the nearest multiple of alignment.
+    private int alignSize(int size) {
+        int delta = size & directMemoryCacheAlignment - 1;
+        return delta == 0? size : size + directMemoryCacheAlignment - delta;
+    }
+
+    private static int normalizeSizeCompute(int size) {
+        int x = log2((size << 1) - 1);
+        int log2Delta = x < LOG2_SIZE_CLASS_GROUP + LOG2_QUANTUM + 1
+                ? LOG2_QUANTUM : x - LOG2_SIZE_CLASS_GROUP - 1;
+        int deltaMask = (1 << log2Delta) - 1;
+        return size + deltaMask & ~deltaMask;
+    }
+
+    /**
+     * Computes the index of the smallest size class that can hold {@code size} bytes, where the first size class is
+     * {@code 1 << log2Quantum}. This works for both the size classes ({@link #LOG2_QUANTUM}) and the page size classes
+     * ({@link #pageShifts}) as the page size classes have the same layout, just scaled by the pageSize.
+     */
+    private static int size2idxCompute(int size, int log2Quantum) {
+        int x = log2((size << 1) - 1);
+        int shift = x < LOG2_SIZE_CLASS_GROUP + log2Quantum + 1
+                ? 0 : x - (LOG2_SIZE_CLASS_GROUP + log2Quantum);
+
+        int group = shift << LOG2_SIZE_CLASS_GROUP;
+
+        int log2Delta = x < LOG2_SIZE_CLASS_GROUP + log2Quantum + 1
+                ? log2Quantum : x - LOG2_SIZE_CLASS_GROUP - 1;
+
+        int deltaInverseMask = -1 << log2Delta;
+        int mod = (size - 1 & deltaInverseMask) >> log2Delta &
+                  (1 << LOG2_SIZE_CLASS_GROUP) - 1;
+
+        return group + mod;
+    }
+
+    /**
+     * The inverse of {@link #size2idxCompute(int, int)}.
+     */
+    private static long idx2sizeCompute(int idx, int log2Quantum) {
+        int group = idx >> LOG2_SIZE_CLASS_GROUP;
+        int mod = idx & (1 << LOG2_SIZE_CLASS_GROUP) - 1;
+
+        long groupSize = group == 0? 0 :
+                1L << log2Quantum + LOG2_SIZE_CLASS_GROUP - 1 << group;
+
+        int shift = group == 0? 1 : group;
+        int log2Delta = shift + log2Quantum - 1;
+        long modSize = (long) (mod + 1) << log2Delta;
+
+        return groupSize + modSize;
+    }
+
+    private static int log2(int val) {
+        // compute the (0-based, with lsb = 0) position of highest set bit i.e, log2
+        return INTEGER_SIZE_MINUS_ONE - Integer.numberOfLeadingZeros(val);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LongLongHashMapTest {
+
+    @Test
+    public void zeroPutGetAndRemove() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+        assertEquals(-1, map.put(0, 42));
+        assertEquals(42, map.get(0));
+        assertEquals(42, map.put(0, 24));
+        assertEquals(24, map.get(0));
+        map.remove(0);
+        assertEquals(-1, map.get(0));
+    }
+
+    @Test
+    public void mustHandleCollisions() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+        for (int i = 0; i < 63; i++) {
+            assertEquals(-1, map.put((long) i << 32, i));
+        }
+        for (int i = 0; i < 63; i++) {
+            assertEquals(i, map.get((long) i << 32));
+        }
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        LongLongHashMap map = new LongLongHashMap(-1);
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                long value = random.nextInt(Integer.MAX_VALUE);
+                Long prev = expected.put(key, value);
+                assertEquals(prev == null ? -1 : prev, map.put(key, value));
+            } else {
+                expected.remove(key);
+                map.remove(key);
+            }
+        }
+        for (long key = 0; key < 1000; key++) {
+            Long value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongPriorityQueueTest {
+
+    @Test
+    public void mustThrowWhenAddingNoValue() {
+        LongPriorityQueue pq = new LongPriorityQueue();
+        try {
+            pq.offer(LongPriorityQueue.NO_VALUE);
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("expected IllegalArgumentException");
+    }
+
+    @Test
+    public void mustReturnValuesInOrder() {
+        List<Long> values = new ArrayList<Long>();
+        for (long i = 0; i < 100; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, new Random(42));
+
+        LongPriorityQueue pq = new LongPriorityQueue();
+        assertTrue(pq.isEmpty());
+        for (long value : values) {
+            pq.offer(value);
+        }
+        assertFalse(pq.isEmpty());
+        for (long i = 0; i < 100; i++) {
+            assertEquals(i, pq.peek());
+            assertEquals(i, pq.poll());
+        }
+        assertTrue(pq.isEmpty());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.peek());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.poll());
+    }
+
+    @Test
+    public void mustRemoveValues() {
+        Random random = new Random(42);
+        LongPriorityQueue pq = new LongPriorityQueue();
+        PriorityQueue<Long> expected = new PriorityQueue<Long>();
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextInt(1000);
+            switch (random.nextInt(3)) {
+            case 0:
+                pq.offer(value);
+                expected.add(value);
+                break;
+            case 1:
+                pq.remove(value);
+                expected.remove(value);
+                break;
+            default:
+                Long head = expected.poll();
+                assertEquals(head == null ? LongPriorityQueue.NO_VALUE : head, pq.poll());
+                break;
+            }
+        }
+        while (!expected.isEmpty()) {
+            assertEquals((long) expected.poll(), pq.poll());
+        }
+        assertTrue(pq.isEmpty());
+    }
+}
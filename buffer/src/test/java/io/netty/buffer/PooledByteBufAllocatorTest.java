@@ -121,7 +121,6 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
                 /*nDirectArena=*/ 1,
                 /*pageSize=*/8192,
                 /*maxOrder=*/ 11,
-                /*tinyCacheSize=*/ 0,
                 /*smallCacheSize=*/ 0,
                 /*normalCacheSize=*/ 0,
                 /*useCacheForAllThreads=*/ false);
@@ -218,7 +217,9 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         ByteBuf buffer = allocator.heapBuffer(1);
         try {
             PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
-            PoolSubpageMetric subpageMetric = metric.tinySubpages().get(0);
+            // Tiny allocations are served by the small sub-pages now.
+            assertTrue(metric.tinySubpages().isEmpty());
+            PoolSubpageMetric subpageMetric = metric.smallSubpages().get(0);
             assertEquals(1, subpageMetric.maxNumElements() - subpageMetric.numAvailable());
         } finally {
             buffer.release();
@@ -234,10 +235,28 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         testAllocNotNull(allocator, 1024);
         // Small allocation
         testAllocNotNull(allocator, 512);
-        // Tiny allocation
         testAllocNotNull(allocator, 1);
     }
 
+    @Test
+    public void testSizeClassCapacity() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, true, 0);
+        // 4198 bytes are rounded up to the 5120 bytes size class and not to the next power of two.
+        ByteBuf buffer = allocator.heapBuffer(4198);
+        try {
+            assertEquals(5120, buffer.maxFastWritableBytes());
+        } finally {
+            buffer.release();
+        }
+        // 40000 bytes are served by a run of 5 pages.
+        buffer = allocator.heapBuffer(40000);
+        try {
+            assertEquals(8192 * 5, buffer.maxFastWritableBytes());
+        } finally {
+            buffer.release();
+        }
+    }
+
     private static void testAllocNotNull(PooledByteBufAllocator allocator, int capacity) {
         ByteBuf buffer = allocator.heapBuffer(capacity);
         assertNotNull(buffer.alloc());
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.handler.codec.DateFormatter;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * The value of the {@code Date} header of the current second, which is formatted at most once per second and shared
+ * by all threads. Stamping it onto a response does not format or allocate the value:
+ * <pre>
+ * response.headers().set({@link HttpHeaderNames#DATE}, {@link CachedHttpDate#value()});
+ * </pre>
+ * {@link #value()} only checks the clock, the formatting is done by the first caller of each second, or ahead of
+ * time by the task scheduled with {@link #scheduleRefresh(EventExecutor)}.
+ *
+ * @see HttpServerDateHandler
+ */
+@UnstableApi
+public final class CachedHttpDate {
+
+    private static volatile Entry current = new Entry(System.currentTimeMillis());
+
+    /**
+     * Returns the encoded value of the {@code Date} header for the current second.
+     */
+    public static AsciiString value() {
+        Entry entry = current;
+        long now = System.currentTimeMillis();
+        if (now < entry.startMillis || now >= entry.startMillis + 1000) {
+            // Several threads may format the same second, which is cheaper than synchronizing them.
+            entry = new Entry(now);
+            current = entry;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Sets the {@code Date} header of the {@link HttpMessage} if it has none.
+     */
+    public static void setIfAbsent(HttpMessage message) {
+        HttpHeaders headers = message.headers();
+        if (!headers.contains(HttpHeaderNames.DATE)) {
+            headers.set(HttpHeaderNames.DATE, value());
+        }
+    }
+
+    /**
+     * Schedules a task on the {@link EventExecutor} which formats the value at the start of every second, so
+     * {@link #value()} never has to. A single task is enough for all threads, cancel the returned
+     * {@link ScheduledFuture} to stop it.
+     */
+    public static ScheduledFuture<?> scheduleRefresh(EventExecutor executor) {
+        checkNotNull(executor, "executor");
+        long now = System.currentTimeMillis();
+        // Align the task with the start of the next second.
+        long initialDelay = 1000 - now % 1000;
+        return executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                value();
+            }
+        }, initialDelay, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Entry {
+        final long startMillis;
+        final AsciiString value;
+
+        Entry(long nowMillis) {
+            startMillis = nowMillis - nowMillis % 1000;
+            value = new AsciiString(DateFormatter.format(new Date(startMillis)));
+        }
+    }
+
+    private CachedHttpDate() { }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Creates the {@link HttpHeaders} of the {@link HttpMessage}s decoded by the {@link HttpObjectDecoder}.
+ */
+@UnstableApi
+public interface HttpHeadersFactory {
+
+    /**
+     * Creates {@link DefaultHttpHeaders}, which convert every header name and value into an object while decoding.
+     */
+    HttpHeadersFactory DEFAULT = new HttpHeadersFactory() {
+        @Override
+        public HttpHeaders newHeaders(boolean validate) {
+            return new DefaultHttpHeaders(validate);
+        }
+    };
+
+    /**
+     * Creates {@link LazyHttpHeaders}, which only keep the offsets of the header names and values while decoding
+     * and create the objects on access.
+     */
+    HttpHeadersFactory LAZY = new HttpHeadersFactory() {
+        @Override
+        public HttpHeaders newHeaders(boolean validate) {
+            return new LazyHttpHeaders(validate);
+        }
+    };
+
+    /**
+     * Returns new empty {@link HttpHeaders}.
+     *
+     * @param validate {@code true} if the header names and values should be validated.
+     */
+    HttpHeaders newHeaders(boolean validate);
+}
@@ -15,6 +15,7 @@
  */
 package io.netty.handler.codec.http;
 
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
 import static io.netty.util.internal.ObjectUtil.checkPositive;
 
 import io.netty.buffer.ByteBuf;
@@ -25,7 +26,9 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.PrematureChannelClosureException;
 import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.AsciiString;
 import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
 import io.netty.util.internal.AppendableCharSequence;
 
 import java.util.List;
@@ -60,6 +63,19 @@ import java.util.List;
  * </tr>
  * </table>
  *
+ * <h3>SWAR Parsing</h3>
+ *
+ * By default the initial line and the headers are parsed byte by byte. If {@code swarParsing} is enabled the line
+ * breaks and the colons are found by scanning eight bytes at a time (SIMD within a register) and the header names
+ * and values are copied directly into {@link AsciiString}s, which reduces the CPU usage for messages with many or
+ * long headers, e.g. pipelined HTTP/1.1 requests.
+ *
+ * <h3>Headers Factory</h3>
+ *
+ * The headers of the decoded messages are created by the {@link HttpHeadersFactory} which is passed to the
+ * constructor. {@link HttpHeadersFactory#LAZY} creates {@link LazyHttpHeaders}, into which the header lines are
+ * copied directly from the buffer without creating an object per header name and value.
+ *
  * <h3>Chunked Content</h3>
  *
  * If the content of an HTTP message is greater than {@code maxChunkSize} or
@@ -103,12 +119,18 @@ import java.util.List;
  */
 public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     private static final String EMPTY_VALUE = "";
+    private static final long COLON_PATTERN = HttpSwarUtil.compilePattern(HttpConstants.COLON);
 
     private final int maxChunkSize;
     private final boolean chunkedSupported;
     protected final boolean validateHeaders;
+    protected final HttpHeadersFactory headersFactory;
     private final HeaderParser headerParser;
     private final LineParser lineParser;
+    // Used instead of the HeaderParser if swarParsing is enabled or the headers are LazyHttpHeaders.
+    private final LineScanner headerScanner;
+    // Only used instead of the LineParser if swarParsing is enabled.
+    private final LineScanner lineScanner;
 
     private HttpMessage message;
     private long chunkSize;
@@ -170,6 +192,32 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     protected HttpObjectDecoder(
             int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
             boolean chunkedSupported, boolean validateHeaders, int initialBufferSize) {
+        this(maxInitialLineLength, maxHeaderSize, maxChunkSize, chunkedSupported, validateHeaders, initialBufferSize,
+                false);
+    }
+
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time.
+     */
+    protected HttpObjectDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
+            boolean chunkedSupported, boolean validateHeaders, int initialBufferSize, boolean swarParsing) {
+        this(maxInitialLineLength, maxHeaderSize, maxChunkSize, chunkedSupported, validateHeaders, initialBufferSize,
+                swarParsing, HttpHeadersFactory.DEFAULT);
+    }
+
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time.
+     * @param headersFactory the {@link HttpHeadersFactory} which creates the headers of the decoded messages.
+     */
+    protected HttpObjectDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
+            boolean chunkedSupported, boolean validateHeaders, int initialBufferSize, boolean swarParsing,
+            HttpHeadersFactory headersFactory) {
         checkPositive(maxInitialLineLength, "maxInitialLineLength");
         checkPositive(maxHeaderSize, "maxHeaderSize");
         checkPositive(maxChunkSize, "maxChunkSize");
@@ -177,9 +225,12 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         AppendableCharSequence seq = new AppendableCharSequence(initialBufferSize);
         lineParser = new LineParser(seq, maxInitialLineLength);
         headerParser = new HeaderParser(seq, maxHeaderSize);
+        headerScanner = new LineScanner(seq, maxHeaderSize);
+        lineScanner = swarParsing ? new InitialLineScanner(seq, maxInitialLineLength) : null;
         this.maxChunkSize = maxChunkSize;
         this.chunkedSupported = chunkedSupported;
         this.validateHeaders = validateHeaders;
+        this.headersFactory = checkNotNull(headersFactory, "headersFactory");
     }
 
     @Override
@@ -192,11 +243,19 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         case SKIP_CONTROL_CHARS:
             // Fall-through
         case READ_INITIAL: try {
-            AppendableCharSequence line = lineParser.parse(buffer);
-            if (line == null) {
-                return;
+            final String[] initialLine;
+            if (lineScanner != null) {
+                if (!lineScanner.scan(buffer)) {
+                    return;
+                }
+                initialLine = splitInitialLine(buffer, lineScanner.lineStart, lineScanner.lineEnd);
+            } else {
+                AppendableCharSequence line = lineParser.parse(buffer);
+                if (line == null) {
+                    return;
+                }
+                initialLine = splitInitialLine(line);
             }
-            String[] initialLine = splitInitialLine(line);
             if (initialLine.length < 3) {
                 // Invalid initial line - ignore.
                 currentState = State.SKIP_CONTROL_CHARS;
@@ -306,7 +365,8 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
          * read chunk, read and ignore the CRLF and repeat until 0
          */
         case READ_CHUNK_SIZE: try {
-            AppendableCharSequence line = lineParser.parse(buffer);
+            AppendableCharSequence line = lineScanner != null ? lineScanner.scanAndCopy(buffer) :
+                    lineParser.parse(buffer);
             if (line == null) {
                 return;
             }
@@ -501,6 +561,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         contentLength = Long.MIN_VALUE;
         lineParser.reset();
         headerParser.reset();
+        headerScanner.reset();
         trailer = null;
         if (!isDecodingRequest()) {
             HttpResponse res = (HttpResponse) message;
@@ -549,31 +610,16 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         final HttpMessage message = this.message;
         final HttpHeaders headers = message.headers();
 
-        AppendableCharSequence line = headerParser.parse(buffer);
-        if (line == null) {
-            return null;
+        final boolean complete;
+        if (headers instanceof LazyHttpHeaders) {
+            complete = scanHeaders(buffer, headers, (LazyHttpHeaders) headers);
+        } else if (lineScanner != null) {
+            complete = scanHeaders(buffer, headers, null);
+        } else {
+            complete = parseHeaders(buffer, headers);
         }
-        if (line.length() > 0) {
-            do {
-                char firstChar = line.charAtUnsafe(0);
-                if (name != null && (firstChar == ' ' || firstChar == '\t')) {
-                    //please do not make one line from below code
-                    //as it breaks +XX:OptimizeStringConcat optimization
-                    String trimmedLine = line.toString().trim();
-                    String valueStr = String.valueOf(value);
-                    value = valueStr + ' ' + trimmedLine;
-                } else {
-                    if (name != null) {
-                        headers.add(name, value);
-                    }
-                    splitHeader(line);
-                }
-
-                line = headerParser.parse(buffer);
-                if (line == null) {
-                    return null;
-                }
-            } while (line.length() > 0);
+        if (!complete) {
+            return null;
         }
 
         // Add the last header.
@@ -623,6 +669,76 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         }
     }
 
+    /**
+     * Parses the header lines until the empty line, returns {@code false} if more data is needed.
+     */
+    private boolean parseHeaders(ByteBuf buffer, HttpHeaders headers) {
+        AppendableCharSequence line = headerParser.parse(buffer);
+        if (line == null) {
+            return false;
+        }
+        if (line.length() > 0) {
+            do {
+                char firstChar = line.charAtUnsafe(0);
+                if (name != null && (firstChar == ' ' || firstChar == '\t')) {
+                    //please do not make one line from below code
+                    //as it breaks +XX:OptimizeStringConcat optimization
+                    String trimmedLine = line.toString().trim();
+                    String valueStr = String.valueOf(value);
+                    value = valueStr + ' ' + trimmedLine;
+                } else {
+                    if (name != null) {
+                        headers.add(name, value);
+                    }
+                    splitHeader(line);
+                }
+
+                line = headerParser.parse(buffer);
+                if (line == null) {
+                    return false;
+                }
+            } while (line.length() > 0);
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #parseHeaders(ByteBuf, HttpHeaders)} but splits the header lines directly in the buffer, and
+     * adds them to the {@link LazyHttpHeaders} if not {@code null}.
+     */
+    private boolean scanHeaders(ByteBuf buffer, HttpHeaders headers, LazyHttpHeaders lazyHeaders) {
+        final LineScanner headerScanner = this.headerScanner;
+        for (;;) {
+            if (!headerScanner.scan(buffer)) {
+                return false;
+            }
+            final int lineStart = headerScanner.lineStart;
+            final int lineEnd = headerScanner.lineEnd;
+            if (lineStart == lineEnd) {
+                return true;
+            }
+            byte firstByte = buffer.getByte(lineStart);
+            if (lazyHeaders != null) {
+                if (!lazyHeaders.isEmpty() && (firstByte == ' ' || firstByte == '\t')) {
+                    lazyHeaders.appendToLastValue(buffer, lineStart, lineEnd);
+                } else {
+                    splitHeader(buffer, lineStart, lineEnd, lazyHeaders);
+                }
+            } else if (name != null && (firstByte == ' ' || firstByte == '\t')) {
+                //please do not make one line from below code
+                //as it breaks +XX:OptimizeStringConcat optimization
+                String trimmedLine = buffer.toString(lineStart, lineEnd - lineStart, CharsetUtil.US_ASCII).trim();
+                String valueStr = String.valueOf(value);
+                value = valueStr + ' ' + trimmedLine;
+            } else {
+                if (name != null) {
+                    headers.add(name, value);
+                }
+                splitHeader(buffer, lineStart, lineEnd, null);
+            }
+        }
+    }
+
     /**
      * Invoked when a message with both a "Transfer-Encoding: chunked" and a "Content-Length" header field is detected.
      * The default behavior is to <i>remove</i> the Content-Length field, but this method could be overridden
@@ -656,8 +772,12 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return contentLength;
     }
 
+    private AppendableCharSequence parseHeaderLine(ByteBuf buffer) {
+        return lineScanner != null ? headerScanner.scanAndCopy(buffer) : headerParser.parse(buffer);
+    }
+
     private LastHttpContent readTrailingHeaders(ByteBuf buffer) {
-        AppendableCharSequence line = headerParser.parse(buffer);
+        AppendableCharSequence line = parseHeaderLine(buffer);
         if (line == null) {
             return null;
         }
@@ -697,7 +817,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
                 name = null;
                 value = null;
             }
-            line = headerParser.parse(buffer);
+            line = parseHeaderLine(buffer);
             if (line == null) {
                 return null;
             }
@@ -799,6 +919,111 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         }
     }
 
+    private static String[] splitInitialLine(ByteBuf buffer, int start, int end) {
+        int aStart = findNonSPLenient(buffer, start, end);
+        int aEnd = findSPLenient(buffer, aStart, end);
+
+        int bStart = findNonSPLenient(buffer, aEnd, end);
+        int bEnd = findSPLenient(buffer, bStart, end);
+
+        int cStart = findNonSPLenient(buffer, bEnd, end);
+        int cEnd = findEndOfString(buffer, start, end);
+
+        return new String[] {
+                buffer.toString(aStart, aEnd - aStart, CharsetUtil.US_ASCII),
+                buffer.toString(bStart, bEnd - bStart, CharsetUtil.US_ASCII),
+                cStart < cEnd? buffer.toString(cStart, cEnd - cStart, CharsetUtil.US_ASCII) : "" };
+    }
+
+    /**
+     * Same as {@link #splitHeader(AppendableCharSequence)} but for the line {@code [start, end)} of the buffer, which
+     * is added to the {@link LazyHttpHeaders} directly if not {@code null}.
+     */
+    private void splitHeader(ByteBuf buffer, int start, int end, LazyHttpHeaders lazyHeaders) {
+        int nameStart = findNonWhitespace(buffer, start, end, false);
+        int colon = HttpSwarUtil.indexOf(buffer, nameStart, end, COLON_PATTERN);
+        int nameEnd = colon == -1 ? end : colon;
+        if (!isDecodingRequest()) {
+            // In the case of decoding a response we will "skip" the whitespace before the colon.
+            for (int i = nameStart; i < nameEnd; i ++) {
+                byte b = buffer.getByte(i);
+                if (b == ' ' || b == '\t') {
+                    nameEnd = i;
+                    break;
+                }
+            }
+        }
+
+        if (nameEnd == end) {
+            // There was no colon present at all.
+            throw new IllegalArgumentException("No colon found");
+        }
+
+        int valueStart = findNonWhitespace(buffer, colon == -1 ? end : colon + 1, end, true);
+        int valueEnd = valueStart == end ? end : findEndOfString(buffer, start, end);
+        if (lazyHeaders != null) {
+            lazyHeaders.add(buffer, nameStart, nameEnd, valueStart, valueEnd);
+            return;
+        }
+        name = asciiString(buffer, nameStart, nameEnd);
+        if (valueStart == end) {
+            value = EMPTY_VALUE;
+        } else {
+            value = asciiString(buffer, valueStart, valueEnd);
+        }
+    }
+
+    private static AsciiString asciiString(ByteBuf buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.getBytes(start, bytes);
+        return new AsciiString(bytes, false);
+    }
+
+    private static int findNonSPLenient(ByteBuf buffer, int offset, int end) {
+        for (int result = offset; result < end; ++result) {
+            char c = (char) (buffer.getByte(result) & 0xFF);
+            if (isSPLenient(c)) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("Invalid separator");
+            }
+            return result;
+        }
+        return end;
+    }
+
+    private static int findSPLenient(ByteBuf buffer, int offset, int end) {
+        for (int result = offset; result < end; ++result) {
+            if (isSPLenient((char) (buffer.getByte(result) & 0xFF))) {
+                return result;
+            }
+        }
+        return end;
+    }
+
+    private static int findNonWhitespace(ByteBuf buffer, int offset, int end, boolean validateOWS) {
+        for (int result = offset; result < end; ++result) {
+            char c = (char) (buffer.getByte(result) & 0xFF);
+            if (!Character.isWhitespace(c)) {
+                return result;
+            } else if (validateOWS && !isOWS(c)) {
+                throw new IllegalArgumentException("Invalid separator, only a single space or horizontal tab allowed," +
+                        " but received a '" + c + "'");
+            }
+        }
+        return end;
+    }
+
+    private static int findEndOfString(ByteBuf buffer, int start, int end) {
+        for (int result = end - 1; result > start; --result) {
+            if (!Character.isWhitespace((char) (buffer.getByte(result) & 0xFF))) {
+                return result + 1;
+            }
+        }
+        return start;
+    }
+
     private static int findNonSPLenient(AppendableCharSequence sb, int offset) {
         for (int result = offset; result < sb.length(); ++result) {
             char c = sb.charAtUnsafe(result);
@@ -946,4 +1171,123 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             return new TooLongFrameException("An HTTP line is larger than " + maxLength + " bytes.");
         }
     }
+
+    /**
+     * Finds the next line by scanning for {@code LF} eight bytes at a time, used instead of {@link HeaderParser} if
+     * {@code swarParsing} is enabled.
+     */
+    private static class LineScanner {
+        private static final long LF_PATTERN = HttpSwarUtil.compilePattern(HttpConstants.LF);
+
+        private final AppendableCharSequence seq;
+        private final int maxLength;
+        private int size;
+
+        // The last line found by scan(...) without the trailing CRLF or LF.
+        int lineStart;
+        int lineEnd;
+
+        LineScanner(AppendableCharSequence seq, int maxLength) {
+            this.seq = seq;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Returns {@code true} and moves the {@code readerIndex} behind the line if a complete line was found, or
+         * {@code false} if more data is needed.
+         */
+        boolean scan(ByteBuf buffer) {
+            return scan(buffer, buffer.readerIndex());
+        }
+
+        final boolean scan(ByteBuf buffer, int start) {
+            final int writerIndex = buffer.writerIndex();
+            final int maxBytes = maxLength - size;
+            // No need to look any further than the maximum length, the CR is counted like in the HeaderParser.
+            final boolean tooLong = writerIndex - start > maxBytes;
+            int lf = HttpSwarUtil.indexOf(buffer, start, tooLong ? start + maxBytes + 1 : writerIndex, LF_PATTERN);
+            if (lf == -1) {
+                if (tooLong) {
+                    throw newException(maxLength);
+                }
+                return false;
+            }
+            int end = lf;
+            if (end > start && buffer.getByte(end - 1) == HttpConstants.CR) {
+                end--;
+            }
+            size += end - start;
+            lineStart = start;
+            lineEnd = end;
+            buffer.readerIndex(lf + 1);
+            return true;
+        }
+
+        /**
+         * Same as {@link #scan(ByteBuf)} but copies the line into the {@link AppendableCharSequence} like the
+         * {@link HeaderParser}, for the lines which are not worth a special case.
+         */
+        AppendableCharSequence scanAndCopy(ByteBuf buffer) {
+            if (!scan(buffer)) {
+                return null;
+            }
+            seq.reset();
+            for (int i = lineStart; i < lineEnd; i ++) {
+                seq.append((char) (buffer.getByte(i) & 0xFF));
+            }
+            return seq;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        final void increaseSize(int bytes) {
+            size += bytes;
+            if (size > maxLength) {
+                throw newException(maxLength);
+            }
+        }
+
+        protected TooLongFrameException newException(int maxLength) {
+            return new TooLongFrameException("HTTP header is larger than " + maxLength + " bytes.");
+        }
+    }
+
+    private final class InitialLineScanner extends LineScanner {
+
+        InitialLineScanner(AppendableCharSequence seq, int maxLength) {
+            super(seq, maxLength);
+        }
+
+        @Override
+        boolean scan(ByteBuf buffer) {
+            reset();
+            int start = buffer.readerIndex();
+            if (currentState == State.SKIP_CONTROL_CHARS) {
+                final int writerIndex = buffer.writerIndex();
+                while (start < writerIndex) {
+                    char c = (char) (buffer.getByte(start) & 0xFF);
+                    if (!Character.isISOControl(c) && !Character.isWhitespace(c)) {
+                        currentState = State.READ_INITIAL;
+                        break;
+                    }
+                    start ++;
+                }
+                // The skipped bytes count towards the maximum length like in the LineParser, but are consumed so
+                // they are not part of the initial line if it is not complete yet.
+                increaseSize(start - buffer.readerIndex());
+                buffer.readerIndex(start);
+                if (currentState == State.SKIP_CONTROL_CHARS) {
+                    return false;
+                }
+            }
+            return scan(buffer, start);
+        }
+
+        @Override
+        protected TooLongFrameException newException(int maxLength) {
+            return new TooLongFrameException("An HTTP line is larger than " + maxLength + " bytes.");
+        }
+    }
 }
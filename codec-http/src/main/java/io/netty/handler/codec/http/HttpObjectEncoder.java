@@ -185,6 +185,11 @@ public abstract class HttpObjectEncoder<H extends HttpMessage> extends MessageTo
      * Encode the {@link HttpHeaders} into a {@link ByteBuf}.
      */
     protected void encodeHeaders(HttpHeaders headers, ByteBuf buf) {
+        if (headers instanceof TemplatedHttpHeaders) {
+            // Created by PreEncodedHttpHeaders, which were encoded before.
+            ((TemplatedHttpHeaders) headers).encode(buf);
+            return;
+        }
         Iterator<Entry<CharSequence, CharSequence>> iter = headers.iteratorCharSequence();
         while (iter.hasNext()) {
             Entry<CharSequence, CharSequence> header = iter.next();
@@ -81,11 +81,39 @@ public class HttpRequestDecoder extends HttpObjectDecoder {
         super(maxInitialLineLength, maxHeaderSize, maxChunkSize, true, validateHeaders, initialBufferSize);
     }
 
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time,
+     *                    see {@link HttpObjectDecoder}.
+     */
+    public HttpRequestDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean swarParsing) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, true, validateHeaders, initialBufferSize,
+                swarParsing);
+    }
+
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time,
+     *                    see {@link HttpObjectDecoder}.
+     * @param headersFactory the {@link HttpHeadersFactory} which creates the headers of the decoded
+     *                       {@link HttpRequest}s.
+     */
+    public HttpRequestDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean swarParsing, HttpHeadersFactory headersFactory) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, true, validateHeaders, initialBufferSize,
+                swarParsing, headersFactory);
+    }
+
     @Override
     protected HttpMessage createMessage(String[] initialLine) throws Exception {
         return new DefaultHttpRequest(
                 HttpVersion.valueOf(initialLine[2]),
-                HttpMethod.valueOf(initialLine[0]), initialLine[1], validateHeaders);
+                HttpMethod.valueOf(initialLine[0]), initialLine[1], headersFactory.newHeaders(validateHeaders));
     }
 
     @Override
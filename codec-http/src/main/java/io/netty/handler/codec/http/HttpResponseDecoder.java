@@ -112,11 +112,40 @@ public class HttpResponseDecoder extends HttpObjectDecoder {
         super(maxInitialLineLength, maxHeaderSize, maxChunkSize, true, validateHeaders, initialBufferSize);
     }
 
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time,
+     *                    see {@link HttpObjectDecoder}.
+     */
+    public HttpResponseDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean swarParsing) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, true, validateHeaders, initialBufferSize,
+                swarParsing);
+    }
+
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time,
+     *                    see {@link HttpObjectDecoder}.
+     * @param headersFactory the {@link HttpHeadersFactory} which creates the headers of the decoded
+     *                       {@link HttpResponse}s.
+     */
+    public HttpResponseDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean swarParsing, HttpHeadersFactory headersFactory) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, true, validateHeaders, initialBufferSize,
+                swarParsing, headersFactory);
+    }
+
     @Override
     protected HttpMessage createMessage(String[] initialLine) {
         return new DefaultHttpResponse(
                 HttpVersion.valueOf(initialLine[0]),
-                HttpResponseStatus.valueOf(Integer.parseInt(initialLine[1]), initialLine[2]), validateHeaders);
+                HttpResponseStatus.valueOf(Integer.parseInt(initialLine[1]), initialLine[2]),
+                headersFactory.newHeaders(validateHeaders));
     }
 
     @Override
@@ -71,6 +71,34 @@ public final class HttpServerCodec extends CombinedChannelDuplexHandler<HttpRequ
           new HttpServerResponseEncoder());
     }
 
+    /**
+     * Creates a new instance with the specified decoder options.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time,
+     *                    see {@link HttpObjectDecoder}.
+     */
+    public HttpServerCodec(int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+                           int initialBufferSize, boolean swarParsing) {
+        this(maxInitialLineLength, maxHeaderSize, maxChunkSize, validateHeaders, initialBufferSize, swarParsing,
+                HttpHeadersFactory.DEFAULT);
+    }
+
+    /**
+     * Creates a new instance with the specified decoder options.
+     *
+     * @param swarParsing {@code true} if the initial line and the headers should be scanned eight bytes at a time,
+     *                    see {@link HttpObjectDecoder}.
+     * @param headersFactory the {@link HttpHeadersFactory} which creates the headers of the decoded
+     *                       {@link HttpRequest}s.
+     */
+    public HttpServerCodec(int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+                           int initialBufferSize, boolean swarParsing, HttpHeadersFactory headersFactory) {
+        init(
+          new HttpServerRequestDecoder(maxInitialLineLength, maxHeaderSize, maxChunkSize,
+                  validateHeaders, initialBufferSize, swarParsing, headersFactory),
+          new HttpServerResponseEncoder());
+    }
+
     /**
      * Upgrades to another protocol from HTTP. Removes the {@link HttpRequestDecoder} and
      * {@link HttpResponseEncoder} from the pipeline.
@@ -97,6 +125,13 @@ public final class HttpServerCodec extends CombinedChannelDuplexHandler<HttpRequ
             super(maxInitialLineLength, maxHeaderSize, maxChunkSize, validateHeaders, initialBufferSize);
         }
 
+        HttpServerRequestDecoder(int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
+                                 boolean validateHeaders, int initialBufferSize, boolean swarParsing,
+                                 HttpHeadersFactory headersFactory) {
+            super(maxInitialLineLength, maxHeaderSize, maxChunkSize, validateHeaders, initialBufferSize,
+                    swarParsing, headersFactory);
+        }
+
         @Override
         protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
             int oldSize = out.size();
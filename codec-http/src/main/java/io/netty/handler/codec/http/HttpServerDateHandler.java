@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Sets the {@code Date} header of every {@link HttpResponse} which has none to the {@link CachedHttpDate#value()}.
+ * <p>
+ * It should be added after the {@link HttpServerCodec}:
+ * <pre>
+ *  {@link ChannelPipeline} p = ...;
+ *  ...
+ *  p.addLast("serverCodec", new {@link HttpServerCodec}());
+ *  p.addLast("date", {@link HttpServerDateHandler}.INSTANCE);
+ *  ...
+ *  p.addLast("handler", new HttpRequestHandler());
+ * </pre>
+ */
+@Sharable
+@UnstableApi
+public final class HttpServerDateHandler extends ChannelOutboundHandlerAdapter {
+
+    public static final HttpServerDateHandler INSTANCE = new HttpServerDateHandler();
+
+    private HttpServerDateHandler() { }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpResponse) {
+            CachedHttpDate.setIfAbsent((HttpResponse) msg);
+        }
+        ctx.write(msg, promise);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Searches {@link ByteBuf}s for a byte eight bytes at a time (SIMD within a register).
+ */
+final class HttpSwarUtil {
+
+    private static final long HIGH_BITS_CLEARED = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Returns a pattern which contains the given byte in each of the eight bytes of a {@code long}.
+     */
+    static long compilePattern(byte value) {
+        return (value & 0xFFL) * 0x101010101010101L;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the byte of {@code pattern} in the range {@code [fromIndex,
+     * toIndex)} of the buffer, or {@code -1} if there is none.
+     *
+     * @see #compilePattern(byte)
+     */
+    static int indexOf(ByteBuf buffer, int fromIndex, int toIndex, long pattern) {
+        int i = fromIndex;
+        for (final int longEnd = toIndex - 7; i < longEnd; i += 8) {
+            long match = firstZeroByte(buffer.getLong(i) ^ pattern);
+            if (match != 0) {
+                // getLong(...) is big endian so the first byte is the most significant one.
+                return i + (Long.numberOfLeadingZeros(match) >>> 3);
+            }
+        }
+        final byte value = (byte) pattern;
+        for (; i < toIndex; i++) {
+            if (buffer.getByte(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a {@code long} in which the highest bit of each byte is set if the byte is zero in {@code word}. Unlike
+     * the well known {@code (word - 0x01..01) & ~word & 0x80..80} this has no false positives after a zero byte, so
+     * the position of every set bit can be trusted.
+     */
+    private static long firstZeroByte(long word) {
+        long tmp = (word & HIGH_BITS_CLEARED) + HIGH_BITS_CLEARED;
+        return ~(tmp | word | HIGH_BITS_CLEARED);
+    }
+
+    private HttpSwarUtil() { }
+}
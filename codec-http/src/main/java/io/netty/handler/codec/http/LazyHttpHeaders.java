@@ -0,0 +1,559 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CharSequenceValueConverter;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * {@link HttpHeaders} which the {@link HttpObjectDecoder} copies into a single {@code byte[]} instead of creating
+ * objects for every header name and value. Only the offsets of the names and values are kept, the hash codes of the
+ * names are computed on the first lookup and the values are converted on access. Most messages are only asked for a
+ * few of their headers, so this produces much less garbage than {@link DefaultHttpHeaders}.
+ * <p>
+ * The first modification converts the headers into {@link DefaultHttpHeaders}, to which all operations are delegated
+ * from then on.
+ *
+ * @see HttpHeadersFactory#LAZY
+ */
+@UnstableApi
+public final class LazyHttpHeaders extends HttpHeaders {
+    private static final int INITIAL_DATA_CAPACITY = 256;
+    private static final int INITIAL_CAPACITY = 16;
+    // The nameOffset, nameLength, valueOffset and valueLength of each header.
+    private static final int FIELDS = 4;
+
+    private final boolean validate;
+    private byte[] data = EmptyArrays.EMPTY_BYTES;
+    private int dataLength;
+    private int[] offsets = EmptyArrays.EMPTY_INTS;
+    private int size;
+    // The hash codes of the names, computed on the first lookup.
+    private int[] hashes;
+    // Set once the headers were modified.
+    private DefaultHttpHeaders delegate;
+
+    public LazyHttpHeaders() {
+        this(true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param validate {@code true} if the header names and values should be validated like the
+     * {@link DefaultHttpHeaders} do.
+     */
+    public LazyHttpHeaders(boolean validate) {
+        this.validate = validate;
+    }
+
+    /**
+     * Adds the header whose name and value are in the given ranges of the {@link ByteBuf}.
+     */
+    void add(ByteBuf buffer, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        assert delegate == null;
+        final int nameLength = nameEnd - nameStart;
+        final int valueLength = valueEnd - valueStart;
+        ensureDataCapacity(nameLength + valueLength);
+        if (size * FIELDS == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(INITIAL_CAPACITY, size << 1) * FIELDS);
+        }
+
+        final int nameOffset = dataLength;
+        final int valueOffset = nameOffset + nameLength;
+        buffer.getBytes(nameStart, data, nameOffset, nameLength);
+        buffer.getBytes(valueStart, data, valueOffset, valueLength);
+        if (validate) {
+            DefaultHttpHeaders.HttpNameValidator.validateName(new AsciiString(data, nameOffset, nameLength, false));
+            validateValue(valueOffset, valueLength);
+        }
+
+        final int index = size * FIELDS;
+        offsets[index] = nameOffset;
+        offsets[index + 1] = nameLength;
+        offsets[index + 2] = valueOffset;
+        offsets[index + 3] = valueLength;
+        dataLength = valueOffset + valueLength;
+        size++;
+        hashes = null;
+    }
+
+    /**
+     * Appends the folded line in the given range of the {@link ByteBuf} to the value of the last header, separated
+     * by a single space.
+     */
+    void appendToLastValue(ByteBuf buffer, int start, int end) {
+        assert delegate == null && size > 0;
+        // Trimmed like String.trim() as the HttpObjectDecoder does for the DefaultHttpHeaders.
+        while (start < end && (buffer.getByte(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.getByte(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        final int length = end - start;
+        ensureDataCapacity(length + 1);
+        // The value of the last header is always at the end of the data.
+        data[dataLength++] = ' ';
+        buffer.getBytes(start, data, dataLength, length);
+        dataLength += length;
+
+        final int index = (size - 1) * FIELDS;
+        offsets[index + 3] += length + 1;
+        if (validate) {
+            validateValue(offsets[index + 2], offsets[index + 3]);
+        }
+    }
+
+    private void ensureDataCapacity(int length) {
+        final int required = dataLength + length;
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, Math.max(INITIAL_DATA_CAPACITY, data.length << 1)));
+        }
+    }
+
+    private void validateValue(int offset, int length) {
+        DefaultHttpHeaders.valueConverter(true).convertObject(new AsciiString(data, offset, length, false));
+    }
+
+    private AsciiString name(int index) {
+        return new AsciiString(data, offsets[index * FIELDS], offsets[index * FIELDS + 1], false);
+    }
+
+    private AsciiString value(int index) {
+        return new AsciiString(data, offsets[index * FIELDS + 2], offsets[index * FIELDS + 3], false);
+    }
+
+    private int indexOf(CharSequence name, int fromIndex) {
+        checkNotNull(name, "name");
+        if (fromIndex >= size) {
+            return -1;
+        }
+        final int hash = AsciiString.hashCode(name);
+        final int[] hashes = hashes();
+        for (int i = fromIndex; i < size; i++) {
+            if (hashes[i] == hash && nameEquals(i, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int[] hashes() {
+        int[] hashes = this.hashes;
+        if (hashes == null) {
+            hashes = new int[size];
+            for (int i = 0; i < size; i++) {
+                // Case insensitive and the same as AsciiString.hashCode(CharSequence).
+                hashes[i] = PlatformDependent.hashCodeAscii(data, offsets[i * FIELDS], offsets[i * FIELDS + 1]);
+            }
+            this.hashes = hashes;
+        }
+        return hashes;
+    }
+
+    private boolean nameEquals(int index, CharSequence name) {
+        final int length = offsets[index * FIELDS + 1];
+        if (name.length() != length) {
+            return false;
+        }
+        final int offset = offsets[index * FIELDS];
+        for (int i = 0; i < length; i++) {
+            if (toLowerCase(data[offset + i] & 0xFF) != toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + 32 : c;
+    }
+
+    private AsciiString firstValue(CharSequence name) {
+        final int index = indexOf(name, 0);
+        return index == -1 ? null : value(index);
+    }
+
+    private DefaultHttpHeaders delegate() {
+        DefaultHttpHeaders delegate = this.delegate;
+        if (delegate == null) {
+            delegate = new DefaultHttpHeaders(validate);
+            for (int i = 0; i < size; i++) {
+                delegate.add(name(i), value(i));
+            }
+            this.delegate = delegate;
+            data = EmptyArrays.EMPTY_BYTES;
+            offsets = EmptyArrays.EMPTY_INTS;
+            hashes = null;
+            dataLength = 0;
+            size = 0;
+        }
+        return delegate;
+    }
+
+    @Override
+    public String get(String name) {
+        return get((CharSequence) name);
+    }
+
+    @Override
+    public String get(CharSequence name) {
+        if (delegate != null) {
+            return delegate.get(name);
+        }
+        AsciiString value = firstValue(name);
+        return value != null ? value.toString() : null;
+    }
+
+    @Override
+    public Integer getInt(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getInt(name);
+        }
+        AsciiString value = firstValue(name);
+        try {
+            return value != null ? CharSequenceValueConverter.INSTANCE.convertToInt(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public int getInt(CharSequence name, int defaultValue) {
+        Integer value = getInt(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public Short getShort(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getShort(name);
+        }
+        AsciiString value = firstValue(name);
+        try {
+            return value != null ? CharSequenceValueConverter.INSTANCE.convertToShort(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public short getShort(CharSequence name, short defaultValue) {
+        Short value = getShort(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public Long getTimeMillis(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getTimeMillis(name);
+        }
+        AsciiString value = firstValue(name);
+        try {
+            return value != null ? CharSequenceValueConverter.INSTANCE.convertToTimeMillis(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getTimeMillis(CharSequence name, long defaultValue) {
+        Long value = getTimeMillis(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public List<String> getAll(String name) {
+        return getAll((CharSequence) name);
+    }
+
+    @Override
+    public List<String> getAll(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getAll(name);
+        }
+        int index = indexOf(name, 0);
+        if (index == -1) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<String>(4);
+        do {
+            values.add(value(index).toString());
+        } while ((index = indexOf(name, index + 1)) != -1);
+        return values;
+    }
+
+    @Override
+    public Iterator<String> valueStringIterator(CharSequence name) {
+        return getAll(name).iterator();
+    }
+
+    @Override
+    public Iterator<? extends CharSequence> valueCharSequenceIterator(final CharSequence name) {
+        if (delegate != null) {
+            return delegate.valueCharSequenceIterator(name);
+        }
+        return new Iterator<CharSequence>() {
+            private int next = indexOf(name, 0);
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            @Override
+            public CharSequence next() {
+                if (next == -1) {
+                    throw new NoSuchElementException();
+                }
+                AsciiString value = value(next);
+                next = indexOf(name, next + 1);
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("read only");
+            }
+        };
+    }
+
+    @Override
+    public List<Entry<String, String>> entries() {
+        if (delegate != null) {
+            return delegate.entries();
+        }
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<Entry<String, String>> entries = new ArrayList<Entry<String, String>>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new SimpleImmutableEntry<String, String>(name(i).toString(), value(i).toString()));
+        }
+        return entries;
+    }
+
+    @Deprecated
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+        if (delegate != null) {
+            return delegate.iterator();
+        }
+        return entries().iterator();
+    }
+
+    @Override
+    public Iterator<Entry<CharSequence, CharSequence>> iteratorCharSequence() {
+        if (delegate != null) {
+            return delegate.iteratorCharSequence();
+        }
+        return new Iterator<Entry<CharSequence, CharSequence>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Entry<CharSequence, CharSequence> next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                int index = next++;
+                return new SimpleImmutableEntry<CharSequence, CharSequence>(name(index), value(index));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("read only");
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return contains((CharSequence) name);
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        if (delegate != null) {
+            return delegate.contains(name);
+        }
+        return indexOf(name, 0) != -1;
+    }
+
+    @Override
+    public boolean contains(String name, String value, boolean ignoreCase) {
+        return contains((CharSequence) name, (CharSequence) value, ignoreCase);
+    }
+
+    @Override
+    public boolean contains(CharSequence name, CharSequence value, boolean ignoreCase) {
+        if (delegate != null) {
+            return delegate.contains(name, value, ignoreCase);
+        }
+        for (int index = indexOf(name, 0); index != -1; index = indexOf(name, index + 1)) {
+            AsciiString v = value(index);
+            if (ignoreCase ? v.contentEqualsIgnoreCase(value) : v.contentEquals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate != null ? delegate.isEmpty() : size == 0;
+    }
+
+    @Override
+    public int size() {
+        return delegate != null ? delegate.size() : size;
+    }
+
+    @Override
+    public Set<String> names() {
+        if (delegate != null) {
+            return delegate.names();
+        }
+        if (size == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new LinkedHashSet<String>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(name(i).toString());
+        }
+        return names;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Object value) {
+        delegate().add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Object value) {
+        delegate().add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Iterable<?> values) {
+        delegate().add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Iterable<?> values) {
+        delegate().add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addInt(CharSequence name, int value) {
+        delegate().addInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addShort(CharSequence name, short value) {
+        delegate().addShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Object value) {
+        delegate().set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Object value) {
+        delegate().set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Iterable<?> values) {
+        delegate().set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Iterable<?> values) {
+        delegate().set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setInt(CharSequence name, int value) {
+        delegate().setInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setShort(CharSequence name, short value) {
+        delegate().setShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(String name) {
+        delegate().remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(CharSequence name) {
+        delegate().remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders clear() {
+        if (delegate != null) {
+            delegate.clear();
+        } else {
+            // Values returned before share the data, so it must not be reused.
+            data = EmptyArrays.EMPTY_BYTES;
+            dataLength = 0;
+            size = 0;
+            hashes = null;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * An immutable snapshot of {@link HttpHeaders} which is encoded only once, for the headers which are the same for
+ * many messages, e.g. {@code Server} and {@code Content-Type}. The {@link HttpObjectEncoder} writes the headers
+ * returned by {@link #newHeaders()} with a single copy of the encoded bytes followed by the headers which were added
+ * to them, e.g. {@code Date} and {@code Content-Length}:
+ * <pre>
+ * private static final {@link PreEncodedHttpHeaders} TEMPLATE = new {@link PreEncodedHttpHeaders}(
+ *         new {@link DefaultHttpHeaders}().add(SERVER, "netty").add(CONTENT_TYPE, "text/plain"));
+ *
+ * {@link HttpResponse} response = new {@link DefaultFullHttpResponse}(HTTP_1_1, OK, content,
+ *         TEMPLATE.newHeaders(), {@link EmptyHttpHeaders}.INSTANCE);
+ * response.headers().setInt(CONTENT_LENGTH, content.readableBytes());
+ * </pre>
+ * Setting or removing a header which is part of the snapshot falls back to encoding all headers of that message
+ * one by one. An instance can be shared by all {@link io.netty.channel.Channel}s.
+ */
+@UnstableApi
+public final class PreEncodedHttpHeaders {
+
+    final HttpHeaders headers;
+    final byte[] encoded;
+
+    /**
+     * Creates a snapshot of the given {@link HttpHeaders}, later changes to them are not reflected.
+     */
+    public PreEncodedHttpHeaders(HttpHeaders headers) {
+        checkNotNull(headers, "headers");
+        this.headers = new DefaultHttpHeaders().add(headers);
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            Iterator<Entry<CharSequence, CharSequence>> iter = this.headers.iteratorCharSequence();
+            while (iter.hasNext()) {
+                Entry<CharSequence, CharSequence> header = iter.next();
+                HttpHeadersEncoder.encoderHeader(header.getKey(), header.getValue(), buf);
+            }
+            encoded = ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Returns new {@link HttpHeaders} which contain the headers of this snapshot.
+     */
+    public HttpHeaders newHeaders() {
+        return new TemplatedHttpHeaders(this);
+    }
+
+    /**
+     * Returns the number of bytes of the encoded headers.
+     */
+    public int encodedLength() {
+        return encoded.length;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * The {@link HttpHeaders} returned by {@link PreEncodedHttpHeaders#newHeaders()}. The headers of the snapshot always
+ * come first, followed by the headers which were added. Setting or removing a header of the snapshot copies all
+ * headers into {@link DefaultHttpHeaders}, after which the snapshot is no longer used.
+ */
+final class TemplatedHttpHeaders extends HttpHeaders {
+    private final PreEncodedHttpHeaders template;
+    // The headers added to the snapshot, or all headers once detached.
+    private DefaultHttpHeaders headers = new DefaultHttpHeaders();
+    private boolean detached;
+
+    TemplatedHttpHeaders(PreEncodedHttpHeaders template) {
+        this.template = template;
+    }
+
+    /**
+     * Encodes all headers into the {@link ByteBuf}, the snapshot with a single copy.
+     */
+    void encode(ByteBuf buf) {
+        if (!detached) {
+            buf.writeBytes(template.encoded);
+        }
+        if (!headers.isEmpty()) {
+            Iterator<Entry<CharSequence, CharSequence>> iter = headers.iteratorCharSequence();
+            while (iter.hasNext()) {
+                Entry<CharSequence, CharSequence> header = iter.next();
+                HttpHeadersEncoder.encoderHeader(header.getKey(), header.getValue(), buf);
+            }
+        }
+    }
+
+    boolean isDetached() {
+        return detached;
+    }
+
+    private boolean inTemplate(CharSequence name) {
+        return !detached && template.headers.contains(name);
+    }
+
+    private void detach() {
+        DefaultHttpHeaders all = new DefaultHttpHeaders();
+        all.add(template.headers);
+        all.add(headers);
+        headers = all;
+        detached = true;
+    }
+
+    @Override
+    public String get(String name) {
+        return get((CharSequence) name);
+    }
+
+    @Override
+    public String get(CharSequence name) {
+        if (!detached) {
+            String value = template.headers.get(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return headers.get(name);
+    }
+
+    @Override
+    public Integer getInt(CharSequence name) {
+        return inTemplate(name) ? template.headers.getInt(name) : headers.getInt(name);
+    }
+
+    @Override
+    public int getInt(CharSequence name, int defaultValue) {
+        return inTemplate(name) ? template.headers.getInt(name, defaultValue) : headers.getInt(name, defaultValue);
+    }
+
+    @Override
+    public Short getShort(CharSequence name) {
+        return inTemplate(name) ? template.headers.getShort(name) : headers.getShort(name);
+    }
+
+    @Override
+    public short getShort(CharSequence name, short defaultValue) {
+        return inTemplate(name) ? template.headers.getShort(name, defaultValue) :
+                headers.getShort(name, defaultValue);
+    }
+
+    @Override
+    public Long getTimeMillis(CharSequence name) {
+        return inTemplate(name) ? template.headers.getTimeMillis(name) : headers.getTimeMillis(name);
+    }
+
+    @Override
+    public long getTimeMillis(CharSequence name, long defaultValue) {
+        return inTemplate(name) ? template.headers.getTimeMillis(name, defaultValue) :
+                headers.getTimeMillis(name, defaultValue);
+    }
+
+    @Override
+    public List<String> getAll(String name) {
+        return getAll((CharSequence) name);
+    }
+
+    @Override
+    public List<String> getAll(CharSequence name) {
+        if (!inTemplate(name)) {
+            return headers.getAll(name);
+        }
+        List<String> values = new ArrayList<String>(template.headers.getAll(name));
+        values.addAll(headers.getAll(name));
+        return values;
+    }
+
+    @Override
+    public List<Entry<String, String>> entries() {
+        if (detached) {
+            return headers.entries();
+        }
+        if (isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry<String, String>> entries = new ArrayList<Entry<String, String>>(size());
+        entries.addAll(template.headers.entries());
+        entries.addAll(headers.entries());
+        return entries;
+    }
+
+    @Deprecated
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+        return detached ? headers.iterator() : entries().iterator();
+    }
+
+    @Override
+    public Iterator<Entry<CharSequence, CharSequence>> iteratorCharSequence() {
+        if (detached) {
+            return headers.iteratorCharSequence();
+        }
+        List<Entry<CharSequence, CharSequence>> entries = new ArrayList<Entry<CharSequence, CharSequence>>(size());
+        Iterator<Entry<CharSequence, CharSequence>> iter = template.headers.iteratorCharSequence();
+        while (iter.hasNext()) {
+            entries.add(iter.next());
+        }
+        iter = headers.iteratorCharSequence();
+        while (iter.hasNext()) {
+            entries.add(iter.next());
+        }
+        return Collections.unmodifiableList(entries).iterator();
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return contains((CharSequence) name);
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        return inTemplate(name) || headers.contains(name);
+    }
+
+    @Override
+    public boolean contains(String name, String value, boolean ignoreCase) {
+        return contains((CharSequence) name, (CharSequence) value, ignoreCase);
+    }
+
+    @Override
+    public boolean contains(CharSequence name, CharSequence value, boolean ignoreCase) {
+        return !detached && template.headers.contains(name, value, ignoreCase) ||
+               headers.contains(name, value, ignoreCase);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (detached || template.headers.isEmpty()) && headers.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return detached ? headers.size() : template.headers.size() + headers.size();
+    }
+
+    @Override
+    public Set<String> names() {
+        if (detached) {
+            return headers.names();
+        }
+        Set<String> names = new LinkedHashSet<String>(template.headers.names());
+        names.addAll(headers.names());
+        return names;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Object value) {
+        headers.add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Object value) {
+        headers.add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Iterable<?> values) {
+        headers.add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Iterable<?> values) {
+        headers.add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addInt(CharSequence name, int value) {
+        headers.addInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addShort(CharSequence name, short value) {
+        headers.addShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Object value) {
+        return set((CharSequence) name, value);
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Object value) {
+        if (inTemplate(name)) {
+            detach();
+        }
+        headers.set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Iterable<?> values) {
+        return set((CharSequence) name, values);
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Iterable<?> values) {
+        if (inTemplate(name)) {
+            detach();
+        }
+        headers.set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setInt(CharSequence name, int value) {
+        if (inTemplate(name)) {
+            detach();
+        }
+        headers.setInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setShort(CharSequence name, short value) {
+        if (inTemplate(name)) {
+            detach();
+        }
+        headers.setShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(String name) {
+        return remove((CharSequence) name);
+    }
+
+    @Override
+    public HttpHeaders remove(CharSequence name) {
+        if (inTemplate(name)) {
+            detach();
+        }
+        headers.remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders clear() {
+        headers.clear();
+        detached = true;
+        return this;
+    }
+}
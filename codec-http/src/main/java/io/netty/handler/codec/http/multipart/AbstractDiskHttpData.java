@@ -156,7 +156,6 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                     throw new IOException("Out of size: " + (size + localsize) +
                             " > " + definedSize);
                 }
-                ByteBuffer byteBuffer = buffer.nioBufferCount() == 1 ? buffer.nioBuffer() : buffer.copy().nioBuffer();
                 int written = 0;
                 if (file == null) {
                     file = tempFile();
@@ -165,8 +164,12 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                     RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
                     fileChannel = accessFile.getChannel();
                 }
-                while (written < localsize) {
-                    written += fileChannel.write(byteBuffer);
+                // Write the NIO views of the buffer at their absolute position, so composite buffers are not copied
+                // into one contiguous buffer first.
+                for (ByteBuffer byteBuffer : buffer.nioBuffers()) {
+                    while (byteBuffer.hasRemaining()) {
+                        written += fileChannel.write(byteBuffer, size + written);
+                    }
                 }
                 size += localsize;
                 buffer.readerIndex(buffer.readerIndex() + written);
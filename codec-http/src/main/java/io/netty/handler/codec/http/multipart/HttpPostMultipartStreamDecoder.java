@@ -0,0 +1,734 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostBodyUtil.TransferEncodingMechanism;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.EndOfDataDecoderException;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.NotEnoughDataDecoderException;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A {@code multipart/form-data} decoder which is meant for large bodies.
+ * <p>
+ * Unlike {@link HttpPostMultipartRequestDecoder} the received chunks are never copied into one growing buffer.
+ * Each chunk is kept as a component of a {@link CompositeByteBuf} and the boundary is searched with the
+ * Boyer-Moore-Horspool algorithm, starting where the previous search stopped. Whenever no delimiter is found,
+ * everything but the last {@code delimiter length - 1} bytes is handed to the current part right away, so at most
+ * one chunk plus a few bytes is ever held by the decoder. Combined with a {@link HttpDataFactory} that stores
+ * files on disk, the content of a file part is written straight from the received buffers and never buffered
+ * as a whole.
+ * <p>
+ * Parts are made available through {@link #hasNext()} and {@link #next()} as soon as their closing delimiter was
+ * seen. Nested {@code multipart/mixed} parts are not supported and part headers must be terminated by CRLF.
+ * The headers of a part may not exceed {@link #getMaxPartHeaderSize()} bytes.
+ * <p>
+ * {@link #setDiscardThreshold(int)} has no effect, as the consumed chunks are always released right away.
+ * <p>
+ * You <strong>MUST</strong> call {@link #destroy()} after completion to release all resources.
+ */
+@UnstableApi
+public class HttpPostMultipartStreamDecoder implements InterfaceHttpPostRequestDecoder {
+
+    private static final byte[] CRLF_CRLF = { HttpConstants.CR, HttpConstants.LF, HttpConstants.CR, HttpConstants.LF };
+    private static final String FILENAME_ENCODED = HttpHeaderValues.FILENAME.toString() + '*';
+
+    /**
+     * The default maximum size of the headers of a part, which matches the default of the
+     * {@link io.netty.handler.codec.http.HttpObjectDecoder}.
+     */
+    public static final int DEFAULT_MAX_PART_HEADER_SIZE = 8192;
+
+    private enum State {
+        PREAMBLE,
+        DELIMITER_END,
+        HEADERS,
+        BODY,
+        EPILOGUE
+    }
+
+    private final HttpDataFactory factory;
+    private final HttpRequest request;
+    private Charset charset;
+
+    /**
+     * "--boundary", which may open the body without a leading CRLF.
+     */
+    private final byte[] dashBoundary;
+
+    /**
+     * Searcher for "CRLF--boundary", which ends every part.
+     */
+    private final BoundarySearcher delimiterSearcher;
+
+    private final List<InterfaceHttpData> bodyListHttpData = new ArrayList<InterfaceHttpData>();
+    private final Map<String, List<InterfaceHttpData>> bodyMapHttpData = new TreeMap<String, List<InterfaceHttpData>>(
+            CaseIgnoringComparator.INSTANCE);
+    private int bodyListHttpDataRank;
+
+    private CompositeByteBuf undecoded;
+    private State state = State.PREAMBLE;
+
+    /**
+     * How many bytes after the reader index were already searched without finding the end of the part headers.
+     */
+    private int headersScanned;
+
+    private HttpData currentData;
+    private boolean isLastChunk;
+    private boolean destroyed;
+    private int discardThreshold;
+    private int maxPartHeaderSize = DEFAULT_MAX_PART_HEADER_SIZE;
+
+    /**
+     * @param request
+     *            the request to decode
+     * @throws NullPointerException
+     *             for request
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamDecoder(HttpRequest request) {
+        this(new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE), request, HttpConstants.DEFAULT_CHARSET);
+    }
+
+    /**
+     * @param factory
+     *            the factory used to create InterfaceHttpData
+     * @param request
+     *            the request to decode
+     * @throws NullPointerException
+     *             for request or factory
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamDecoder(HttpDataFactory factory, HttpRequest request) {
+        this(factory, request, HttpConstants.DEFAULT_CHARSET);
+    }
+
+    /**
+     * @param factory
+     *            the factory used to create InterfaceHttpData
+     * @param request
+     *            the request to decode
+     * @param charset
+     *            the charset to use as default
+     * @throws NullPointerException
+     *             for request or charset or factory
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamDecoder(HttpDataFactory factory, HttpRequest request, Charset charset) {
+        this.request = checkNotNull(request, "request");
+        this.charset = checkNotNull(charset, "charset");
+        this.factory = checkNotNull(factory, "factory");
+
+        String[] dataBoundary = HttpPostRequestDecoder.getMultipartDataBoundary(
+                request.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        if (dataBoundary == null) {
+            throw new ErrorDataDecoderException("Not a multipart request");
+        }
+        if (dataBoundary.length > 1 && dataBoundary[1] != null) {
+            try {
+                this.charset = Charset.forName(dataBoundary[1]);
+            } catch (IllegalArgumentException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+        }
+        dashBoundary = dataBoundary[0].getBytes(CharsetUtil.US_ASCII);
+        byte[] delimiter = new byte[dashBoundary.length + 2];
+        delimiter[0] = HttpConstants.CR;
+        delimiter[1] = HttpConstants.LF;
+        System.arraycopy(dashBoundary, 0, delimiter, 2, dashBoundary.length);
+        delimiterSearcher = new BoundarySearcher(delimiter);
+
+        if (request instanceof HttpContent) {
+            // Offer automatically if the given request is also of type HttpContent
+            offer((HttpContent) request);
+        }
+    }
+
+    private void checkDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException(HttpPostMultipartStreamDecoder.class.getSimpleName()
+                    + " was destroyed already");
+        }
+    }
+
+    @Override
+    public boolean isMultipart() {
+        checkDestroyed();
+        return true;
+    }
+
+    /**
+     * The threshold is kept for compatibility only, as consumed chunks are always released right away.
+     */
+    @Override
+    public void setDiscardThreshold(int discardThreshold) {
+        this.discardThreshold = checkPositiveOrZero(discardThreshold, "discardThreshold");
+    }
+
+    @Override
+    public int getDiscardThreshold() {
+        return discardThreshold;
+    }
+
+    /**
+     * Sets the maximum size of the headers of a part, including the CRLF which ends each header but not the empty
+     * line which follows them. A part with larger headers fails the decoding with an
+     * {@link ErrorDataDecoderException}. Defaults to {@value #DEFAULT_MAX_PART_HEADER_SIZE}.
+     */
+    public void setMaxPartHeaderSize(int maxPartHeaderSize) {
+        this.maxPartHeaderSize = checkPositive(maxPartHeaderSize, "maxPartHeaderSize");
+    }
+
+    /**
+     * Returns the maximum size of the headers of a part.
+     *
+     * @see #setMaxPartHeaderSize(int)
+     */
+    public int getMaxPartHeaderSize() {
+        return maxPartHeaderSize;
+    }
+
+    @Override
+    public List<InterfaceHttpData> getBodyHttpDatas() {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        return bodyListHttpData;
+    }
+
+    @Override
+    public List<InterfaceHttpData> getBodyHttpDatas(String name) {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        return bodyMapHttpData.get(name);
+    }
+
+    @Override
+    public InterfaceHttpData getBodyHttpData(String name) {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        List<InterfaceHttpData> list = bodyMapHttpData.get(name);
+        if (list != null) {
+            return list.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes as much as possible of the given chunk. The content is retained and not copied, so the caller
+     * remains free to release the chunk once this method returns.
+     *
+     * @param content
+     *            the new received chunk
+     * @throws ErrorDataDecoderException
+     *             if the body is malformed or the data could not be stored
+     */
+    @Override
+    public HttpPostMultipartStreamDecoder offer(HttpContent content) {
+        checkDestroyed();
+
+        ByteBuf buf = content.content();
+        if (buf.isReadable() && state != State.EPILOGUE) {
+            if (undecoded == null) {
+                undecoded = buf.alloc().compositeBuffer();
+            }
+            undecoded.addComponent(true, buf.retainedSlice());
+        }
+        if (content instanceof LastHttpContent) {
+            isLastChunk = true;
+        }
+        if (undecoded != null) {
+            try {
+                decode(undecoded);
+            } finally {
+                undecoded.discardReadComponents();
+            }
+        }
+        if (isLastChunk && state != State.EPILOGUE) {
+            throw new ErrorDataDecoderException("Multipart body ended before the close delimiter");
+        }
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        checkDestroyed();
+
+        if (state == State.EPILOGUE) {
+            // OK except if end of list
+            if (bodyListHttpDataRank >= bodyListHttpData.size()) {
+                throw new EndOfDataDecoderException();
+            }
+        }
+        return bodyListHttpDataRank < bodyListHttpData.size();
+    }
+
+    /**
+     * Returns the next available InterfaceHttpData or null if, at the time it
+     * is called, there is no more available InterfaceHttpData. A subsequent
+     * call to offer(httpChunk) could enable more data.
+     *
+     * Be sure to call {@link InterfaceHttpData#release()} after you are done
+     * with processing to make sure to not leak any resources
+     *
+     * @return the next available InterfaceHttpData or null if none
+     * @throws EndOfDataDecoderException
+     *             No more data will be available
+     */
+    @Override
+    public InterfaceHttpData next() {
+        checkDestroyed();
+
+        if (hasNext()) {
+            return bodyListHttpData.get(bodyListHttpDataRank++);
+        }
+        return null;
+    }
+
+    @Override
+    public InterfaceHttpData currentPartialHttpData() {
+        return currentData;
+    }
+
+    /**
+     * Utility function to add a new decoded data
+     */
+    protected void addHttpData(InterfaceHttpData data) {
+        List<InterfaceHttpData> datas = bodyMapHttpData.get(data.getName());
+        if (datas == null) {
+            datas = new ArrayList<InterfaceHttpData>(1);
+            bodyMapHttpData.put(data.getName(), datas);
+        }
+        datas.add(data);
+        bodyListHttpData.add(data);
+    }
+
+    private void decode(CompositeByteBuf buf) {
+        for (;;) {
+            switch (state) {
+            case PREAMBLE:
+                if (!skipPreamble(buf)) {
+                    return;
+                }
+                state = State.DELIMITER_END;
+                break;
+            case DELIMITER_END:
+                if (!readDelimiterEnd(buf)) {
+                    return;
+                }
+                break;
+            case HEADERS:
+                if (!readPartHeaders(buf)) {
+                    return;
+                }
+                state = State.BODY;
+                break;
+            case BODY:
+                if (!readPartBody(buf)) {
+                    return;
+                }
+                state = State.DELIMITER_END;
+                break;
+            case EPILOGUE:
+                buf.skipBytes(buf.readableBytes());
+                return;
+            default:
+                throw new Error();
+            }
+        }
+    }
+
+    /**
+     * Skips everything up to and including the first delimiter, which may open the body without a leading CRLF.
+     */
+    private boolean skipPreamble(ByteBuf buf) {
+        int readerIndex = buf.readerIndex();
+        int writerIndex = buf.writerIndex();
+        int prefix = Math.min(dashBoundary.length, writerIndex - readerIndex);
+        boolean startsWithBoundary = true;
+        for (int i = 0; i < prefix; i++) {
+            if (buf.getByte(readerIndex + i) != dashBoundary[i]) {
+                startsWithBoundary = false;
+                break;
+            }
+        }
+        if (startsWithBoundary) {
+            if (prefix < dashBoundary.length) {
+                return false;
+            }
+            buf.skipBytes(dashBoundary.length);
+            return true;
+        }
+        int index = delimiterSearcher.indexOf(buf, readerIndex, writerIndex);
+        if (index < 0) {
+            buf.readerIndex(Math.max(readerIndex, writerIndex - delimiterSearcher.length() + 1));
+            return false;
+        }
+        buf.readerIndex(index + delimiterSearcher.length());
+        return true;
+    }
+
+    /**
+     * Reads what follows a delimiter: either "--" for the close delimiter or optional padding and CRLF.
+     */
+    private boolean readDelimiterEnd(ByteBuf buf) {
+        int readerIndex = buf.readerIndex();
+        int writerIndex = buf.writerIndex();
+        if (writerIndex - readerIndex < 2) {
+            return false;
+        }
+        if (buf.getByte(readerIndex) == '-' && buf.getByte(readerIndex + 1) == '-') {
+            buf.readerIndex(readerIndex + 2);
+            state = State.EPILOGUE;
+            return true;
+        }
+        for (int i = readerIndex; i < writerIndex; i++) {
+            byte b = buf.getByte(i);
+            if (b == HttpConstants.LF) {
+                buf.readerIndex(i + 1);
+                headersScanned = 0;
+                state = State.HEADERS;
+                return true;
+            }
+            if (b != HttpConstants.CR && b != HttpConstants.SP && b != HttpConstants.HT) {
+                throw new ErrorDataDecoderException("Invalid character after the multipart delimiter: " + b);
+            }
+        }
+        return false;
+    }
+
+    private boolean readPartHeaders(ByteBuf buf) {
+        int readerIndex = buf.readerIndex();
+        int writerIndex = buf.writerIndex();
+        if (writerIndex - readerIndex < 2) {
+            return false;
+        }
+        if (buf.getByte(readerIndex) == HttpConstants.CR && buf.getByte(readerIndex + 1) == HttpConstants.LF) {
+            // No headers at all.
+            buf.readerIndex(readerIndex + 2);
+            currentData = newHttpData(null);
+            return true;
+        }
+        // The headers end with the CRLF of the last header, which is followed by an empty line. Never search
+        // beyond the largest allowed headers, so they are not buffered without a bound.
+        int maxLength = maxPartHeaderSize + 2;
+        int end = indexOf(buf, readerIndex + headersScanned, Math.min(writerIndex, readerIndex + maxLength), CRLF_CRLF);
+        if (end < 0) {
+            if (writerIndex - readerIndex >= maxLength) {
+                throw new ErrorDataDecoderException("Part headers are larger than " + maxPartHeaderSize + " bytes");
+            }
+            headersScanned = Math.max(0, writerIndex - readerIndex - CRLF_CRLF.length + 1);
+            return false;
+        }
+        String headers = buf.toString(readerIndex, end - readerIndex, charset);
+        buf.readerIndex(end + CRLF_CRLF.length);
+        currentData = newHttpData(headers.split("\r\n"));
+        return true;
+    }
+
+    /**
+     * Hands the part content to the current {@link HttpData} as it arrives, keeping back only the bytes which
+     * could be the start of the delimiter.
+     */
+    private boolean readPartBody(CompositeByteBuf buf) {
+        int readerIndex = buf.readerIndex();
+        int writerIndex = buf.writerIndex();
+        int index = delimiterSearcher.indexOf(buf, readerIndex, writerIndex);
+        try {
+            if (index < 0) {
+                int length = writerIndex - readerIndex - delimiterSearcher.length() + 1;
+                if (length > 0) {
+                    currentData.addContent(retainedContent(buf, readerIndex, length), false);
+                    buf.readerIndex(readerIndex + length);
+                }
+                return false;
+            }
+            int length = index - readerIndex;
+            currentData.addContent(retainedContent(buf, readerIndex, length), true);
+        } catch (IOException e) {
+            throw new ErrorDataDecoderException(e);
+        }
+        buf.readerIndex(index + delimiterSearcher.length());
+        HttpData data = currentData;
+        currentData = null;
+        addHttpData(data);
+        return true;
+    }
+
+    /**
+     * Returns the given range as slices of the received buffers, so it stays valid once the composite discards
+     * its read components.
+     */
+    private static ByteBuf retainedContent(CompositeByteBuf buf, int index, int length) {
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        List<ByteBuf> slices = buf.decompose(index, length);
+        if (slices.size() == 1) {
+            return slices.get(0).retain();
+        }
+        ByteBuf[] buffers = new ByteBuf[slices.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = slices.get(i).retain();
+        }
+        return Unpooled.wrappedBuffer(buffers);
+    }
+
+    private HttpData newHttpData(String[] headerLines) {
+        String name = null;
+        String filename = null;
+        String contentType = null;
+        String transferEncoding = null;
+        String charsetName = null;
+        long size = 0;
+        if (headerLines != null) {
+            for (String line : headerLines) {
+                String[] contents = HttpPostMultipartRequestDecoder.splitMultipartHeader(line);
+                if (HttpHeaderNames.CONTENT_DISPOSITION.contentEqualsIgnoreCase(contents[0])) {
+                    for (int i = 2; i < contents.length; i++) {
+                        String[] values = contents[i].split("=", 2);
+                        if (values.length < 2) {
+                            continue;
+                        }
+                        String key = HttpPostMultipartRequestDecoder.cleanString(values[0]);
+                        if (HttpHeaderValues.NAME.contentEqualsIgnoreCase(key)) {
+                            name = HttpPostMultipartRequestDecoder.cleanString(values[1]);
+                        } else if (HttpHeaderValues.FILENAME.contentEqualsIgnoreCase(key)) {
+                            filename = unquote(values[1]);
+                        } else if (FILENAME_ENCODED.equalsIgnoreCase(key)) {
+                            filename = decodeExtendedValue(values[1]);
+                        }
+                    }
+                } else if (HttpHeaderNames.CONTENT_TYPE.contentEqualsIgnoreCase(contents[0])) {
+                    if (HttpHeaderValues.MULTIPART_MIXED.contentEqualsIgnoreCase(contents[1])) {
+                        throw new ErrorDataDecoderException("Nested multipart/mixed parts are not supported");
+                    }
+                    contentType = contents[1];
+                    for (int i = 2; i < contents.length; i++) {
+                        String[] values = contents[i].split("=", 2);
+                        if (values.length == 2 && HttpHeaderValues.CHARSET.contentEqualsIgnoreCase(values[0].trim())) {
+                            charsetName = HttpPostMultipartRequestDecoder.cleanString(values[1]);
+                        }
+                    }
+                } else if (HttpHeaderNames.CONTENT_TRANSFER_ENCODING.contentEqualsIgnoreCase(contents[0])) {
+                    transferEncoding = HttpPostMultipartRequestDecoder.cleanString(contents[1]);
+                } else if (HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(contents[0])) {
+                    try {
+                        size = Long.parseLong(HttpPostMultipartRequestDecoder.cleanString(contents[1]));
+                    } catch (NumberFormatException ignored) {
+                        size = 0;
+                    }
+                }
+            }
+        }
+        if (name == null) {
+            throw new ErrorDataDecoderException("Content-Disposition name not found");
+        }
+
+        Charset localCharset = null;
+        if (charsetName != null) {
+            try {
+                localCharset = Charset.forName(charsetName);
+            } catch (IllegalArgumentException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+        }
+        try {
+            if (filename == null) {
+                Attribute attribute = size > 0 ? factory.createAttribute(request, name, size)
+                        : factory.createAttribute(request, name);
+                if (localCharset != null) {
+                    attribute.setCharset(localCharset);
+                }
+                return attribute;
+            }
+
+            TransferEncodingMechanism mechanism = TransferEncodingMechanism.BIT7;
+            Charset fileCharset = charset;
+            if (transferEncoding != null) {
+                String code = transferEncoding.toLowerCase();
+                if (code.equals(TransferEncodingMechanism.BIT7.value())) {
+                    fileCharset = CharsetUtil.US_ASCII;
+                } else if (code.equals(TransferEncodingMechanism.BIT8.value())) {
+                    fileCharset = CharsetUtil.ISO_8859_1;
+                    mechanism = TransferEncodingMechanism.BIT8;
+                } else if (code.equals(TransferEncodingMechanism.BINARY.value())) {
+                    mechanism = TransferEncodingMechanism.BINARY;
+                } else {
+                    throw new ErrorDataDecoderException("TransferEncoding Unknown: " + code);
+                }
+            }
+            if (localCharset != null) {
+                fileCharset = localCharset;
+            }
+            return factory.createFileUpload(request, name, HttpPostMultipartRequestDecoder.cleanString(filename),
+                    contentType != null ? contentType : HttpPostBodyUtil.DEFAULT_BINARY_CONTENT_TYPE,
+                    mechanism.value(), fileCharset, size);
+        } catch (IllegalArgumentException e) {
+            throw new ErrorDataDecoderException(e);
+        }
+    }
+
+    private static String unquote(String value) {
+        // Value is quoted or token. Strip if quoted:
+        int last = value.length() - 1;
+        if (last > 0 && value.charAt(0) == HttpConstants.DOUBLE_QUOTE &&
+                value.charAt(last) == HttpConstants.DOUBLE_QUOTE) {
+            return value.substring(1, last);
+        }
+        return value;
+    }
+
+    private static String decodeExtendedValue(String value) {
+        // See https://tools.ietf.org/html/rfc5987
+        try {
+            String[] split = HttpPostMultipartRequestDecoder.cleanString(value).split("'", 3);
+            return QueryStringDecoder.decodeComponent(split[2], Charset.forName(split[0]));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ErrorDataDecoderException(e);
+        } catch (UnsupportedCharsetException e) {
+            throw new ErrorDataDecoderException(e);
+        }
+    }
+
+    private static int indexOf(ByteBuf buf, int fromIndex, int toIndex, byte[] pattern) {
+        int last = toIndex - pattern.length;
+        outer:
+        for (int i = fromIndex; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buf.getByte(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Destroy the {@link HttpPostMultipartStreamDecoder} and release all it resources. After this method
+     * was called it is not possible to operate on it anymore.
+     */
+    @Override
+    public void destroy() {
+        // Release all data items, including those not yet pulled
+        cleanFiles();
+
+        destroyed = true;
+
+        if (undecoded != null && undecoded.refCnt() > 0) {
+            undecoded.release();
+            undecoded = null;
+        }
+    }
+
+    @Override
+    public void cleanFiles() {
+        checkDestroyed();
+
+        factory.cleanRequestHttpData(request);
+    }
+
+    @Override
+    public void removeHttpDataFromClean(InterfaceHttpData data) {
+        checkDestroyed();
+
+        factory.removeHttpDataFromClean(request, data);
+    }
+
+    /**
+     * Boyer-Moore-Horspool search for a fixed pattern in a {@link ByteBuf}.
+     */
+    static final class BoundarySearcher {
+        private final byte[] pattern;
+        private final int[] shifts = new int[256];
+
+        BoundarySearcher(byte[] pattern) {
+            this.pattern = pattern;
+            int last = pattern.length - 1;
+            for (int i = 0; i < shifts.length; i++) {
+                shifts[i] = pattern.length;
+            }
+            for (int i = 0; i < last; i++) {
+                shifts[pattern[i] & 0xFF] = last - i;
+            }
+        }
+
+        int length() {
+            return pattern.length;
+        }
+
+        /**
+         * Returns the index of the first occurrence of the pattern in {@code [fromIndex, toIndex)} or {@code -1}.
+         */
+        int indexOf(ByteBuf buf, int fromIndex, int toIndex) {
+            byte[] pattern = this.pattern;
+            int last = pattern.length - 1;
+            byte lastByte = pattern[last];
+            int end = toIndex - pattern.length;
+            int i = fromIndex;
+            while (i <= end) {
+                byte b = buf.getByte(i + last);
+                if (b == lastByte) {
+                    int j = last - 1;
+                    while (j >= 0 && buf.getByte(i + j) == pattern[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += shifts[b & 0xFF];
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachedHttpDateTest {
+
+    @Test
+    public void testValue() {
+        long before = System.currentTimeMillis();
+        AsciiString value = CachedHttpDate.value();
+        long after = System.currentTimeMillis();
+
+        Date date = DateFormatter.parseHttpDate(value);
+        assertNotNull(date);
+        assertTrue(date.getTime() >= before - before % 1000);
+        assertTrue(date.getTime() <= after);
+    }
+
+    @Test
+    public void testValueIsCached() {
+        AsciiString value;
+        AsciiString value2;
+        long second;
+        do {
+            second = System.currentTimeMillis() / 1000;
+            value = CachedHttpDate.value();
+            value2 = CachedHttpDate.value();
+        } while (second != System.currentTimeMillis() / 1000);
+        assertSame(value, value2);
+    }
+
+    @Test
+    public void testScheduleRefresh() throws Exception {
+        DefaultEventExecutor executor = new DefaultEventExecutor();
+        try {
+            ScheduledFuture<?> future = CachedHttpDate.scheduleRefresh(executor);
+            assertFalse(future.isDone());
+            assertTrue(future.cancel(false));
+        } finally {
+            executor.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testHandler() {
+        EmbeddedChannel channel = new EmbeddedChannel(HttpServerDateHandler.INSTANCE);
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        HttpResponse responseWithDate = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        responseWithDate.headers().set(HttpHeaderNames.DATE, "Thu, 01 Jan 1970 00:00:00 GMT");
+        assertTrue(channel.writeOutbound(response, responseWithDate));
+
+        assertSame(response, channel.readOutbound());
+        assertNotNull(DateFormatter.parseHttpDate(response.headers().get(HttpHeaderNames.DATE)));
+        assertSame(responseWithDate, channel.readOutbound());
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", responseWithDate.headers().get(HttpHeaderNames.DATE));
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the decoders produce exactly the same messages no matter if {@code swarParsing} is enabled.
+ */
+public class HttpObjectDecoderSwarParsingTest {
+
+    static final String[] REQUESTS = {
+            "GET /some/path?foo=bar HTTP/1.1\r\nHost: localhost\r\nUpgrade: WebSocket\r\n\r\n",
+            "GET / HTTP/1.1\nHost: localhost\nX-Empty:\nX-Spaces:   \t\n\n",
+            "GET  /mixed   HTTP/1.1  \r\nA: 1\nB:2\r\nC : 3\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Folded: first\r\n  second\r\n\tthird\r\nHost: localhost\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-A-Very-Long-Header-Name-Which-Is-Longer-Than-Eight-Bytes: " +
+                    "and a value which is also quite a bit longer than a few words\r\n\r\n",
+            "POST /upload HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello" +
+                    "GET /pipelined HTTP/1.1\r\nHost: localhost\r\n\r\n",
+            "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n1a; ext=1\r\n" +
+                    "abcdefghijklmnopqrstuvwxyz\r\n0\r\nTrailer-A: 1\r\nTrailer-B:  2 \r\n\r\n",
+            "GET / HTTP/1.1\r\nNo-Colon\r\n\r\n",
+            "GET / HTTP/1.1\r\nBad-Separator:\u000Bvalue\r\n\r\n",
+            "GET / HTTP/1.1\r\nBad-Separator:\fvalue\r\n\r\n",
+            "GET /\u000B HTTP/1.1\r\nHost: localhost\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Too-Long: " + repeat('a', 200) + "\r\n\r\n",
+            "GET /" + repeat('b', 200) + " HTTP/1.1\r\n\r\n",
+            "GET /\r\n\r\n",
+            "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" + repeat('1', 100) + "\r\n",
+    };
+
+    static final String[] RESPONSES = {
+            "HTTP/1.1 200 OK\r\nContent-Length: 2\r\nServer: test\r\n\r\nok",
+            "HTTP/1.1 200 OK\r\nName With Space: value\r\nAnother : value\r\nX-Folded: a\r\n b\r\n" +
+                    "Content-Length: 0\r\n\r\n",
+            "HTTP/1.1 404 Not Found\nContent-Length: 0\n\n",
+            "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n0\r\nA: 1\r\n\r\n",
+            "HTTP/1.1 200 OK\r\nNo-Colon-But-Space value\r\nContent-Length: 0\r\n\r\n",
+            "HTTP/1.1 200 OK\r\nX-Too-Long: " + repeat('c', 200) + "\r\n\r\n",
+    };
+
+    @Test
+    public void testRequests() {
+        for (String request : REQUESTS) {
+            for (int fragmentSize : new int[] { Integer.MAX_VALUE, 1, 3, 7, 9 }) {
+                assertSameResult(request, fragmentSize, new HttpRequestDecoder(64, 128, 16, true, 8, false),
+                        new HttpRequestDecoder(64, 128, 16, true, 8, true));
+            }
+        }
+    }
+
+    @Test
+    public void testResponses() {
+        for (String response : RESPONSES) {
+            for (int fragmentSize : new int[] { Integer.MAX_VALUE, 1, 3, 7, 9 }) {
+                assertSameResult(response, fragmentSize, new HttpResponseDecoder(64, 128, 16, true, 8, false),
+                        new HttpResponseDecoder(64, 128, 16, true, 8, true));
+            }
+        }
+    }
+
+    @Test
+    public void testHeadersAndInitialLineAtMaximumLength() {
+        for (int length = 60; length <= 70; length++) {
+            String request = "GET /" + repeat('d', length - 14) + " HTTP/1.1\r\nA: " + repeat('e', length) + "\r\n\r\n";
+            for (int fragmentSize : new int[] { Integer.MAX_VALUE, 1, 5 }) {
+                assertSameResult(request, fragmentSize, new HttpRequestDecoder(64, 68, 16, true, 8, false),
+                        new HttpRequestDecoder(64, 68, 16, true, 8, true));
+            }
+        }
+    }
+
+    @Test
+    public void testInitialLineWithLeadingControlChars() {
+        String request = "\r\n\r\n  GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        assertSameResult(request, Integer.MAX_VALUE, new HttpRequestDecoder(64, 128, 16, true, 8, false),
+                new HttpRequestDecoder(64, 128, 16, true, 8, true));
+
+        // The skipped control chars are consumed, so they never end up in the initial line.
+        for (int fragmentSize = 1; fragmentSize < 8; fragmentSize++) {
+            List<String> result = decode(request, fragmentSize, new HttpRequestDecoder(64, 128, 16, true, 8, true));
+            assertEquals(2, result.size());
+            assertEquals("DefaultHttpRequest success GET / HTTP/1.1 [Host]=[localhost]", result.get(0));
+        }
+    }
+
+    @Test
+    public void testInitialLineWithControlCharsOnly() {
+        String request = repeat(' ', 20) + "GET / HTTP/1.1\r\n\r\n";
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder(15, 128, 16, true, 8, true));
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(request, CharsetUtil.US_ASCII)));
+        HttpRequest req = channel.readInbound();
+        assertTrue(req.decoderResult().cause() instanceof TooLongFrameException);
+        assertFalse(channel.finish());
+    }
+
+    private static void assertSameResult(String message, int fragmentSize, HttpObjectDecoder expectedDecoder,
+                                         HttpObjectDecoder actualDecoder) {
+        assertEquals(message + " (fragmentSize: " + fragmentSize + ')',
+                decode(message, fragmentSize, expectedDecoder), decode(message, fragmentSize, actualDecoder));
+    }
+
+    static List<String> decode(String message, int fragmentSize, HttpObjectDecoder decoder) {
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        ByteBuf buf = Unpooled.copiedBuffer(message, CharsetUtil.US_ASCII);
+        while (buf.isReadable()) {
+            channel.writeInbound(buf.readRetainedSlice(Math.min(fragmentSize, buf.readableBytes())));
+        }
+        buf.release();
+        channel.finish();
+
+        List<String> result = new ArrayList<String>();
+        for (;;) {
+            Object msg = channel.readInbound();
+            if (msg == null) {
+                return result;
+            }
+            result.add(describe(msg));
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private static String describe(Object msg) {
+        StringBuilder buf = new StringBuilder();
+        DecoderResult result = ((HttpObject) msg).decoderResult();
+        buf.append(msg.getClass().getSimpleName()).append(' ')
+           // The messages of the header validation differ as the names are AsciiStrings if swarParsing is enabled.
+           .append(result.isSuccess() ? "success" : result.isFailure() ? result.cause().getClass() : "unfinished");
+        if (msg instanceof HttpRequest) {
+            HttpRequest req = (HttpRequest) msg;
+            buf.append(' ').append(req.method()).append(' ').append(req.uri()).append(' ')
+               .append(req.protocolVersion());
+        }
+        if (msg instanceof HttpResponse) {
+            HttpResponse res = (HttpResponse) msg;
+            buf.append(' ').append(res.protocolVersion()).append(' ').append(res.status());
+        }
+        if (msg instanceof HttpMessage) {
+            appendHeaders(buf, ((HttpMessage) msg).headers());
+        }
+        if (msg instanceof HttpContent) {
+            buf.append(" content: ").append(((HttpContent) msg).content().toString(CharsetUtil.US_ASCII));
+        }
+        if (msg instanceof LastHttpContent) {
+            appendHeaders(buf, ((LastHttpContent) msg).trailingHeaders());
+        }
+        return buf.toString();
+    }
+
+    private static void appendHeaders(StringBuilder buf, HttpHeaders headers) {
+        for (Map.Entry<String, String> header : headers) {
+            buf.append(" [").append(header.getKey()).append("]=[").append(header.getValue()).append(']');
+        }
+    }
+
+    static String repeat(char c, int count) {
+        StringBuilder buf = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            buf.append(c);
+        }
+        return buf.toString();
+    }
+}
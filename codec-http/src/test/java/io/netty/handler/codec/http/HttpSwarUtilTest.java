@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpSwarUtilTest {
+
+    @Test
+    public void testIndexOf() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int j = 0; j < bytes.length; j++) {
+                // Only a few distinct values so there are many matches, including 0x00, 0x7F, 0x80 and 0xFF.
+                bytes[j] = (byte) new int[] { 0x00, 0x0A, 0x3A, 0x7F, 0x80, 0x8A, 0xFF }[random.nextInt(7)];
+            }
+            ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+            byte value = bytes.length == 0 ? 0x0A : bytes[random.nextInt(bytes.length)];
+            int fromIndex = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            int toIndex = fromIndex + random.nextInt(bytes.length - fromIndex + 1);
+            assertEquals(buf.indexOf(fromIndex, toIndex, value),
+                    HttpSwarUtil.indexOf(buf, fromIndex, toIndex, HttpSwarUtil.compilePattern(value)));
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testIndexOfNotFound() {
+        ByteBuf buf = Unpooled.copiedBuffer(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 });
+        assertEquals(-1, HttpSwarUtil.indexOf(buf, 0, 11, HttpSwarUtil.compilePattern((byte) 12)));
+        assertEquals(-1, HttpSwarUtil.indexOf(buf, 0, 10, HttpSwarUtil.compilePattern((byte) 11)));
+        assertEquals(10, HttpSwarUtil.indexOf(buf, 0, 11, HttpSwarUtil.compilePattern((byte) 11)));
+        assertEquals(-1, HttpSwarUtil.indexOf(buf, 2, 11, HttpSwarUtil.compilePattern((byte) 1)));
+        buf.release();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import static io.netty.handler.codec.http.HttpObjectDecoderSwarParsingTest.REQUESTS;
+import static io.netty.handler.codec.http.HttpObjectDecoderSwarParsingTest.RESPONSES;
+import static io.netty.handler.codec.http.HttpObjectDecoderSwarParsingTest.decode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LazyHttpHeadersTest {
+
+    @Test
+    public void testDecodedRequests() {
+        for (String request : REQUESTS) {
+            for (int fragmentSize : new int[] { Integer.MAX_VALUE, 1, 7 }) {
+                List<String> expected = decode(request, fragmentSize, new HttpRequestDecoder(64, 128, 16, true, 8));
+                for (boolean swarParsing : new boolean[] { false, true }) {
+                    assertEquals(request, expected, decode(request, fragmentSize,
+                            new HttpRequestDecoder(64, 128, 16, true, 8, swarParsing, HttpHeadersFactory.LAZY)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDecodedResponses() {
+        for (String response : RESPONSES) {
+            for (int fragmentSize : new int[] { Integer.MAX_VALUE, 1, 7 }) {
+                List<String> expected = decode(response, fragmentSize, new HttpResponseDecoder(64, 128, 16, true, 8));
+                for (boolean swarParsing : new boolean[] { false, true }) {
+                    assertEquals(response, expected, decode(response, fragmentSize,
+                            new HttpResponseDecoder(64, 128, 16, true, 8, swarParsing, HttpHeadersFactory.LAZY)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadDecodedHeaders() {
+        HttpHeaders headers = decodeHeaders("Host: localhost\r\nAccept: text/html\r\nContent-Length: 42\r\n" +
+                "accept: text/plain\r\nX-Folded: a\r\n b\r\nX-Empty:\r\n");
+        assertTrue(headers instanceof LazyHttpHeaders);
+        assertEquals(6, headers.size());
+        assertEquals("localhost", headers.get("host"));
+        assertEquals("localhost", headers.get(HttpHeaderNames.HOST));
+        assertEquals("text/html", headers.get("ACCEPT"));
+        assertEquals(Arrays.asList("text/html", "text/plain"), headers.getAll(HttpHeaderNames.ACCEPT));
+        assertEquals(Collections.<String>emptyList(), headers.getAll("Accept-Encoding"));
+        assertEquals(Integer.valueOf(42), headers.getInt(HttpHeaderNames.CONTENT_LENGTH));
+        assertNull(headers.getInt(HttpHeaderNames.HOST));
+        assertEquals(-1, headers.getInt("Missing", -1));
+        assertEquals("a b", headers.get("X-Folded"));
+        assertEquals("", headers.get("X-Empty"));
+        assertTrue(headers.contains("x-empty"));
+        assertFalse(headers.contains("X-Emptyy"));
+        assertTrue(headers.contains(HttpHeaderNames.ACCEPT, "TEXT/PLAIN", true));
+        assertFalse(headers.contains(HttpHeaderNames.ACCEPT, "TEXT/PLAIN", false));
+        assertTrue(headers.containsValue(HttpHeaderNames.ACCEPT, "text/plain", false));
+        // The names are case sensitive like the ones of the DefaultHttpHeaders.
+        assertEquals(6, headers.names().size());
+
+        Iterator<Entry<CharSequence, CharSequence>> iterator = headers.iteratorCharSequence();
+        Entry<CharSequence, CharSequence> first = iterator.next();
+        assertTrue(first.getKey() instanceof AsciiString);
+        assertEquals("Host", first.getKey().toString());
+        assertEquals("localhost", first.getValue().toString());
+    }
+
+    @Test
+    public void testModificationConvertsToDefaultHeaders() {
+        HttpHeaders headers = decodeHeaders("Host: localhost\r\nAccept: text/html\r\nAccept: text/plain\r\n");
+        headers.remove(HttpHeaderNames.ACCEPT);
+        headers.add("X-Added", "1");
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 10);
+        assertEquals(3, headers.size());
+        assertEquals("localhost", headers.get(HttpHeaderNames.HOST));
+        assertFalse(headers.contains(HttpHeaderNames.ACCEPT));
+        assertEquals("1", headers.get("x-added"));
+        assertEquals(10, headers.getInt(HttpHeaderNames.CONTENT_LENGTH, -1));
+
+        headers.clear();
+        assertTrue(headers.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testModificationIsValidated() {
+        HttpHeaders headers = decodeHeaders("Host: localhost\r\n");
+        headers.add("Invalid Name", "value");
+    }
+
+    @Test
+    public void testEmpty() {
+        LazyHttpHeaders headers = new LazyHttpHeaders();
+        assertTrue(headers.isEmpty());
+        assertNull(headers.get(HttpHeaderNames.HOST));
+        assertFalse(headers.iteratorCharSequence().hasNext());
+        assertTrue(headers.entries().isEmpty());
+    }
+
+    private static HttpHeaders decodeHeaders(String headers) {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new HttpRequestDecoder(4096, 8192, 8192, true, 128, false, HttpHeadersFactory.LAZY));
+        assertTrue(channel.writeInbound(
+                Unpooled.copiedBuffer("GET / HTTP/1.1\r\n" + headers + "\r\n", CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertTrue(request.decoderResult().isSuccess());
+        channel.finishAndReleaseAll();
+        return request.headers();
+    }
+}
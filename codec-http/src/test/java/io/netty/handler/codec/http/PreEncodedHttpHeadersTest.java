@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PreEncodedHttpHeadersTest {
+    private static final PreEncodedHttpHeaders TEMPLATE = new PreEncodedHttpHeaders(new DefaultHttpHeaders()
+            .add(HttpHeaderNames.SERVER, "netty")
+            .add(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN)
+            .add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING));
+
+    @Test
+    public void testEncode() {
+        HttpHeaders headers = TEMPLATE.newHeaders();
+        headers.set(HttpHeaderNames.DATE, "Thu, 01 Jan 1970 00:00:00 GMT");
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 2);
+        assertFalse(((TemplatedHttpHeaders) headers).isDetached());
+
+        assertEquals("HTTP/1.1 200 OK\r\n" +
+                     "server: netty\r\n" +
+                     "content-type: text/plain\r\n" +
+                     "vary: accept-encoding\r\n" +
+                     "date: Thu, 01 Jan 1970 00:00:00 GMT\r\n" +
+                     "content-length: 2\r\n" +
+                     "\r\n" +
+                     "ok", encode(headers));
+    }
+
+    @Test
+    public void testEncodedLength() {
+        assertEquals("server: netty\r\ncontent-type: text/plain\r\nvary: accept-encoding\r\n".length(),
+                TEMPLATE.encodedLength());
+    }
+
+    @Test
+    public void testSnapshot() {
+        HttpHeaders source = new DefaultHttpHeaders().add(HttpHeaderNames.SERVER, "netty");
+        PreEncodedHttpHeaders template = new PreEncodedHttpHeaders(source);
+        source.set(HttpHeaderNames.SERVER, "changed");
+        assertEquals("netty", template.newHeaders().get(HttpHeaderNames.SERVER));
+    }
+
+    @Test
+    public void testRead() {
+        HttpHeaders headers = TEMPLATE.newHeaders();
+        headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ORIGIN);
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 10);
+
+        assertEquals(5, headers.size());
+        assertEquals("netty", headers.get("Server"));
+        assertEquals(10, headers.getInt(HttpHeaderNames.CONTENT_LENGTH, -1));
+        assertEquals(Arrays.asList("accept-encoding", "origin"), headers.getAll(HttpHeaderNames.VARY));
+        assertTrue(headers.contains(HttpHeaderNames.CONTENT_TYPE, "TEXT/PLAIN", true));
+        assertTrue(headers.contains(HttpHeaderNames.CONTENT_LENGTH));
+        assertFalse(headers.contains(HttpHeaderNames.DATE));
+        assertEquals(4, headers.names().size());
+        assertEquals(5, headers.entries().size());
+        assertFalse(((TemplatedHttpHeaders) headers).isDetached());
+    }
+
+    @Test
+    public void testModifyTemplateHeader() {
+        HttpHeaders headers = TEMPLATE.newHeaders();
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 2);
+        headers.remove(HttpHeaderNames.VARY);
+        headers.set(HttpHeaderNames.SERVER, "other");
+        assertTrue(((TemplatedHttpHeaders) headers).isDetached());
+        assertNull(headers.get(HttpHeaderNames.VARY));
+
+        // Like with DefaultHttpHeaders the header which was set is moved to the end.
+        assertEquals("HTTP/1.1 200 OK\r\n" +
+                     "content-type: text/plain\r\n" +
+                     "content-length: 2\r\n" +
+                     "server: other\r\n" +
+                     "\r\n" +
+                     "ok", encode(headers));
+
+        // The template itself is not modified.
+        assertEquals("accept-encoding", TEMPLATE.newHeaders().get(HttpHeaderNames.VARY));
+    }
+
+    @Test
+    public void testClear() {
+        HttpHeaders headers = TEMPLATE.newHeaders();
+        headers.clear();
+        assertTrue(headers.isEmpty());
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 2);
+        assertEquals("HTTP/1.1 200 OK\r\ncontent-length: 2\r\n\r\nok", encode(headers));
+    }
+
+    private static String encode(HttpHeaders headers) {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder());
+        assertTrue(channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer("ok", CharsetUtil.US_ASCII), headers, EmptyHttpHeaders.INSTANCE)));
+        ByteBuf encoded = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            encoded.writeBytes(buf);
+            buf.release();
+        }
+        assertFalse(channel.finish());
+        String result = encoded.toString(CharsetUtil.US_ASCII);
+        encoded.release();
+        return result;
+    }
+}
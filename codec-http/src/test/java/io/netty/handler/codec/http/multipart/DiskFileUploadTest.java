@@ -15,11 +15,13 @@
  */
 package io.netty.handler.codec.http.multipart;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -77,4 +79,21 @@ public class DiskFileUploadTest {
         assertEquals(2, f.getFile().length());
         f.delete();
     }
+
+    @Test
+    public void testAddContentFromCompositeBuffers() throws IOException {
+        DiskFileUpload f =
+                new DiskFileUpload("d1", "d1", "application/json", null, null, 0);
+
+        ByteBuf first = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(new byte[] { 1, 2 }),
+                Unpooled.directBuffer().writeBytes(new byte[] { 3, 4, 5 }));
+        f.addContent(first, false);
+        assertEquals(0, first.refCnt());
+        f.addContent(Unpooled.wrappedBuffer(new byte[] { 6 }), true);
+
+        assertTrue(f.isCompleted());
+        assertEquals(6, f.length());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6 }, f.get());
+        f.delete();
+    }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpPostMultipartStreamDecoderTest {
+
+    private static final String BOUNDARY = "dLV9Wyq26L_-JQxk6ferf-RT153LhOO";
+    private static final String AFTER_FILE = "\r\n--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"empty\"\r\n" +
+            "\r\n" +
+            "\r\n--" + BOUNDARY + "--\r\n" +
+            "epilogue";
+
+    private static HttpRequest newRequest() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+        return request;
+    }
+
+    private static byte[] newBody(byte[] file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"field\"\r\n" +
+                "\r\n" +
+                "value\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "Content-Transfer-Encoding: binary\r\n" +
+                "\r\n").getBytes(CharsetUtil.US_ASCII));
+        out.write(file);
+        out.write(AFTER_FILE.getBytes(CharsetUtil.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static byte[] newFile(Random random, int size) {
+        byte[] file = new byte[size];
+        random.nextBytes(file);
+        // Sprinkle partial delimiters over the content.
+        byte[] partial = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1)).getBytes(CharsetUtil.US_ASCII);
+        for (int i = 0; i + partial.length < size; i += 997) {
+            int length = random.nextInt(partial.length) + 1;
+            System.arraycopy(partial, 0, file, i, length);
+            // Make sure the random content does not complete the delimiter.
+            file[i + length] = '!';
+        }
+        return file;
+    }
+
+    private static void offer(HttpPostMultipartStreamDecoder decoder, byte[] body, Random random, int maxChunk) {
+        int offset = 0;
+        while (offset < body.length) {
+            int length = Math.min(body.length - offset, random.nextInt(maxChunk) + 1);
+            ByteBuf buf = Unpooled.copiedBuffer(body, offset, length);
+            offset += length;
+            HttpContent content = offset == body.length ? new DefaultLastHttpContent(buf) : new DefaultHttpContent(buf);
+            decoder.offer(content);
+            content.release();
+        }
+    }
+
+    private static void assertParts(HttpPostMultipartStreamDecoder decoder, byte[] file) throws IOException {
+        List<InterfaceHttpData> datas = decoder.getBodyHttpDatas();
+        assertEquals(3, datas.size());
+        Attribute field = (Attribute) datas.get(0);
+        assertEquals("field", field.getName());
+        assertEquals("value", field.getValue());
+
+        FileUpload upload = (FileUpload) decoder.getBodyHttpData("file");
+        assertEquals("data.bin", upload.getFilename());
+        assertEquals("application/octet-stream", upload.getContentType());
+        assertEquals("binary", upload.getContentTransferEncoding());
+        assertTrue(upload.isCompleted());
+        assertArrayEquals(file, upload.get());
+
+        Attribute empty = (Attribute) datas.get(2);
+        assertEquals("empty", empty.getName());
+        assertEquals("", empty.getValue());
+    }
+
+    @Test
+    public void testDecodeInOneChunk() throws IOException {
+        byte[] file = newFile(new Random(1), 10000);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(false), newRequest());
+        decoder.offer(new DefaultLastHttpContent(Unpooled.wrappedBuffer(newBody(file))));
+        assertParts(decoder, file);
+        decoder.destroy();
+    }
+
+    @Test
+    public void testDecodeInRandomChunks() throws IOException {
+        Random random = new Random(2);
+        byte[] file = newFile(random, 20000);
+        byte[] body = newBody(file);
+        for (int maxChunk : new int[] { 1, 7, 64, 4096 }) {
+            HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                    new DefaultHttpDataFactory(false), newRequest());
+            offer(decoder, body, random, maxChunk);
+            assertParts(decoder, file);
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    public void testDecodeToDisk() throws IOException {
+        Random random = new Random(3);
+        byte[] file = newFile(random, 256 * 1024);
+        byte[] body = newBody(file);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(true), newRequest());
+        offer(decoder, body, random, 8192);
+        assertParts(decoder, file);
+        FileUpload upload = (FileUpload) decoder.getBodyHttpData("file");
+        assertFalse(upload.isInMemory());
+        assertEquals(file.length, upload.getFile().length());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testPartsAreEmittedIncrementally() throws IOException {
+        byte[] file = newFile(new Random(4), 4096);
+        byte[] body = newBody(file);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(true), newRequest());
+        // Stop right after the CRLF which starts the delimiter of the file part.
+        int fileEnd = body.length - AFTER_FILE.length() + 2;
+
+        decoder.offer(new DefaultHttpContent(Unpooled.wrappedBuffer(body, 0, fileEnd)));
+        assertTrue(decoder.hasNext());
+        assertEquals("field", decoder.next().getName());
+        assertFalse(decoder.hasNext());
+        FileUpload partial = (FileUpload) decoder.currentPartialHttpData();
+        assertNotNull(partial);
+        assertFalse(partial.isCompleted());
+        // Everything which can not be the start of the delimiter was already stored.
+        assertTrue(partial.length() > file.length - ("\r\n--" + BOUNDARY).length());
+
+        decoder.offer(new DefaultLastHttpContent(Unpooled.wrappedBuffer(body, fileEnd, body.length - fileEnd)));
+        assertEquals("file", decoder.next().getName());
+        assertEquals("empty", decoder.next().getName());
+        assertNull(decoder.currentPartialHttpData());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testPreambleIsSkipped() throws IOException {
+        byte[] body = ("This is the preamble.\r\n--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"a\"\r\n" +
+                "\r\n" +
+                "b\r\n" +
+                "--" + BOUNDARY + "--").getBytes(CharsetUtil.US_ASCII);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(false), newRequest());
+        offer(decoder, body, new Random(5), 3);
+        assertEquals("b", ((Attribute) decoder.getBodyHttpData("a")).getValue());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testMissingCloseDelimiter() {
+        byte[] body = ("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"a\"\r\n" +
+                "\r\n" +
+                "b").getBytes(CharsetUtil.US_ASCII);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(false), newRequest());
+        try {
+            decoder.offer(new DefaultLastHttpContent(Unpooled.wrappedBuffer(body)));
+            fail();
+        } catch (ErrorDataDecoderException expected) {
+            // expected
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    public void testMaxPartHeaderSize() throws IOException {
+        String header = "Content-Disposition: form-data; name=\"a\"\r\n";
+        byte[] body = ("--" + BOUNDARY + "\r\n" + header + "\r\n" +
+                "b\r\n" +
+                "--" + BOUNDARY + "--").getBytes(CharsetUtil.US_ASCII);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(false), newRequest());
+        decoder.setMaxPartHeaderSize(header.length());
+        offer(decoder, body, new Random(6), 3);
+        assertEquals("b", ((Attribute) decoder.getBodyHttpData("a")).getValue());
+        decoder.destroy();
+
+        decoder = new HttpPostMultipartStreamDecoder(new DefaultHttpDataFactory(false), newRequest());
+        decoder.setMaxPartHeaderSize(header.length() - 1);
+        try {
+            offer(decoder, body, new Random(6), 3);
+            fail();
+        } catch (ErrorDataDecoderException expected) {
+            // expected
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    public void testUnterminatedPartHeaders() {
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(
+                new DefaultHttpDataFactory(false), newRequest());
+        decoder.offer(new DefaultHttpContent(Unpooled.copiedBuffer("--" + BOUNDARY + "\r\n", CharsetUtil.US_ASCII)));
+        byte[] header = "X-Header: value\r\n".getBytes(CharsetUtil.US_ASCII);
+        try {
+            // The headers never end, so they must not be buffered forever.
+            for (int i = 0; i <= HttpPostMultipartStreamDecoder.DEFAULT_MAX_PART_HEADER_SIZE / header.length; i++) {
+                decoder.offer(new DefaultHttpContent(Unpooled.wrappedBuffer(header)));
+            }
+            fail();
+        } catch (ErrorDataDecoderException expected) {
+            // expected
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    @Test(expected = ErrorDataDecoderException.class)
+    public void testNotMultipart() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/x-www-form-urlencoded");
+        new HttpPostMultipartStreamDecoder(request);
+    }
+
+    @Test
+    public void testBoundarySearcher() {
+        HttpPostMultipartStreamDecoder.BoundarySearcher searcher =
+                new HttpPostMultipartStreamDecoder.BoundarySearcher("abcab".getBytes(CharsetUtil.US_ASCII));
+        ByteBuf buf = Unpooled.copiedBuffer("xxabcaabcabcab", CharsetUtil.US_ASCII);
+        assertEquals(6, searcher.indexOf(buf, 0, buf.writerIndex()));
+        assertEquals(9, searcher.indexOf(buf, 7, buf.writerIndex()));
+        assertEquals(-1, searcher.indexOf(buf, 0, 10));
+        assertEquals(-1, searcher.indexOf(buf, 10, buf.writerIndex()));
+        buf.release();
+    }
+}
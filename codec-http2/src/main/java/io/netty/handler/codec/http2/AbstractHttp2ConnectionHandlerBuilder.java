@@ -83,6 +83,7 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
     private Http2FrameListener frameListener;
     private long gracefulShutdownTimeoutMillis = Http2CodecUtil.DEFAULT_GRACEFUL_SHUTDOWN_TIMEOUT_MILLIS;
     private boolean decoupleCloseAndGoAway;
+    private boolean autoTuneFlowControlWindows;
 
     // The property that will prohibit connection() and codec() if set by server(),
     // because this property is used only when this builder creates an Http2Connection.
@@ -487,6 +488,27 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         return decoupleCloseAndGoAway;
     }
 
+    /**
+     * Determine if the local flow control windows should be grown automatically based on an estimate of the
+     * bandwidth-delay product of the connection. If enabled an {@link AutoTuningHttp2LocalFlowController} is used,
+     * unless the {@link Http2Connection} already has a local flow controller.
+     * @param autoTuneFlowControlWindows {@code true} to grow the connection and stream windows automatically.
+     * @return {@code this}.
+     */
+    protected B autoTuneFlowControlWindows(boolean autoTuneFlowControlWindows) {
+        enforceNonCodecConstraints("autoTuneFlowControlWindows");
+        this.autoTuneFlowControlWindows = autoTuneFlowControlWindows;
+        return self();
+    }
+
+    /**
+     * Determine if the local flow control windows should be grown automatically.
+     * @return {@code true} if the local flow control windows should be grown automatically.
+     */
+    protected boolean isAutoTuneFlowControlWindows() {
+        return autoTuneFlowControlWindows;
+    }
+
     /**
      * Create a new {@link Http2ConnectionHandler}.
      */
@@ -534,6 +556,9 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
             }
             encoder = new StreamBufferingEncoder(encoder);
         }
+        if (autoTuneFlowControlWindows && connection.local().flowController() == null) {
+            connection.local().flowController(new AutoTuningHttp2LocalFlowController(connection));
+        }
 
         DefaultHttp2ConnectionDecoder decoder = new DefaultHttp2ConnectionDecoder(connection, encoder, reader,
                 promisedRequestVerifier(), isAutoAckSettingsFrame(), isAutoAckPingFrame());
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A {@link DefaultHttp2LocalFlowController} which grows the connection and stream flow control windows based on
+ * an estimate of the bandwidth-delay product of the connection.
+ * <p>
+ * When {@code DATA} is received and no probe is outstanding a {@code PING} is sent to the remote endpoint, and all
+ * flow controlled bytes received until the {@code PING} is acknowledged are counted. Those bytes are a sample of
+ * the bandwidth-delay product. If the sample shows a higher bandwidth than seen before and twice the sample is larger
+ * than the current windows, the connection window is grown with a {@code WINDOW_UPDATE} and the initial stream
+ * window with a {@code SETTINGS} frame, up to {@link #maxWindowSize()}. Windows are never shrunk by this controller.
+ * The initial window size of a {@code SETTINGS} frame sent by this controller is applied right away, and the
+ * acknowledgements of all {@code SETTINGS} frames are matched in the order the frames were sent, so an older initial
+ * window size never replaces it once acknowledged.
+ * <p>
+ * While the windows keep growing a probe is sent every round trip. Once a probe did not grow them, the delay before
+ * the next probe is doubled up to ten seconds, and probing stops for good when the windows reached
+ * {@link #maxWindowSize()}.
+ * <p>
+ * The acknowledgement of the probe is consumed by {@link DefaultHttp2ConnectionDecoder} and is not propagated to the
+ * {@link Http2FrameListener}. The estimates are exposed per connection via {@link #roundTripTimeNanos()},
+ * {@link #bandwidth()} and the other accessors, which may be called from any thread.
+ * <p>
+ * This class is <strong>NOT</strong> thread safe. The assumption is all methods but the accessors for the estimates
+ * must be invoked from a single thread.
+ */
+@UnstableApi
+public class AutoTuningHttp2LocalFlowController extends DefaultHttp2LocalFlowController {
+    /**
+     * The default maximum size of the connection and stream windows.
+     */
+    public static final int DEFAULT_MAX_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The opaque data of the {@code PING} frames which are used to probe the bandwidth-delay product.
+     */
+    static final long BDP_PING_DATA = 0x4244505072626550L;
+
+    private static final long MAX_PING_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Http2Connection connection;
+    private final int maxWindowSize;
+    private Http2FrameWriter frameWriter;
+    private ChannelHandlerContext ctx;
+
+    // The SETTINGS sent by this controller which were not acknowledged yet, in the order they were sent. Their initial
+    // window sizes were applied when they were sent.
+    private final Queue<Http2Settings> unacknowledgedSettings = new ArrayDeque<Http2Settings>(2);
+
+    private boolean pinging;
+    private long pingSentNanos;
+    private long pingDelayNanos;
+    private long nextPingNanos;
+    private long bytesSincePing;
+    private long lastGrowthBandwidth;
+
+    private volatile long pingCount;
+    private volatile long windowUpdateCount;
+    private volatile long roundTripTimeNanos;
+    private volatile long bandwidth;
+    private volatile long bdp;
+    private volatile int tunedWindowSize;
+
+    public AutoTuningHttp2LocalFlowController(Http2Connection connection) {
+        this(connection, DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructs a controller with the given maximum window size.
+     *
+     * @param connection the connection state.
+     * @param maxWindowSize the size up to which the connection and stream windows may be grown.
+     */
+    public AutoTuningHttp2LocalFlowController(Http2Connection connection, int maxWindowSize) {
+        this(connection, DEFAULT_WINDOW_UPDATE_RATIO, false, maxWindowSize);
+    }
+
+    /**
+     * Constructs a controller with the given settings.
+     *
+     * @param connection the connection state.
+     * @param windowUpdateRatio the window percentage below which to send a {@code WINDOW_UPDATE}.
+     * @param autoRefillConnectionWindow if {@code true}, effectively disables the connection window
+     * in the flow control algorithm as they will always refill automatically without requiring the
+     * application to consume the bytes. See
+     * {@link DefaultHttp2LocalFlowController#DefaultHttp2LocalFlowController(Http2Connection, float, boolean)}.
+     * @param maxWindowSize the size up to which the connection and stream windows may be grown.
+     */
+    public AutoTuningHttp2LocalFlowController(Http2Connection connection, float windowUpdateRatio,
+                                              boolean autoRefillConnectionWindow, int maxWindowSize) {
+        super(connection, windowUpdateRatio, autoRefillConnectionWindow);
+        this.connection = connection;
+        this.maxWindowSize = checkPositive(maxWindowSize, "maxWindowSize");
+    }
+
+    @Override
+    public AutoTuningHttp2LocalFlowController frameWriter(Http2FrameWriter frameWriter) {
+        super.frameWriter(frameWriter);
+        this.frameWriter = frameWriter;
+        return this;
+    }
+
+    @Override
+    public void channelHandlerContext(ChannelHandlerContext ctx) {
+        super.channelHandlerContext(ctx);
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void receiveFlowControlledFrame(Http2Stream stream, ByteBuf data, int padding,
+            boolean endOfStream) throws Http2Exception {
+        super.receiveFlowControlledFrame(stream, data, padding, endOfStream);
+
+        if (!pinging) {
+            if (initialWindowSize(connection.connectionStream()) >= maxWindowSize &&
+                    initialWindowSize() >= maxWindowSize) {
+                // Nothing left to tune.
+                return;
+            }
+            long nanoTime = System.nanoTime();
+            if (pingDelayNanos != 0 && nanoTime - nextPingNanos < 0) {
+                return;
+            }
+            pinging = true;
+            bytesSincePing = 0;
+            pingSentNanos = nanoTime;
+            frameWriter.writePing(ctx, false, BDP_PING_DATA, ctx.newPromise());
+        }
+        bytesSincePing += data.readableBytes() + padding;
+    }
+
+    /**
+     * Called when a {@code PING} acknowledgement was read.
+     *
+     * @return {@code true} if the {@code PING} was sent by this controller and should not be propagated.
+     */
+    boolean onPingAckRead(ChannelHandlerContext ctx, long data, Http2ConnectionEncoder encoder)
+            throws Http2Exception {
+        if (!pinging || data != BDP_PING_DATA) {
+            return false;
+        }
+        pinging = false;
+
+        long nanoTime = System.nanoTime();
+        long rtt = max(1, nanoTime - pingSentNanos);
+        long sample = bytesSincePing;
+        long sampleBandwidth = sample * TimeUnit.SECONDS.toNanos(1) / rtt;
+        pingCount++;
+        roundTripTimeNanos = rtt;
+        bandwidth = sampleBandwidth;
+        bdp = sample;
+
+        // Only grow the windows if the bandwidth went up since they were last grown, otherwise a higher round trip
+        // time (for example because of buffering along the path) would grow them without any benefit.
+        if (sampleBandwidth <= lastGrowthBandwidth) {
+            backOff(nanoTime, rtt);
+            return true;
+        }
+
+        // Double the sample so that the windows are not the bottleneck of the next sample.
+        int targetWindowSize = (int) min(sample << 1, maxWindowSize);
+        boolean updated = false;
+        Http2Stream connectionStream = connection.connectionStream();
+        int connectionWindowSize = initialWindowSize(connectionStream);
+        if (targetWindowSize > connectionWindowSize) {
+            incrementWindowSize(connectionStream, targetWindowSize - connectionWindowSize);
+            updated = true;
+        }
+        if (targetWindowSize > initialWindowSize()) {
+            // Grow the windows of the active streams right away, as increasing a window is always safe.
+            initialWindowSize(targetWindowSize);
+            Http2Settings settings = new Http2Settings().initialWindowSize(targetWindowSize);
+            unacknowledgedSettings.add(settings);
+            encoder.writeSettings(ctx, settings, ctx.newPromise());
+            updated = true;
+        }
+        if (updated) {
+            lastGrowthBandwidth = sampleBandwidth;
+            tunedWindowSize = targetWindowSize;
+            windowUpdateCount++;
+            pingDelayNanos = 0;
+        } else {
+            backOff(nanoTime, rtt);
+        }
+        return true;
+    }
+
+    private void backOff(long nanoTime, long rtt) {
+        pingDelayNanos = pingDelayNanos == 0 ? rtt : min(pingDelayNanos << 1, MAX_PING_DELAY_NANOS);
+        nextPingNanos = nanoTime + pingDelayNanos;
+    }
+
+    /**
+     * Called when the acknowledgement of a {@code SETTINGS} frame which contains an initial window size was read,
+     * instead of applying the initial window size. The acknowledgements are received in the order the {@code SETTINGS}
+     * frames were sent.
+     * <p>
+     * The initial window size is only applied if no {@code SETTINGS} frame sent later by this controller is still
+     * outstanding, as the window size of that frame is already in effect and applying an older one would shrink the
+     * windows.
+     */
+    void onSettingsAckRead(Http2Settings settings) throws Http2Exception {
+        if (unacknowledgedSettings.peek() == settings) {
+            unacknowledgedSettings.remove();
+        }
+        if (unacknowledgedSettings.isEmpty()) {
+            initialWindowSize(settings.initialWindowSize());
+        }
+    }
+
+    /**
+     * Returns the size up to which the connection and stream windows may be grown.
+     */
+    public int maxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * Returns the number of bandwidth-delay product probes which were acknowledged.
+     */
+    public long pingCount() {
+        return pingCount;
+    }
+
+    /**
+     * Returns the number of times the windows were grown.
+     */
+    public long windowUpdateCount() {
+        return windowUpdateCount;
+    }
+
+    /**
+     * Returns the round trip time of the last probe in nanoseconds, or {@code 0} if no probe was acknowledged yet.
+     */
+    public long roundTripTimeNanos() {
+        return roundTripTimeNanos;
+    }
+
+    /**
+     * Returns the bandwidth seen by the last probe in bytes per second.
+     */
+    public long bandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Returns the number of bytes received during the round trip of the last probe, which is the last estimate of
+     * the bandwidth-delay product.
+     */
+    public long bdp() {
+        return bdp;
+    }
+
+    /**
+     * Returns the size the connection and stream windows were last grown to, or {@code 0} if they were never grown.
+     */
+    public int tunedWindowSize() {
+        return tunedWindowSize;
+    }
+}
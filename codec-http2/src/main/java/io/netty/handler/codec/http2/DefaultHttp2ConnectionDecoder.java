@@ -459,7 +459,13 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
 
             Integer initialWindowSize = settings.initialWindowSize();
             if (initialWindowSize != null) {
-                flowController().initialWindowSize(initialWindowSize);
+                Http2LocalFlowController flowController = flowController();
+                if (flowController instanceof AutoTuningHttp2LocalFlowController) {
+                    // The flow controller may have grown the windows with SETTINGS which were sent later.
+                    ((AutoTuningHttp2LocalFlowController) flowController).onSettingsAckRead(settings);
+                } else {
+                    flowController.initialWindowSize(initialWindowSize);
+                }
             }
         }
 
@@ -490,6 +496,12 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
 
         @Override
         public void onPingAckRead(ChannelHandlerContext ctx, long data) throws Http2Exception {
+            Http2LocalFlowController flowController = flowController();
+            if (flowController instanceof AutoTuningHttp2LocalFlowController &&
+                    ((AutoTuningHttp2LocalFlowController) flowController).onPingAckRead(ctx, data, encoder)) {
+                // The PING was sent by the flow controller to estimate the bandwidth-delay product.
+                return;
+            }
             listener.onPingAckRead(ctx, data);
         }
 
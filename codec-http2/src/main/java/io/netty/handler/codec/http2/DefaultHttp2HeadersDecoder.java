@@ -73,6 +73,17 @@ public class DefaultHttp2HeadersDecoder implements Http2HeadersDecoder, Http2Hea
         this(validateHeaders, new HpackDecoder(maxHeaderListSize));
     }
 
+    /**
+     * Create a new instance.
+     * @param validateHeaders {@code true} to validate headers are valid according to the RFC.
+     * @param maxHeaderListSize see {@link #DefaultHttp2HeadersDecoder(boolean, long)}.
+     * @param internStrings {@code true} to return shared {@link io.netty.util.AsciiString} instances for literal
+     *  header names and values which repeat on the same connection, instead of allocating new ones per request.
+     */
+    public DefaultHttp2HeadersDecoder(boolean validateHeaders, long maxHeaderListSize, boolean internStrings) {
+        this(validateHeaders, new HpackDecoder(maxHeaderListSize, internStrings));
+    }
+
     /**
      * Exposed Used for testing only! Default values used in the initial settings frame are overridden intentionally
      * for testing but violate the RFC if used outside the scope of testing.
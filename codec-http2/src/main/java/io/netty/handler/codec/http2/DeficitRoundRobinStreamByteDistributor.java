@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_MIN_ALLOCATION_CHUNK;
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_PRIORITY_WEIGHT;
+import static io.netty.handler.codec.http2.Http2CodecUtil.streamableBytes;
+import static io.netty.handler.codec.http2.Http2Error.INTERNAL_ERROR;
+import static io.netty.handler.codec.http2.Http2Exception.connectionError;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.lang.Math.min;
+
+/**
+ * A {@link StreamByteDistributor} that implements deficit round robin over all streams which have data to send.
+ * <p>
+ * Each time a stream reaches the head of the round robin queue it is granted a quantum of bytes which is
+ * proportional to its weight, and it may write up to that many bytes before it has to go to the back of the queue.
+ * Weights are approximated by rounding them down to a power of two, so a stream with a weight of {@code 2^k} (up to
+ * {@code 2^(k+1) - 1}) is granted {@code quantum << k} bytes per round. Dependencies and exclusivity are ignored,
+ * and a priority which is received before the stream is created is dropped.
+ * <p>
+ * Unlike {@link WeightedFairQueueByteDistributor} there is no priority tree to maintain, so every operation is
+ * {@code O(1)} regardless of the number of streams. This makes this distributor a good fit for connections with
+ * a large number of concurrent streams that still want weights to be (roughly) honored.
+ */
+@UnstableApi
+public final class DeficitRoundRobinStreamByteDistributor implements StreamByteDistributor {
+    private final Http2Connection connection;
+    private final Http2Connection.PropertyKey stateKey;
+    private final Deque<State> queue = new ArrayDeque<State>(4);
+
+    /**
+     * The number of bytes granted per round to a stream with a weight of {@code 1}.
+     */
+    private int quantum = DEFAULT_MIN_ALLOCATION_CHUNK;
+    private long totalStreamableBytes;
+
+    public DeficitRoundRobinStreamByteDistributor(Http2Connection connection) {
+        this.connection = checkNotNull(connection, "connection");
+
+        // Add a state for the connection.
+        stateKey = connection.newKey();
+        Http2Stream connectionStream = connection.connectionStream();
+        connectionStream.setProperty(stateKey, new State(connectionStream));
+
+        // Register for notification of new streams.
+        connection.addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamAdded(Http2Stream stream) {
+                stream.setProperty(stateKey, new State(stream));
+            }
+
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                state(stream).close();
+            }
+        });
+    }
+
+    /**
+     * Sets the number of bytes that a stream with a weight of {@code 1} may write each time it reaches the head of
+     * the queue. Streams with a higher weight are granted a multiple of this. Defaults to 1KiB, which means a stream
+     * with the default weight of {@code 16} may write 16KiB per round.
+     *
+     * @param quantum the number of bytes granted to a stream with a weight of {@code 1}. Must be > 0.
+     */
+    public void quantum(int quantum) {
+        checkPositive(quantum, "quantum");
+        this.quantum = quantum;
+    }
+
+    @Override
+    public void updateStreamableBytes(StreamState streamState) {
+        state(streamState.stream()).updateStreamableBytes(streamableBytes(streamState),
+                                                          streamState.hasFrame(),
+                                                          streamState.windowSize());
+    }
+
+    @Override
+    public void updateDependencyTree(int childStreamId, int parentStreamId, short weight, boolean exclusive) {
+        // Only the weight is used, the dependency is ignored.
+        Http2Stream stream = connection.stream(childStreamId);
+        if (stream != null) {
+            state(stream).weight(weight);
+        }
+    }
+
+    @Override
+    public boolean distribute(int maxBytes, Writer writer) throws Http2Exception {
+        State state;
+        while ((state = queue.pollFirst()) != null) {
+            state.enqueued = false;
+            if (!state.active()) {
+                // The state was queued before its window went negative or it was closed. It is removed lazily here
+                // as removal from the deque is O(n).
+                state.endRound();
+                continue;
+            }
+            if (maxBytes == 0 && state.streamableBytes > 0) {
+                // Stop at the first state that can't send. Add this state back to the head of the queue so it can
+                // use the rest of its deficit next time. Note that empty frames at the head of the queue will
+                // always be written, assuming the stream window is not negative.
+                state.addToQueue(true);
+                break;
+            }
+
+            if (!state.inRound) {
+                state.inRound = true;
+                state.deficit = state.quantum();
+            }
+
+            // Allocate as much data as this stream has left in this round.
+            int chunk = min(state.deficit, min(maxBytes, state.streamableBytes));
+            maxBytes -= chunk;
+            state.deficit -= chunk;
+
+            // Write the allocated bytes and enqueue as necessary.
+            state.write(chunk, writer);
+            state.requeue(maxBytes == 0);
+        }
+
+        return totalStreamableBytes > 0;
+    }
+
+    private State state(Http2Stream stream) {
+        return checkNotNull(stream, "stream").getProperty(stateKey);
+    }
+
+    /**
+     * The remote flow control state for a single stream.
+     */
+    private final class State {
+        final Http2Stream stream;
+        int streamableBytes;
+        int windowSize;
+        int weightShift = weightShift(DEFAULT_PRIORITY_WEIGHT);
+        int deficit;
+        boolean hasFrame;
+        boolean inRound;
+        boolean enqueued;
+        boolean writing;
+
+        State(Http2Stream stream) {
+            this.stream = stream;
+        }
+
+        void weight(short weight) {
+            weightShift = weightShift(weight);
+        }
+
+        int quantum() {
+            return (int) min((long) quantum << weightShift, Integer.MAX_VALUE);
+        }
+
+        boolean active() {
+            return hasFrame && windowSize >= 0;
+        }
+
+        void updateStreamableBytes(int newStreamableBytes, boolean hasFrame, int windowSize) {
+            assert hasFrame || newStreamableBytes == 0 :
+                "hasFrame: " + hasFrame + " newStreamableBytes: " + newStreamableBytes;
+
+            int delta = newStreamableBytes - streamableBytes;
+            if (delta != 0) {
+                streamableBytes = newStreamableBytes;
+                totalStreamableBytes += delta;
+            }
+            this.hasFrame = hasFrame;
+            this.windowSize = windowSize;
+
+            // While writing the distribution loop decides where this state goes once the write has completed.
+            // A state with a negative window is never queued, but it is also not removed if it is already queued
+            // because removal from the deque is O(n), instead the distribution loop removes it.
+            if (!writing && hasFrame && windowSize >= 0) {
+                addToQueue(false);
+            }
+        }
+
+        /**
+         * Write any allocated bytes for the given stream and updates the streamable bytes,
+         * assuming all of the bytes will be written.
+         */
+        void write(int numBytes, Writer writer) throws Http2Exception {
+            writing = true;
+            try {
+                // Write the allocated bytes.
+                writer.write(stream, numBytes);
+            } catch (Throwable t) {
+                throw connectionError(INTERNAL_ERROR, t, "byte distribution write error");
+            } finally {
+                writing = false;
+            }
+        }
+
+        /**
+         * Puts this state back in the queue after it has written.
+         *
+         * @param exhausted {@code true} if the write used the remaining bytes of the current distribution.
+         */
+        void requeue(boolean exhausted) {
+            // If the window is zero we wait until updateStreamableBytes is called again before this state is
+            // allowed to write, as we already gave it a chance to write zero length frames.
+            if (!hasFrame || windowSize <= 0) {
+                endRound();
+                return;
+            }
+            if (exhausted && deficit > 0 && streamableBytes > 0) {
+                // The round of this state was cut short, continue it in the next distribution.
+                addToQueue(true);
+            } else {
+                endRound();
+                addToQueue(false);
+            }
+        }
+
+        void endRound() {
+            inRound = false;
+            deficit = 0;
+        }
+
+        void addToQueue(boolean first) {
+            if (!enqueued) {
+                enqueued = true;
+                if (first) {
+                    queue.addFirst(this);
+                } else {
+                    queue.addLast(this);
+                }
+            }
+        }
+
+        void close() {
+            // Clear the streamable bytes. This state will be dropped lazily by the distribution loop if it is queued.
+            updateStreamableBytes(0, false, 0);
+        }
+    }
+
+    private static int weightShift(short weight) {
+        return 31 - Integer.numberOfLeadingZeros(weight);
+    }
+}
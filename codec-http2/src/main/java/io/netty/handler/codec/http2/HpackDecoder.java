@@ -91,6 +91,7 @@ final class HpackDecoder {
 
     private final HpackHuffmanDecoder huffmanDecoder = new HpackHuffmanDecoder();
     private final HpackDynamicTable hpackDynamicTable;
+    private final HpackStringInterner interner;
     private long maxHeaderListSize;
     private long maxDynamicTableSize;
     private long encoderMaxDynamicTableSize;
@@ -107,12 +108,32 @@ final class HpackDecoder {
         this(maxHeaderListSize, DEFAULT_HEADER_TABLE_SIZE);
     }
 
+    /**
+     * Create a new instance.
+     * @param maxHeaderListSize see {@link #HpackDecoder(long)}.
+     * @param internStrings {@code true} to return shared {@link AsciiString} instances for literal names and values
+     *  which were decoded before on this connection, instead of allocating a new one for each occurrence. Only the
+     *  values of fields which are added to the dynamic table are interned.
+     */
+    HpackDecoder(long maxHeaderListSize, boolean internStrings) {
+        this(maxHeaderListSize, DEFAULT_HEADER_TABLE_SIZE, internStrings);
+    }
+
     /**
      * Exposed Used for testing only! Default values used in the initial settings frame are overridden intentionally
      * for testing but violate the RFC if used outside the scope of testing.
      */
     HpackDecoder(long maxHeaderListSize, int maxHeaderTableSize) {
+        this(maxHeaderListSize, maxHeaderTableSize, false);
+    }
+
+    /**
+     * Create a new instance. Only the {@link Http2CodecUtil#DEFAULT_HEADER_TABLE_SIZE default}
+     * {@code maxHeaderTableSize} may be used outside of tests, see {@link #HpackDecoder(long, int)}.
+     */
+    HpackDecoder(long maxHeaderListSize, int maxHeaderTableSize, boolean internStrings) {
         this.maxHeaderListSize = checkPositive(maxHeaderListSize, "maxHeaderListSize");
+        interner = internStrings ? new HpackStringInterner() : null;
 
         maxDynamicTableSize = encoderMaxDynamicTableSize = maxHeaderTableSize;
         maxDynamicTableSizeChangeRequired = false;
@@ -251,7 +272,7 @@ final class HpackDecoder {
                         throw notEnoughDataException(in);
                     }
 
-                    name = readStringLiteral(in, nameLength, huffmanEncoded);
+                    name = readStringLiteral(in, nameLength, huffmanEncoded, true);
 
                     state = READ_LITERAL_HEADER_VALUE_LENGTH_PREFIX;
                     break;
@@ -288,7 +309,10 @@ final class HpackDecoder {
                         throw notEnoughDataException(in);
                     }
 
-                    CharSequence value = readStringLiteral(in, valueLength, huffmanEncoded);
+                    // Only values which are added to the dynamic table are interned, so the interner never
+                    // retains a value which the encoder did not want to be retained, like a cookie or a token.
+                    CharSequence value = readStringLiteral(in, valueLength, huffmanEncoded,
+                            indexType == IndexType.INCREMENTAL);
                     insertHeader(sink, name, value, indexType);
                     state = READ_HEADER_REPRESENTATION;
                     break;
@@ -444,7 +468,11 @@ final class HpackDecoder {
         }
     }
 
-    private CharSequence readStringLiteral(ByteBuf in, int length, boolean huffmanEncoded) throws Http2Exception {
+    private CharSequence readStringLiteral(ByteBuf in, int length, boolean huffmanEncoded, boolean intern)
+            throws Http2Exception {
+        if (intern && interner != null) {
+            return interner.decode(in, length, huffmanEncoded, huffmanDecoder);
+        }
         if (huffmanEncoded) {
             return huffmanDecoder.decode(in, length);
         }
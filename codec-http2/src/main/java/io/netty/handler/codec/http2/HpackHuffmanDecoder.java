@@ -4665,6 +4665,20 @@ final class HpackHuffmanDecoder implements ByteProcessor {
             (0 << 16) + (HUFFMAN_FAIL << 8) + 0,
     };
 
+    /**
+     * {@link #HUFFS} folded into a table which consumes a whole byte per lookup. Each of the 256 states has 256
+     * entries, indexed by {@code state << 8 | input}. As the shortest code is 5 bits long, one byte emits at most
+     * two symbols. Every entry is packed as:
+     *
+     * fail<<31 + complete<<26 + symbols<<24 + state<<16 + second symbol<<8 + first symbol
+     */
+    private static final int[] HUFFS_BYTE = buildByteTable();
+
+    private static final int BYTE_FAIL = 1 << 31;
+    private static final int BYTE_COMPLETE = 1 << 26;
+    private static final int BYTE_SYMBOLS_SHIFT = 24;
+    private static final int BYTE_STATE_SHIFT = 16;
+
     private static final Http2Exception BAD_ENCODING = ThrowableUtil.unknownStackTrace(
             Http2Exception.newStatic(COMPRESSION_ERROR, "HPACK - Bad Encoding",
                     Http2Exception.ShutdownHint.HARD_SHUTDOWN), HpackHuffmanDecoder.class, "decode(..)");
@@ -4695,7 +4709,7 @@ final class HpackHuffmanDecoder implements ByteProcessor {
             if (endIndex == -1) {
                 // We did consume the requested length
                 buf.readerIndex(readerIndex + length);
-                if ((state & HUFFMAN_COMPLETE_SHIFT) != HUFFMAN_COMPLETE_SHIFT) {
+                if ((state & BYTE_COMPLETE) == 0) {
                     throw BAD_ENCODING;
                 }
                 return new AsciiString(dest, 0, k, false);
@@ -4717,21 +4731,50 @@ final class HpackHuffmanDecoder implements ByteProcessor {
      */
     @Override
     public boolean process(byte input) {
-        return processNibble(input >> 4) && processNibble(input);
-    }
-
-    private boolean processNibble(int input) {
-        // The high nibble of the flags byte of each row is always zero
-        // (low nibble after shifting row by 12), since there are only 3 flag bits
-        int index = state >> 12 | (input & 0x0F);
-        state = HUFFS[index];
-        if ((state & HUFFMAN_FAIL_SHIFT) != 0) {
+        int entry = HUFFS_BYTE[(state >>> 8 & 0xFF00) | (input & 0xFF)];
+        if (entry < 0) {
             return false;
         }
-        if ((state & HUFFMAN_EMIT_SYMBOL_SHIFT) != 0) {
-            // state is always positive so can cast without mask here
-            dest[k++] = (byte) state;
+        int symbols = entry >>> BYTE_SYMBOLS_SHIFT & 0x3;
+        if (symbols != 0) {
+            dest[k++] = (byte) entry;
+            if (symbols == 2) {
+                dest[k++] = (byte) (entry >>> 8);
+            }
         }
+        state = entry;
         return true;
     }
+
+    private static int[] buildByteTable() {
+        int[] table = new int[HUFFS.length << 4];
+        for (int node = 0; node < HUFFS.length >> 4; node++) {
+            for (int input = 0; input < 256; input++) {
+                int high = HUFFS[node << 4 | input >> 4];
+                if ((high & HUFFMAN_FAIL_SHIFT) != 0) {
+                    table[node << 8 | input] = BYTE_FAIL;
+                    continue;
+                }
+                int low = HUFFS[(high >> 16) << 4 | input & 0x0F];
+                if ((low & HUFFMAN_FAIL_SHIFT) != 0) {
+                    table[node << 8 | input] = BYTE_FAIL;
+                    continue;
+                }
+                int entry = (low >> 16) << BYTE_STATE_SHIFT;
+                int symbols = 0;
+                if ((high & HUFFMAN_EMIT_SYMBOL_SHIFT) != 0) {
+                    entry |= (high & 0xFF) << (8 * symbols++);
+                }
+                if ((low & HUFFMAN_EMIT_SYMBOL_SHIFT) != 0) {
+                    entry |= (low & 0xFF) << (8 * symbols++);
+                }
+                entry |= symbols << BYTE_SYMBOLS_SHIFT;
+                if ((low & HUFFMAN_COMPLETE_SHIFT) != 0) {
+                    entry |= BYTE_COMPLETE;
+                }
+                table[node << 8 | input] = entry;
+            }
+        }
+        return table;
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AsciiString;
+
+/**
+ * A small, lossy cache of the string literals decoded by a {@link HpackDecoder}, so header names and values which
+ * are repeated as literals on every request are returned as one shared {@link AsciiString}.
+ * <p>
+ * The cache is keyed by the encoded bytes of the literal, so a hit neither allocates nor runs the Huffman decoder.
+ * Each slot holds the last literal which hashed to it.
+ */
+final class HpackStringInterner {
+    /**
+     * Longer literals are unlikely to repeat and would make the cache retain too much memory.
+     */
+    static final int MAX_INTERN_LENGTH = 256;
+
+    private static final int SLOTS = 128;
+
+    // The slots are kept in parallel arrays so a miss allocates nothing besides the decoded literal and, if it was
+    // Huffman encoded, a copy of the encoded bytes.
+    private final byte[][] encoded = new byte[SLOTS][];
+    private final boolean[] huffmanEncoded = new boolean[SLOTS];
+    private final AsciiString[] values = new AsciiString[SLOTS];
+
+    /**
+     * Reads a string literal of {@code length} bytes from {@code in} and returns it decoded, sharing the
+     * {@link AsciiString} with the previous occurrence of the same literal if it is still cached.
+     */
+    AsciiString decode(ByteBuf in, int length, boolean huffmanEncoded, HpackHuffmanDecoder huffmanDecoder)
+            throws Http2Exception {
+        if (length == 0) {
+            return AsciiString.EMPTY_STRING;
+        }
+        if (length > MAX_INTERN_LENGTH) {
+            return huffmanEncoded ? huffmanDecoder.decode(in, length) : readLiteral(in, length);
+        }
+        int readerIndex = in.readerIndex();
+        // A cheap hash is good enough to pick a slot, as a hit is always confirmed by comparing all the bytes.
+        int hash = length * 31 + in.getByte(readerIndex);
+        hash = hash * 31 + in.getByte(readerIndex + (length >>> 1));
+        hash = hash * 31 + in.getByte(readerIndex + length - 1);
+        int slot = (hash ^ hash >>> 7 ^ (huffmanEncoded ? 1 : 0)) & SLOTS - 1;
+
+        byte[] cached = encoded[slot];
+        if (cached != null && this.huffmanEncoded[slot] == huffmanEncoded && equals(cached, in, readerIndex, length)) {
+            in.skipBytes(length);
+            return values[slot];
+        }
+
+        AsciiString value;
+        if (huffmanEncoded) {
+            cached = new byte[length];
+            in.getBytes(readerIndex, cached);
+            value = huffmanDecoder.decode(in, length);
+        } else {
+            // The literal is its own value, so both can share the array.
+            value = readLiteral(in, length);
+            cached = value.array();
+        }
+        encoded[slot] = cached;
+        this.huffmanEncoded[slot] = huffmanEncoded;
+        values[slot] = value;
+        return value;
+    }
+
+    private static boolean equals(byte[] cached, ByteBuf in, int readerIndex, int length) {
+        if (cached.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached[i] != in.getByte(readerIndex + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static AsciiString readLiteral(ByteBuf in, int length) {
+        byte[] buf = new byte[length];
+        in.readBytes(buf);
+        return new AsciiString(buf, false);
+    }
+}
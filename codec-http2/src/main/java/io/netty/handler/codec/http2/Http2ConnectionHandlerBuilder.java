@@ -98,6 +98,11 @@ public final class Http2ConnectionHandlerBuilder
         return super.decoupleCloseAndGoAway(decoupleCloseAndGoAway);
     }
 
+    @Override
+    public Http2ConnectionHandlerBuilder autoTuneFlowControlWindows(boolean autoTuneFlowControlWindows) {
+        return super.autoTuneFlowControlWindows(autoTuneFlowControlWindows);
+    }
+
     @Override
     public Http2ConnectionHandler build() {
         return super.build();
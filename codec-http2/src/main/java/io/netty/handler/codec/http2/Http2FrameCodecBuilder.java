@@ -167,6 +167,11 @@ public class Http2FrameCodecBuilder extends
         return super.decoupleCloseAndGoAway(decoupleCloseAndGoAway);
     }
 
+    @Override
+    public Http2FrameCodecBuilder autoTuneFlowControlWindows(boolean autoTuneFlowControlWindows) {
+        return super.autoTuneFlowControlWindows(autoTuneFlowControlWindows);
+    }
+
     @Override
     public int decoderEnforceMaxConsecutiveEmptyDataFrames() {
         return super.decoderEnforceMaxConsecutiveEmptyDataFrames();
@@ -200,6 +205,9 @@ public class Http2FrameCodecBuilder extends
             if (encoderEnforceMaxConcurrentStreams()) {
                 encoder = new StreamBufferingEncoder(encoder);
             }
+            if (isAutoTuneFlowControlWindows()) {
+                connection.local().flowController(new AutoTuningHttp2LocalFlowController(connection));
+            }
             Http2ConnectionDecoder decoder = new DefaultHttp2ConnectionDecoder(connection, encoder, frameReader,
                     promisedRequestVerifier(), isAutoAckSettingsFrame(), isAutoAckPingFrame());
             int maxConsecutiveEmptyDataFrames = decoderEnforceMaxConsecutiveEmptyDataFrames();
@@ -196,6 +196,11 @@ public class Http2MultiplexCodecBuilder
         return super.decoupleCloseAndGoAway(decoupleCloseAndGoAway);
     }
 
+    @Override
+    public Http2MultiplexCodecBuilder autoTuneFlowControlWindows(boolean autoTuneFlowControlWindows) {
+        return super.autoTuneFlowControlWindows(autoTuneFlowControlWindows);
+    }
+
     @Override
     public int decoderEnforceMaxConsecutiveEmptyDataFrames() {
         return super.decoderEnforceMaxConsecutiveEmptyDataFrames();
@@ -226,6 +231,9 @@ public class Http2MultiplexCodecBuilder
             if (encoderEnforceMaxConcurrentStreams()) {
                 encoder = new StreamBufferingEncoder(encoder);
             }
+            if (isAutoTuneFlowControlWindows()) {
+                connection.local().flowController(new AutoTuningHttp2LocalFlowController(connection));
+            }
             Http2ConnectionDecoder decoder = new DefaultHttp2ConnectionDecoder(connection, encoder, frameReader,
                     promisedRequestVerifier(), isAutoAckSettingsFrame(), isAutoAckPingFrame());
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AutoTuningHttp2LocalFlowControllerTest {
+    private static final int STREAM_ID = 3;
+
+    private final List<Long> serverPingAcks = new ArrayList<Long>();
+    private long serverBytesRead;
+    private Http2ConnectionHandler serverHandler;
+    private Http2ConnectionHandler clientHandler;
+    private EmbeddedChannel server;
+    private EmbeddedChannel client;
+
+    private void setup(Http2Connection serverConnection) {
+        Http2FrameAdapter serverListener = new Http2FrameAdapter() {
+            @Override
+            public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                                  boolean endOfStream) {
+                serverBytesRead += data.readableBytes();
+                return data.readableBytes() + padding;
+            }
+
+            @Override
+            public void onPingAckRead(ChannelHandlerContext ctx, long data) {
+                serverPingAcks.add(data);
+            }
+        };
+        Http2ConnectionHandlerBuilder serverBuilder = new Http2ConnectionHandlerBuilder()
+                .frameListener(serverListener);
+        if (serverConnection == null) {
+            serverBuilder.server(true).autoTuneFlowControlWindows(true);
+        } else {
+            serverBuilder.connection(serverConnection);
+        }
+        serverHandler = serverBuilder.build();
+        clientHandler = new Http2ConnectionHandlerBuilder()
+                .server(false)
+                .frameListener(new Http2FrameAdapter())
+                .build();
+        server = new EmbeddedChannel(serverHandler);
+        client = new EmbeddedChannel(clientHandler);
+        exchange();
+    }
+
+    @After
+    public void teardown() {
+        if (client != null) {
+            client.finishAndReleaseAll();
+        }
+        if (server != null) {
+            server.finishAndReleaseAll();
+        }
+    }
+
+    private AutoTuningHttp2LocalFlowController serverFlowController() {
+        return (AutoTuningHttp2LocalFlowController) serverHandler.decoder().flowController();
+    }
+
+    private static boolean transfer(EmbeddedChannel from, EmbeddedChannel to) {
+        boolean transferred = false;
+        for (;;) {
+            Object msg = from.readOutbound();
+            if (msg == null) {
+                return transferred;
+            }
+            to.writeInbound(msg);
+            transferred = true;
+        }
+    }
+
+    private void exchange() {
+        while (transfer(client, server) | transfer(server, client)) {
+            // Keep going until neither side has anything left to write.
+        }
+    }
+
+    private void clientSend(int streamId, int numBytes) throws Http2Exception {
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        clientHandler.encoder().writeHeaders(ctx, streamId, new DefaultHttp2Headers(), 0, false, ctx.newPromise());
+        clientHandler.encoder().writeData(ctx, streamId, Unpooled.wrappedBuffer(new byte[numBytes]), 0, true,
+                ctx.newPromise());
+        clientHandler.flush(ctx);
+    }
+
+    @Test
+    public void testWindowsAreGrownAfterProbe() throws Exception {
+        setup(null);
+        AutoTuningHttp2LocalFlowController controller = serverFlowController();
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.initialWindowSize());
+
+        clientSend(STREAM_ID, 4 * DEFAULT_WINDOW_SIZE);
+        // The client can only send as much as the windows allow before the probe is acknowledged.
+        assertTrue(transfer(client, server));
+        assertEquals(DEFAULT_WINDOW_SIZE, serverBytesRead);
+        assertEquals(0, controller.pingCount());
+
+        // Let the client acknowledge the probe and send the rest of the data.
+        exchange();
+        assertEquals(4 * DEFAULT_WINDOW_SIZE, serverBytesRead);
+        assertTrue(controller.pingCount() >= 1);
+        assertTrue(controller.windowUpdateCount() >= 1);
+        assertTrue(controller.roundTripTimeNanos() > 0);
+        assertTrue(controller.tunedWindowSize() >= 2 * DEFAULT_WINDOW_SIZE);
+        assertEquals(controller.tunedWindowSize(), controller.initialWindowSize());
+        assertEquals(controller.tunedWindowSize(), controller.initialWindowSize(
+                serverHandler.connection().connectionStream()));
+        // The new initial window size was sent to the client.
+        assertEquals(controller.tunedWindowSize(), clientHandler.encoder().flowController().initialWindowSize());
+
+        // Probes are not propagated to the listener.
+        assertTrue(serverPingAcks.isEmpty());
+    }
+
+    @Test
+    public void testWindowsAreNotGrownBeyondMax() throws Exception {
+        Http2Connection connection = new DefaultHttp2Connection(true);
+        int maxWindowSize = DEFAULT_WINDOW_SIZE + 1000;
+        connection.local().flowController(new AutoTuningHttp2LocalFlowController(connection, maxWindowSize));
+        setup(connection);
+        AutoTuningHttp2LocalFlowController controller = serverFlowController();
+
+        clientSend(STREAM_ID, 8 * DEFAULT_WINDOW_SIZE);
+        exchange();
+        assertEquals(8 * DEFAULT_WINDOW_SIZE, serverBytesRead);
+        assertEquals(maxWindowSize, controller.tunedWindowSize());
+        assertEquals(maxWindowSize, controller.initialWindowSize());
+        assertEquals(maxWindowSize, controller.initialWindowSize(connection.connectionStream()));
+
+        // No more probes are sent once the windows are at their maximum.
+        long pingCount = controller.pingCount();
+        clientSend(STREAM_ID + 2, DEFAULT_WINDOW_SIZE);
+        exchange();
+        assertEquals(pingCount, controller.pingCount());
+    }
+
+    private Http2Stream openStream() throws Http2Exception {
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        clientHandler.encoder().writeHeaders(ctx, STREAM_ID, new DefaultHttp2Headers(), 0, false, ctx.newPromise());
+        clientHandler.flush(ctx);
+        exchange();
+        return serverHandler.connection().stream(STREAM_ID);
+    }
+
+    /**
+     * Receives {@code numBytes} on the stream and acknowledges the probe after {@code rttMillis}.
+     *
+     * @return {@code true} if a probe was sent for the received bytes.
+     */
+    private boolean receiveAndAckProbe(Http2Stream stream, int numBytes, long rttMillis) throws Exception {
+        AutoTuningHttp2LocalFlowController controller = serverFlowController();
+        ChannelHandlerContext ctx = server.pipeline().firstContext();
+        ByteBuf data = Unpooled.wrappedBuffer(new byte[numBytes]);
+        try {
+            controller.receiveFlowControlledFrame(stream, data, 0, false);
+        } finally {
+            data.release();
+        }
+        if (rttMillis > 0) {
+            Thread.sleep(rttMillis);
+        }
+        boolean probed = controller.onPingAckRead(ctx, AutoTuningHttp2LocalFlowController.BDP_PING_DATA,
+                serverHandler.encoder());
+        serverHandler.flush(ctx);
+        return probed;
+    }
+
+    @Test
+    public void testStaleSettingsAckDoesNotShrinkWindows() throws Exception {
+        setup(null);
+        Http2Stream stream = openStream();
+        AutoTuningHttp2LocalFlowController controller = serverFlowController();
+
+        assertTrue(receiveAndAckProbe(stream, 60000, 50));
+        assertEquals(120000, controller.initialWindowSize());
+        controller.consumeBytes(stream, 60000);
+        // A higher bandwidth than before, so the windows are grown again before the first SETTINGS is acknowledged.
+        assertTrue(receiveAndAckProbe(stream, 100000, 0));
+        assertEquals(200000, controller.initialWindowSize());
+        assertEquals(2, controller.windowUpdateCount());
+
+        // Let the client acknowledge both SETTINGS, the older one must not shrink the windows.
+        assertTrue(transfer(server, client));
+        for (;;) {
+            Object msg = client.readOutbound();
+            if (msg == null) {
+                break;
+            }
+            server.writeInbound(msg);
+            assertEquals(200000, controller.initialWindowSize());
+        }
+        exchange();
+        assertEquals(200000, controller.initialWindowSize());
+        assertEquals(200000, clientHandler.encoder().flowController().initialWindowSize());
+    }
+
+    @Test
+    public void testSettingsAcksAreMatchedInSendOrder() throws Exception {
+        setup(null);
+        Http2Stream stream = openStream();
+        AutoTuningHttp2LocalFlowController controller = serverFlowController();
+        ChannelHandlerContext ctx = server.pipeline().firstContext();
+
+        // SETTINGS of the application which are sent before the ones of the controller.
+        serverHandler.encoder().writeSettings(ctx, new Http2Settings().initialWindowSize(100000), ctx.newPromise());
+        assertTrue(receiveAndAckProbe(stream, 60000, 50));
+        assertEquals(120000, controller.initialWindowSize());
+        // SETTINGS of the application which are sent after the ones of the controller.
+        serverHandler.encoder().writeSettings(ctx, new Http2Settings().initialWindowSize(300000), ctx.newPromise());
+        serverHandler.flush(ctx);
+
+        assertTrue(transfer(server, client));
+        List<Integer> windowSizes = new ArrayList<Integer>();
+        for (;;) {
+            Object msg = client.readOutbound();
+            if (msg == null) {
+                break;
+            }
+            server.writeInbound(msg);
+            windowSizes.add(controller.initialWindowSize());
+        }
+        exchange();
+        // The acknowledgement of the first SETTINGS must not shrink the windows, the last SETTINGS was sent by the
+        // application and is applied.
+        assertFalse(windowSizes.contains(100000));
+        assertEquals(300000, controller.initialWindowSize());
+        assertEquals(300000, clientHandler.encoder().flowController().initialWindowSize());
+    }
+
+    @Test
+    public void testProbesBackOffIfWindowsDoNotGrow() throws Exception {
+        setup(null);
+        Http2Stream stream = openStream();
+        AutoTuningHttp2LocalFlowController controller = serverFlowController();
+
+        // Too few bytes to grow the windows.
+        assertTrue(receiveAndAckProbe(stream, 1000, 200));
+        assertEquals(0, controller.windowUpdateCount());
+        // The next probe is delayed by at least the round trip time.
+        assertFalse(receiveAndAckProbe(stream, 1000, 0));
+        assertEquals(1, controller.pingCount());
+
+        Thread.sleep(250);
+        assertTrue(receiveAndAckProbe(stream, 1000, 0));
+        assertEquals(2, controller.pingCount());
+        // The delay was doubled.
+        Thread.sleep(250);
+        assertFalse(receiveAndAckProbe(stream, 1000, 0));
+        assertEquals(2, controller.pingCount());
+    }
+
+    @Test
+    public void testOtherPingAcksArePropagated() throws Exception {
+        setup(null);
+        ChannelHandlerContext ctx = server.pipeline().firstContext();
+        serverHandler.encoder().writePing(ctx, false, 42, ctx.newPromise());
+        serverHandler.flush(ctx);
+        exchange();
+        assertEquals(1, serverPingAcks.size());
+        assertEquals(42L, (long) serverPingAcks.get(0));
+        assertEquals(0, serverFlowController().pingCount());
+    }
+
+    @Test
+    public void testDefaultControllerIsUsedWhenNotEnabled() {
+        Http2ConnectionHandler handler = new Http2ConnectionHandlerBuilder()
+                .server(true)
+                .frameListener(new Http2FrameAdapter())
+                .build();
+        assertFalse(handler.decoder().flowController() instanceof AutoTuningHttp2LocalFlowController);
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.handler.codec.http2.Http2TestUtil.TestStreamByteDistributorStreamState;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_MIN_ALLOCATION_CHUNK;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link DeficitRoundRobinStreamByteDistributor}.
+ */
+public class DeficitRoundRobinStreamByteDistributorTest {
+    private static final int QUANTUM = DEFAULT_MIN_ALLOCATION_CHUNK;
+
+    private static final int STREAM_A = 1;
+    private static final int STREAM_B = 3;
+    private static final int STREAM_C = 5;
+    private static final int STREAM_D = 7;
+
+    private Http2Connection connection;
+    private DeficitRoundRobinStreamByteDistributor distributor;
+    private IntObjectMap<TestStreamByteDistributorStreamState> stateMap;
+    private RecordingWriter writer;
+
+    @Before
+    public void setup() throws Http2Exception {
+        stateMap = new IntObjectHashMap<TestStreamByteDistributorStreamState>();
+        connection = new DefaultHttp2Connection(false);
+        distributor = new DeficitRoundRobinStreamByteDistributor(connection);
+        writer = new RecordingWriter();
+
+        connection.local().createStream(STREAM_A, false);
+        connection.local().createStream(STREAM_B, false);
+        connection.local().createStream(STREAM_C, false);
+        connection.local().createStream(STREAM_D, false);
+    }
+
+    @Test
+    public void bytesUnassignedAfterProcessing() throws Http2Exception {
+        initState(STREAM_A, 1, true);
+        initState(STREAM_B, 2, true);
+        initState(STREAM_C, 3, true);
+        initState(STREAM_D, 4, true);
+
+        assertFalse(write(10));
+        writer.assertWrite(STREAM_A, 1);
+        writer.assertWrite(STREAM_B, 2);
+        writer.assertWrite(STREAM_C, 3);
+        writer.assertWrite(STREAM_D, 4);
+        writer.assertNoMoreWrites();
+
+        assertFalse(write(10));
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void defaultWeightIsGrantedSixteenQuantaPerRound() throws Http2Exception {
+        initState(STREAM_A, 64 * QUANTUM, true);
+        initState(STREAM_B, 64 * QUANTUM, true);
+
+        assertTrue(write(64 * QUANTUM));
+        writer.assertWrite(STREAM_A, 16 * QUANTUM);
+        writer.assertWrite(STREAM_B, 16 * QUANTUM);
+        writer.assertWrite(STREAM_A, 16 * QUANTUM);
+        writer.assertWrite(STREAM_B, 16 * QUANTUM);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void weightsAreRoundedDownToPowerOfTwo() throws Http2Exception {
+        setPriority(STREAM_A, 0, 1);
+        setPriority(STREAM_B, 0, 32);
+        setPriority(STREAM_C, 0, 63);
+        setPriority(STREAM_D, 0, 256);
+
+        initState(STREAM_A, 1024 * QUANTUM, true);
+        initState(STREAM_B, 1024 * QUANTUM, true);
+        initState(STREAM_C, 1024 * QUANTUM, true);
+        initState(STREAM_D, 1024 * QUANTUM, true);
+
+        assertTrue(write((1 + 32 + 32 + 256) * QUANTUM));
+        writer.assertWrite(STREAM_A, QUANTUM);
+        writer.assertWrite(STREAM_B, 32 * QUANTUM);
+        writer.assertWrite(STREAM_C, 32 * QUANTUM);
+        writer.assertWrite(STREAM_D, 256 * QUANTUM);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void quantumCanBeChanged() throws Http2Exception {
+        distributor.quantum(10);
+        initState(STREAM_A, 1000, true);
+        initState(STREAM_B, 1000, true);
+
+        assertTrue(write(320));
+        writer.assertWrite(STREAM_A, 160);
+        writer.assertWrite(STREAM_B, 160);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void roundIsContinuedInNextDistribution() throws Http2Exception {
+        initState(STREAM_A, 32 * QUANTUM, true);
+        initState(STREAM_B, 32 * QUANTUM, true);
+
+        assertTrue(write(4 * QUANTUM));
+        writer.assertWrite(STREAM_A, 4 * QUANTUM);
+        writer.assertNoMoreWrites();
+
+        // Stream A has 12 quanta left in its round before it is stream B's turn.
+        assertTrue(write(16 * QUANTUM));
+        writer.assertWrite(STREAM_A, 12 * QUANTUM);
+        writer.assertWrite(STREAM_B, 4 * QUANTUM);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void deficitIsDroppedWhenStreamRunsOutOfData() throws Http2Exception {
+        initState(STREAM_A, QUANTUM, true);
+        initState(STREAM_B, 32 * QUANTUM, true);
+
+        assertTrue(write(18 * QUANTUM));
+        writer.assertWrite(STREAM_A, QUANTUM);
+        writer.assertWrite(STREAM_B, 16 * QUANTUM);
+        writer.assertWrite(STREAM_B, QUANTUM);
+        writer.assertNoMoreWrites();
+
+        // Stream A is granted a new round only, not what was left from the previous one.
+        initState(STREAM_A, 32 * QUANTUM, true);
+        assertTrue(write(32 * QUANTUM));
+        writer.assertWrite(STREAM_B, 15 * QUANTUM);
+        writer.assertWrite(STREAM_A, 16 * QUANTUM);
+        writer.assertWrite(STREAM_A, QUANTUM);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void emptyFrameAtHeadIsWritten() throws Http2Exception {
+        initState(STREAM_A, 10, true);
+        initState(STREAM_B, 0, true);
+        initState(STREAM_C, 0, true);
+        initState(STREAM_D, 10, true);
+
+        assertTrue(write(10));
+        writer.assertWrite(STREAM_A, 10);
+        writer.assertWrite(STREAM_B, 0);
+        writer.assertWrite(STREAM_C, 0);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void streamWindowExhaustedDoesNotWrite() throws Http2Exception {
+        initState(STREAM_A, 0, true, false);
+        initState(STREAM_B, 0, true);
+        initState(STREAM_C, 0, true);
+        initState(STREAM_D, 0, true, false);
+
+        assertFalse(write(10));
+        writer.assertWrite(STREAM_B, 0);
+        writer.assertWrite(STREAM_C, 0);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void queuedStreamWithNegativeWindowIsSkipped() throws Http2Exception {
+        initState(STREAM_A, 10, true);
+        initState(STREAM_B, 10, true);
+        updateState(STREAM_A, 10, true, false);
+
+        assertFalse(write(20));
+        writer.assertWrite(STREAM_B, 10);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void closedStreamIsSkipped() throws Http2Exception {
+        initState(STREAM_A, 10, true);
+        initState(STREAM_B, 10, true);
+        connection.stream(STREAM_A).close();
+
+        assertFalse(write(20));
+        writer.assertWrite(STREAM_B, 10);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void streamWindowLargerThanIntDoesNotInfiniteLoop() throws Http2Exception {
+        setPriority(STREAM_A, 0, 256);
+        distributor.quantum(Integer.MAX_VALUE);
+        initState(STREAM_A, Integer.MAX_VALUE + 1L, true, true);
+        assertTrue(write(Integer.MAX_VALUE));
+        writer.assertWrite(STREAM_A, Integer.MAX_VALUE);
+        assertFalse(write(1));
+        writer.assertWrite(STREAM_A, 1);
+        writer.assertNoMoreWrites();
+    }
+
+    @Test
+    public void writeErrorIsConnectionError() throws Http2Exception {
+        initState(STREAM_A, 10, true);
+        final RuntimeException cause = new RuntimeException();
+        try {
+            distributor.distribute(10, new StreamByteDistributor.Writer() {
+                @Override
+                public void write(Http2Stream stream, int numBytes) {
+                    throw cause;
+                }
+            });
+            fail();
+        } catch (Http2Exception e) {
+            assertSame(cause, e.getCause());
+            assertEquals(Http2Error.INTERNAL_ERROR, e.error());
+        }
+    }
+
+    private Http2Stream stream(int streamId) {
+        return connection.stream(streamId);
+    }
+
+    private void initState(final int streamId, final long streamableBytes, final boolean hasFrame) {
+        initState(streamId, streamableBytes, hasFrame, hasFrame);
+    }
+
+    private void initState(final int streamId, final long pendingBytes, final boolean hasFrame,
+            final boolean isWriteAllowed) {
+        final Http2Stream stream = stream(streamId);
+        TestStreamByteDistributorStreamState state = new TestStreamByteDistributorStreamState(stream, pendingBytes,
+                hasFrame, isWriteAllowed);
+        stateMap.put(streamId, state);
+        distributor.updateStreamableBytes(state);
+    }
+
+    private void updateState(int streamId, long pendingBytes, boolean hasFrame, boolean isWriteAllowed) {
+        TestStreamByteDistributorStreamState state = stateMap.get(streamId);
+        state.pendingBytes = pendingBytes;
+        state.hasFrame = hasFrame;
+        state.isWriteAllowed = isWriteAllowed;
+        distributor.updateStreamableBytes(state);
+    }
+
+    private void setPriority(int streamId, int parent, int weight) {
+        distributor.updateDependencyTree(streamId, parent, (short) weight, false);
+    }
+
+    private boolean write(int numBytes) throws Http2Exception {
+        return distributor.distribute(numBytes, writer);
+    }
+
+    /**
+     * A {@link StreamByteDistributor.Writer} which writes all the allocated bytes and records the writes in order.
+     */
+    private final class RecordingWriter implements StreamByteDistributor.Writer {
+        private final List<Integer> streamIds = new ArrayList<Integer>();
+        private final List<Integer> writes = new ArrayList<Integer>();
+
+        @Override
+        public void write(Http2Stream stream, int numBytes) {
+            streamIds.add(stream.id());
+            writes.add(numBytes);
+
+            TestStreamByteDistributorStreamState state = stateMap.get(stream.id());
+            state.pendingBytes -= numBytes;
+            state.hasFrame = state.pendingBytes > 0;
+            distributor.updateStreamableBytes(state);
+        }
+
+        void assertWrite(int streamId, int numBytes) {
+            assertFalse("no more writes", streamIds.isEmpty());
+            assertEquals(streamId, (int) streamIds.remove(0));
+            assertEquals(numBytes, (int) writes.remove(0));
+        }
+
+        void assertNoMoreWrites() {
+            assertEquals(0, streamIds.size());
+        }
+    }
+}
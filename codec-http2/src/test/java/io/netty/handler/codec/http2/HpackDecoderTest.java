@@ -47,6 +47,8 @@ import static java.lang.Integer.MAX_VALUE;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -671,4 +673,57 @@ public class HpackDecoderTest {
             in2.release();
         }
     }
+
+    @Test
+    public void testInternRepeatedLiterals() throws Http2Exception {
+        hpackDecoder = new HpackDecoder(8192, true);
+        // Literal with incremental indexing, new name "foo" and value "bar", then ":authority: www.example.com"
+        // Huffman coded.
+        byte[] block = StringUtil.decodeHexDump("4003" + hex("foo") + "03" + hex("bar") +
+                "418cf1e3c2e5f23a6ba0ab90f4ff");
+        Http2Headers first = decodeLiterals(block);
+        Http2Headers second = decodeLiterals(block);
+
+        assertEquals("bar", first.get("foo").toString());
+        assertEquals("www.example.com", first.authority().toString());
+        assertSame(first.names().iterator().next(), second.names().iterator().next());
+        assertSame(first.get("foo"), second.get("foo"));
+        assertSame(first.authority(), second.authority());
+    }
+
+    @Test
+    public void testDoNotInternValuesWithoutIndexing() throws Http2Exception {
+        hpackDecoder = new HpackDecoder(8192, true);
+        // ":authority: www.example.com" Huffman coded, without indexing and never indexed.
+        for (String block : new String[] { "018cf1e3c2e5f23a6ba0ab90f4ff", "118cf1e3c2e5f23a6ba0ab90f4ff" }) {
+            Http2Headers first = decodeLiterals(StringUtil.decodeHexDump(block));
+            Http2Headers second = decodeLiterals(StringUtil.decodeHexDump(block));
+
+            assertEquals(first.authority(), second.authority());
+            assertNotSame(first.authority(), second.authority());
+        }
+    }
+
+    @Test
+    public void testInternNamesWithoutIndexing() throws Http2Exception {
+        hpackDecoder = new HpackDecoder(8192, true);
+        // Literal without indexing, new name "foo" and value "bar".
+        byte[] block = StringUtil.decodeHexDump("0003" + hex("foo") + "03" + hex("bar"));
+        Http2Headers first = decodeLiterals(block);
+        Http2Headers second = decodeLiterals(block);
+
+        assertSame(first.names().iterator().next(), second.names().iterator().next());
+        assertNotSame(first.get("foo"), second.get("foo"));
+    }
+
+    private Http2Headers decodeLiterals(byte[] block) throws Http2Exception {
+        Http2Headers headers = new DefaultHttp2Headers();
+        ByteBuf in = Unpooled.wrappedBuffer(block);
+        try {
+            hpackDecoder.decode(0, in, headers, false);
+        } finally {
+            in.release();
+        }
+        return headers;
+    }
 }
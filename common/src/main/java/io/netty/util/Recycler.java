@@ -17,7 +17,10 @@
 package io.netty.util;
 
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.ObjectPool;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -25,8 +28,10 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static io.netty.util.internal.MathUtil.safeFindNextPositivePowerOfTwo;
 import static java.lang.Math.max;
@@ -34,6 +39,12 @@ import static java.lang.Math.min;
 
 /**
  * Light-weight object pool based on a thread-local stack.
+ * <p>
+ * By default objects that are recycled by another thread than the one which created them are handed back through
+ * per-thread {@code WeakOrderQueue}s. When {@code -Dio.netty.recycler.useMpscQueue=true} is used each thread owns a
+ * bounded MPSC queue instead, which all other threads recycle into and which is only drained by the owning thread
+ * once its thread-local stack is empty. The maximum capacity per thread can be configured per pooled type via
+ * {@code -Dio.netty.recycler.maxCapacityPerThread.<SimpleClassName>}, see {@link #Recycler(Class)}.
  *
  * @param <T> the type of the pooled object
  */
@@ -57,6 +68,8 @@ public abstract class Recycler<T> {
     private static final int MAX_DELAYED_QUEUES_PER_THREAD;
     private static final int LINK_CAPACITY;
     private static final int RATIO;
+    private static final boolean USE_MPSC_QUEUE;
+    private static final boolean METRICS;
 
     static {
         // In the future, we might have different maxCapacity for different object types.
@@ -87,17 +100,24 @@ public abstract class Recycler<T> {
         // bursts.
         RATIO = safeFindNextPositivePowerOfTwo(SystemPropertyUtil.getInt("io.netty.recycler.ratio", 8));
 
+        USE_MPSC_QUEUE = SystemPropertyUtil.getBoolean("io.netty.recycler.useMpscQueue", false);
+        METRICS = SystemPropertyUtil.getBoolean("io.netty.recycler.metrics", false);
+
         if (logger.isDebugEnabled()) {
             if (DEFAULT_MAX_CAPACITY_PER_THREAD == 0) {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: disabled");
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: disabled");
                 logger.debug("-Dio.netty.recycler.linkCapacity: disabled");
                 logger.debug("-Dio.netty.recycler.ratio: disabled");
+                logger.debug("-Dio.netty.recycler.useMpscQueue: disabled");
+                logger.debug("-Dio.netty.recycler.metrics: disabled");
             } else {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", MAX_SHARED_CAPACITY_FACTOR);
                 logger.debug("-Dio.netty.recycler.linkCapacity: {}", LINK_CAPACITY);
                 logger.debug("-Dio.netty.recycler.ratio: {}", RATIO);
+                logger.debug("-Dio.netty.recycler.useMpscQueue: {}", USE_MPSC_QUEUE);
+                logger.debug("-Dio.netty.recycler.metrics: {}", METRICS);
             }
         }
 
@@ -108,6 +128,53 @@ public abstract class Recycler<T> {
     private final int maxSharedCapacityFactor;
     private final int interval;
     private final int maxDelayedQueuesPerThread;
+    // Only used if the MPSC queue based implementation is used, null otherwise.
+    private final FastThreadLocal<LocalPool<T>> localPool;
+
+    // Only used if the MPSC queue based implementation is used and metrics are enabled, null otherwise.
+    private final Counters counters;
+    private final RecyclerMetric metric = new RecyclerMetric() {
+        @Override
+        public int maxCapacityPerThread() {
+            return maxCapacityPerThread;
+        }
+
+        @Override
+        public long numAllocations() {
+            return counters == null ? 0 : counters.allocations.value();
+        }
+
+        @Override
+        public long numReused() {
+            return counters == null ? 0 : counters.reused.value();
+        }
+
+        @Override
+        public long numRecycled() {
+            return counters == null ? 0 : counters.recycled.value();
+        }
+
+        @Override
+        public long numCrossThreadRecycled() {
+            return counters == null ? 0 : counters.crossThreadRecycled.value();
+        }
+
+        @Override
+        public long numDropped() {
+            return counters == null ? 0 : counters.dropped.value();
+        }
+
+        @Override
+        public String toString() {
+            return StringUtil.simpleClassName(Recycler.this) +
+                    "(maxCapacityPerThread: " + maxCapacityPerThread() +
+                    "; allocations: " + numAllocations() +
+                    "; reused: " + numReused() +
+                    "; recycled: " + numRecycled() +
+                    "; crossThreadRecycled: " + numCrossThreadRecycled() +
+                    "; dropped: " + numDropped() + ')';
+        }
+    };
 
     private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
         @Override
@@ -131,6 +198,14 @@ public abstract class Recycler<T> {
         this(DEFAULT_MAX_CAPACITY_PER_THREAD);
     }
 
+    /**
+     * Creates a new instance which uses the maximum capacity per thread configured for the given pooled type via
+     * {@code -Dio.netty.recycler.maxCapacityPerThread.<SimpleClassName>}, or the default one if there is none.
+     */
+    protected Recycler(Class<?> type) {
+        this(maxCapacityPerThread(type));
+    }
+
     protected Recycler(int maxCapacityPerThread) {
         this(maxCapacityPerThread, MAX_SHARED_CAPACITY_FACTOR);
     }
@@ -141,6 +216,26 @@ public abstract class Recycler<T> {
 
     protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
                        int ratio, int maxDelayedQueuesPerThread) {
+        this(maxCapacityPerThread, maxSharedCapacityFactor, ratio, maxDelayedQueuesPerThread, USE_MPSC_QUEUE);
+    }
+
+    protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+                       int ratio, int maxDelayedQueuesPerThread, boolean useMpscQueue) {
+        this(maxCapacityPerThread, maxSharedCapacityFactor, ratio, maxDelayedQueuesPerThread, useMpscQueue, METRICS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param useMpscQueue {@code true} if objects which are recycled by another thread should be handed back through
+     *                     a bounded MPSC queue per thread instead of the {@code WeakOrderQueue}s. In this case
+     *                     {@code maxDelayedQueuesPerThread} is ignored and the capacity of the queue is
+     *                     {@code maxCapacityPerThread / maxSharedCapacityFactor}.
+     * @param metrics      {@code true} if the counters exposed via {@link #metric()} should be collected. This is only
+     *                     supported together with {@code useMpscQueue}.
+     */
+    protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+                       int ratio, int maxDelayedQueuesPerThread, boolean useMpscQueue, boolean metrics) {
         interval = safeFindNextPositivePowerOfTwo(ratio);
         if (maxCapacityPerThread <= 0) {
             this.maxCapacityPerThread = 0;
@@ -151,6 +246,40 @@ public abstract class Recycler<T> {
             this.maxSharedCapacityFactor = max(1, maxSharedCapacityFactor);
             this.maxDelayedQueuesPerThread = max(0, maxDelayedQueuesPerThread);
         }
+        if (useMpscQueue && this.maxCapacityPerThread > 0) {
+            localPool = new FastThreadLocal<LocalPool<T>>() {
+                @Override
+                protected LocalPool<T> initialValue() {
+                    return new LocalPool<T>(Recycler.this, Thread.currentThread(), Recycler.this.maxCapacityPerThread,
+                            Recycler.this.maxSharedCapacityFactor, interval);
+                }
+
+                @Override
+                protected void onRemoval(LocalPool<T> value) {
+                    value.clear();
+                }
+            };
+            counters = metrics ? new Counters() : null;
+        } else {
+            localPool = null;
+            counters = null;
+        }
+    }
+
+    private static int maxCapacityPerThread(Class<?> type) {
+        String name = type.getSimpleName();
+        if (name.isEmpty()) {
+            return DEFAULT_MAX_CAPACITY_PER_THREAD;
+        }
+        int maxCapacityPerThread = SystemPropertyUtil.getInt(
+                "io.netty.recycler.maxCapacityPerThread." + name, DEFAULT_MAX_CAPACITY_PER_THREAD);
+        if (maxCapacityPerThread < 0) {
+            return DEFAULT_MAX_CAPACITY_PER_THREAD;
+        }
+        if (maxCapacityPerThread != DEFAULT_MAX_CAPACITY_PER_THREAD) {
+            logger.debug("-Dio.netty.recycler.maxCapacityPerThread.{}: {}", name, maxCapacityPerThread);
+        }
+        return maxCapacityPerThread;
     }
 
     @SuppressWarnings("unchecked")
@@ -158,6 +287,9 @@ public abstract class Recycler<T> {
         if (maxCapacityPerThread == 0) {
             return newObject((Handle<T>) NOOP_HANDLE);
         }
+        if (localPool != null) {
+            return getFromLocalPool();
+        }
         Stack<T> stack = threadLocal.get();
         DefaultHandle<T> handle = stack.pop();
         if (handle == null) {
@@ -167,6 +299,34 @@ public abstract class Recycler<T> {
         return (T) handle.value;
     }
 
+    @SuppressWarnings("unchecked")
+    private T getFromLocalPool() {
+        LocalPool<T> pool = localPool.get();
+        MpscHandle<T> handle = pool.pop();
+        Counters counters = this.counters;
+        if (handle == null) {
+            if (counters != null) {
+                counters.allocations.increment();
+            }
+            handle = pool.newHandle();
+            if (handle == null) {
+                // Not every new object is pooled, see LocalPool.newHandle().
+                return newObject((Handle<T>) NOOP_HANDLE);
+            }
+            handle.value = newObject(handle);
+        } else if (counters != null) {
+            counters.reused.increment();
+        }
+        return (T) handle.value;
+    }
+
+    /**
+     * Returns the {@link RecyclerMetric} of this {@link Recycler}.
+     */
+    public final RecyclerMetric metric() {
+        return metric;
+    }
+
     /**
      * @deprecated use {@link Handle#recycle(Object)}.
      */
@@ -176,6 +336,15 @@ public abstract class Recycler<T> {
             return false;
         }
 
+        if (handle instanceof MpscHandle) {
+            MpscHandle<T> h = (MpscHandle<T>) handle;
+            if (h.pool.parent != this) {
+                return false;
+            }
+            h.recycle(o);
+            return true;
+        }
+
         DefaultHandle<T> h = (DefaultHandle<T>) handle;
         if (h.stack.parent != this) {
             return false;
@@ -186,10 +355,16 @@ public abstract class Recycler<T> {
     }
 
     final int threadLocalCapacity() {
+        if (localPool != null) {
+            return localPool.get().elements.length;
+        }
         return threadLocal.get().elements.length;
     }
 
     final int threadLocalSize() {
+        if (localPool != null) {
+            return localPool.get().size;
+        }
         return threadLocal.get().size;
     }
 
@@ -708,4 +883,149 @@ public abstract class Recycler<T> {
             return new DefaultHandle<T>(this);
         }
     }
+
+    private static final class MpscHandle<T> implements Handle<T> {
+        private static final int STATE_CLAIMED = 0;
+        private static final int STATE_AVAILABLE = 1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<MpscHandle> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(MpscHandle.class, "state");
+
+        private volatile int state; // STATE_CLAIMED or STATE_AVAILABLE
+        final LocalPool<?> pool;
+        Object value;
+
+        MpscHandle(LocalPool<?> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void recycle(Object object) {
+            if (object != value) {
+                throw new IllegalArgumentException("object does not belong to handle");
+            }
+            // The CAS also publishes all writes to the object to the thread which will pick it up from the queue.
+            if (!STATE_UPDATER.compareAndSet(this, STATE_CLAIMED, STATE_AVAILABLE)) {
+                throw new IllegalStateException("recycled already");
+            }
+            pool.release(this);
+        }
+
+        void claim() {
+            if (state != STATE_AVAILABLE) {
+                throw new IllegalStateException("recycled multiple times");
+            }
+            // Only the owning thread will ever claim the handle, so a lazySet is enough.
+            STATE_UPDATER.lazySet(this, STATE_CLAIMED);
+        }
+    }
+
+    private static final class Counters {
+        final LongCounter allocations = PlatformDependent.newLongCounter();
+        final LongCounter reused = PlatformDependent.newLongCounter();
+        final LongCounter recycled = PlatformDependent.newLongCounter();
+        final LongCounter crossThreadRecycled = PlatformDependent.newLongCounter();
+        final LongCounter dropped = PlatformDependent.newLongCounter();
+    }
+
+    private static final class LocalPool<T> {
+        final Recycler<T> parent;
+        // See Stack.threadRef for why this needs to be a WeakReference.
+        private final WeakReference<Thread> threadRef;
+        private final int maxCapacity;
+        private final int ratioMask;
+        // Handles which were recycled by other threads, only ever polled by the owning thread.
+        private final Queue<MpscHandle<?>> crossThreadHandles;
+        MpscHandle<?>[] elements;
+        int size;
+        private int handleRecycleCount;
+
+        LocalPool(Recycler<T> parent, Thread thread, int maxCapacity, int maxSharedCapacityFactor, int interval) {
+            this.parent = parent;
+            threadRef = new WeakReference<Thread>(thread);
+            this.maxCapacity = maxCapacity;
+            ratioMask = interval - 1;
+            // Never allow more handles to be queued than could be pooled by the owning thread anyway.
+            crossThreadHandles = PlatformDependent.newFixedMpscQueue(
+                    max(2, min(maxCapacity, max(maxCapacity / maxSharedCapacityFactor, LINK_CAPACITY))));
+            elements = new MpscHandle<?>[min(INITIAL_CAPACITY, maxCapacity)];
+        }
+
+        @SuppressWarnings("unchecked")
+        MpscHandle<T> pop() {
+            int size = this.size;
+            if (size == 0) {
+                size = drainCrossThreadHandles();
+                if (size == 0) {
+                    return null;
+                }
+            }
+            size --;
+            MpscHandle<?> ret = elements[size];
+            elements[size] = null;
+            this.size = size;
+            ret.claim();
+            return (MpscHandle<T>) ret;
+        }
+
+        private int drainCrossThreadHandles() {
+            int size = 0;
+            MpscHandle<?> handle;
+            while (size < maxCapacity && (handle = crossThreadHandles.poll()) != null) {
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, min(size << 1, maxCapacity));
+                }
+                elements[size ++] = handle;
+            }
+            this.size = size;
+            return size;
+        }
+
+        /**
+         * Returns a new {@link MpscHandle} or {@code null} if the object should not be pooled at all, which is the
+         * case for all but every {@code interval}-th new object.
+         */
+        MpscHandle<T> newHandle() {
+            // The first one will be pooled.
+            if ((handleRecycleCount++ & ratioMask) != 0) {
+                return null;
+            }
+            return new MpscHandle<T>(this);
+        }
+
+        void release(MpscHandle<?> handle) {
+            Counters counters = parent.counters;
+            Thread thread = threadRef.get();
+            if (thread == Thread.currentThread()) {
+                int size = this.size;
+                if (size >= maxCapacity) {
+                    if (counters != null) {
+                        counters.dropped.increment();
+                    }
+                    return;
+                }
+                if (size == elements.length) {
+                    elements = Arrays.copyOf(elements, min(size << 1, maxCapacity));
+                }
+                elements[size] = handle;
+                this.size = size + 1;
+                if (counters != null) {
+                    counters.recycled.increment();
+                }
+            } else if (thread == null || !crossThreadHandles.offer(handle)) {
+                // The owning thread is gone or the queue is full, just drop the object on the floor.
+                if (counters != null) {
+                    counters.dropped.increment();
+                }
+            } else if (counters != null) {
+                counters.crossThreadRecycled.increment();
+            }
+        }
+
+        void clear() {
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+            crossThreadHandles.clear();
+        }
+    }
 }
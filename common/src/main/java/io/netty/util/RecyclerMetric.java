@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+/**
+ * Expose metrics for a {@link Recycler}.
+ * <p>
+ * The counters are only collected when the {@link Recycler} uses the MPSC queue based implementation and metrics are
+ * enabled (either via the constructor or {@code -Dio.netty.recycler.metrics=true}), otherwise all of them return
+ * {@code 0}.
+ */
+public interface RecyclerMetric {
+
+    /**
+     * Return the maximum number of pooled objects per thread.
+     */
+    int maxCapacityPerThread();
+
+    /**
+     * Return the number of objects that were created because no pooled object was available.
+     */
+    long numAllocations();
+
+    /**
+     * Return the number of objects that were reused from the pool.
+     */
+    long numReused();
+
+    /**
+     * Return the number of objects that were recycled by the thread which created them.
+     */
+    long numRecycled();
+
+    /**
+     * Return the number of objects that were recycled by another thread than the one which created them.
+     */
+    long numCrossThreadRecycled();
+
+    /**
+     * Return the number of recycled objects that were dropped because the pool was full or the thread which created
+     * them was gone.
+     */
+    long numDropped();
+}
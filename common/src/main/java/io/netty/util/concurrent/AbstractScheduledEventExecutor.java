@@ -18,6 +18,10 @@ package io.netty.util.concurrent;
 import io.netty.util.internal.DefaultPriorityQueue;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PriorityQueue;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import static io.netty.util.concurrent.ScheduledFutureTask.deadlineNanos;
 
@@ -28,8 +32,25 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract base class for {@link EventExecutor}s that want to support scheduling.
+ * <p>
+ * By default the scheduled tasks are kept in a binary heap, which makes scheduling and cancelling a task
+ * {@code O(log n)}. When {@link #timingWheelTickNanos()} returns a value {@code > 0} a hierarchical timing wheel is
+ * used instead, which makes both {@code O(1)} and so is better suited for a huge number of pending timeouts that are
+ * mostly cancelled before they expire. The tasks are still executed in exactly the same order.
  */
 public abstract class AbstractScheduledEventExecutor extends AbstractEventExecutor {
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(AbstractScheduledEventExecutor.class);
+
+    private static final long DEFAULT_TIMING_WHEEL_TICK_NANOS =
+            Math.max(0, SystemPropertyUtil.getLong("io.netty.eventexecutor.timingWheelTickNanos", 0));
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.eventexecutor.timingWheelTickNanos: {}", DEFAULT_TIMING_WHEEL_TICK_NANOS);
+        }
+    }
+
     private static final Comparator<ScheduledFutureTask<?>> SCHEDULED_FUTURE_TASK_COMPARATOR =
             new Comparator<ScheduledFutureTask<?>>() {
                 @Override
@@ -78,14 +99,33 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue() {
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
-                    SCHEDULED_FUTURE_TASK_COMPARATOR,
-                    // Use same initial capacity as java.util.PriorityQueue
-                    11);
+            long tickNanos = timingWheelTickNanos();
+            if (tickNanos > 0) {
+                scheduledTaskQueue = new TimingWheelScheduledTaskQueue(
+                        SCHEDULED_FUTURE_TASK_COMPARATOR, tickNanos, nanoTime());
+            } else {
+                scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
+                        SCHEDULED_FUTURE_TASK_COMPARATOR,
+                        // Use same initial capacity as java.util.PriorityQueue
+                        11);
+            }
         }
         return scheduledTaskQueue;
     }
 
+    /**
+     * Returns the duration of a tick (in nanoseconds) of the hierarchical timing wheel which is used to store the
+     * scheduled tasks, or {@code 0} if a binary heap should be used instead. Tasks whose deadlines fall into the same
+     * tick are sorted when the tick is reached, so the tick should be about the granularity of the timeouts that are
+     * used. The default can be set via {@code -Dio.netty.eventexecutor.timingWheelTickNanos} and is {@code 0}.
+     * <p>
+     * Sub-classes may override this to use a timing wheel for a specific {@link EventExecutor}. This method is called
+     * only once, when the first task is scheduled.
+     */
+    protected long timingWheelTickNanos() {
+        return DEFAULT_TIMING_WHEEL_TICK_NANOS;
+    }
+
     private static boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
@@ -165,6 +205,17 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
         return scheduledTask != null && scheduledTask.deadlineNanos() <= nanoTime();
     }
 
+    /**
+     * Return the number of scheduled tasks that were not fetched for processing yet.
+     *
+     * <strong>The returned value is only a best effort when this method is called outside the event loop.</strong>
+     */
+    @UnstableApi
+    protected final int pendingScheduledTasks() {
+        Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
+        return scheduledTaskQueue != null ? scheduledTaskQueue.size() : 0;
+    }
+
     @Override
     public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
         ObjectUtil.checkNotNull(command, "command");
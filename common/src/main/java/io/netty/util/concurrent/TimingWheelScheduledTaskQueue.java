@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PriorityQueue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link PriorityQueue} for {@link ScheduledFutureTask}s which is backed by a hierarchical timing wheel, so adding
+ * and cancelling a task is {@code O(1)} no matter how many tasks are scheduled.
+ * <p>
+ * The deadlines are divided into ticks of {@code tickNanos}. Each level of the wheel has {@code 64} buckets, a bucket
+ * of level {@code n} spans {@code 64^n} ticks. A task is placed into the level of the highest 6-bit digit in which its
+ * tick differs from {@link #currentTick}, so all tasks of a level are later than the tasks of the levels below it.
+ * Only the tasks with a tick {@code <= currentTick} are kept in a small {@link DefaultPriorityQueue}, which makes the
+ * order of the tasks exactly the same as when only a {@link DefaultPriorityQueue} is used: once this queue is drained
+ * the earliest non-empty bucket is moved into it as a whole, cascading it down the levels if needed.
+ * <p>
+ * Like the {@link DefaultPriorityQueue} this class is not thread-safe and must only be used from the
+ * {@link EventExecutor} thread.
+ */
+final class TimingWheelScheduledTaskQueue extends AbstractQueue<ScheduledFutureTask<?>>
+        implements PriorityQueue<ScheduledFutureTask<?>> {
+
+    static final int NOT_IN_WHEEL = -1;
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final long tickNanos;
+    // Tasks with a tick <= currentTick.
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> expired;
+    // Heads of the doubly linked lists of tasks, indexed by (level << WHEEL_BITS | slot).
+    private final ScheduledFutureTask<?>[] buckets;
+    // One bit per bucket of each level which is set if the bucket is not empty.
+    private final long[] occupied;
+    private long currentTick;
+    private int wheelSize;
+
+    TimingWheelScheduledTaskQueue(Comparator<ScheduledFutureTask<?>> comparator, long tickNanos,
+                                  long currentTimeNanos) {
+        this.tickNanos = ObjectUtil.checkPositive(tickNanos, "tickNanos");
+        expired = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, 11);
+        long maxTick = Long.MAX_VALUE / tickNanos;
+        int levels = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(maxTick) + WHEEL_BITS - 1) / WHEEL_BITS);
+        buckets = new ScheduledFutureTask<?>[levels << WHEEL_BITS];
+        occupied = new long[levels];
+        currentTick = currentTimeNanos / tickNanos;
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        if (task.wheelBucket != NOT_IN_WHEEL || expired.containsTyped(task)) {
+            throw new IllegalArgumentException("task already in queue: " + task);
+        }
+        add0(task);
+        return true;
+    }
+
+    private void add0(ScheduledFutureTask<?> task) {
+        long tick = task.deadlineNanos() / tickNanos;
+        if (tick <= currentTick) {
+            expired.offer(task);
+            return;
+        }
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ currentTick)) / WHEEL_BITS;
+        int slot = (int) (tick >>> level * WHEEL_BITS) & WHEEL_MASK;
+        int bucket = level << WHEEL_BITS | slot;
+
+        ScheduledFutureTask<?> head = buckets[bucket];
+        task.wheelBucket = bucket;
+        task.wheelPrev = null;
+        task.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = task;
+        }
+        buckets[bucket] = task;
+        occupied[level] |= 1L << slot;
+        wheelSize++;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task) {
+        int bucket = task.wheelBucket;
+        ScheduledFutureTask<?> prev = task.wheelPrev;
+        ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev == null) {
+            buckets[bucket] = next;
+            if (next == null) {
+                occupied[bucket >>> WHEEL_BITS] &= ~(1L << (bucket & WHEEL_MASK));
+            }
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        task.wheelBucket = NOT_IN_WHEEL;
+        task.wheelPrev = null;
+        task.wheelNext = null;
+        wheelSize--;
+    }
+
+    /**
+     * Moves the earliest non-empty bucket into {@link #expired} if it is empty.
+     */
+    private void expireNextBucket() {
+        while (expired.isEmpty() && wheelSize != 0) {
+            int level = 0;
+            while (occupied[level] == 0) {
+                level++;
+            }
+            int slot = Long.numberOfTrailingZeros(occupied[level]);
+            int bucket = level << WHEEL_BITS | slot;
+            int shift = level * WHEEL_BITS;
+
+            // Advance to the first tick of the bucket, all other tasks in the wheel are later than that.
+            long mask = shift + WHEEL_BITS >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << shift + WHEEL_BITS) - 1;
+            currentTick = currentTick & ~mask | (long) slot << shift;
+
+            ScheduledFutureTask<?> task = buckets[bucket];
+            buckets[bucket] = null;
+            occupied[level] &= ~(1L << slot);
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelBucket = NOT_IN_WHEEL;
+                task.wheelPrev = null;
+                task.wheelNext = null;
+                wheelSize--;
+                // Either added to expired or cascaded into a lower level.
+                add0(task);
+                task = next;
+            }
+        }
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        expireNextBucket();
+        return expired.poll();
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        expireNextBucket();
+        return expired.peek();
+    }
+
+    @Override
+    public int size() {
+        return expired.size() + wheelSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return wheelSize == 0 && expired.isEmpty();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        final ScheduledFutureTask<?> task;
+        try {
+            task = (ScheduledFutureTask<?>) o;
+        } catch (ClassCastException e) {
+            return false;
+        }
+        return removeTyped(task);
+    }
+
+    @Override
+    public boolean removeTyped(ScheduledFutureTask<?> task) {
+        if (task.wheelBucket != NOT_IN_WHEEL) {
+            unlink(task);
+            return true;
+        }
+        return expired.removeTyped(task);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ScheduledFutureTask && containsTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean containsTyped(ScheduledFutureTask<?> task) {
+        // A task is only ever scheduled on a single executor so the bucket index is enough.
+        return task.wheelBucket != NOT_IN_WHEEL || expired.containsTyped(task);
+    }
+
+    @Override
+    public void priorityChanged(ScheduledFutureTask<?> task) {
+        if (task.wheelBucket != NOT_IN_WHEEL) {
+            unlink(task);
+            add0(task);
+        } else {
+            expired.priorityChanged(task);
+        }
+    }
+
+    @Override
+    public void clear() {
+        expired.clear();
+        clearWheel();
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        expired.clearIgnoringIndexes();
+        clearWheel();
+    }
+
+    private void clearWheel() {
+        // Reset the links so a later removeTyped(...) of a cleared task is a no-op.
+        for (int i = 0; i < buckets.length; i++) {
+            ScheduledFutureTask<?> task = buckets[i];
+            buckets[i] = null;
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelBucket = NOT_IN_WHEEL;
+                task.wheelPrev = null;
+                task.wheelNext = null;
+                task = next;
+            }
+        }
+        for (int i = 0; i < occupied.length; i++) {
+            occupied[i] = 0;
+        }
+        wheelSize = 0;
+    }
+
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        // Only used for bulk operations like toArray() so just take a snapshot.
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size());
+        for (ScheduledFutureTask<?> task : expired) {
+            tasks.add(task);
+        }
+        for (ScheduledFutureTask<?> head : buckets) {
+            for (ScheduledFutureTask<?> task = head; task != null; task = task.wheelNext) {
+                tasks.add(task);
+            }
+        }
+        return tasks.iterator();
+    }
+}
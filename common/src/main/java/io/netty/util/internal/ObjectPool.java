@@ -62,6 +62,9 @@ public abstract class ObjectPool<T> {
     /**
      * Creates a new {@link ObjectPool} which will use the given {@link ObjectCreator} to create the {@link Object}
      * that should be pooled.
+     * <p>
+     * If the {@link ObjectCreator} is declared as an inner class of the pooled type, the maximum capacity per thread
+     * can be configured via {@code -Dio.netty.recycler.maxCapacityPerThread.<SimpleClassName>} of the pooled type.
      */
     public static <T> ObjectPool<T> newPool(final ObjectCreator<T> creator) {
         return new RecyclerObjectPool<T>(ObjectUtil.checkNotNull(creator, "creator"));
@@ -71,7 +74,7 @@ public abstract class ObjectPool<T> {
         private final Recycler<T> recycler;
 
         RecyclerObjectPool(final ObjectCreator<T> creator) {
-             recycler = new Recycler<T>() {
+             recycler = new Recycler<T>(pooledType(creator)) {
                 @Override
                 protected T newObject(Handle<T> handle) {
                     return creator.newObject(handle);
@@ -79,6 +82,12 @@ public abstract class ObjectPool<T> {
             };
         }
 
+        private static Class<?> pooledType(ObjectCreator<?> creator) {
+            Class<?> creatorType = creator.getClass();
+            Class<?> enclosingType = creatorType.getEnclosingClass();
+            return enclosingType != null ? enclosingType : creatorType;
+        }
+
         @Override
         public T get() {
             return recycler.get();
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.RecyclerTest.HandledObject;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MpscRecyclerTest {
+
+    private static Recycler<HandledObject> newRecycler(int max, int maxSharedCapacityFactor, int ratio) {
+        return new Recycler<HandledObject>(max, maxSharedCapacityFactor, ratio, 0, true, true) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+    }
+
+    private static void recycleInOtherThread(final HandledObject... objects) throws Exception {
+        final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (HandledObject object : objects) {
+                        object.recycle();
+                    }
+                } catch (Throwable t) {
+                    cause.set(t);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        Throwable t = cause.get();
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        }
+        if (t != null) {
+            throw new AssertionError(t);
+        }
+    }
+
+    @Test
+    public void testRecycle() {
+        Recycler<HandledObject> recycler = newRecycler(1024, 2, 1);
+        HandledObject object = recycler.get();
+        object.recycle();
+        HandledObject object2 = recycler.get();
+        assertSame(object, object2);
+        object2.recycle();
+
+        RecyclerMetric metric = recycler.metric();
+        assertEquals(1, metric.numAllocations());
+        assertEquals(1, metric.numReused());
+        assertEquals(2, metric.numRecycled());
+        assertEquals(0, metric.numCrossThreadRecycled());
+        assertEquals(0, metric.numDropped());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleRecycle() {
+        Recycler<HandledObject> recycler = newRecycler(1024, 2, 1);
+        HandledObject object = recycler.get();
+        object.recycle();
+        object.recycle();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleRecycleAtDifferentThread() throws Exception {
+        Recycler<HandledObject> recycler = newRecycler(1024, 2, 1);
+        HandledObject object = recycler.get();
+        recycleInOtherThread(object);
+        recycleInOtherThread(object);
+    }
+
+    @Test
+    public void testRecycleAtDifferentThread() throws Exception {
+        Recycler<HandledObject> recycler = newRecycler(1024, 2, 1);
+        HandledObject o = recycler.get();
+        HandledObject o2 = recycler.get();
+        recycleInOtherThread(o, o2);
+
+        assertEquals(2, recycler.metric().numCrossThreadRecycled());
+        assertEquals(0, recycler.threadLocalSize());
+        HandledObject r = recycler.get();
+        // Both handles were moved to the thread-local stack while the first one was picked up.
+        assertEquals(1, recycler.threadLocalSize());
+        HandledObject r2 = recycler.get();
+        assertTrue(r == o && r2 == o2 || r == o2 && r2 == o);
+        assertEquals(2, recycler.metric().numReused());
+    }
+
+    @Test
+    public void testRatio() {
+        Recycler<HandledObject> recycler = newRecycler(1024, 2, 2);
+        HandledObject o = recycler.get();
+        HandledObject o2 = recycler.get();
+        o.recycle();
+        o2.recycle();
+
+        // Only every second new object is pooled.
+        assertSame(o, recycler.get());
+        assertNotSame(o2, recycler.get());
+    }
+
+    @Test
+    public void testMaxCapacity() {
+        int maxCapacity = 300;
+        Recycler<HandledObject> recycler = newRecycler(maxCapacity, 2, 1);
+        HandledObject[] objects = new HandledObject[maxCapacity * 3];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = recycler.get();
+        }
+        for (HandledObject object : objects) {
+            object.recycle();
+        }
+
+        assertEquals(maxCapacity, recycler.threadLocalCapacity());
+        assertEquals(maxCapacity, recycler.threadLocalSize());
+        assertEquals(maxCapacity * 2, recycler.metric().numDropped());
+    }
+
+    @Test
+    public void testCrossThreadRecycleIsBounded() throws Exception {
+        int maxCapacity = 64;
+        Recycler<HandledObject> recycler = newRecycler(maxCapacity, 2, 1);
+        HandledObject[] objects = new HandledObject[maxCapacity * 2];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = recycler.get();
+        }
+        recycleInOtherThread(objects);
+
+        // The MPSC queue holds at most maxCapacity / maxSharedCapacityFactor handles.
+        RecyclerMetric metric = recycler.metric();
+        assertEquals(maxCapacity / 2, metric.numCrossThreadRecycled());
+        assertEquals(objects.length - maxCapacity / 2, metric.numDropped());
+
+        for (int i = 0; i < objects.length; i++) {
+            recycler.get();
+        }
+        assertEquals(maxCapacity / 2, metric.numReused());
+        assertEquals(objects.length * 2 - maxCapacity / 2, metric.numAllocations());
+    }
+
+    @Test
+    public void testCrossThreadRecycleIsBoundedByMaxCapacity() throws Exception {
+        // Smaller than the link capacity, so the MPSC queue must not be sized by it.
+        int maxCapacity = 8;
+        Recycler<HandledObject> recycler = newRecycler(maxCapacity, 1, 1);
+        HandledObject[] objects = new HandledObject[maxCapacity * 4];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = recycler.get();
+        }
+        recycleInOtherThread(objects);
+
+        RecyclerMetric metric = recycler.metric();
+        assertEquals(maxCapacity, metric.numCrossThreadRecycled());
+        assertEquals(objects.length - maxCapacity, metric.numDropped());
+    }
+
+    @Test
+    public void testMetricsDisabled() {
+        Recycler<HandledObject> recycler = new Recycler<HandledObject>(1024, 2, 1, 0, true, false) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+        HandledObject object = recycler.get();
+        object.recycle();
+        assertSame(object, recycler.get());
+
+        RecyclerMetric metric = recycler.metric();
+        assertEquals(0, metric.numAllocations());
+        assertEquals(0, metric.numReused());
+        assertEquals(0, metric.numRecycled());
+    }
+
+    @Test(timeout = 5000L)
+    public void testRecycleAfterThreadDied() throws Exception {
+        final Recycler<HandledObject> recycler = newRecycler(1024, 2, 1);
+        final AtomicReference<HandledObject> reference = new AtomicReference<HandledObject>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reference.set(recycler.get());
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // Must not throw, the object is just not pooled anymore.
+        reference.get().recycle();
+    }
+
+    @Test
+    public void testRecycleDisable() {
+        Recycler<HandledObject> recycler = newRecycler(-1, 2, 1);
+        HandledObject object = recycler.get();
+        object.recycle();
+        assertNotSame(object, recycler.get());
+    }
+}
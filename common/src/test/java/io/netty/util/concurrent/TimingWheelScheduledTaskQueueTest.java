@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelScheduledTaskQueueTest {
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private static final Comparator<ScheduledFutureTask<?>> COMPARATOR = new Comparator<ScheduledFutureTask<?>>() {
+        @Override
+        public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private final TestScheduledEventExecutor executor = new TestScheduledEventExecutor(1000);
+    private long nextId;
+
+    private ScheduledFutureTask<Void> newTask(long deadlineNanos) {
+        return new ScheduledFutureTask<Void>(executor, NOOP, deadlineNanos).setId(++nextId);
+    }
+
+    @Test
+    public void testOrder() {
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 1000, 0);
+        ScheduledFutureTask<?> t1 = newTask(TimeUnit.HOURS.toNanos(1));
+        ScheduledFutureTask<?> t2 = newTask(5);
+        ScheduledFutureTask<?> t3 = newTask(TimeUnit.SECONDS.toNanos(1));
+        ScheduledFutureTask<?> t4 = newTask(Long.MAX_VALUE);
+        ScheduledFutureTask<?> t5 = newTask(6);
+        queue.add(t1);
+        queue.add(t2);
+        queue.add(t3);
+        queue.add(t4);
+        queue.add(t5);
+        assertEquals(5, queue.size());
+
+        assertSame(t2, queue.poll());
+        assertSame(t5, queue.poll());
+        assertSame(t3, queue.poll());
+        assertSame(t1, queue.poll());
+        assertSame(t4, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 1000, 0);
+        ScheduledFutureTask<?> t1 = newTask(TimeUnit.MINUTES.toNanos(1));
+        ScheduledFutureTask<?> t2 = newTask(TimeUnit.MINUTES.toNanos(2));
+        queue.add(t1);
+        queue.add(t2);
+        assertTrue(queue.containsTyped(t1));
+        assertTrue(queue.removeTyped(t1));
+        assertFalse(queue.containsTyped(t1));
+        assertFalse(queue.removeTyped(t1));
+        assertEquals(1, queue.size());
+
+        // t2 is moved out of the wheel by peek().
+        assertSame(t2, queue.peek());
+        assertTrue(queue.removeTyped(t2));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+    }
+
+    @Test
+    public void testClearIgnoringIndexes() {
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 1000, 0);
+        ScheduledFutureTask<?> t1 = newTask(10);
+        ScheduledFutureTask<?> t2 = newTask(TimeUnit.MINUTES.toNanos(2));
+        queue.add(t1);
+        queue.add(t2);
+        assertEquals(2, queue.toArray().length);
+        queue.clearIgnoringIndexes();
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.removeTyped(t2));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(42);
+        for (long tickNanos : new long[] { 1, 1000, TimeUnit.MILLISECONDS.toNanos(1) }) {
+            TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, tickNanos, 12345);
+            TreeSet<ScheduledFutureTask<?>> expected = new TreeSet<ScheduledFutureTask<?>>(COMPARATOR);
+            List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>();
+            long now = 12345;
+            for (int i = 0; i < 100000; i++) {
+                int op = random.nextInt(10);
+                if (op < 5) {
+                    long delay;
+                    switch (random.nextInt(4)) {
+                    case 0:
+                        delay = random.nextInt(1000);
+                        break;
+                    case 1:
+                        delay = random.nextInt(Integer.MAX_VALUE);
+                        break;
+                    case 2:
+                        delay = random.nextLong() & 0xFFFFFFFFFFFL;
+                        break;
+                    default:
+                        delay = -random.nextInt(1000);
+                        break;
+                    }
+                    ScheduledFutureTask<?> task = newTask(Math.max(0, now + delay));
+                    queue.add(task);
+                    expected.add(task);
+                    tasks.add(task);
+                } else if (op < 7) {
+                    if (!tasks.isEmpty()) {
+                        ScheduledFutureTask<?> task = tasks.remove(random.nextInt(tasks.size()));
+                        assertEquals(expected.remove(task), queue.removeTyped(task));
+                    }
+                } else {
+                    ScheduledFutureTask<?> task = queue.poll();
+                    assertSame(expected.pollFirst(), task);
+                    if (task != null) {
+                        // Time only moves forward.
+                        now = Math.max(now, task.deadlineNanos());
+                    }
+                }
+                assertEquals(expected.size(), queue.size());
+            }
+            ScheduledFutureTask<?> task;
+            while ((task = queue.poll()) != null) {
+                assertSame(expected.pollFirst(), task);
+            }
+            assertTrue(expected.isEmpty());
+        }
+    }
+
+    @Test
+    public void testScheduleAndCancel() throws Exception {
+        ScheduledFuture<?> f1 = executor.schedule(NOOP, 30, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> f2 = executor.schedule(NOOP, 10, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> f3 = executor.schedule(NOOP, 1, TimeUnit.HOURS);
+        ScheduledFuture<?> f4 = executor.schedule(NOOP, 20, TimeUnit.MILLISECONDS);
+        assertTrue(executor.scheduledTaskQueue() instanceof TimingWheelScheduledTaskQueue);
+        assertEquals(4, executor.scheduledTaskQueue().size());
+
+        assertTrue(f3.cancel(false));
+        assertEquals(3, executor.scheduledTaskQueue().size());
+
+        assertNull(executor.pollScheduledTask());
+        Thread.sleep(50);
+        assertSame(f2, executor.pollScheduledTask());
+        assertSame(f4, executor.pollScheduledTask());
+        assertSame(f1, executor.pollScheduledTask());
+        assertNull(executor.pollScheduledTask());
+        assertEquals(-1, executor.nextScheduledTaskNano());
+    }
+
+    private static final class TestScheduledEventExecutor extends AbstractScheduledEventExecutor {
+        private final long tickNanos;
+
+        TestScheduledEventExecutor(long tickNanos) {
+            this.tickNanos = tickNanos;
+        }
+
+        @Override
+        protected long timingWheelTickNanos() {
+            return tickNanos;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return false;
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return true;
+        }
+
+        @Override
+        public void shutdown() {
+            // NOOP
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
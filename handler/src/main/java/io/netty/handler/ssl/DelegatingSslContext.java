@@ -32,6 +32,7 @@ public abstract class DelegatingSslContext extends SslContext {
 
     protected DelegatingSslContext(SslContext ctx) {
         this.ctx = ObjectUtil.checkNotNull(ctx, "ctx");
+        recordSizing = ctx.recordSizing;
     }
 
     @Override
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.channel.socket.KernelTlsCryptoInfo;
+import io.netty.channel.socket.KernelTlsCryptoInfo.Cipher;
+import io.netty.util.CharsetUtil;
+
+import javax.crypto.SecretKey;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import java.util.Arrays;
+
+/**
+ * Derives the state needed to hand an established TLS connection over to the kernel.
+ * <p>
+ * Only TLS 1.2 with AES-GCM is supported. The keys are derived from the master secret as described in
+ * <a href="https://tools.ietf.org/html/rfc5246#section-6.3">rfc5246</a>, which is why only the
+ * {@link ReferenceCountedOpenSslEngine} can be used. TLS 1.3 would need the traffic secrets which are not exposed.
+ */
+final class KernelTls {
+
+    private static final byte[] KEY_EXPANSION_LABEL = "key expansion".getBytes(CharsetUtil.US_ASCII);
+    private static final int SALT_LENGTH = 4;
+
+    // The Finished message is the first and only record which is sent with the new keys during the handshake.
+    private static final byte[] FIRST_RECORD_SEQUENCE = { 0, 0, 0, 0, 0, 0, 0, 1 };
+
+    private KernelTls() {
+    }
+
+    /**
+     * Returns the {@link Cipher} which the kernel needs to use for the given protocol and cipher suite or
+     * {@code null} if the kernel can not take over the connection.
+     */
+    static Cipher cipher(String protocol, String cipherSuite) {
+        if (!SslUtils.PROTOCOL_TLS_V1_2.equals(protocol) || cipherSuite == null) {
+            return null;
+        }
+        if (cipherSuite.endsWith("_WITH_AES_128_GCM_SHA256")) {
+            return Cipher.AES_GCM_128;
+        }
+        if (cipherSuite.endsWith("_WITH_AES_256_GCM_SHA384")) {
+            return Cipher.AES_GCM_256;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the {@link Cipher} of the session of the given {@link SSLEngine} if the kernel can take over the
+     * connection, {@code null} otherwise.
+     */
+    static Cipher cipher(SSLEngine engine) {
+        if (!(engine instanceof ReferenceCountedOpenSslEngine)) {
+            return null;
+        }
+        SSLSession session = engine.getSession();
+        return cipher(session.getProtocol(), session.getCipherSuite());
+    }
+
+    /**
+     * Returns the {@link KernelTlsCryptoInfo}s for the outbound (index {@code 0}) and inbound (index {@code 1})
+     * direction or {@code null} if the connection can not be handed over to the kernel. This must only be called
+     * before any application data was exchanged.
+     */
+    static KernelTlsCryptoInfo[] newCryptoInfos(SSLEngine engine) {
+        Cipher cipher = cipher(engine);
+        if (cipher == null) {
+            return null;
+        }
+        ReferenceCountedOpenSslEngine openSslEngine = (ReferenceCountedOpenSslEngine) engine;
+        SecretKey masterKey = openSslEngine.masterKey();
+        byte[] clientRandom = openSslEngine.clientRandom();
+        byte[] serverRandom = openSslEngine.serverRandom();
+        if (masterKey == null || clientRandom == null || serverRandom == null) {
+            // Destroyed in the meantime.
+            return null;
+        }
+        return newCryptoInfos(cipher, masterKey.getEncoded(), clientRandom, serverRandom, engine.getUseClientMode());
+    }
+
+    static KernelTlsCryptoInfo[] newCryptoInfos(Cipher cipher, byte[] masterSecret, byte[] clientRandom,
+                                                byte[] serverRandom, boolean client) {
+        int keyLength = cipher.keyLength();
+        String algo = cipher == Cipher.AES_GCM_128 ? "HmacSHA256" : "HmacSHA384";
+        byte[] seed = Arrays.copyOf(serverRandom, serverRandom.length + clientRandom.length);
+        System.arraycopy(clientRandom, 0, seed, serverRandom.length, clientRandom.length);
+
+        // client_write_key, server_write_key, client_write_IV, server_write_IV. AEAD ciphers have no MAC keys.
+        byte[] keyBlock = PseudoRandomFunction.hash(
+                masterSecret, KEY_EXPANSION_LABEL, seed, 2 * keyLength + 2 * SALT_LENGTH, algo);
+        try {
+            KernelTlsCryptoInfo clientWrite = newCryptoInfo(cipher,
+                    Arrays.copyOfRange(keyBlock, 0, keyLength),
+                    Arrays.copyOfRange(keyBlock, 2 * keyLength, 2 * keyLength + SALT_LENGTH));
+            KernelTlsCryptoInfo serverWrite = newCryptoInfo(cipher,
+                    Arrays.copyOfRange(keyBlock, keyLength, 2 * keyLength),
+                    Arrays.copyOfRange(keyBlock, 2 * keyLength + SALT_LENGTH, keyBlock.length));
+            return client ? new KernelTlsCryptoInfo[] { clientWrite, serverWrite } :
+                    new KernelTlsCryptoInfo[] { serverWrite, clientWrite };
+        } finally {
+            Arrays.fill(keyBlock, (byte) 0);
+        }
+    }
+
+    private static KernelTlsCryptoInfo newCryptoInfo(Cipher cipher, byte[] key, byte[] salt) {
+        // The explicit nonce only needs to be unique, so just use the record sequence like OpenSSL does.
+        return new KernelTlsCryptoInfo(KernelTlsCryptoInfo.TLS_1_2_VERSION, cipher, key, salt,
+                FIRST_RECORD_SEQUENCE.clone(), FIRST_RECORD_SEQUENCE.clone());
+    }
+}
@@ -100,6 +100,9 @@ public abstract class SslContext {
 
     private final boolean startTls;
     private final AttributeMap attributes = new DefaultAttributeMap();
+    // Set by SslContextBuilder or copied from the wrapped context by DelegatingSslContext and applied to each
+    // SslHandler created by the public newHandler(...) methods.
+    volatile SslRecordSizing recordSizing;
 
     /**
      * Returns the default server-side implementation provider currently in use.
@@ -942,7 +945,7 @@ public abstract class SslContext {
      * @see #newHandler(ByteBufAllocator, Executor)
      */
     public final SslHandler newHandler(ByteBufAllocator alloc) {
-        return newHandler(alloc, startTls);
+        return configureHandler(newHandler(alloc, startTls));
     }
 
     /**
@@ -979,7 +982,7 @@ public abstract class SslContext {
      * @return a new {@link SslHandler}
      */
     public SslHandler newHandler(ByteBufAllocator alloc, Executor delegatedTaskExecutor) {
-        return newHandler(alloc, startTls, delegatedTaskExecutor);
+        return configureHandler(newHandler(alloc, startTls, delegatedTaskExecutor));
     }
 
     /**
@@ -996,7 +999,7 @@ public abstract class SslContext {
      * @see #newHandler(ByteBufAllocator, String, int, Executor)
      */
     public final SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort) {
-        return newHandler(alloc, peerHost, peerPort, startTls);
+        return configureHandler(newHandler(alloc, peerHost, peerPort, startTls));
     }
 
     /**
@@ -1037,7 +1040,7 @@ public abstract class SslContext {
      */
     public SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort,
                                  Executor delegatedTaskExecutor) {
-        return newHandler(alloc, peerHost, peerPort, startTls, delegatedTaskExecutor);
+        return configureHandler(newHandler(alloc, peerHost, peerPort, startTls, delegatedTaskExecutor));
     }
 
     protected SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort, boolean startTls,
@@ -1045,6 +1048,15 @@ public abstract class SslContext {
         return new SslHandler(newEngine(alloc, peerHost, peerPort), startTls, delegatedTaskExecutor);
     }
 
+    // Called by the public newHandler(...) methods, so it also applies if a sub-class overrides the protected ones.
+    private SslHandler configureHandler(SslHandler handler) {
+        SslRecordSizing recordSizing = this.recordSizing;
+        if (recordSizing != null) {
+            handler.setRecordSizing(recordSizing);
+        }
+        return handler;
+    }
+
     /**
      * Generates a key specification for an (encrypted) private key.
      *
@@ -190,6 +190,7 @@ public final class SslContextBuilder {
     private boolean startTls;
     private boolean enableOcsp;
     private String keyStoreType = KeyStore.getDefaultType();
+    private SslRecordSizing recordSizing;
 
     private SslContextBuilder(boolean forServer) {
         this.forServer = forServer;
@@ -561,12 +562,31 @@ public final class SslContextBuilder {
         return this;
     }
 
+    /**
+     * Enables the dynamic record sizing for all {@link SslHandler}s created by the {@link SslContext}, or disables
+     * it if {@code null}. Disabled by default. It is applied by the public {@code newHandler(...)} methods of the
+     * {@link SslContext}, including the ones of a {@link DelegatingSslContext} which wraps it.
+     *
+     * @see SslHandler#setRecordSizing(SslRecordSizing)
+     */
+    @UnstableApi
+    public SslContextBuilder recordSizing(SslRecordSizing recordSizing) {
+        this.recordSizing = recordSizing;
+        return this;
+    }
+
     /**
      * Create new {@code SslContext} instance with configured settings.
      * <p>If {@link #sslProvider(SslProvider)} is set to {@link SslProvider#OPENSSL_REFCNT} then the caller is
      * responsible for releasing this object, or else native memory may leak.
      */
     public SslContext build() throws SSLException {
+        SslContext context = build0();
+        context.recordSizing = recordSizing;
+        return context;
+    }
+
+    private SslContext build0() throws SSLException {
         if (forServer) {
             return SslContext.newServerContextInternal(provider, sslContextProvider, trustCertCollection,
                 trustManagerFactory, keyCertChain, key, keyPassword, keyManagerFactory,
@@ -28,10 +28,14 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.channel.FileRegion;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsCryptoInfo;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.UnsupportedMessageTypeException;
@@ -177,7 +181,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * <a href="https://tools.ietf.org/html/rfc5246#section-6.2">2^14</a> which is the maximum sized plaintext chunk
      * allowed by the TLS RFC.
      */
-    private static final int MAX_PLAINTEXT_LENGTH = 16 * 1024;
+    static final int MAX_PLAINTEXT_LENGTH = 16 * 1024;
 
     private enum SslEngineType {
         TCNATIVE(true, COMPOSITE_CUMULATOR) {
@@ -408,6 +412,15 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private volatile long closeNotifyFlushTimeoutMillis = 3000;
     private volatile long closeNotifyReadTimeoutMillis;
     volatile int wrapDataSize = MAX_PLAINTEXT_LENGTH;
+    private volatile boolean kernelTlsOffload;
+    private volatile SslRecordSizing recordSizing;
+    private volatile SslRecordSizer recordSizer;
+
+    /**
+     * Set once the handshake is done and the connection may be handed over to the kernel. While set no application
+     * data is wrapped as this would change the record sequence number.
+     */
+    private boolean kernelTlsPending;
 
     /**
      * Creates a new instance which runs all delegated tasks directly on the {@link EventExecutor}.
@@ -582,6 +595,67 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         this.closeNotifyReadTimeoutMillis = closeNotifyReadTimeoutMillis;
     }
 
+    /**
+     * Returns the {@link SslRecordSizing} which is used to compute the size of the records, or {@code null} if all
+     * records use the size configured by {@link #setWrapDataSize(int)}.
+     */
+    @UnstableApi
+    public final SslRecordSizing getRecordSizing() {
+        return recordSizing;
+    }
+
+    /**
+     * Sets the {@link SslRecordSizing} which is used to compute the size of the records, or {@code null} to disable
+     * the dynamic record sizing. If enabled the records are limited to {@link SslRecordSizing#smallRecordSize()} at
+     * the start of the connection and after it was idle, and grow to the size configured by
+     * {@link #setWrapDataSize(int)} once {@link SslRecordSizing#rampUpBytes()} were written. Setting a new
+     * {@link SslRecordSizing} starts over with small records.
+     */
+    @UnstableApi
+    public final void setRecordSizing(SslRecordSizing recordSizing) {
+        this.recordSizing = recordSizing;
+        recordSizer = recordSizing == null ? null : new SslRecordSizer(this, recordSizing);
+    }
+
+    /**
+     * Returns the {@link SslRecordSizingMetric} of the dynamic record sizing, or {@code null} if it is disabled.
+     *
+     * @see #setRecordSizing(SslRecordSizing)
+     */
+    @UnstableApi
+    public final SslRecordSizingMetric recordSizingMetric() {
+        return recordSizer;
+    }
+
+    /**
+     * Returns {@code true} if the TLS records should be handled by the kernel once the handshake is done.
+     *
+     * @see #setKernelTlsOffload(boolean)
+     */
+    @UnstableApi
+    public final boolean isKernelTlsOffload() {
+        return kernelTlsOffload;
+    }
+
+    /**
+     * Sets whether the TLS records should be handled by the kernel once the handshake is done, which allows to
+     * write {@link FileRegion}s without copying them into user space. This must be set before the handshake
+     * completes.
+     * <p>
+     * The connection is handed over if the {@link Channel} is a {@link KernelTlsChannel}, the {@link SSLEngine} is
+     * created by {@link SslProvider#OPENSSL} or {@link SslProvider#OPENSSL_REFCNT}, TLSv1.2 with an AES-GCM cipher
+     * suite was negotiated and no application data was exchanged yet. If this succeeds this handler removes itself
+     * from the {@link ChannelPipeline} and no {@code close_notify} will be sent. The {@link #sslCloseFuture()} is
+     * notified once the {@link Channel} is closed, successfully if the kernel received a record which is not
+     * application data before, see {@link KernelTlsChannel#isKernelTlsInputClosed()}. As the kernel does not tell
+     * which alert was received, a fatal alert can not be told apart from a {@code close_notify}. Otherwise this
+     * handler keeps on encrypting and decrypting in user space.
+     */
+    @UnstableApi
+    public final void setKernelTlsOffload(boolean kernelTlsOffload) {
+        this.kernelTlsOffload = kernelTlsOffload;
+    }
+
     /**
      * Returns the {@link SSLEngine} which is used by this handler.
      */
@@ -765,7 +839,8 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             return;
         }
 
-        if (processTask) {
+        if (processTask || kernelTlsPending) {
+            // If kernelTlsPending is set the flush is done once the connection was handed over to the kernel.
             return;
         }
 
@@ -805,11 +880,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         boolean needUnwrap = false;
         ByteBuf buf = null;
         try {
-            final int wrapDataSize = this.wrapDataSize;
+            final SslRecordSizer recordSizer = this.recordSizer;
             // Only continue to loop if the handler was not removed in the meantime.
             // See https://github.com/netty/netty/issues/5860
-            outer: while (!ctx.isRemoved()) {
+            outer: while (!ctx.isRemoved() && !kernelTlsPending) {
                 promise = ctx.newPromise();
+                final int wrapDataSize = recordSizer == null ? this.wrapDataSize : recordSizer.nextRecordSize();
                 buf = wrapDataSize > 0 ?
                         pendingUnencryptedWrites.remove(alloc, wrapDataSize, promise) :
                         pendingUnencryptedWrites.removeFirst(promise);
@@ -834,6 +910,9 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                     pendingUnencryptedWrites.releaseAndFailAll(ctx, exception);
                     return;
                 } else {
+                    if (recordSizer != null && result.bytesConsumed() > 0) {
+                        recordSizer.recordWritten(result.bytesConsumed());
+                    }
                     if (buf.isReadable()) {
                         pendingUnencryptedWrites.addFirst(buf, promise);
                         // When we add the buffer/promise pair back we need to be sure we don't complete the promise
@@ -1283,6 +1362,65 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         } else {
             decodeNonJdkCompatible(ctx, in);
         }
+        if (kernelTlsPending) {
+            // Hand over now so the next read is not decrypted by the SSLEngine.
+            offloadToKernel(ctx);
+        }
+    }
+
+    /**
+     * Hands the connection over to the kernel if possible and removes this handler. Otherwise the pending writes are
+     * wrapped as usual.
+     */
+    private void offloadToKernel(ChannelHandlerContext ctx) throws SSLException {
+        kernelTlsPending = false;
+        if (ctx.isRemoved()) {
+            return;
+        }
+        // The last handshake records must be written before the kernel encrypts everything which is written.
+        forceFlush(ctx);
+
+        KernelTlsChannel channel = (KernelTlsChannel) ctx.channel();
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        KernelTlsCryptoInfo[] cryptoInfos = null;
+        if (internalBuffer().isReadable() || engine.isOutboundDone() ||
+                outboundBuffer == null || outboundBuffer.totalPendingWriteBytes() != 0) {
+            logger.debug("{} Records are pending, not handing over the connection to the kernel", channel);
+        } else {
+            cryptoInfos = KernelTls.newCryptoInfos(engine);
+        }
+        if (cryptoInfos != null) {
+            try {
+                channel.enableKernelTls(cryptoInfos[0], cryptoInfos[1]);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{} Handed over to the kernel: {}", channel, engine.getSession().getCipherSuite());
+                }
+                // This handler will not see the close_notify anymore, so let the kernel tell if it was received.
+                final KernelTlsChannel kernelTlsChannel = channel;
+                channel.closeFuture().addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        notifyClosePromise(kernelTlsChannel.isKernelTlsInputClosed() ?
+                                null : new ClosedChannelException());
+                    }
+                });
+                // Everything written from now on is encrypted by the kernel.
+                pendingUnencryptedWrites.writeAndRemoveAll(ctx);
+                forceFlush(ctx);
+                ctx.pipeline().remove(this);
+                return;
+            } catch (IOException e) {
+                if (!channel.isOpen()) {
+                    logger.debug("{} Failed to hand over the connection to the kernel", channel, e);
+                    return;
+                }
+                logger.debug("{} Failed to hand over the connection to the kernel, falling back to the SSLEngine",
+                        channel, e);
+            }
+        }
+        if (!pendingUnencryptedWrites.isEmpty()) {
+            wrapAndFlush(ctx);
+        }
     }
 
     @Override
@@ -1330,6 +1468,7 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             ChannelHandlerContext ctx, ByteBuf packet, int offset, int length) throws SSLException {
         final int originalLength = length;
         boolean wrapLater = false;
+        boolean flushLater = false;
         boolean notifyClosure = false;
         int overflowReadableBytes = -1;
         ByteBuf decodeOut = allocate(ctx, length);
@@ -1449,6 +1588,19 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                         throw new IllegalStateException("unknown handshake status: " + handshakeStatus);
                 }
 
+                if (produced > 0 && kernelTlsPending) {
+                    // The inbound record sequence number is not known to us anymore.
+                    logger.debug("{} Received application data before the connection was handed over to the kernel",
+                            ctx.channel());
+                    kernelTlsPending = false;
+                    if (!pendingUnencryptedWrites.isEmpty()) {
+                        // flush() did not wrap anything while the hand over was pending, so the writes which were
+                        // held back must be flushed now as the user may never flush again.
+                        wrapLater = true;
+                        flushLater = true;
+                    }
+                }
+
                 if (status == Status.BUFFER_UNDERFLOW ||
                         // If we processed NEED_TASK we should try again even we did not consume or produce anything.
                         handshakeStatus != HandshakeStatus.NEED_TASK && consumed == 0 && produced == 0) {
@@ -1475,6 +1627,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 wrap(ctx, true);
             }
 
+            if (flushLater) {
+                forceFlush(ctx);
+            }
+
             if (notifyClosure) {
                 notifyClosePromise(null);
             }
@@ -1753,6 +1909,29 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * Notify all the handshake futures about the successfully handshake
      */
     private void setHandshakeSuccess() {
+        if (kernelTlsOffload && !handshakePromise.isDone() && ctx.channel() instanceof KernelTlsChannel) {
+            KernelTlsCryptoInfo.Cipher cipher = KernelTls.cipher(engine);
+            if (cipher != null && ((KernelTlsChannel) ctx.channel()).isKernelTlsSupported(cipher)) {
+                // Hold back all writes, even those done by the listeners of the handshake future.
+                kernelTlsPending = true;
+                // The handshake is usually done while decoding but it may also be completed by a delegated task.
+                ctx.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (kernelTlsPending) {
+                            try {
+                                offloadToKernel(ctx);
+                            } catch (Throwable cause) {
+                                ctx.fireExceptionCaught(cause);
+                            }
+                        }
+                    }
+                });
+            } else {
+                logger.debug("{} Can not hand over {} to the kernel",
+                        ctx.channel(), engine.getSession().getCipherSuite());
+            }
+        }
         handshakePromise.trySuccess(ctx.channel());
 
         if (logger.isDebugEnabled()) {
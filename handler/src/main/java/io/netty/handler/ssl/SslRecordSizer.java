@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import static io.netty.handler.ssl.SslHandler.MAX_PLAINTEXT_LENGTH;
+
+/**
+ * Computes the plaintext size of the records written by a {@link SslHandler} according to a
+ * {@link SslRecordSizing}. All methods except the ones of {@link SslRecordSizingMetric} must only be called from the
+ * {@link io.netty.util.concurrent.EventExecutor} of the handler.
+ */
+final class SslRecordSizer implements SslRecordSizingMetric {
+
+    private final SslHandler handler;
+    private final int smallRecordSize;
+    private final long rampUpBytes;
+    private final long idleTimeoutNanos;
+
+    private boolean small;
+
+    // Only updated from the EventExecutor but may be read by any thread.
+    private volatile long bytesSinceReset;
+    private volatile long lastWriteNanos;
+    private volatile long numSmallRecords;
+    private volatile long numFullRecords;
+    private volatile long numRampUps;
+    private volatile long numIdleResets;
+
+    SslRecordSizer(SslHandler handler, SslRecordSizing sizing) {
+        this.handler = handler;
+        smallRecordSize = sizing.smallRecordSize();
+        rampUpBytes = sizing.rampUpBytes();
+        idleTimeoutNanos = sizing.idleTimeoutNanos();
+    }
+
+    /**
+     * Returns the maximal plaintext size of the next record, which is the wrap data size of the {@link SslHandler}
+     * once enough bytes were written.
+     */
+    int nextRecordSize() {
+        if (bytesSinceReset != 0 && idleTimeoutNanos > 0 && System.nanoTime() - lastWriteNanos >= idleTimeoutNanos) {
+            bytesSinceReset = 0;
+            numIdleResets++;
+        }
+        int wrapDataSize = handler.wrapDataSize;
+        small = bytesSinceReset < rampUpBytes && (wrapDataSize <= 0 || wrapDataSize > smallRecordSize);
+        return small ? smallRecordSize : wrapDataSize;
+    }
+
+    /**
+     * Must be called with the number of plaintext bytes once the record returned by {@link #nextRecordSize()} was
+     * wrapped.
+     */
+    void recordWritten(int bytes) {
+        if (small) {
+            numSmallRecords++;
+        } else {
+            numFullRecords++;
+        }
+        long bytesSinceReset = this.bytesSinceReset;
+        if (bytesSinceReset < rampUpBytes) {
+            bytesSinceReset += bytes;
+            this.bytesSinceReset = bytesSinceReset;
+            if (bytesSinceReset >= rampUpBytes) {
+                numRampUps++;
+            }
+        }
+        if (idleTimeoutNanos > 0) {
+            lastWriteNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public int currentRecordSize() {
+        int wrapDataSize = handler.wrapDataSize;
+        if (wrapDataSize <= 0) {
+            wrapDataSize = MAX_PLAINTEXT_LENGTH;
+        }
+        // Not synchronized with the EventExecutor so this is only an estimation.
+        long bytesSinceReset = this.bytesSinceReset;
+        if (bytesSinceReset >= rampUpBytes &&
+                (bytesSinceReset == 0 || idleTimeoutNanos <= 0 ||
+                        System.nanoTime() - lastWriteNanos < idleTimeoutNanos)) {
+            return wrapDataSize;
+        }
+        return Math.min(smallRecordSize, wrapDataSize);
+    }
+
+    @Override
+    public long numSmallRecords() {
+        return numSmallRecords;
+    }
+
+    @Override
+    public long numFullRecords() {
+        return numFullRecords;
+    }
+
+    @Override
+    public long numRampUps() {
+        return numRampUps;
+    }
+
+    @Override
+    public long numIdleResets() {
+        return numIdleResets;
+    }
+
+    @Override
+    public String toString() {
+        return "SslRecordSizer(currentRecordSize: " + currentRecordSize() + ", numSmallRecords: " + numSmallRecords +
+                ", numFullRecords: " + numFullRecords + ", numRampUps: " + numRampUps +
+                ", numIdleResets: " + numIdleResets + ')';
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the dynamic record sizing of a {@link SslHandler}.
+ * <p>
+ * A record can only be decrypted once it was received completely, so large records delay the first bytes of a
+ * response when the congestion window is still small. With dynamic record sizing each record fits into a single
+ * TCP segment at the start of a connection and after it was idle, and once enough bytes were written the records
+ * grow to the wrap data size of the {@link SslHandler} (16 KiB by default) to reduce the framing overhead of bulk
+ * transfers.
+ *
+ * @see SslHandler#setRecordSizing(SslRecordSizing)
+ * @see SslContextBuilder#recordSizing(SslRecordSizing)
+ */
+@UnstableApi
+public final class SslRecordSizing {
+
+    /**
+     * The default size of the plaintext of a small record, which leaves room for the TLS and TCP/IP overhead in a
+     * segment of a 1500 bytes MTU.
+     */
+    public static final int DEFAULT_SMALL_RECORD_SIZE = 1400;
+
+    /**
+     * The default number of bytes written in small records before the record size grows.
+     */
+    public static final long DEFAULT_RAMP_UP_BYTES = 1024 * 1024;
+
+    /**
+     * The default number of milliseconds without a write after which small records are used again.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * The default configuration.
+     */
+    public static final SslRecordSizing DEFAULT = new SslRecordSizing(
+            DEFAULT_SMALL_RECORD_SIZE, DEFAULT_RAMP_UP_BYTES, DEFAULT_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+    private final int smallRecordSize;
+    private final long rampUpBytes;
+    private final long idleTimeoutNanos;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param smallRecordSize   the size of the plaintext of a small record.
+     * @param rampUpBytes       the number of bytes written in small records before the record size grows.
+     * @param idleTimeout       the time without a write after which small records are used again, or {@code 0} to
+     *                          never use small records again.
+     * @param unit              the {@link TimeUnit} of {@code idleTimeout}.
+     */
+    public SslRecordSizing(int smallRecordSize, long rampUpBytes, long idleTimeout, TimeUnit unit) {
+        this.smallRecordSize = ObjectUtil.checkPositive(smallRecordSize, "smallRecordSize");
+        this.rampUpBytes = ObjectUtil.checkPositiveOrZero(rampUpBytes, "rampUpBytes");
+        this.idleTimeoutNanos = ObjectUtil.checkNotNull(unit, "unit").toNanos(
+                ObjectUtil.checkPositiveOrZero(idleTimeout, "idleTimeout"));
+    }
+
+    /**
+     * Returns the size of the plaintext of a small record.
+     */
+    public int smallRecordSize() {
+        return smallRecordSize;
+    }
+
+    /**
+     * Returns the number of bytes written in small records before the record size grows.
+     */
+    public long rampUpBytes() {
+        return rampUpBytes;
+    }
+
+    /**
+     * Returns the time in the given {@link TimeUnit} without a write after which small records are used again, or
+     * {@code 0} if small records are only used at the start of a connection.
+     */
+    public long idleTimeout(TimeUnit unit) {
+        return unit.convert(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    long idleTimeoutNanos() {
+        return idleTimeoutNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SslRecordSizing(smallRecordSize: " + smallRecordSize + ", rampUpBytes: " + rampUpBytes +
+                ", idleTimeoutNanos: " + idleTimeoutNanos + ')';
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Expose metrics for the dynamic record sizing of a {@link SslHandler}.
+ *
+ * @see SslHandler#recordSizingMetric()
+ */
+@UnstableApi
+public interface SslRecordSizingMetric {
+
+    /**
+     * Return the plaintext size of the next record if it was written now.
+     */
+    int currentRecordSize();
+
+    /**
+     * Return the number of records which were written with the small record size.
+     */
+    long numSmallRecords();
+
+    /**
+     * Return the number of records which were written with the full record size.
+     */
+    long numFullRecords();
+
+    /**
+     * Return the number of times the record size was grown to the full record size.
+     */
+    long numRampUps();
+
+    /**
+     * Return the number of times the record size was reset to the small record size because the connection was idle.
+     */
+    long numIdleResets();
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.channel.socket.KernelTlsCryptoInfo;
+import io.netty.channel.socket.KernelTlsCryptoInfo.Cipher;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class KernelTlsTest {
+
+    private static final byte[] MASTER_SECRET = new byte[48];
+    private static final byte[] CLIENT_RANDOM = new byte[32];
+    private static final byte[] SERVER_RANDOM = new byte[32];
+
+    static {
+        for (int i = 0; i < MASTER_SECRET.length; i++) {
+            MASTER_SECRET[i] = (byte) i;
+        }
+        Arrays.fill(CLIENT_RANDOM, (byte) 1);
+        Arrays.fill(SERVER_RANDOM, (byte) 2);
+    }
+
+    @Test
+    public void testCipher() {
+        assertSame(Cipher.AES_GCM_128, KernelTls.cipher("TLSv1.2", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"));
+        assertSame(Cipher.AES_GCM_256, KernelTls.cipher("TLSv1.2", "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384"));
+        assertSame(Cipher.AES_GCM_128, KernelTls.cipher("TLSv1.2", "TLS_RSA_WITH_AES_128_GCM_SHA256"));
+
+        // Unsupported protocols and ciphers stay in user space.
+        assertNull(KernelTls.cipher("TLSv1.3", "TLS_AES_128_GCM_SHA256"));
+        assertNull(KernelTls.cipher("TLSv1.1", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"));
+        assertNull(KernelTls.cipher("TLSv1.2", "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256"));
+        assertNull(KernelTls.cipher("TLSv1.2", "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256"));
+        assertNull(KernelTls.cipher("TLSv1.2", null));
+    }
+
+    @Test
+    public void testCryptoInfosAesGcm128() {
+        byte[] clientKey = Hex.decode("bf4ab9777a81b0138d80acf5969e0f65");
+        byte[] serverKey = Hex.decode("9f0c1c5ca8c3d4508ecd85ecaa93090e");
+        byte[] clientSalt = Hex.decode("325565ab");
+        byte[] serverSalt = Hex.decode("f4bcfea0");
+
+        KernelTlsCryptoInfo[] client = KernelTls.newCryptoInfos(
+                Cipher.AES_GCM_128, MASTER_SECRET, CLIENT_RANDOM, SERVER_RANDOM, true);
+        assertCryptoInfo(client[0], Cipher.AES_GCM_128, clientKey, clientSalt);
+        assertCryptoInfo(client[1], Cipher.AES_GCM_128, serverKey, serverSalt);
+
+        KernelTlsCryptoInfo[] server = KernelTls.newCryptoInfos(
+                Cipher.AES_GCM_128, MASTER_SECRET, CLIENT_RANDOM, SERVER_RANDOM, false);
+        assertCryptoInfo(server[0], Cipher.AES_GCM_128, serverKey, serverSalt);
+        assertCryptoInfo(server[1], Cipher.AES_GCM_128, clientKey, clientSalt);
+    }
+
+    @Test
+    public void testCryptoInfosAesGcm256() {
+        KernelTlsCryptoInfo[] client = KernelTls.newCryptoInfos(
+                Cipher.AES_GCM_256, MASTER_SECRET, CLIENT_RANDOM, SERVER_RANDOM, true);
+        assertCryptoInfo(client[0], Cipher.AES_GCM_256,
+                Hex.decode("2dd68a2c54ea3445bcd691733cdddcae818e7a7026f38bc9de705289f9a3b410"),
+                Hex.decode("4bbac8e3"));
+        assertCryptoInfo(client[1], Cipher.AES_GCM_256,
+                Hex.decode("cb774c97797e8faceeeceb75f4909bc4d337f7ed3ef4e38982bfd871c2249613"),
+                Hex.decode("7f010884"));
+    }
+
+    private static void assertCryptoInfo(KernelTlsCryptoInfo info, Cipher cipher, byte[] key, byte[] salt) {
+        byte[] firstRecord = { 0, 0, 0, 0, 0, 0, 0, 1 };
+        assertEquals(KernelTlsCryptoInfo.TLS_1_2_VERSION, info.version());
+        assertSame(cipher, info.cipher());
+        assertArrayEquals(key, info.key());
+        assertArrayEquals(salt, info.salt());
+        assertArrayEquals(firstRecord, info.iv());
+        assertArrayEquals(firstRecord, info.recordSequence());
+    }
+}
@@ -20,6 +20,7 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
@@ -41,6 +42,8 @@ import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
 import io.netty.channel.local.LocalServerChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsCryptoInfo;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.ByteToMessageDecoder;
@@ -50,6 +53,7 @@ import io.netty.handler.codec.UnsupportedMessageTypeException;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
 import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.CharsetUtil;
 import io.netty.util.IllegalReferenceCountException;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
@@ -65,6 +69,7 @@ import org.junit.Test;
 import java.net.InetSocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
@@ -92,6 +97,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -1180,4 +1186,108 @@ public class SslHandlerTest {
             ReferenceCountUtil.release(sslClientCtx);
         }
     }
+
+    @Test
+    public void testWritesAfterHandshakeAreFlushedIfNotHandedOverToKernel() throws Exception {
+        // Only the non JDK compatible mode unwraps the application data in the same call as the handshake records.
+        assumeTrue(OpenSsl.isAvailable());
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        SslContext serverContext = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.JDK)
+                .protocols(SslUtils.PROTOCOL_TLS_V1_2)
+                .ciphers(Collections.singleton("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"))
+                .build();
+        SslContext clientContext = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.OPENSSL)
+                .protocols(SslUtils.PROTOCOL_TLS_V1_2)
+                .ciphers(Collections.singleton("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"))
+                .build();
+        final EmbeddedChannel server = new EmbeddedChannel();
+        final KernelTlsEmbeddedChannel client = new KernelTlsEmbeddedChannel();
+        try {
+            SslHandler serverHandler = serverContext.newHandler(server.alloc());
+            server.pipeline().addLast(serverHandler);
+            serverHandler.handshakeFuture().addListener(new FutureListener<Channel>() {
+                @Override
+                public void operationComplete(Future<Channel> future) {
+                    // Sent in the same flight as the Finished message of the server.
+                    server.writeAndFlush(Unpooled.copiedBuffer("server", CharsetUtil.US_ASCII));
+                }
+            });
+            SslHandler clientHandler = clientContext.newHandler(client.alloc());
+            clientHandler.setKernelTlsOffload(true);
+            clientHandler.handshakeFuture().addListener(new FutureListener<Channel>() {
+                @Override
+                public void operationComplete(Future<Channel> future) {
+                    // Held back until it is known if the connection is handed over to the kernel.
+                    client.writeAndFlush(Unpooled.copiedBuffer("client", CharsetUtil.US_ASCII));
+                }
+            });
+            client.pipeline().addLast(clientHandler);
+
+            while (forwardAll(client, server) | forwardAll(server, client)) {
+                // Loop until nothing is sent anymore.
+            }
+            assertTrue(clientHandler.handshakeFuture().isSuccess());
+            assertFalse(client.isKernelTlsEnabled());
+            assertSame(clientHandler, client.pipeline().get(SslHandler.class));
+
+            ByteBuf received = server.readInbound();
+            assertNotNull(received);
+            assertEquals("client", received.toString(CharsetUtil.US_ASCII));
+            received.release();
+            received = client.readInbound();
+            assertNotNull(received);
+            assertEquals("server", received.toString(CharsetUtil.US_ASCII));
+            received.release();
+        } finally {
+            server.finishAndReleaseAll();
+            client.finishAndReleaseAll();
+            ReferenceCountUtil.release(serverContext);
+            ReferenceCountUtil.release(clientContext);
+            cert.delete();
+        }
+    }
+
+    /**
+     * Forwards everything written by {@code from} as a single read of {@code to}.
+     */
+    private static boolean forwardAll(EmbeddedChannel from, EmbeddedChannel to) {
+        CompositeByteBuf buf = Unpooled.compositeBuffer();
+        ByteBuf component;
+        while ((component = from.readOutbound()) != null) {
+            buf.addComponent(true, component);
+        }
+        if (!buf.isReadable()) {
+            buf.release();
+            return false;
+        }
+        to.writeInbound(buf);
+        return true;
+    }
+
+    private static final class KernelTlsEmbeddedChannel extends EmbeddedChannel implements KernelTlsChannel {
+        private boolean kernelTlsEnabled;
+
+        @Override
+        public boolean isKernelTlsSupported(KernelTlsCryptoInfo.Cipher cipher) {
+            return true;
+        }
+
+        @Override
+        public void enableKernelTls(KernelTlsCryptoInfo tx, KernelTlsCryptoInfo rx) {
+            kernelTlsEnabled = true;
+        }
+
+        @Override
+        public boolean isKernelTlsEnabled() {
+            return kernelTlsEnabled;
+        }
+
+        @Override
+        public boolean isKernelTlsInputClosed() {
+            return false;
+        }
+    }
 }
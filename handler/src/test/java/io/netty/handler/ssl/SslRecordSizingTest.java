@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ImmediateExecutor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLEngine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SslRecordSizingTest {
+
+    // Larger than the TLS overhead of a small record but smaller than a full record.
+    private static final int SMALL_RECORD_THRESHOLD = 1100;
+
+    private static SelfSignedCertificate cert;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        cert = new SelfSignedCertificate();
+    }
+
+    @AfterClass
+    public static void destroy() {
+        cert.delete();
+    }
+
+    private static SslContext newServerContext(SslRecordSizing sizing) throws Exception {
+        return SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.JDK)
+                .recordSizing(sizing)
+                .build();
+    }
+
+    private static EmbeddedChannel[] handshake(SslContext serverContext) throws Exception {
+        SslContext clientContext = SslContextBuilder.forClient()
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK)
+                .build();
+        EmbeddedChannel server = new EmbeddedChannel();
+        server.pipeline().addLast(serverContext.newHandler(server.alloc()));
+        EmbeddedChannel client = new EmbeddedChannel();
+        client.pipeline().addLast(clientContext.newHandler(client.alloc()));
+
+        while (forward(client, server) | forward(server, client)) {
+            // Loop until the handshake is done.
+        }
+        assertTrue(server.pipeline().get(SslHandler.class).handshakeFuture().isSuccess());
+        assertTrue(client.pipeline().get(SslHandler.class).handshakeFuture().isSuccess());
+        return new EmbeddedChannel[] { server, client };
+    }
+
+    private static boolean forward(EmbeddedChannel from, EmbeddedChannel to) {
+        boolean forwarded = false;
+        for (;;) {
+            ByteBuf buf = from.readOutbound();
+            if (buf == null) {
+                return forwarded;
+            }
+            to.writeInbound(buf);
+            forwarded = true;
+        }
+    }
+
+    /**
+     * Writes the given number of bytes, forwards them to the client and returns the ciphertext lengths of the
+     * records.
+     */
+    private static List<Integer> writeAndForward(EmbeddedChannel server, EmbeddedChannel client, int bytes) {
+        assertTrue(server.writeOutbound(Unpooled.wrappedBuffer(new byte[bytes])));
+        List<Integer> records = new ArrayList<Integer>();
+        ByteBuf buf;
+        while ((buf = server.readOutbound()) != null) {
+            for (int i = buf.readerIndex(); i < buf.writerIndex(); ) {
+                int length = buf.getUnsignedShort(i + 3);
+                records.add(length);
+                i += SslUtils.SSL_RECORD_HEADER_LENGTH + length;
+            }
+            client.writeInbound(buf);
+        }
+
+        int received = 0;
+        Object msg;
+        while ((msg = client.readInbound()) != null) {
+            received += ((ByteBuf) msg).readableBytes();
+            ReferenceCountUtil.release(msg);
+        }
+        assertEquals(bytes, received);
+        return records;
+    }
+
+    private static int countSmall(List<Integer> records) {
+        int small = 0;
+        for (int length : records) {
+            if (length < SMALL_RECORD_THRESHOLD) {
+                small++;
+            }
+        }
+        return small;
+    }
+
+    @Test
+    public void testRampUp() throws Exception {
+        EmbeddedChannel[] channels = handshake(newServerContext(
+                new SslRecordSizing(1000, 4000, 0, TimeUnit.MILLISECONDS)));
+        EmbeddedChannel server = channels[0];
+        EmbeddedChannel client = channels[1];
+        try {
+            List<Integer> records = writeAndForward(server, client, 6000);
+            // 4 small records until 4000 bytes were written, the rest fits into a single full record.
+            assertEquals(records.toString(), 5, records.size());
+            assertEquals(records.toString(), 4, countSmall(records));
+
+            SslRecordSizingMetric metric = server.pipeline().get(SslHandler.class).recordSizingMetric();
+            assertEquals(4, metric.numSmallRecords());
+            assertEquals(1, metric.numFullRecords());
+            assertEquals(1, metric.numRampUps());
+            assertEquals(0, metric.numIdleResets());
+            assertEquals(16 * 1024, metric.currentRecordSize());
+        } finally {
+            server.finishAndReleaseAll();
+            client.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testIdleReset() throws Exception {
+        EmbeddedChannel[] channels = handshake(newServerContext(
+                new SslRecordSizing(1000, 2000, 10, TimeUnit.MILLISECONDS)));
+        EmbeddedChannel server = channels[0];
+        EmbeddedChannel client = channels[1];
+        try {
+            assertEquals(2, countSmall(writeAndForward(server, client, 2000)));
+            assertEquals(0, countSmall(writeAndForward(server, client, 5000)));
+
+            Thread.sleep(50);
+            SslRecordSizingMetric metric = server.pipeline().get(SslHandler.class).recordSizingMetric();
+            assertEquals(1000, metric.currentRecordSize());
+
+            List<Integer> records = writeAndForward(server, client, 4000);
+            assertEquals(records.toString(), 3, records.size());
+            assertEquals(records.toString(), 2, countSmall(records));
+            assertEquals(1, metric.numIdleResets());
+            assertEquals(2, metric.numRampUps());
+        } finally {
+            server.finishAndReleaseAll();
+            client.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        EmbeddedChannel[] channels = handshake(newServerContext(null));
+        EmbeddedChannel server = channels[0];
+        EmbeddedChannel client = channels[1];
+        try {
+            SslHandler handler = server.pipeline().get(SslHandler.class);
+            assertNull(handler.getRecordSizing());
+            assertNull(handler.recordSizingMetric());
+            assertEquals(0, countSmall(writeAndForward(server, client, 6000)));
+
+            handler.setRecordSizing(SslRecordSizing.DEFAULT);
+            assertSame(SslRecordSizing.DEFAULT, handler.getRecordSizing());
+            List<Integer> records = writeAndForward(server, client, 6000);
+            assertEquals(records.toString(), 5, records.size());
+            for (int length : records) {
+                // Each record fits into a single segment of a 1500 bytes MTU.
+                assertTrue(records.toString(), length < 1460);
+            }
+        } finally {
+            server.finishAndReleaseAll();
+            client.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testAppliedByDelegatingContext() throws Exception {
+        SslContext context = new DelegatingSslContext(newServerContext(SslRecordSizing.DEFAULT)) {
+            @Override
+            protected void initEngine(SSLEngine engine) {
+                // NOOP
+            }
+        };
+        EmbeddedChannel channel = new EmbeddedChannel(context.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            assertSame(SslRecordSizing.DEFAULT, channel.pipeline().get(SslHandler.class).getRecordSizing());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testAppliedByAllNewHandlerMethods() throws Exception {
+        SslContext context = newServerContext(SslRecordSizing.DEFAULT);
+        Executor executor = ImmediateExecutor.INSTANCE;
+        assertSame(SslRecordSizing.DEFAULT,
+                context.newHandler(UnpooledByteBufAllocator.DEFAULT, executor).getRecordSizing());
+        assertSame(SslRecordSizing.DEFAULT,
+                context.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 443).getRecordSizing());
+        assertSame(SslRecordSizing.DEFAULT,
+                context.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 443, executor).getRecordSizing());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSmallRecordSize() {
+        new SslRecordSizing(0, 0, 0, TimeUnit.MILLISECONDS);
+    }
+}
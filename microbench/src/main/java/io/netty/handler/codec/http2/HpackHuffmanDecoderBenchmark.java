@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.AsciiString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+
+import static io.netty.handler.codec.http2.Http2HeadersEncoder.NEVER_SENSITIVE;
+
+/**
+ * Decodes the headers of a typical gRPC request which the peer sends as Huffman coded literals, as it does when
+ * its dynamic table is disabled.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HpackHuffmanDecoderBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean internStrings;
+
+    private final HpackHuffmanDecoder huffmanDecoder = new HpackHuffmanDecoder();
+    private ByteBuf[] huffmanValues;
+    private ByteBuf headerBlock;
+    private HpackDecoder hpackDecoder;
+
+    @Setup(Level.Trial)
+    public void setup() throws Http2Exception {
+        Http2Headers headers = new DefaultHttp2Headers(false)
+                .method("POST")
+                .scheme("https")
+                .path("/helloworld.Greeter/SayHello")
+                .authority("greeter.example.com:443")
+                .add("content-type", "application/grpc")
+                .add("te", "trailers")
+                .add("user-agent", "grpc-java-netty/1.30.0")
+                .add("grpc-accept-encoding", "gzip")
+                .add("grpc-timeout", "999857u")
+                .add("x-request-id", "1f4ad3c5-8e0b-4c56-a4a1-8d0b9e4a3f7d");
+
+        HpackHuffmanEncoder huffmanEncoder = new HpackHuffmanEncoder();
+        huffmanValues = new ByteBuf[headers.size()];
+        int i = 0;
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            huffmanValues[i] = Unpooled.buffer();
+            huffmanEncoder.encode(huffmanValues[i++], AsciiString.of(header.getValue()));
+        }
+
+        HpackEncoder hpackEncoder = new HpackEncoder(false, 16, 0);
+        ByteBuf tableSizeUpdate = Unpooled.buffer();
+        try {
+            hpackEncoder.setMaxHeaderTableSize(tableSizeUpdate, 0);
+        } finally {
+            tableSizeUpdate.release();
+        }
+        headerBlock = Unpooled.buffer();
+        hpackEncoder.encodeHeaders(3, headerBlock, headers, NEVER_SENSITIVE);
+        hpackDecoder = new HpackDecoder(Integer.MAX_VALUE, internStrings);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (ByteBuf value : huffmanValues) {
+            value.release();
+        }
+        headerBlock.release();
+    }
+
+    @Benchmark
+    public void huffmanDecode(Blackhole bh) throws Http2Exception {
+        for (ByteBuf value : huffmanValues) {
+            bh.consume(huffmanDecoder.decode(value.duplicate(), value.readableBytes()));
+        }
+    }
+
+    @Benchmark
+    public Http2Headers decodeLiteralHeaders() throws Http2Exception {
+        Http2Headers headers = new DefaultHttp2Headers(false);
+        hpackDecoder.decode(3, headerBlock.duplicate(), headers, false);
+        return headers;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Benchmarks the {@link PooledByteBufAllocator} with a mix of allocation sizes which resembles the buffers used by
+ * a HTTP server (headers, small and medium sized bodies and a few big aggregated payloads), instead of a single
+ * power-of-two size. Besides the allocation latency the memory footprint of the live buffers is reported by the
+ * {@link Footprint} counters at the end of each iteration, which makes it possible to compare the internal
+ * fragmentation against older releases.
+ */
+@State(Scope.Benchmark)
+public class PooledByteBufAllocatorSizeClassBenchmark extends AbstractMicrobenchmark {
+
+    // Pairs of {maxSize, weight}, sizes are picked uniformly between the previous and the current maxSize.
+    private static final int[][] HTTP_SIZE_DISTRIBUTION = {
+            { 256, 20 },    // small headers and tiny bodies
+            { 1024, 25 },   // typical response headers
+            { 4608, 25 },   // small JSON bodies, up to just above 4 KiB
+            { 16384, 20 },  // medium bodies and TLS records
+            { 65536, 8 },   // aggregated bodies
+            { 262144, 2 },  // big payloads
+    };
+
+    private static final int MAX_LIVE_BUFFERS = 8192;
+    private static final int NUM_SIZES = 16384;
+
+    @Param({ "true", "false" })
+    public boolean threadCache;
+
+    private PooledByteBufAllocator allocator;
+    private int[] sizes;
+    private ByteBuf[] heapBuffers;
+    private ByteBuf[] directBuffers;
+    private int sizeIdx;
+    private Random rand;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int cacheSize = threadCache ? PooledByteBufAllocator.defaultSmallCacheSize() : 0;
+        allocator = new PooledByteBufAllocator(true, 1, 1, PooledByteBufAllocator.defaultPageSize(),
+                PooledByteBufAllocator.defaultMaxOrder(), cacheSize, cacheSize, true, 0);
+        rand = new Random(42);
+        sizes = new int[NUM_SIZES];
+        int totalWeight = 0;
+        for (int[] sizeAndWeight : HTTP_SIZE_DISTRIBUTION) {
+            totalWeight += sizeAndWeight[1];
+        }
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = nextSize(rand, totalWeight);
+        }
+        heapBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
+        directBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
+    }
+
+    private static int nextSize(Random rand, int totalWeight) {
+        int w = rand.nextInt(totalWeight);
+        int minSize = 1;
+        for (int[] sizeAndWeight : HTTP_SIZE_DISTRIBUTION) {
+            if (w < sizeAndWeight[1]) {
+                return minSize + rand.nextInt(sizeAndWeight[0] - minSize + 1);
+            }
+            w -= sizeAndWeight[1];
+            minSize = sizeAndWeight[0] + 1;
+        }
+        throw new Error();
+    }
+
+    /**
+     * The footprint of the live buffers at the end of an iteration, in bytes.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long requestedHeap;
+        public long usedHeapMemory;
+        public long requestedDirect;
+        public long usedDirectMemory;
+
+        @TearDown(Level.Iteration)
+        public void tearDown(PooledByteBufAllocatorSizeClassBenchmark benchmark) {
+            PooledByteBufAllocatorMetric metric = benchmark.allocator.metric();
+            requestedHeap = requestedCapacity(benchmark.heapBuffers);
+            usedHeapMemory = metric.usedHeapMemory();
+            requestedDirect = requestedCapacity(benchmark.directBuffers);
+            usedDirectMemory = metric.usedDirectMemory();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (int i = 0; i < heapBuffers.length; i++) {
+            release(heapBuffers[i]);
+            release(directBuffers[i]);
+        }
+    }
+
+    private static long requestedCapacity(ByteBuf[] buffers) {
+        long requested = 0;
+        for (ByteBuf buf : buffers) {
+            if (buf != null) {
+                requested += buf.capacity();
+            }
+        }
+        return requested;
+    }
+
+    private static void release(ByteBuf buf) {
+        if (buf != null) {
+            buf.release();
+        }
+    }
+
+    private int nextSize() {
+        int idx = sizeIdx;
+        sizeIdx = idx + 1 & NUM_SIZES - 1;
+        return sizes[idx];
+    }
+
+    @Benchmark
+    public void pooledHeapAllocAndFree(Footprint footprint) {
+        int idx = rand.nextInt(MAX_LIVE_BUFFERS);
+        ByteBuf oldBuf = heapBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        heapBuffers[idx] = allocator.heapBuffer(nextSize());
+    }
+
+    @Benchmark
+    public void pooledDirectAllocAndFree(Footprint footprint) {
+        int idx = rand.nextInt(MAX_LIVE_BUFFERS);
+        ByteBuf oldBuf = directBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        directBuffers[idx] = allocator.directBuffer(nextSize());
+    }
+}
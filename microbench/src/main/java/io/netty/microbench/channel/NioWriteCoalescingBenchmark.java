@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannelOption;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+
+/**
+ * Writes and flushes many small heap buffers over a loopback {@link NioSocketChannel}, with and without coalescing
+ * them into a direct staging buffer. Run it with {@code -prof perfnorm} or under {@code strace -c} to compare the
+ * number of syscalls and bytes per gathering write of both paths.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class NioWriteCoalescingBenchmark extends AbstractMicrobenchmark {
+
+    // 0 disables the coalescing.
+    @Param({ "0", "1024" })
+    public int writeCoalesceThreshold;
+
+    @Param({ "16", "256", "4096" })
+    public int buffersPerFlush;
+
+    @Param({ "32", "512" })
+    public int bufferSize;
+
+    private NioEventLoopGroup group;
+    private Channel serverChannel;
+    private Channel clientChannel;
+    private byte[] data;
+    private Callable<Void> writeAndFlush;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new NioEventLoopGroup(1);
+        data = new byte[bufferSize];
+        serverChannel = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        // Discard.
+                        ReferenceCountUtil.release(msg);
+                    }
+                }).bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        clientChannel = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(NioSocketChannelOption.WRITE_COALESCE_THRESHOLD, writeCoalesceThreshold)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(serverChannel.localAddress()).sync().channel();
+
+        writeAndFlush = new Callable<Void>() {
+            @Override
+            public Void call() {
+                // Runs on the EventLoop, so all buffers are part of the same flush.
+                for (int i = 0; i < buffersPerFlush; i++) {
+                    ByteBuf buf = Unpooled.wrappedBuffer(data);
+                    clientChannel.write(buf, clientChannel.voidPromise());
+                }
+                clientChannel.flush();
+                return null;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        clientChannel.close().sync();
+        serverChannel.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    public void writeAndFlush() throws Exception {
+        clientChannel.eventLoop().submit(writeAndFlush).sync();
+        // Wait until everything was written, so the send buffer does not just fill up.
+        ChannelOutboundBuffer outboundBuffer = clientChannel.unsafe().outboundBuffer();
+        while (outboundBuffer.totalPendingWriteBytes() != 0) {
+            Thread.yield();
+        }
+    }
+}
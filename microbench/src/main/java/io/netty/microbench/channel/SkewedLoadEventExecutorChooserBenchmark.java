@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.channel.DefaultSelectStrategyFactory;
+import io.netty.channel.EventLoop;
+import io.netty.channel.LoadAwareEventExecutorChooserFactory;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates connections with a skewed load, where a few connections produce most of the work, and measures how long
+ * it takes until the {@link EventLoop}s which were chosen for the connections processed all of their work.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SkewedLoadEventExecutorChooserBenchmark extends AbstractMicrobenchmark {
+    private static final int TOKENS_PER_TASK = 1000;
+
+    @Param({ "roundRobin", "loadAware" })
+    public String chooser;
+
+    @Param({ "4" })
+    public int eventLoops;
+
+    @Param({ "256" })
+    public int connections;
+
+    // Every n-th connection is a heavy one.
+    @Param({ "16" })
+    public int heavyConnectionInterval;
+
+    @Param({ "64" })
+    public int heavyConnectionTasks;
+
+    private NioEventLoopGroup group;
+    private int[] tasksPerConnection;
+    private int totalTasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EventExecutorChooserFactory chooserFactory = "loadAware".equals(chooser) ?
+                LoadAwareEventExecutorChooserFactory.INSTANCE : DefaultEventExecutorChooserFactory.INSTANCE;
+        group = new NioEventLoopGroup(eventLoops, null, chooserFactory,
+                SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE);
+
+        // Shuffle the heavy connections so they do not line up with the round-robin order.
+        Random random = new Random(42);
+        tasksPerConnection = new int[connections];
+        totalTasks = 0;
+        for (int i = 0; i < connections; i++) {
+            tasksPerConnection[i] = random.nextInt(heavyConnectionInterval) == 0 ? heavyConnectionTasks : 1;
+            totalTasks += tasksPerConnection[i];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public void skewedLoad() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(totalTasks);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                Blackhole.consumeCPU(TOKENS_PER_TASK);
+                latch.countDown();
+            }
+        };
+        for (int tasks : tasksPerConnection) {
+            // A connection stays on the EventLoop it was assigned to.
+            EventLoop eventLoop = group.next();
+            for (int i = 0; i < tasks; i++) {
+                eventLoop.execute(task);
+            }
+        }
+        latch.await();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.SegmentedDatagramPacket;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.NetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends {@link #NUM_SEGMENTS} same-sized datagrams over loopback and waits until all of them were received, either
+ * as separate {@link DatagramPacket}s written via {@code sendmmsg} and read via {@code recvmmsg}, or as one
+ * {@link SegmentedDatagramPacket} (UDP_SEGMENT) which is optionally read with UDP_GRO.
+ */
+@State(Scope.Benchmark)
+public class EpollDatagramSegmentBenchmark extends AbstractMicrobenchmark {
+    private static final int NUM_SEGMENTS = 32;
+
+    public enum Mode {
+        /**
+         * One {@link DatagramPacket} per datagram, written with sendmmsg and read with recvmmsg.
+         */
+        RECVMMSG,
+        /**
+         * One {@link SegmentedDatagramPacket}, read with recvmmsg.
+         */
+        SEGMENT,
+        /**
+         * One {@link SegmentedDatagramPacket}, read with UDP_GRO.
+         */
+        SEGMENT_GRO
+    }
+
+    @Param
+    public Mode mode;
+
+    @Param({ "512", "1400" })
+    public int segmentSize;
+
+    private EpollEventLoopGroup group;
+    private Channel sender;
+    private Channel receiver;
+    private InetSocketAddress receiverAddress;
+    private ByteBuf content;
+    private final AtomicInteger remainingBytes = new AtomicInteger();
+    private volatile CountDownLatch latch;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (mode != Mode.RECVMMSG && !SegmentedDatagramPacket.isSupported()) {
+            throw new IllegalStateException("UDP_SEGMENT is not supported");
+        }
+        group = new EpollEventLoopGroup(2);
+        Bootstrap rb = new Bootstrap().group(group)
+                .channel(EpollDatagramChannel.class)
+                .option(ChannelOption.SO_RCVBUF, 4 * 1024 * 1024)
+                .handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                        if (remainingBytes.addAndGet(-msg.content().readableBytes()) <= 0) {
+                            latch.countDown();
+                        }
+                    }
+                });
+        if (mode == Mode.SEGMENT_GRO) {
+            rb.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(64 * 1024))
+              .option(EpollChannelOption.UDP_GRO, true);
+        } else {
+            rb.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(NUM_SEGMENTS * segmentSize))
+              .option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, segmentSize);
+        }
+        receiver = rb.bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().channel();
+        receiverAddress = (InetSocketAddress) receiver.localAddress();
+
+        sender = new Bootstrap().group(group)
+                .channel(EpollDatagramChannel.class)
+                .option(ChannelOption.SO_SNDBUF, 4 * 1024 * 1024)
+                .handler(new ChannelInboundHandlerAdapter())
+                .bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().channel();
+
+        content = sender.alloc().directBuffer(NUM_SEGMENTS * segmentSize);
+        content.writeZero(content.capacity());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sender.close().sync();
+        receiver.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        content.release();
+    }
+
+    @Benchmark
+    public boolean sendAndReceive() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        this.latch = latch;
+        remainingBytes.set(content.readableBytes());
+        if (mode == Mode.RECVMMSG) {
+            for (int i = 0; i < NUM_SEGMENTS; i++) {
+                sender.write(new DatagramPacket(content.retainedSlice(i * segmentSize, segmentSize), receiverAddress),
+                        sender.voidPromise());
+            }
+            sender.flush();
+        } else {
+            sender.writeAndFlush(new SegmentedDatagramPacket(content.retainedDuplicate(), segmentSize, receiverAddress),
+                    sender.voidPromise());
+        }
+        // Datagrams may be dropped, don't wait forever in this case.
+        return latch.await(1, TimeUnit.SECONDS);
+    }
+}
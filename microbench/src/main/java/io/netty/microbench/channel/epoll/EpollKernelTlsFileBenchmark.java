@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.NetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a static file over TLS on loopback, either via {@link DefaultFileRegion} ({@code sendfile}) once the
+ * connection was handed over to the kernel or via {@link ChunkedNioFile} which is encrypted by the {@link SslHandler}.
+ * The client always decrypts in user space. Requires the {@code tls} module when {@link #kernelTls} is set.
+ */
+@State(Scope.Benchmark)
+public class EpollKernelTlsFileBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean kernelTls;
+
+    @Param({ "65536", "1048576" })
+    public int fileSize;
+
+    private EpollEventLoopGroup group;
+    private SelfSignedCertificate ssc;
+    private File file;
+    private Channel serverChannel;
+    private Channel clientChannel;
+    private ByteBuf request;
+    private volatile CountDownLatch latch;
+    private volatile boolean servedByKernel;
+    private int remainingBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = File.createTempFile("netty-", ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(fileSize);
+        } finally {
+            raf.close();
+        }
+
+        ssc = new SelfSignedCertificate();
+        final SslContext serverContext = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey())
+                .sslProvider(SslProvider.OPENSSL)
+                .protocols("TLSv1.2")
+                .ciphers(Collections.singletonList("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"))
+                .build();
+        final SslContext clientContext = SslContextBuilder.forClient()
+                .sslProvider(SslProvider.OPENSSL)
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .protocols("TLSv1.2")
+                .build();
+
+        group = new EpollEventLoopGroup(2);
+        serverChannel = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        SslHandler sslHandler = serverContext.newHandler(ch.alloc());
+                        sslHandler.setKernelTlsOffload(kernelTls);
+                        ch.pipeline().addLast(sslHandler, new ChunkedWriteHandler(), new FileServerHandler());
+                    }
+                })
+                .bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().channel();
+
+        clientChannel = new Bootstrap().group(group)
+                .channel(EpollSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(clientContext.newHandler(ch.alloc()),
+                                new SimpleChannelInboundHandler<ByteBuf>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                                        remainingBytes -= msg.readableBytes();
+                                        if (remainingBytes == 0) {
+                                            latch.countDown();
+                                        }
+                                    }
+                                });
+                    }
+                })
+                .connect(serverChannel.localAddress()).sync().channel();
+        clientChannel.pipeline().get(SslHandler.class).handshakeFuture().sync();
+        request = Unpooled.unreleasableBuffer(Unpooled.directBuffer(1).writeByte(1));
+
+        // Warm up the connection and check that the mode under test is really used.
+        transferFile();
+        if (servedByKernel != kernelTls) {
+            throw new IllegalStateException("kernel TLS is not supported");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        clientChannel.close().sync();
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        ssc.delete();
+        file.delete();
+    }
+
+    @Benchmark
+    public int transferFile() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        this.latch = latch;
+        clientChannel.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                remainingBytes = fileSize;
+                clientChannel.writeAndFlush(request.duplicate());
+            }
+        });
+        latch.await();
+        return fileSize;
+    }
+
+    private final class FileServerHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            ((ByteBuf) msg).release();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            servedByKernel = ((EpollSocketChannel) ctx.channel()).isKernelTlsEnabled();
+            if (servedByKernel) {
+                ctx.writeAndFlush(new DefaultFileRegion(raf.getChannel(), 0, fileSize));
+            } else {
+                ctx.writeAndFlush(new ChunkedNioFile(raf.getChannel()));
+            }
+        }
+    }
+}
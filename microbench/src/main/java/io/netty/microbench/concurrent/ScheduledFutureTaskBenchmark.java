@@ -33,11 +33,13 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Benchmarks cancelling scheduled tasks when the tasks are stored in a binary heap ({@code timingWheelTickNanos} is
+ * {@code 0}) and when they are stored in a hierarchical timing wheel.
+ */
 @State(Scope.Benchmark)
 public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
 
-    static final EventLoop executor = new DefaultEventLoop();
-
     @State(Scope.Thread)
     public static class FuturesHolder {
 
@@ -48,11 +50,32 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
             }
         };
 
-        @Param({ "100", "1000", "10000", "100000" })
+        @Param({ "100", "1000", "10000", "100000", "1000000" })
         int num;
 
+        @Param({ "0", "1000000" })
+        long timingWheelTickNanos;
+
         final List<ScheduledFuture<Void>> futures = new ArrayList<ScheduledFuture<Void>>();
 
+        EventLoop executor;
+
+        @Setup(Level.Trial)
+        public void start() {
+            final long tickNanos = timingWheelTickNanos;
+            executor = new DefaultEventLoop() {
+                @Override
+                protected long timingWheelTickNanos() {
+                    return tickNanos;
+                }
+            };
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            executor.shutdownGracefully().syncUninterruptibly();
+        }
+
         @Setup(Level.Invocation)
         public void reset() {
             futures.clear();
@@ -67,14 +90,9 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
         }
     }
 
-    @TearDown(Level.Trial)
-    public void stop() throws Exception {
-        executor.shutdownGracefully().syncUninterruptibly();
-    }
-
     @Benchmark
     public Future<?> cancelInOrder(final FuturesHolder futuresHolder) {
-        return executor.submit(new Runnable() {
+        return futuresHolder.executor.submit(new Runnable() {
             @Override
             public void run() {
                 for (int i = 0; i < futuresHolder.num; i++) {
@@ -86,7 +104,7 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
 
     @Benchmark
     public Future<?> cancelInReverseOrder(final FuturesHolder futuresHolder) {
-        return executor.submit(new Runnable() {
+        return futuresHolder.executor.submit(new Runnable() {
             @Override
             public void run() {
                 for (int i = futuresHolder.num - 1; i >= 0; i--) {
@@ -15,11 +15,20 @@
  */
 package io.netty.microbench.headers;
 
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.Headers;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeadersFactory;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http2.DefaultHttp2Headers;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -31,6 +40,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
@@ -74,6 +84,11 @@ public class HeadersBenchmark extends AbstractMicrobenchmark {
     DefaultHttp2Headers emptyHttp2HeadersNoValidate;
     SlowHeaders slowHttp2Headers;
 
+    byte[] httpRequest;
+    AsciiString[] httpFewNames;
+    EmbeddedChannel defaultHeadersChannel;
+    EmbeddedChannel lazyHeadersChannel;
+
     @Setup(Level.Trial)
     public void setup() {
         Map<String, String> headers = ExampleHeaders.EXAMPLES.get(exampleHeader);
@@ -100,6 +115,31 @@ public class HeadersBenchmark extends AbstractMicrobenchmark {
         emptyHttp2Headers = new DefaultHttp2Headers(true);
         emptyHttpHeadersNoValidate = new DefaultHttpHeaders(false);
         emptyHttp2HeadersNoValidate = new DefaultHttp2Headers(false);
+
+        StringBuilder request = new StringBuilder("GET /some/path HTTP/1.1\r\n");
+        for (int i = 0; i < httpNames.length; i++) {
+            // The request must not have any content.
+            if (!HttpHeaderNames.TRANSFER_ENCODING.contentEqualsIgnoreCase(httpNames[i]) &&
+                !HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(httpNames[i])) {
+                request.append(httpNames[i]).append(": ").append(httpValues[i]).append("\r\n");
+            }
+        }
+        httpRequest = request.append("\r\n").toString().getBytes(CharsetUtil.US_ASCII);
+        // Most handlers only look at a few headers, some of which are not present.
+        httpFewNames = new AsciiString[] {
+                httpNames[0], httpNames[httpNames.length / 2], httpNames[httpNames.length - 1],
+                AsciiString.cached("x-not-present")
+        };
+        defaultHeadersChannel = new EmbeddedChannel(
+                new HttpRequestDecoder(4096, 8192, 8192, false, 128, false, HttpHeadersFactory.DEFAULT));
+        lazyHeadersChannel = new EmbeddedChannel(
+                new HttpRequestDecoder(4096, 8192, 8192, false, 128, false, HttpHeadersFactory.LAZY));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        defaultHeadersChannel.finishAndReleaseAll();
+        lazyHeadersChannel.finishAndReleaseAll();
     }
 
     @Benchmark
@@ -137,6 +177,29 @@ public class HeadersBenchmark extends AbstractMicrobenchmark {
         }
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void httpDecodeAndGetFewDefault(Blackhole bh) {
+        decodeAndGetFew(defaultHeadersChannel, bh);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void httpDecodeAndGetFewLazy(Blackhole bh) {
+        decodeAndGetFew(lazyHeadersChannel, bh);
+    }
+
+    private void decodeAndGetFew(EmbeddedChannel channel, Blackhole bh) {
+        channel.writeInbound(Unpooled.wrappedBuffer(httpRequest));
+        HttpRequest request = channel.readInbound();
+        HttpHeaders headers = request.headers();
+        for (AsciiString name : httpFewNames) {
+            bh.consume(headers.get(name));
+        }
+        LastHttpContent content = channel.readInbound();
+        content.release();
+    }
+
     @Benchmark
     @BenchmarkMode(Mode.AverageTime)
     public void http2Remove(Blackhole bh) {
@@ -35,6 +35,7 @@ import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpRequestEncoder;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.PreEncodedHttpHeaders;
 import io.netty.microbench.channel.EmbeddedChannelWriteReleaseHandlerContext;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -61,6 +62,9 @@ public class HttpObjectEncoderBenchmark extends AbstractMicrobenchmark {
     private HttpRequest contentLengthRequest;
     private HttpRequest chunkedRequest;
     private ByteBuf content;
+    private ByteBuf testContent;
+    private HttpHeaders staticHeaders;
+    private PreEncodedHttpHeaders preEncodedHeaders;
     private ChannelHandlerContext context;
 
     @Param({ "true", "false" })
@@ -74,7 +78,7 @@ public class HttpObjectEncoderBenchmark extends AbstractMicrobenchmark {
         byte[] bytes = new byte[256];
         content = Unpooled.buffer(bytes.length);
         content.writeBytes(bytes);
-        ByteBuf testContent = Unpooled.unreleasableBuffer(content.asReadOnly());
+        testContent = Unpooled.unreleasableBuffer(content.asReadOnly());
         HttpHeaders headersWithChunked = new DefaultHttpHeaders(false);
         headersWithChunked.add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
         HttpHeaders headersWithContentLength = new DefaultHttpHeaders(false);
@@ -87,6 +91,17 @@ public class HttpObjectEncoderBenchmark extends AbstractMicrobenchmark {
         chunkedRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index", headersWithChunked);
         lastContent = new DefaultLastHttpContent(testContent, false);
 
+        // The headers which are the same for every request, the Content-Length is added per request.
+        staticHeaders = new DefaultHttpHeaders(false);
+        staticHeaders.add(HttpHeaderNames.HOST, "localhost:8080");
+        staticHeaders.add(HttpHeaderNames.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:68.0) Gecko/20100101");
+        staticHeaders.add(HttpHeaderNames.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        staticHeaders.add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+        staticHeaders.add(HttpHeaderNames.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        staticHeaders.add(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED);
+        staticHeaders.add(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        preEncodedHeaders = new PreEncodedHttpHeaders(staticHeaders);
+
         encoder = new HttpRequestEncoder();
         context = new EmbeddedChannelWriteReleaseHandlerContext(pooledAllocator ? PooledByteBufAllocator.DEFAULT :
                 UnpooledByteBufAllocator.DEFAULT, encoder) {
@@ -108,6 +123,23 @@ public class HttpObjectEncoderBenchmark extends AbstractMicrobenchmark {
         encoder.write(context, fullRequest, newPromise());
     }
 
+    @Benchmark
+    public void fullMessageManyHeaders() throws Exception {
+        HttpHeaders headers = new DefaultHttpHeaders(false);
+        headers.add(staticHeaders);
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, testContent.readableBytes());
+        encoder.write(context, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index",
+                testContent, headers, EmptyHttpHeaders.INSTANCE), newPromise());
+    }
+
+    @Benchmark
+    public void fullMessageManyHeadersPreEncoded() throws Exception {
+        HttpHeaders headers = preEncodedHeaders.newHeaders();
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, testContent.readableBytes());
+        encoder.write(context, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index",
+                testContent, headers, EmptyHttpHeaders.INSTANCE), newPromise());
+    }
+
     @Benchmark
     public void contentLength() throws Exception {
         encoder.write(context, contentLengthRequest, newPromise());
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostMultipartRequestDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostMultipartStreamDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpPostRequestDecoder;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Decodes a large {@code multipart/form-data} upload received in fixed size chunks.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HttpPostMultipartDecoderBenchmark extends AbstractMicrobenchmark {
+
+    private static final String BOUNDARY = "dLV9Wyq26L_-JQxk6ferf-RT153LhOO";
+
+    @Param({ "1048576", "16777216" })
+    public int fileSize;
+
+    @Param({ "8192" })
+    public int chunkSize;
+
+    @Param({ "false", "true" })
+    public boolean useDisk;
+
+    private ByteBuf body;
+    private HttpRequest request;
+    private HttpDataFactory factory;
+
+    @Setup
+    public void setup() {
+        byte[] file = new byte[fileSize];
+        new Random(42).nextBytes(file);
+        byte[] head = ("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"description\"\r\n" +
+                "\r\n" +
+                "A large upload\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"upload.bin\"\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "\r\n").getBytes(CharsetUtil.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(CharsetUtil.US_ASCII);
+        body = PooledByteBufAllocator.DEFAULT.directBuffer(head.length + file.length + tail.length);
+        body.writeBytes(head).writeBytes(file).writeBytes(tail);
+
+        request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+        factory = new DefaultHttpDataFactory(useDisk);
+    }
+
+    @TearDown
+    public void tearDown() {
+        body.release();
+        factory.cleanAllHttpData();
+    }
+
+    @Benchmark
+    public int multipartRequestDecoder() {
+        return decode(new HttpPostMultipartRequestDecoder(factory, request));
+    }
+
+    @Benchmark
+    public int multipartStreamDecoder() {
+        return decode(new HttpPostMultipartStreamDecoder(factory, request));
+    }
+
+    private int decode(InterfaceHttpPostRequestDecoder decoder) {
+        try {
+            int length = body.readableBytes();
+            for (int offset = 0; offset < length; offset += chunkSize) {
+                int size = Math.min(chunkSize, length - offset);
+                ByteBuf chunk = body.retainedSlice(offset, size);
+                HttpContent content = offset + size == length ? new DefaultLastHttpContent(chunk)
+                        : new DefaultHttpContent(chunk);
+                decoder.offer(content);
+                content.release();
+            }
+            return decoder.getBodyHttpDatas().size();
+        } finally {
+            decoder.destroy();
+        }
+    }
+}
@@ -41,6 +41,9 @@ public class HttpRequestDecoderBenchmark extends AbstractMicrobenchmark {
     @Param({ "2", "4", "8", "16", "32" })
     public int step;
 
+    @Param({ "false", "true" })
+    public boolean swarParsing;
+
     private static byte[] createContent(String... lineDelimiters) {
         String lineDelimiter;
         String lineDelimiter2;
@@ -86,8 +89,19 @@ public class HttpRequestDecoderBenchmark extends AbstractMicrobenchmark {
         testDecodeWholeRequestInMultipleSteps(CONTENT_MIXED_DELIMITERS, step);
     }
 
-    private static void testDecodeWholeRequestInMultipleSteps(byte[] content, int fragmentSize) {
-        final EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder());
+    @Benchmark
+    public void testDecodeWholeRequestInOneStepMixedDelimiters() {
+        final EmbeddedChannel channel = new EmbeddedChannel(newDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(CONTENT_MIXED_DELIMITERS).asReadOnly());
+        channel.releaseInbound();
+    }
+
+    private HttpRequestDecoder newDecoder() {
+        return new HttpRequestDecoder(4096, 8192, 8192, true, 128, swarParsing);
+    }
+
+    private void testDecodeWholeRequestInMultipleSteps(byte[] content, int fragmentSize) {
+        final EmbeddedChannel channel = new EmbeddedChannel(newDecoder());
 
         final int headerLength = content.length - CONTENT_LENGTH;
 
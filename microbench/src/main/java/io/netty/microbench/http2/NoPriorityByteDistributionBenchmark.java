@@ -16,6 +16,7 @@ package io.netty.microbench.http2;
 
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.DeficitRoundRobinStreamByteDistributor;
 import io.netty.handler.codec.http2.DefaultHttp2Connection;
 import io.netty.handler.codec.http2.DefaultHttp2RemoteFlowController;
 import io.netty.handler.codec.http2.Http2Connection;
@@ -43,17 +44,18 @@ import org.openjdk.jmh.annotations.Threads;
 
 /**
  * Benchmark to compare stream byte distribution algorithms when priorities are identical for
- * all streams.
+ * all streams, or when only the weights differ between streams.
  */
 @Threads(1)
 @State(Scope.Benchmark)
 public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark {
     public enum Algorithm {
         WFQ,
-        UNIFORM
+        UNIFORM,
+        DRR
     }
 
-    @Param({ "100", "10000" })
+    @Param({ "100", "1000", "10000" })
     private int numStreams;
 
     @Param({ "1024", "65536", "1048576" })
@@ -62,6 +64,13 @@ public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark
     @Param
     private Algorithm algorithm;
 
+    /**
+     * If {@code true} the streams are given weights spread over the whole range, otherwise all streams keep the
+     * default weight. Dependencies are never used.
+     */
+    @Param({ "false", "true" })
+    private boolean mixedWeights;
+
     private Http2Connection connection;
     private Http2Connection.PropertyKey dataRefresherKey;
     private Http2RemoteFlowController controller;
@@ -128,6 +137,9 @@ public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark
             case UNIFORM:
                 distributor = new UniformStreamByteDistributor(connection);
                 break;
+            case DRR:
+                distributor = new DeficitRoundRobinStreamByteDistributor(connection);
+                break;
         }
         controller = new DefaultHttp2RemoteFlowController(connection, new ByteCounter(distributor));
         connection.remote().flowController(controller);
@@ -150,6 +162,9 @@ public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark
             Http2Stream stream = connection.local().createStream(toStreamId(i), false);
             addData(stream, Integer.MAX_VALUE);
             stream.setProperty(dataRefresherKey, new DataRefresher(stream));
+            if (mixedWeights) {
+                controller.updateDependencyTree(stream.id(), 0, toWeight(i), false);
+            }
         }
     }
 
@@ -222,6 +237,11 @@ public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark
         return 2 * i + 1;
     }
 
+    private static short toWeight(int i) {
+        // Spread the weights over [1, 256] without any relation to the order in which the streams were created.
+        return (short) ((i * 97) % 256 + 1);
+    }
+
     private final class DataRefresher {
         private final Http2Stream stream;
         private int data;
@@ -0,0 +1,631 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.NettyRuntime;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.util.Collections.singletonList;
+
+/**
+ * Abstract cache which holds at most a fixed number of hostnames.
+ * <p>
+ * Unlike {@link Cache} no task is scheduled per hostname. Expired entries are removed when they are read and by
+ * a single periodic sweep, which runs on the {@link EventLoop} that was last used to cache something while the
+ * cache is not empty. The sweep only holds the lock for a small batch of hostnames at a time.
+ * <p>
+ * Lookups do not take the lock. They are recorded in striped, lossy buffers which are drained in batches by the
+ * thread that fills a buffer if the lock is free, and before anything is cached. A lookup which finds its buffer
+ * full or contended is dropped, which only makes the eviction policy a little less accurate.
+ * <p>
+ * When the cache is full the hostname to evict is chosen using W-TinyLFU: new hostnames enter a small LRU window,
+ * and when they leave the window they only make it into the main segmented LRU if they were requested more often
+ * than the hostname that would have to be evicted for them. The request frequencies are approximated by a
+ * count-min sketch which is aged periodically.
+ *
+ * @param <E>
+ */
+abstract class BoundedCache<E> {
+    static final int DEFAULT_SWEEP_INTERVAL_SECS = 60;
+
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int MAX_READ_BUFFERS = 16;
+    private static final int SWEEP_BATCH_SIZE = 64;
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final int maxSize;
+    private final int maxWindowSize;
+    private final int maxProtectedSize;
+    private final long sweepIntervalNanos;
+    // Only modified while holding the lock, but read without it.
+    private final ConcurrentMap<String, Node<E>> nodes = PlatformDependent.newConcurrentHashMap();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReadBuffer[] readBuffers;
+    private final int readBufferMask;
+    // The segments, the sketch, the sizes and the sweep are guarded by the lock.
+    // Each segment is a circular list, the node after the head is the least recently used one.
+    private final Node<E> window = new Node<E>();
+    private final Node<E> probation = new Node<E>();
+    private final Node<E> protectedSegment = new Node<E>();
+    private final FrequencySketch sketch;
+    private int windowSize;
+    private int protectedSize;
+    private ScheduledFuture<?> sweepFuture;
+
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+    private final LongCounter evictions = PlatformDependent.newLongCounter();
+    private final LongCounter expirations = PlatformDependent.newLongCounter();
+
+    private final Runnable sweepTask = new Runnable() {
+        @Override
+        public void run() {
+            sweep();
+        }
+    };
+
+    BoundedCache(int maxSize) {
+        this(maxSize, DEFAULT_SWEEP_INTERVAL_SECS);
+    }
+
+    BoundedCache(int maxSize, int sweepIntervalSecs) {
+        this.maxSize = checkPositive(maxSize, "maxSize");
+        sweepIntervalNanos = TimeUnit.SECONDS.toNanos(checkPositive(sweepIntervalSecs, "sweepIntervalSecs"));
+        // Use 1% of the capacity for the window and 80% of the rest for the protected segment.
+        maxWindowSize = Math.max(1, maxSize / 100);
+        maxProtectedSize = (int) ((maxSize - maxWindowSize) * 0.8);
+        sketch = new FrequencySketch(maxSize);
+        readBuffers = new ReadBuffer[Math.min(MAX_READ_BUFFERS,
+                MathUtil.findNextPositivePowerOfTwo(NettyRuntime.availableProcessors()))];
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+        readBufferMask = readBuffers.length - 1;
+    }
+
+    /**
+     * Remove everything from the cache.
+     */
+    final void clear() {
+        lock.lock();
+        try {
+            for (Node<E> node : nodes.values()) {
+                node.unlink();
+            }
+            nodes.clear();
+            windowSize = 0;
+            protectedSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clear all entries (if anything exists) for the given hostname and return {@code true} if anything was removed.
+     */
+    final boolean clear(String hostname) {
+        long now = nanoTime();
+        lock.lock();
+        try {
+            Node<E> node = nodes.get(hostname);
+            if (node == null) {
+                return false;
+            }
+            remove(node);
+            return !node.isExpired(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns all caches entries for the given hostname, or {@code null} if nothing is cached.
+     */
+    final List<? extends E> get(String hostname) {
+        long now = nanoTime();
+        Node<E> node = nodes.get(hostname);
+        if (node == null) {
+            misses.increment();
+            recordRead(hostname);
+            return null;
+        }
+        if (node.isExpired(now)) {
+            misses.increment();
+            recordRead(hostname);
+            expire(node);
+            return null;
+        }
+        hits.increment();
+        recordRead(node);
+        return node.entries;
+    }
+
+    /**
+     * Cache a value for the given hostname that will expire once the TTL is reached.
+     */
+    final void cache(String hostname, E value, int ttl, EventLoop loop) {
+        long now = nanoTime();
+        long expirationNanos = now + TimeUnit.SECONDS.toNanos(ttl);
+        lock.lock();
+        try {
+            // Apply the lookups first, so they are taken into account by the eviction.
+            drainReadBuffers();
+            Node<E> node = nodes.get(hostname);
+            if (node != null && !node.isExpired(now)) {
+                node.entries = add(hostname, node.entries, value);
+                // Like Cache we keep the earliest expiration so all entries for a hostname expire together.
+                if (expirationNanos - node.expirationNanos < 0) {
+                    node.expirationNanos = expirationNanos;
+                }
+            } else {
+                if (node != null) {
+                    remove(node);
+                    expirations.increment();
+                }
+                node = new Node<E>(hostname, singletonList(value), expirationNanos);
+                nodes.put(hostname, node);
+                node.linkLast(window, WINDOW);
+                windowSize++;
+                evictIfNeeded();
+            }
+            scheduleSweepIfNeeded(loop);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of hostames for which we have cached something. This may include expired hostnames
+     * which were not removed yet.
+     */
+    final int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the maximum number of hostnames which are cached.
+     */
+    final int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of lookups which returned cached entries.
+     */
+    final long hits() {
+        return hits.value();
+    }
+
+    /**
+     * Returns the number of lookups which did not find any cached entries.
+     */
+    final long misses() {
+        return misses.value();
+    }
+
+    /**
+     * Returns the number of hostnames which were evicted because the cache was full.
+     */
+    final long evictions() {
+        return evictions.value();
+    }
+
+    /**
+     * Returns the number of hostnames which were removed because their TTL was reached.
+     */
+    final long expirations() {
+        return expirations.value();
+    }
+
+    /**
+     * Returns {@code true} if this entry should replace all other entries that are already cached for the hostname.
+     */
+    protected abstract boolean shouldReplaceAll(E entry);
+
+    /**
+     * Sort the {@link List} for a {@code hostname} before caching these.
+     */
+    protected void sortEntries(
+            @SuppressWarnings("unused") String hostname, @SuppressWarnings("unused") List<E> entries) {
+        // NOOP.
+    }
+
+    /**
+     * Returns {@code true} if both entries are equal.
+     */
+    protected abstract boolean equals(E entry, E otherEntry);
+
+    /**
+     * Returns the current time in nanoseconds, overridden for testing.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Remove all expired hostnames. The lock is released after each batch, so lookups and concurrent caching are
+     * never stalled for the whole sweep.
+     */
+    final void sweep() {
+        long now = nanoTime();
+        // The iterator is weakly consistent, so it does not need to be used while holding the lock.
+        Iterator<Node<E>> i = nodes.values().iterator();
+        do {
+            lock.lock();
+            try {
+                for (int n = 0; n < SWEEP_BATCH_SIZE && i.hasNext(); n++) {
+                    Node<E> node = i.next();
+                    if (node.isExpired(now) && nodes.get(node.hostname) == node) {
+                        remove(node);
+                        expirations.increment();
+                    }
+                }
+                if (!i.hasNext()) {
+                    drainReadBuffers();
+                    if (nodes.isEmpty() && sweepFuture != null) {
+                        // Do not keep this cache reachable from the EventLoop while there is nothing to sweep.
+                        sweepFuture.cancel(false);
+                        sweepFuture = null;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } while (i.hasNext());
+    }
+
+    private void expire(Node<E> node) {
+        lock.lock();
+        try {
+            // Another thread may have removed or replaced it in the meantime.
+            if (nodes.get(node.hostname) == node) {
+                remove(node);
+                expirations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a lookup of the given {@link Node} or, if nothing was cached, of the given hostname.
+     */
+    private void recordRead(Object read) {
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & readBufferMask];
+        if (buffer.offer(read) && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            long readCount = buffer.readCount;
+            long writeCount = buffer.writeCount.get();
+            for (; readCount != writeCount; readCount++) {
+                int index = (int) readCount & READ_BUFFER_MASK;
+                Object read = buffer.reads.get(index);
+                if (read == null) {
+                    // Claimed but not stored yet, it will be drained the next time.
+                    break;
+                }
+                buffer.reads.lazySet(index, null);
+                onRead(read);
+            }
+            buffer.readCount = readCount;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onRead(Object read) {
+        if (read instanceof Node) {
+            Node<E> node = (Node<E>) read;
+            sketch.increment(node.hostname);
+            // Skip nodes which were removed since they were read.
+            if (node.prev != null) {
+                onAccess(node);
+            }
+        } else {
+            sketch.increment((String) read);
+        }
+    }
+
+    private void scheduleSweepIfNeeded(EventLoop loop) {
+        if (sweepFuture != null && !sweepFuture.isDone()) {
+            return;
+        }
+        try {
+            sweepFuture = loop.scheduleAtFixedRate(
+                    sweepTask, sweepIntervalNanos, sweepIntervalNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ignore) {
+            // The EventLoop is shutting down, expired entries will still be removed once they are read.
+            sweepFuture = null;
+        }
+    }
+
+    private List<E> add(String hostname, List<E> entries, E e) {
+        if (shouldReplaceAll(e) || entries.isEmpty() || shouldReplaceAll(entries.get(0))) {
+            return singletonList(e);
+        }
+        // Create a new List for COW semantics as the old one may have been returned by get(...).
+        List<E> newEntries = new ArrayList<E>(entries.size() + 1);
+        boolean replaced = false;
+        for (E entry : entries) {
+            // Replace the old entry with the same address as the new one may have more up-to-date data.
+            if (!replaced && equals(e, entry)) {
+                newEntries.add(e);
+                replaced = true;
+            } else {
+                newEntries.add(entry);
+            }
+        }
+        if (!replaced) {
+            newEntries.add(e);
+        }
+        sortEntries(hostname, newEntries);
+        return Collections.unmodifiableList(newEntries);
+    }
+
+    private void onAccess(Node<E> node) {
+        switch (node.segment) {
+            case WINDOW:
+                node.moveToLast(window);
+                break;
+            case PROBATION:
+                // A hit in the probation segment promotes the node, which may demote another one.
+                node.unlink();
+                node.linkLast(protectedSegment, PROTECTED);
+                protectedSize++;
+                if (protectedSize > maxProtectedSize) {
+                    Node<E> demoted = protectedSegment.next;
+                    demoted.unlink();
+                    demoted.linkLast(probation, PROBATION);
+                    protectedSize--;
+                }
+                break;
+            case PROTECTED:
+                node.moveToLast(protectedSegment);
+                break;
+            default:
+                throw new Error();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Node<E> candidate = null;
+        if (windowSize > maxWindowSize) {
+            // The least recently used node of the window is a candidate for the main segments.
+            candidate = window.next;
+            candidate.unlink();
+            candidate.linkLast(probation, PROBATION);
+            windowSize--;
+        }
+        if (nodes.size() <= maxSize) {
+            return;
+        }
+
+        Node<E> victim = probation.next;
+        if (victim == candidate) {
+            victim = victim.next;
+        }
+        if (victim == probation) {
+            victim = protectedSegment.next != protectedSegment ? protectedSegment.next : null;
+        }
+        if (candidate == null) {
+            // Nothing left the window, so just evict from the main segments.
+            evict(victim != null ? victim : window.next);
+        } else if (victim == null || sketch.frequency(candidate.hostname) > sketch.frequency(victim.hostname)) {
+            evict(victim != null ? victim : candidate);
+        } else {
+            // The candidate was not requested as often as the victim, so it is not admitted.
+            evict(candidate);
+        }
+    }
+
+    private void evict(Node<E> node) {
+        remove(node);
+        evictions.increment();
+    }
+
+    private void remove(Node<E> node) {
+        nodes.remove(node.hostname);
+        unlink(node);
+    }
+
+    private void unlink(Node<E> node) {
+        if (node.segment == WINDOW) {
+            windowSize--;
+        } else if (node.segment == PROTECTED) {
+            protectedSize--;
+        }
+        node.unlink();
+    }
+
+    private static final class Node<E> {
+        final String hostname;
+        // Written while holding the lock, but read without it.
+        volatile List<E> entries;
+        volatile long expirationNanos;
+        byte segment;
+        Node<E> prev;
+        Node<E> next;
+
+        // Constructor for the head of a segment.
+        Node() {
+            hostname = null;
+            prev = next = this;
+        }
+
+        Node(String hostname, List<E> entries, long expirationNanos) {
+            this.hostname = hostname;
+            this.entries = entries;
+            this.expirationNanos = expirationNanos;
+        }
+
+        boolean isExpired(long now) {
+            return now - expirationNanos >= 0;
+        }
+
+        void linkLast(Node<E> head, byte segment) {
+            this.segment = segment;
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void moveToLast(Node<E> head) {
+            unlink();
+            linkLast(head, segment);
+        }
+
+        void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = next = null;
+            }
+        }
+    }
+
+    /**
+     * A ring buffer of lookups which are written by any thread and drained while holding the lock.
+     */
+    private static final class ReadBuffer {
+        final AtomicReferenceArray<Object> reads = new AtomicReferenceArray<Object>(READ_BUFFER_SIZE);
+        final AtomicLong writeCount = new AtomicLong();
+        // Only written while holding the lock.
+        volatile long readCount;
+
+        /**
+         * Adds the lookup unless the buffer is full or another thread is adding one at the same time, in which case
+         * it is dropped.
+         *
+         * @return {@code true} if the buffer is full and should be drained.
+         */
+        boolean offer(Object read) {
+            long writeCount = this.writeCount.get();
+            long size = writeCount - readCount;
+            if (size >= READ_BUFFER_SIZE) {
+                return true;
+            }
+            if (this.writeCount.compareAndSet(writeCount, writeCount + 1)) {
+                reads.lazySet((int) writeCount & READ_BUFFER_MASK, read);
+                return size + 1 >= READ_BUFFER_SIZE;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A count-min sketch with one byte per counter, each saturating at 15, which are halved once enough
+     * increments were recorded, so the frequencies reflect recent history. The hash code of a hostname is spread
+     * first and then re-mixed with a different seed for each row, so hostnames which collide in one row are unlikely
+     * to collide in the others.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int length = Math.max(16, nextPowerOfTwo(maxSize));
+            table = new byte[length];
+            mask = length - 1;
+            sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maxSize);
+        }
+
+        int frequency(String hostname) {
+            int hash = spread(hostname.hashCode());
+            int frequency = MAX_COUNT;
+            for (long seed : SEEDS) {
+                frequency = Math.min(frequency, table[index(hash, seed)]);
+            }
+            return frequency;
+        }
+
+        void increment(String hostname) {
+            int hash = spread(hostname.hashCode());
+            boolean added = false;
+            for (long seed : SEEDS) {
+                int index = index(hash, seed);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>>= 1;
+            }
+            additions >>>= 1;
+        }
+
+        private int index(int hash, long seed) {
+            long h = (hash + seed) * seed;
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        /**
+         * Applies the finalizer of MurmurHash3, as {@link String#hashCode()} is weak in the lower bits.
+         */
+        static int spread(int hash) {
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            hash *= 0xc2b2ae35;
+            return hash ^ hash >>> 16;
+        }
+
+        private static int nextPowerOfTwo(int value) {
+            return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.resolver.dns.DefaultDnsCache.DefaultDnsCacheEntry;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+
+import static io.netty.resolver.dns.DefaultDnsCache.appendDot;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A {@link DnsCache} which holds the entries of at most {@link #maxSize()} hostnames.
+ * If any additional {@link DnsRecord} is used, no caching takes place.
+ * <p>
+ * Unlike {@link DefaultDnsCache} no task is scheduled for every cached hostname. Expired entries are removed when
+ * they are looked up and by a periodic sweep. When the cache is full a new hostname is only admitted if it was
+ * looked up more often than the hostname that would be evicted for it, so a burst of one-off lookups can not flush
+ * the popular hostnames from the cache.
+ */
+public final class BoundedDnsCache implements DnsCache {
+
+    private final BoundedCache<DefaultDnsCacheEntry> resolveCache;
+    private final int minTtl;
+    private final int maxTtl;
+    private final int negativeTtl;
+
+    /**
+     * Create a cache that holds at most {@code maxSize} hostnames, respects the TTL returned by the DNS server
+     * and doesn't cache negative responses.
+     *
+     * @param maxSize the maximum number of hostnames to cache
+     */
+    public BoundedDnsCache(int maxSize) {
+        this(maxSize, 0, Cache.MAX_SUPPORTED_TTL_SECS, 0);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum number of hostnames to cache
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     */
+    public BoundedDnsCache(int maxSize, int minTtl, int maxTtl, int negativeTtl) {
+        this(maxSize, minTtl, maxTtl, negativeTtl, BoundedCache.DEFAULT_SWEEP_INTERVAL_SECS);
+    }
+
+    BoundedDnsCache(int maxSize, int minTtl, int maxTtl, int negativeTtl, int sweepIntervalSecs) {
+        this.minTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
+        this.maxTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
+        if (minTtl > maxTtl) {
+            throw new IllegalArgumentException(
+                    "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
+        }
+        this.negativeTtl = checkPositiveOrZero(negativeTtl, "negativeTtl");
+        resolveCache = new BoundedCache<DefaultDnsCacheEntry>(maxSize, sweepIntervalSecs) {
+            @Override
+            protected boolean shouldReplaceAll(DefaultDnsCacheEntry entry) {
+                return entry.cause() != null;
+            }
+
+            @Override
+            protected boolean equals(DefaultDnsCacheEntry entry, DefaultDnsCacheEntry otherEntry) {
+                if (entry.address() != null) {
+                    return entry.address().equals(otherEntry.address());
+                }
+                if (otherEntry.address() != null) {
+                    return false;
+                }
+                return entry.cause().equals(otherEntry.cause());
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of hostnames which are cached.
+     */
+    public int maxSize() {
+        return resolveCache.maxSize();
+    }
+
+    /**
+     * Returns the number of hostnames which are currently cached. This may include expired hostnames which were not
+     * removed yet.
+     */
+    public int size() {
+        return resolveCache.size();
+    }
+
+    /**
+     * Returns the minimum TTL of the cached DNS resource records (in seconds).
+     *
+     * @see #maxTtl()
+     */
+    public int minTtl() {
+        return minTtl;
+    }
+
+    /**
+     * Returns the maximum TTL of the cached DNS resource records (in seconds).
+     *
+     * @see #minTtl()
+     */
+    public int maxTtl() {
+        return maxTtl;
+    }
+
+    /**
+     * Returns the TTL of the cache for the failed DNS queries (in seconds). The default value is {@code 0}, which
+     * disables the cache for negative results.
+     */
+    public int negativeTtl() {
+        return negativeTtl;
+    }
+
+    /**
+     * Returns the number of lookups which returned cached entries.
+     */
+    public long hitCount() {
+        return resolveCache.hits();
+    }
+
+    /**
+     * Returns the number of lookups which did not find any cached entries.
+     */
+    public long missCount() {
+        return resolveCache.misses();
+    }
+
+    /**
+     * Returns the number of hostnames which were evicted or not admitted because the cache was full.
+     */
+    public long evictionCount() {
+        return resolveCache.evictions();
+    }
+
+    /**
+     * Returns the number of hostnames which were removed because their TTL was reached.
+     */
+    public long expirationCount() {
+        return resolveCache.expirations();
+    }
+
+    @Override
+    public void clear() {
+        resolveCache.clear();
+    }
+
+    @Override
+    public boolean clear(String hostname) {
+        checkNotNull(hostname, "hostname");
+        return resolveCache.clear(appendDot(hostname));
+    }
+
+    private static boolean emptyAdditionals(DnsRecord[] additionals) {
+        return additionals == null || additionals.length == 0;
+    }
+
+    @Override
+    public List<? extends DnsCacheEntry> get(String hostname, DnsRecord[] additionals) {
+        checkNotNull(hostname, "hostname");
+        if (!emptyAdditionals(additionals)) {
+            return Collections.<DnsCacheEntry>emptyList();
+        }
+
+        return resolveCache.get(appendDot(hostname));
+    }
+
+    @Override
+    public DnsCacheEntry cache(String hostname, DnsRecord[] additionals,
+                               InetAddress address, long originalTtl, EventLoop loop) {
+        checkNotNull(hostname, "hostname");
+        checkNotNull(address, "address");
+        checkNotNull(loop, "loop");
+        DefaultDnsCacheEntry e = new DefaultDnsCacheEntry(hostname, address);
+        if (maxTtl == 0 || !emptyAdditionals(additionals)) {
+            return e;
+        }
+        resolveCache.cache(appendDot(hostname), e, Math.max(minTtl, (int) Math.min(maxTtl, originalTtl)), loop);
+        return e;
+    }
+
+    @Override
+    public DnsCacheEntry cache(String hostname, DnsRecord[] additionals, Throwable cause, EventLoop loop) {
+        checkNotNull(hostname, "hostname");
+        checkNotNull(cause, "cause");
+        checkNotNull(loop, "loop");
+
+        DefaultDnsCacheEntry e = new DefaultDnsCacheEntry(hostname, cause);
+        if (negativeTtl == 0 || !emptyAdditionals(additionals)) {
+            return e;
+        }
+
+        resolveCache.cache(appendDot(hostname), e, negativeTtl, loop);
+        return e;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("BoundedDnsCache(maxSize=")
+                .append(resolveCache.maxSize()).append(", minTtl=")
+                .append(minTtl).append(", maxTtl=")
+                .append(maxTtl).append(", negativeTtl=")
+                .append(negativeTtl).append(", cached resolved hostname=")
+                .append(resolveCache.size()).append(')')
+                .toString();
+    }
+}
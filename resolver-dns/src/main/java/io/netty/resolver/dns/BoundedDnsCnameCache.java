@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.AsciiString;
+
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.*;
+
+/**
+ * A {@link DnsCnameCache} which holds the mappings of at most {@link #maxSize()} hostnames.
+ * See {@link BoundedDnsCache} for how entries are expired and evicted.
+ */
+public final class BoundedDnsCnameCache implements DnsCnameCache {
+    private final int minTtl;
+    private final int maxTtl;
+    private final BoundedCache<String> cache;
+
+    /**
+     * Create a cache that holds at most {@code maxSize} hostnames and respects the TTL returned by the DNS server.
+     *
+     * @param maxSize the maximum number of hostnames to cache
+     */
+    public BoundedDnsCnameCache(int maxSize) {
+        this(maxSize, 0, Cache.MAX_SUPPORTED_TTL_SECS);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum number of hostnames to cache
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     */
+    public BoundedDnsCnameCache(int maxSize, int minTtl, int maxTtl) {
+        this.minTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
+        this.maxTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositive(maxTtl, "maxTtl"));
+        if (minTtl > maxTtl) {
+            throw new IllegalArgumentException(
+                    "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
+        }
+        cache = new BoundedCache<String>(maxSize) {
+            @Override
+            protected boolean shouldReplaceAll(String entry) {
+                // Only one 1:1 mapping is supported as specified in the RFC.
+                return true;
+            }
+
+            @Override
+            protected boolean equals(String entry, String otherEntry) {
+                return AsciiString.contentEqualsIgnoreCase(entry, otherEntry);
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of hostnames which are cached.
+     */
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    /**
+     * Returns the number of hostnames which are currently cached. This may include expired hostnames which were not
+     * removed yet.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of lookups which returned a cached mapping.
+     */
+    public long hitCount() {
+        return cache.hits();
+    }
+
+    /**
+     * Returns the number of lookups which did not find a cached mapping.
+     */
+    public long missCount() {
+        return cache.misses();
+    }
+
+    /**
+     * Returns the number of hostnames which were evicted or not admitted because the cache was full.
+     */
+    public long evictionCount() {
+        return cache.evictions();
+    }
+
+    /**
+     * Returns the number of hostnames which were removed because their TTL was reached.
+     */
+    public long expirationCount() {
+        return cache.expirations();
+    }
+
+    @Override
+    public String get(String hostname) {
+        List<? extends String> cached = cache.get(checkNotNull(hostname, "hostname"));
+        if (cached == null || cached.isEmpty()) {
+            return null;
+        }
+        // We can never have more then one record.
+        return cached.get(0);
+    }
+
+    @Override
+    public void cache(String hostname, String cname, long originalTtl, EventLoop loop) {
+        checkNotNull(hostname, "hostname");
+        checkNotNull(cname, "cname");
+        checkNotNull(loop, "loop");
+        cache.cache(hostname, cname, Math.max(minTtl, (int) Math.min(maxTtl, originalTtl)), loop);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public boolean clear(String hostname) {
+        return cache.clear(checkNotNull(hostname, "hostname"));
+    }
+}
@@ -17,12 +17,16 @@ package io.netty.resolver.dns;
 
 import io.netty.channel.EventLoop;
 import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.net.InetAddress;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
@@ -30,9 +34,19 @@ import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 /**
  * Default implementation of {@link DnsCache}, backed by a {@link ConcurrentMap}.
  * If any additional {@link DnsRecord} is used, no caching takes place.
+ * <p>
+ * Optionally {@link DnsNameResolver} refreshes the resolved addresses of a hostname in the background when it is
+ * looked up shortly before the addresses expire (see {@link #prefetchRatio()}), and keeps serving the addresses for
+ * a while after they expired as long as they could not be refreshed
+ * (see <a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a> and {@link #maxStaleTtl()}).
  */
 public class DefaultDnsCache implements DnsCache {
 
+    /**
+     * The time to wait before trying again to refresh addresses after a refresh failed.
+     */
+    private static final long REFRESH_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     private final Cache<DefaultDnsCacheEntry> resolveCache = new Cache<DefaultDnsCacheEntry>() {
 
         @Override
@@ -55,6 +69,10 @@ public class DefaultDnsCache implements DnsCache {
     private final int minTtl;
     private final int maxTtl;
     private final int negativeTtl;
+    private final float prefetchRatio;
+    private final int maxStaleTtl;
+    private final LongCounter prefetches = PlatformDependent.newLongCounter();
+    private final LongCounter staleServes = PlatformDependent.newLongCounter();
 
     /**
      * Create a cache that respects the TTL returned by the DNS server
@@ -71,6 +89,20 @@ public class DefaultDnsCache implements DnsCache {
      * @param negativeTtl the TTL for failed queries
      */
     public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl) {
+        this(minTtl, maxTtl, negativeTtl, 0, 0);
+    }
+
+    /**
+     * Create a cache which allows addresses to be refreshed ahead of their expiration and to be served stale.
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     * @param prefetchRatio the fraction of the TTL of an address at the end of which a lookup triggers a refresh,
+     *                      or {@code 0} to disable refreshing addresses before they expire
+     * @param maxStaleTtl the time (in seconds) for which an expired address is still served while it is refreshed,
+     *                    or {@code 0} to disable serving stale addresses
+     */
+    public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl, float prefetchRatio, int maxStaleTtl) {
         this.minTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
         this.maxTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
         if (minTtl > maxTtl) {
@@ -78,6 +110,12 @@ public class DefaultDnsCache implements DnsCache {
                     "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
         }
         this.negativeTtl = checkPositiveOrZero(negativeTtl, "negativeTtl");
+        if (!(prefetchRatio >= 0 && prefetchRatio < 1)) {
+            throw new IllegalArgumentException(
+                    "prefetchRatio: " + prefetchRatio + " (expected: 0 <= prefetchRatio < 1)");
+        }
+        this.prefetchRatio = prefetchRatio;
+        this.maxStaleTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxStaleTtl, "maxStaleTtl"));
     }
 
     /**
@@ -106,6 +144,36 @@ public class DefaultDnsCache implements DnsCache {
         return negativeTtl;
     }
 
+    /**
+     * Returns the fraction of the TTL of an address at the end of which a lookup triggers a refresh of the address.
+     * The default value is {@code 0}, which disables refreshing addresses before they expire.
+     */
+    public float prefetchRatio() {
+        return prefetchRatio;
+    }
+
+    /**
+     * Returns the time (in seconds) for which an expired address is still served while it is refreshed.
+     * The default value is {@code 0}, which disables serving stale addresses.
+     */
+    public int maxStaleTtl() {
+        return maxStaleTtl;
+    }
+
+    /**
+     * Returns the number of times a refresh of cached addresses was started by a lookup.
+     */
+    public long prefetchCount() {
+        return prefetches.value();
+    }
+
+    /**
+     * Returns the number of lookups which returned expired addresses.
+     */
+    public long staleServeCount() {
+        return staleServes.value();
+    }
+
     @Override
     public void clear() {
         resolveCache.clear();
@@ -128,7 +196,61 @@ public class DefaultDnsCache implements DnsCache {
             return Collections.<DnsCacheEntry>emptyList();
         }
 
-        return resolveCache.get(appendDot(hostname));
+        List<? extends DefaultDnsCacheEntry> entries = resolveCache.get(appendDot(hostname));
+        if (maxStaleTtl > 0 && entries != null && !entries.isEmpty() && entries.get(0).cause() == null &&
+                isStale(entries, System.nanoTime())) {
+            staleServes.increment();
+        }
+        return entries;
+    }
+
+    /**
+     * Returns {@code true} if the given entries, as returned by {@link #get(String, DnsRecord[])}, should be
+     * refreshed now. In that case the caller must refresh them and call
+     * {@link #refreshComplete(List, boolean)} once done.
+     */
+    boolean startRefresh(List<? extends DnsCacheEntry> entries) {
+        if (prefetchRatio == 0 && maxStaleTtl == 0) {
+            return false;
+        }
+        DnsCacheEntry first = entries.get(0);
+        if (first.cause() != null || !(first instanceof DefaultDnsCacheEntry)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        @SuppressWarnings("unchecked")
+        List<? extends DefaultDnsCacheEntry> defaultEntries = (List<? extends DefaultDnsCacheEntry>) entries;
+        if (!needsRefresh(defaultEntries, now) || !((DefaultDnsCacheEntry) first).tryStartRefresh(now)) {
+            return false;
+        }
+        prefetches.increment();
+        return true;
+    }
+
+    /**
+     * Called once a refresh started by {@link #startRefresh(List)} completed.
+     */
+    void refreshComplete(List<? extends DnsCacheEntry> entries, boolean success) {
+        ((DefaultDnsCacheEntry) entries.get(0)).refreshComplete(success);
+    }
+
+    private static boolean needsRefresh(List<? extends DefaultDnsCacheEntry> entries, long now) {
+        // Like Cache we treat all entries of a hostname as expired once one of them expires.
+        for (int i = 0; i < entries.size(); i++) {
+            if (now - entries.get(i).refreshNanos >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStale(List<? extends DefaultDnsCacheEntry> entries, long now) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (now - entries.get(i).expirationNanos >= 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -137,11 +259,29 @@ public class DefaultDnsCache implements DnsCache {
         checkNotNull(hostname, "hostname");
         checkNotNull(address, "address");
         checkNotNull(loop, "loop");
-        DefaultDnsCacheEntry e = new DefaultDnsCacheEntry(hostname, address);
+        int ttl = Math.max(minTtl, (int) Math.min(maxTtl, originalTtl));
+        long now = System.nanoTime();
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+        DefaultDnsCacheEntry e = new DefaultDnsCacheEntry(hostname, address, now + ttlNanos,
+                now + ttlNanos - (long) (ttlNanos * prefetchRatio));
         if (maxTtl == 0 || !emptyAdditionals(additionals)) {
             return e;
         }
-        resolveCache.cache(appendDot(hostname), e, Math.max(minTtl, (int) Math.min(maxTtl, originalTtl)), loop);
+        String key = appendDot(hostname);
+        if (prefetchRatio == 0 && maxStaleTtl == 0) {
+            resolveCache.cache(key, e, ttl, loop);
+            return e;
+        }
+
+        List<? extends DefaultDnsCacheEntry> entries = resolveCache.get(key);
+        if (entries != null && !entries.isEmpty() && entries.get(0).cause() == null && needsRefresh(entries, now)) {
+            // These are the results of a refresh, replace the old addresses instead of merging them with the new
+            // ones as the old expiration would be kept otherwise.
+            resolveCache.clear(key);
+        }
+        // Keep the addresses for longer so they can be served stale, unless they should not be cached at all.
+        int cacheTtl = ttl == 0 ? 0 : (int) Math.min(Cache.MAX_SUPPORTED_TTL_SECS, (long) ttl + maxStaleTtl);
+        resolveCache.cache(key, e, cacheTtl, loop);
         return e;
     }
 
@@ -166,19 +306,35 @@ public class DefaultDnsCache implements DnsCache {
                 .append("DefaultDnsCache(minTtl=")
                 .append(minTtl).append(", maxTtl=")
                 .append(maxTtl).append(", negativeTtl=")
-                .append(negativeTtl).append(", cached resolved hostname=")
+                .append(negativeTtl).append(", prefetchRatio=")
+                .append(prefetchRatio).append(", maxStaleTtl=")
+                .append(maxStaleTtl).append(", cached resolved hostname=")
                 .append(resolveCache.size()).append(')')
                 .toString();
     }
 
-    private static final class DefaultDnsCacheEntry implements DnsCacheEntry {
+    static final class DefaultDnsCacheEntry implements DnsCacheEntry {
+        private static final AtomicIntegerFieldUpdater<DefaultDnsCacheEntry> REFRESHING_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(DefaultDnsCacheEntry.class, "refreshing");
+
         private final String hostname;
         private final InetAddress address;
         private final Throwable cause;
+        // Only used if prefetching or serving stale entries is enabled.
+        final long expirationNanos;
+        final long refreshNanos;
+        private volatile int refreshing;
+        private volatile long retryNanos;
 
         DefaultDnsCacheEntry(String hostname, InetAddress address) {
+            this(hostname, address, 0, 0);
+        }
+
+        DefaultDnsCacheEntry(String hostname, InetAddress address, long expirationNanos, long refreshNanos) {
             this.hostname = hostname;
             this.address = address;
+            this.expirationNanos = expirationNanos;
+            this.refreshNanos = refreshNanos;
             cause = null;
         }
 
@@ -186,6 +342,24 @@ public class DefaultDnsCache implements DnsCache {
             this.hostname = hostname;
             this.cause = cause;
             address = null;
+            expirationNanos = 0;
+            refreshNanos = 0;
+        }
+
+        boolean tryStartRefresh(long now) {
+            long retryNanos = this.retryNanos;
+            if (retryNanos != 0 && now - retryNanos < 0) {
+                // The last refresh failed, don't hammer the name servers.
+                return false;
+            }
+            return REFRESHING_UPDATER.compareAndSet(this, 0, 1);
+        }
+
+        void refreshComplete(boolean success) {
+            if (!success) {
+                retryNanos = System.nanoTime() + REFRESH_RETRY_NANOS;
+            }
+            refreshing = 0;
         }
 
         @Override
@@ -212,7 +386,7 @@ public class DefaultDnsCache implements DnsCache {
         }
     }
 
-    private static String appendDot(String hostname) {
+    static String appendDot(String hostname) {
         return StringUtil.endsWith(hostname, '.') ? hostname : hostname + '.';
     }
 }
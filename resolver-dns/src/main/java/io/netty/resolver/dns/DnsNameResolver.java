@@ -43,8 +43,6 @@ import io.netty.handler.codec.dns.DnsRawRecord;
 import io.netty.handler.codec.dns.DnsRecord;
 import io.netty.handler.codec.dns.DnsRecordType;
 import io.netty.handler.codec.dns.DnsResponse;
-import io.netty.handler.codec.dns.TcpDnsQueryEncoder;
-import io.netty.handler.codec.dns.TcpDnsResponseDecoder;
 import io.netty.resolver.HostsFileEntries;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.InetNameResolver;
@@ -71,12 +69,15 @@ import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import static io.netty.resolver.dns.DefaultDnsServerAddressStreamProvider.DNS_PORT;
 import static io.netty.resolver.dns.UnixResolverDnsServerAddressStreamProvider.parseEtcResolverFirstNdots;
@@ -209,7 +210,6 @@ public class DnsNameResolver extends InetNameResolver {
         }
     };
     private static final DatagramDnsQueryEncoder DATAGRAM_ENCODER = new DatagramDnsQueryEncoder();
-    private static final TcpDnsQueryEncoder TCP_ENCODER = new TcpDnsQueryEncoder();
 
     final Future<Channel> channelFuture;
     final Channel ch;
@@ -254,7 +254,8 @@ public class DnsNameResolver extends InetNameResolver {
     private final boolean decodeIdn;
     private final DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory;
     private final boolean completeOncePreferredResolved;
-    private final ChannelFactory<? extends SocketChannel> socketChannelFactory;
+    private final TcpDnsConnectionPool tcpConnectionPool;
+    private final Set<DnsRecordType> tcpFirstRecordTypes;
 
     /**
      * Creates a new DNS-based name resolver that communicates with the specified list of DNS servers.
@@ -380,6 +381,39 @@ public class DnsNameResolver extends InetNameResolver {
             int ndots,
             boolean decodeIdn,
             boolean completeOncePreferredResolved) {
+        this(eventLoop, channelFactory, socketChannelFactory, resolveCache, cnameCache, authoritativeDnsServerCache,
+             dnsQueryLifecycleObserverFactory, queryTimeoutMillis, resolvedAddressTypes, recursionDesired,
+             maxQueriesPerResolve, traceEnabled, maxPayloadSize, optResourceEnabled, hostsFileEntriesResolver,
+             dnsServerAddressStreamProvider, searchDomains, ndots, decodeIdn, completeOncePreferredResolved,
+             TcpDnsConnectionPool.DEFAULT_MAX_CONNECTIONS, TcpDnsConnectionPool.DEFAULT_MAX_QUERIES_PER_CONNECTION,
+             TcpDnsConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS, null);
+    }
+
+    DnsNameResolver(
+            EventLoop eventLoop,
+            ChannelFactory<? extends DatagramChannel> channelFactory,
+            ChannelFactory<? extends SocketChannel> socketChannelFactory,
+            final DnsCache resolveCache,
+            final DnsCnameCache cnameCache,
+            final AuthoritativeDnsServerCache authoritativeDnsServerCache,
+            DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory,
+            long queryTimeoutMillis,
+            ResolvedAddressTypes resolvedAddressTypes,
+            boolean recursionDesired,
+            int maxQueriesPerResolve,
+            boolean traceEnabled,
+            int maxPayloadSize,
+            boolean optResourceEnabled,
+            HostsFileEntriesResolver hostsFileEntriesResolver,
+            DnsServerAddressStreamProvider dnsServerAddressStreamProvider,
+            String[] searchDomains,
+            int ndots,
+            boolean decodeIdn,
+            boolean completeOncePreferredResolved,
+            int maxTcpConnectionsPerNameServer,
+            int maxQueriesPerTcpConnection,
+            long tcpIdleTimeoutMillis,
+            DnsRecordType[] tcpFirstRecordTypes) {
         super(eventLoop);
         this.queryTimeoutMillis = checkPositive(queryTimeoutMillis, "queryTimeoutMillis");
         this.resolvedAddressTypes = resolvedAddressTypes != null ? resolvedAddressTypes : DEFAULT_RESOLVE_ADDRESS_TYPES;
@@ -402,7 +436,18 @@ public class DnsNameResolver extends InetNameResolver {
         this.ndots = ndots >= 0 ? ndots : DEFAULT_NDOTS;
         this.decodeIdn = decodeIdn;
         this.completeOncePreferredResolved = completeOncePreferredResolved;
-        this.socketChannelFactory = socketChannelFactory;
+        if (socketChannelFactory != null) {
+            tcpConnectionPool = new TcpDnsConnectionPool(this, socketChannelFactory,
+                    checkPositive(maxTcpConnectionsPerNameServer, "maxTcpConnectionsPerNameServer"),
+                    checkPositive(maxQueriesPerTcpConnection, "maxQueriesPerTcpConnection"),
+                    checkPositive(tcpIdleTimeoutMillis, "tcpIdleTimeoutMillis"));
+            this.tcpFirstRecordTypes = tcpFirstRecordTypes != null && tcpFirstRecordTypes.length > 0 ?
+                    new HashSet<DnsRecordType>(Arrays.asList(tcpFirstRecordTypes)) :
+                    Collections.<DnsRecordType>emptySet();
+        } else {
+            tcpConnectionPool = null;
+            this.tcpFirstRecordTypes = Collections.emptySet();
+        }
         switch (this.resolvedAddressTypes) {
             case IPV4_ONLY:
                 supportsAAAARecords = false;
@@ -468,6 +513,9 @@ public class DnsNameResolver extends InetNameResolver {
                 resolveCache.clear();
                 cnameCache.clear();
                 authoritativeDnsServerCache.clear();
+                if (tcpConnectionPool != null) {
+                    tcpConnectionPool.close();
+                }
             }
         });
     }
@@ -904,6 +952,7 @@ public class DnsNameResolver extends InetNameResolver {
                     final DnsCacheEntry e = cachedEntries.get(i);
                     if (f.addressType().isInstance(e.address())) {
                         trySuccess(promise, e.address());
+                        refreshIfNeeded(hostname, additionals, cachedEntries, resolveCache);
                         return true;
                     }
                 }
@@ -984,7 +1033,10 @@ public class DnsNameResolver extends InetNameResolver {
             return;
         }
 
-        if (!doResolveAllCached(hostname, additionals, promise, resolveCache, resolvedInternetProtocolFamilies)) {
+        final List<? extends DnsCacheEntry> cachedEntries = resolveCache.get(hostname, additionals);
+        if (doResolveAllCached(cachedEntries, promise, resolvedInternetProtocolFamilies)) {
+            refreshIfNeeded(hostname, additionals, cachedEntries, resolveCache);
+        } else {
             doResolveAllUncached(hostname, additionals, promise, resolveCache, completeOncePreferredResolved);
         }
     }
@@ -994,7 +1046,12 @@ public class DnsNameResolver extends InetNameResolver {
                                       Promise<List<InetAddress>> promise,
                                       DnsCache resolveCache,
                                       InternetProtocolFamily[] resolvedInternetProtocolFamilies) {
-        final List<? extends DnsCacheEntry> cachedEntries = resolveCache.get(hostname, additionals);
+        return doResolveAllCached(resolveCache.get(hostname, additionals), promise, resolvedInternetProtocolFamilies);
+    }
+
+    private static boolean doResolveAllCached(List<? extends DnsCacheEntry> cachedEntries,
+                                              Promise<List<InetAddress>> promise,
+                                              InternetProtocolFamily[] resolvedInternetProtocolFamilies) {
         if (cachedEntries == null || cachedEntries.isEmpty()) {
             return false;
         }
@@ -1025,6 +1082,32 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
+    /**
+     * Refreshes the cached entries in the background if the {@link DefaultDnsCache} asks for it, which happens if
+     * they are about to expire or have expired already and are served stale.
+     */
+    private void refreshIfNeeded(String hostname, DnsRecord[] additionals,
+                                 final List<? extends DnsCacheEntry> cachedEntries, DnsCache resolveCache) {
+        if (!(resolveCache instanceof DefaultDnsCache)) {
+            return;
+        }
+        final DefaultDnsCache cache = (DefaultDnsCache) resolveCache;
+        if (!cache.startRefresh(cachedEntries)) {
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Refreshing cached addresses of {}", ch, hostname);
+        }
+        Promise<List<InetAddress>> refreshPromise = executor().newPromise();
+        refreshPromise.addListener(new FutureListener<List<InetAddress>>() {
+            @Override
+            public void operationComplete(Future<List<InetAddress>> future) {
+                cache.refreshComplete(cachedEntries, future.isSuccess());
+            }
+        });
+        doResolveAllUncached(hostname, additionals, refreshPromise, resolveCache, false);
+    }
+
     private void doResolveAllUncached(final String hostname,
                                       final DnsRecord[] additionals,
                                       final Promise<List<InetAddress>> promise,
@@ -1169,6 +1252,11 @@ public class DnsNameResolver extends InetNameResolver {
         final Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> castPromise = cast(
                 checkNotNull(promise, "promise"));
         try {
+            if (tcpConnectionPool != null && tcpFirstRecordTypes.contains(question.type())) {
+                // The response is expected to be too large for UDP, so don't bother trying.
+                queryOverTcp(nameServerAddr, question, additionals, writePromise, castPromise);
+                return castPromise;
+            }
             new DatagramDnsQueryContext(this, nameServerAddr, question, additionals, castPromise)
                     .query(flush, writePromise);
             return castPromise;
@@ -1177,6 +1265,22 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
+    private void queryOverTcp(final InetSocketAddress nameServerAddr, final DnsQuestion question,
+                              final DnsRecord[] additionals, final ChannelPromise writePromise,
+                              final Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
+        EventLoop eventLoop = executor();
+        if (eventLoop.inEventLoop()) {
+            tcpConnectionPool.query(nameServerAddr, question, additionals, writePromise, promise);
+        } else {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    tcpConnectionPool.query(nameServerAddr, question, additionals, writePromise, promise);
+                }
+            });
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> cast(Promise<?> promise) {
         return (Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>>) promise;
@@ -1211,92 +1315,29 @@ public class DnsNameResolver extends InetNameResolver {
             }
 
             // Check if the response was truncated and if we can fallback to TCP to retry.
-            if (!res.isTruncated() || socketChannelFactory == null) {
+            if (!res.isTruncated() || tcpConnectionPool == null) {
                 qCtx.finish(res);
                 return;
             }
 
-            Bootstrap bs = new Bootstrap();
-            bs.option(ChannelOption.SO_REUSEADDR, true)
-            .group(executor())
-            .channelFactory(socketChannelFactory)
-            .handler(TCP_ENCODER);
-            bs.connect(res.sender()).addListener(new ChannelFutureListener() {
+            Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise = executor().newPromise();
+            promise.addListener(new FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>>() {
                 @Override
-                public void operationComplete(ChannelFuture future) {
-                    if (!future.isSuccess()) {
+                public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+                    if (future.isSuccess()) {
+                        qCtx.finish(future.getNow());
+                        res.release();
+                    } else {
                         if (logger.isDebugEnabled()) {
                             logger.debug("{} Unable to fallback to TCP [{}]", queryId, future.cause());
                         }
 
                         // TCP fallback failed, just use the truncated response.
                         qCtx.finish(res);
-                        return;
                     }
-                    final Channel channel = future.channel();
-
-                    Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise =
-                            channel.eventLoop().newPromise();
-                    final TcpDnsQueryContext tcpCtx = new TcpDnsQueryContext(DnsNameResolver.this, channel,
-                            (InetSocketAddress) channel.remoteAddress(), qCtx.question(),
-                            EMPTY_ADDITIONALS, promise);
-
-                    channel.pipeline().addLast(new TcpDnsResponseDecoder());
-                    channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
-                        @Override
-                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
-                            Channel channel = ctx.channel();
-                            DnsResponse response = (DnsResponse) msg;
-                            int queryId = response.id();
-
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("{} RECEIVED: TCP [{}: {}], {}", channel, queryId,
-                                        channel.remoteAddress(), response);
-                            }
-
-                            DnsQueryContext foundCtx = queryContextManager.get(res.sender(), queryId);
-                            if (foundCtx == tcpCtx) {
-                                tcpCtx.finish(new AddressedEnvelopeAdapter(
-                                        (InetSocketAddress) ctx.channel().remoteAddress(),
-                                        (InetSocketAddress) ctx.channel().localAddress(),
-                                        response));
-                            } else {
-                                response.release();
-                                tcpCtx.tryFailure("Received TCP response with unexpected ID", null, false);
-                                logger.warn("{} Received a DNS response with an unexpected ID: {}",
-                                        channel, queryId);
-                            }
-                        }
-
-                        @Override
-                        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-                            if (tcpCtx.tryFailure("TCP fallback error", cause, false) && logger.isDebugEnabled()) {
-                                logger.debug("{} Error during processing response: TCP [{}: {}]",
-                                        ctx.channel(), queryId,
-                                        ctx.channel().remoteAddress(), cause);
-                            }
-                        }
-                    });
-
-                    promise.addListener(
-                            new FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>>() {
-                        @Override
-                        public void operationComplete(
-                                Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
-                            channel.close();
-
-                            if (future.isSuccess()) {
-                                qCtx.finish(future.getNow());
-                                res.release();
-                            } else {
-                                // TCP fallback failed, just use the truncated response.
-                                qCtx.finish(res);
-                            }
-                        }
-                    });
-                    tcpCtx.query(true, future.channel().newPromise());
                 }
             });
+            tcpConnectionPool.query(res.sender(), qCtx.question(), EMPTY_ADDITIONALS, null, promise);
         }
 
         @Override
@@ -1311,7 +1352,7 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
-    private static final class AddressedEnvelopeAdapter implements AddressedEnvelope<DnsResponse, InetSocketAddress> {
+    static final class AddressedEnvelopeAdapter implements AddressedEnvelope<DnsResponse, InetSocketAddress> {
         private final InetSocketAddress sender;
         private final InetSocketAddress recipient;
         private final DnsResponse response;
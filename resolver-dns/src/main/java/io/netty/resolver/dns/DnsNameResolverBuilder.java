@@ -21,6 +21,7 @@ import io.netty.channel.ReflectiveChannelFactory;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsRecordType;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.ResolvedAddressTypes;
 import io.netty.util.concurrent.Future;
@@ -31,6 +32,8 @@ import java.util.List;
 
 import static io.netty.resolver.dns.DnsServerAddressStreamProviders.platformDefault;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 import static io.netty.util.internal.ObjectUtil.intValue;
 
 /**
@@ -46,6 +49,13 @@ public final class DnsNameResolverBuilder {
     private Integer minTtl;
     private Integer maxTtl;
     private Integer negativeTtl;
+    private Float prefetchRatio;
+    private Integer maxStaleTtl;
+    private int maxCacheSize;
+    private int maxTcpConnectionsPerNameServer = TcpDnsConnectionPool.DEFAULT_MAX_CONNECTIONS;
+    private int maxQueriesPerTcpConnection = TcpDnsConnectionPool.DEFAULT_MAX_QUERIES_PER_CONNECTION;
+    private long tcpIdleTimeoutMillis = TcpDnsConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private DnsRecordType[] tcpFirstRecordTypes;
     private long queryTimeoutMillis = 5000;
     private ResolvedAddressTypes resolvedAddressTypes = DnsNameResolver.DEFAULT_RESOLVE_ADDRESS_TYPES;
     private boolean completeOncePreferredResolved;
@@ -144,6 +154,70 @@ public final class DnsNameResolverBuilder {
         return socketChannelFactory(new ReflectiveChannelFactory<SocketChannel>(channelType));
     }
 
+    /**
+     * Sets the maximum number of TCP connections which are kept open to each name server. Queries are pipelined
+     * over these connections as described in <a href="https://tools.ietf.org/html/rfc7766">RFC 7766</a>.
+     * The default value is {@code 2}. Only used if a {@link #socketChannelFactory(ChannelFactory)} is set.
+     *
+     * @param maxTcpConnectionsPerNameServer the maximum number of TCP connections per name server
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder maxTcpConnectionsPerNameServer(int maxTcpConnectionsPerNameServer) {
+        this.maxTcpConnectionsPerNameServer =
+                checkPositive(maxTcpConnectionsPerNameServer, "maxTcpConnectionsPerNameServer");
+        return this;
+    }
+
+    /**
+     * Sets the number of queries which may be in flight on a TCP connection before another connection to the same
+     * name server is opened, if {@link #maxTcpConnectionsPerNameServer(int)} allows it. Once all connections are
+     * open more queries are pipelined over the least busy connection. The default value is {@code 32}.
+     *
+     * @param maxQueriesPerTcpConnection the number of queries in flight which makes a TCP connection busy
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder maxQueriesPerTcpConnection(int maxQueriesPerTcpConnection) {
+        this.maxQueriesPerTcpConnection = checkPositive(maxQueriesPerTcpConnection, "maxQueriesPerTcpConnection");
+        return this;
+    }
+
+    /**
+     * Sets the time (in milliseconds) after which a TCP connection without queries in flight is closed.
+     * The default value is {@code 10000}.
+     *
+     * @param tcpIdleTimeoutMillis the idle timeout of TCP connections
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder tcpIdleTimeoutMillis(long tcpIdleTimeoutMillis) {
+        this.tcpIdleTimeoutMillis = checkPositive(tcpIdleTimeoutMillis, "tcpIdleTimeoutMillis");
+        return this;
+    }
+
+    /**
+     * Sets the record types which are queried over TCP right away instead of over UDP first, because their responses
+     * are expected to be truncated anyway. Requires a {@link #socketChannelFactory(ChannelFactory)}.
+     * By default all queries are sent over UDP first.
+     *
+     * @param recordTypes the record types to query over TCP
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder tcpFirstRecordTypes(Iterable<DnsRecordType> recordTypes) {
+        checkNotNull(recordTypes, "recordTypes");
+
+        final List<DnsRecordType> list = new ArrayList<DnsRecordType>(4);
+        for (DnsRecordType type : recordTypes) {
+            if (type == null) {
+                break;
+            }
+            if (!list.contains(type)) {
+                list.add(type);
+            }
+        }
+
+        tcpFirstRecordTypes = list.toArray(new DnsRecordType[0]);
+        return this;
+    }
+
     /**
      * Sets the cache for resolution results.
      *
@@ -230,6 +304,49 @@ public final class DnsNameResolverBuilder {
         return this;
     }
 
+    /**
+     * Sets the fraction of the TTL of a cached address at the end of which a lookup refreshes the address in the
+     * background, so popular hostnames are refreshed before they expire and lookups don't have to wait for the
+     * name servers. For example {@code 0.1} refreshes an address when it is looked up during the last 10% of its
+     * TTL. The default value is {@code 0}, which disables refreshing addresses ahead of their expiration.
+     *
+     * @param prefetchRatio the fraction of the TTL, {@code 0 <= prefetchRatio < 1}
+     * @return {@code this}
+     * @see DefaultDnsCache#prefetchCount()
+     */
+    public DnsNameResolverBuilder prefetchRatio(float prefetchRatio) {
+        this.prefetchRatio = prefetchRatio;
+        return this;
+    }
+
+    /**
+     * Sets the time (in seconds) for which an expired address is still returned while it is refreshed in the
+     * background, as described in <a href="https://tools.ietf.org/html/rfc8767">RFC 8767</a>. Stale addresses are
+     * also returned while the name servers can not be reached. The default value is {@code 0}, which disables
+     * serving stale addresses.
+     *
+     * @param maxStaleTtl the maximum time to serve expired addresses
+     * @return {@code this}
+     * @see DefaultDnsCache#staleServeCount()
+     */
+    public DnsNameResolverBuilder maxStaleTtl(int maxStaleTtl) {
+        this.maxStaleTtl = maxStaleTtl;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of hostnames for which resolution results and {@code CNAME} mappings are cached.
+     * When set the caches evict hostnames which are rarely looked up once they are full, see
+     * {@link BoundedDnsCache}. The default value is {@code 0}, which means the caches are unbounded.
+     *
+     * @param maxCacheSize the maximum number of cached hostnames, or {@code 0} for no limit
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder maxCacheSize(int maxCacheSize) {
+        this.maxCacheSize = checkPositiveOrZero(maxCacheSize, "maxCacheSize");
+        return this;
+    }
+
     /**
      * Sets the timeout of each DNS query performed by this resolver (in milliseconds).
      *
@@ -420,7 +537,12 @@ public final class DnsNameResolverBuilder {
     }
 
     private DnsCache newCache() {
-        return new DefaultDnsCache(intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0));
+        if (maxCacheSize > 0) {
+            return new BoundedDnsCache(maxCacheSize,
+                    intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0));
+        }
+        return new DefaultDnsCache(intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0),
+                prefetchRatio != null ? prefetchRatio : 0, intValue(maxStaleTtl, 0));
     }
 
     private AuthoritativeDnsServerCache newAuthoritativeDnsServerCache() {
@@ -432,6 +554,9 @@ public final class DnsNameResolverBuilder {
     }
 
     private DnsCnameCache newCnameCache() {
+        if (maxCacheSize > 0) {
+            return new BoundedDnsCnameCache(maxCacheSize, intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE));
+        }
         return new DefaultDnsCnameCache(
                 intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE));
     }
@@ -462,6 +587,20 @@ public final class DnsNameResolverBuilder {
             throw new IllegalStateException("resolveCache and TTLs are mutually exclusive");
         }
 
+        if (tcpFirstRecordTypes != null && tcpFirstRecordTypes.length > 0 && socketChannelFactory == null) {
+            throw new IllegalStateException("tcpFirstRecordTypes requires a socketChannelFactory");
+        }
+
+        if ((resolveCache != null || maxCacheSize > 0) && (prefetchRatio != null || maxStaleTtl != null)) {
+            throw new IllegalStateException(
+                    "prefetchRatio and maxStaleTtl are only supported by the default cache, which is mutually " +
+                    "exclusive with resolveCache and maxCacheSize");
+        }
+
+        if (resolveCache != null && maxCacheSize > 0) {
+            throw new IllegalStateException("resolveCache and maxCacheSize are mutually exclusive");
+        }
+
         if (authoritativeDnsServerCache != null && (minTtl != null || maxTtl != null || negativeTtl != null)) {
             throw new IllegalStateException("authoritativeDnsServerCache and TTLs are mutually exclusive");
         }
@@ -490,7 +629,11 @@ public final class DnsNameResolverBuilder {
                 searchDomains,
                 ndots,
                 decodeIdn,
-                completeOncePreferredResolved);
+                completeOncePreferredResolved,
+                maxTcpConnectionsPerNameServer,
+                maxQueriesPerTcpConnection,
+                tcpIdleTimeoutMillis,
+                tcpFirstRecordTypes);
     }
 
     /**
@@ -528,6 +671,16 @@ public final class DnsNameResolverBuilder {
             copiedBuilder.negativeTtl(negativeTtl);
         }
 
+        if (prefetchRatio != null) {
+            copiedBuilder.prefetchRatio(prefetchRatio);
+        }
+
+        if (maxStaleTtl != null) {
+            copiedBuilder.maxStaleTtl(maxStaleTtl);
+        }
+
+        copiedBuilder.maxCacheSize(maxCacheSize);
+
         if (authoritativeDnsServerCache != null) {
             copiedBuilder.authoritativeDnsServerCache(authoritativeDnsServerCache);
         }
@@ -556,6 +709,13 @@ public final class DnsNameResolverBuilder {
         copiedBuilder.ndots(ndots);
         copiedBuilder.decodeIdn(decodeIdn);
         copiedBuilder.completeOncePreferredResolved(completeOncePreferredResolved);
+        copiedBuilder.maxTcpConnectionsPerNameServer(maxTcpConnectionsPerNameServer);
+        copiedBuilder.maxQueriesPerTcpConnection(maxQueriesPerTcpConnection);
+        copiedBuilder.tcpIdleTimeoutMillis(tcpIdleTimeoutMillis);
+
+        if (tcpFirstRecordTypes != null) {
+            copiedBuilder.tcpFirstRecordTypes(Arrays.asList(tcpFirstRecordTypes));
+        }
 
         return copiedBuilder;
     }
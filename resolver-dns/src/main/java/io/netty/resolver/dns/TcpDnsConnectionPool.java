@@ -0,0 +1,329 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.TcpDnsQueryEncoder;
+import io.netty.handler.codec.dns.TcpDnsResponseDecoder;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a small number of persistent TCP connections per name server and pipelines queries over them as described
+ * in <a href="https://tools.ietf.org/html/rfc7766#section-6.2.1">RFC 7766</a>.
+ * <p>
+ * A query is sent over the connection with the least queries in flight. A new connection is only opened if all
+ * connections have at least {@code maxQueriesPerConnection} queries in flight and there are less than
+ * {@code maxConnections} connections to the name server. Responses are matched to queries by their ID, so they may
+ * arrive in any order. A connection without queries in flight is closed once it was idle for
+ * {@code idleTimeoutMillis}.
+ * <p>
+ * All methods must be called from the {@link EventLoop} of the {@link DnsNameResolver}.
+ */
+final class TcpDnsConnectionPool {
+
+    static final int DEFAULT_MAX_CONNECTIONS = 2;
+    static final int DEFAULT_MAX_QUERIES_PER_CONNECTION = 32;
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10000;
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(TcpDnsConnectionPool.class);
+    private static final TcpDnsQueryEncoder TCP_ENCODER = new TcpDnsQueryEncoder();
+
+    private final DnsNameResolver parent;
+    private final Bootstrap bootstrap;
+    private final int maxConnections;
+    private final int maxQueriesPerConnection;
+    private final long idleTimeoutMillis;
+    private final Map<InetSocketAddress, List<Connection>> connections =
+            new HashMap<InetSocketAddress, List<Connection>>();
+    private boolean closed;
+
+    TcpDnsConnectionPool(DnsNameResolver parent, ChannelFactory<? extends SocketChannel> socketChannelFactory,
+                         int maxConnections, int maxQueriesPerConnection, long idleTimeoutMillis) {
+        this.parent = parent;
+        this.maxConnections = maxConnections;
+        this.maxQueriesPerConnection = maxQueriesPerConnection;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        bootstrap = new Bootstrap()
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .group(parent.executor())
+                .channelFactory(socketChannelFactory);
+    }
+
+    /**
+     * Sends a query over a pooled connection to the given name server.
+     *
+     * @param writePromise notified once the query was written, may be {@code null}.
+     */
+    void query(final InetSocketAddress nameServerAddr, final DnsQuestion question, final DnsRecord[] additionals,
+               final ChannelPromise writePromise,
+               final Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
+        assert parent.executor().inEventLoop();
+
+        if (closed) {
+            fail(promise, writePromise, new ClosedChannelException());
+            return;
+        }
+
+        final Connection connection = acquire(nameServerAddr);
+        connection.reserve();
+        promise.addListener(new FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>>() {
+            @Override
+            public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+                connection.release();
+            }
+        });
+
+        ChannelFuture connectFuture = connection.connectFuture;
+        if (connectFuture.isDone()) {
+            connection.query(question, additionals, writePromise, promise);
+        } else {
+            connectFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    connection.query(question, additionals, writePromise, promise);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the number of open or opening connections to the given name server.
+     */
+    int connections(InetSocketAddress nameServerAddr) {
+        assert parent.executor().inEventLoop();
+        List<Connection> list = connections.get(nameServerAddr);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Closes all connections. Queries which are still in flight fail.
+     */
+    void close() {
+        assert parent.executor().inEventLoop();
+        closed = true;
+        List<Connection> all = new ArrayList<Connection>();
+        for (List<Connection> list : connections.values()) {
+            all.addAll(list);
+        }
+        for (Connection connection : all) {
+            connection.channel.close();
+        }
+    }
+
+    private Connection acquire(InetSocketAddress nameServerAddr) {
+        List<Connection> list = connections.get(nameServerAddr);
+        if (list == null) {
+            list = new ArrayList<Connection>(maxConnections);
+            connections.put(nameServerAddr, list);
+        }
+
+        Connection leastBusy = null;
+        for (int i = 0; i < list.size(); i++) {
+            Connection connection = list.get(i);
+            if (leastBusy == null || connection.inFlight < leastBusy.inFlight) {
+                leastBusy = connection;
+            }
+        }
+        if (leastBusy != null && (leastBusy.inFlight < maxQueriesPerConnection || list.size() >= maxConnections)) {
+            return leastBusy;
+        }
+
+        Connection connection = new Connection(nameServerAddr);
+        list.add(connection);
+        return connection;
+    }
+
+    private void remove(Connection connection) {
+        List<Connection> list = connections.get(connection.nameServerAddr);
+        if (list != null && list.remove(connection) && list.isEmpty()) {
+            connections.remove(connection.nameServerAddr);
+        }
+    }
+
+    private static void fail(Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise,
+                             ChannelPromise writePromise, Throwable cause) {
+        if (writePromise != null) {
+            writePromise.tryFailure(cause);
+        }
+        promise.tryFailure(cause);
+    }
+
+    private final class Connection extends ChannelInboundHandlerAdapter {
+        final InetSocketAddress nameServerAddr;
+        final ChannelFuture connectFuture;
+        final Channel channel;
+        final Set<TcpDnsQueryContext> contexts = new HashSet<TcpDnsQueryContext>();
+        int inFlight;
+        ScheduledFuture<?> idleFuture;
+
+        Connection(InetSocketAddress nameServerAddr) {
+            this.nameServerAddr = nameServerAddr;
+            connectFuture = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(TCP_ENCODER, new TcpDnsResponseDecoder(), Connection.this);
+                }
+            }).connect(nameServerAddr);
+            channel = connectFuture.channel();
+            channel.closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    closed();
+                }
+            });
+        }
+
+        void reserve() {
+            inFlight++;
+            if (idleFuture != null) {
+                idleFuture.cancel(false);
+                idleFuture = null;
+            }
+        }
+
+        void release() {
+            if (--inFlight == 0 && channel.isOpen()) {
+                idleFuture = channel.eventLoop().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (inFlight == 0) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("{} Closing idle TCP connection to {}", channel, nameServerAddr);
+                            }
+                            channel.close();
+                        }
+                    }
+                }, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void query(DnsQuestion question, DnsRecord[] additionals, ChannelPromise writePromise,
+                   Promise<AddressedEnvelope<DnsResponse, InetSocketAddress>> promise) {
+            if (promise.isDone()) {
+                return;
+            }
+            if (!connectFuture.isSuccess()) {
+                fail(promise, writePromise, new DnsNameResolverException(nameServerAddr, question,
+                        "failed to connect via TCP", connectFuture.cause()));
+                return;
+            }
+            if (!channel.isActive()) {
+                fail(promise, writePromise, new ClosedChannelException());
+                return;
+            }
+
+            final TcpDnsQueryContext qCtx;
+            try {
+                qCtx = new TcpDnsQueryContext(parent, channel, nameServerAddr, question, additionals, promise);
+            } catch (Exception e) {
+                fail(promise, writePromise, e);
+                return;
+            }
+            contexts.add(qCtx);
+            promise.addListener(new FutureListener<AddressedEnvelope<DnsResponse, InetSocketAddress>>() {
+                @Override
+                public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
+                    contexts.remove(qCtx);
+                }
+            });
+
+            ChannelPromise tcpWritePromise = channel.newPromise();
+            if (writePromise != null) {
+                tcpWritePromise.addListener(new PromiseNotifier<Void, ChannelFuture>(writePromise));
+            }
+            qCtx.query(true, tcpWritePromise);
+        }
+
+        private void closed() {
+            remove(this);
+            if (idleFuture != null) {
+                idleFuture.cancel(false);
+                idleFuture = null;
+            }
+            if (!contexts.isEmpty()) {
+                for (TcpDnsQueryContext qCtx : new ArrayList<TcpDnsQueryContext>(contexts)) {
+                    qCtx.tryFailure("TCP connection closed", null, false);
+                }
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            DnsResponse response = (DnsResponse) msg;
+            int queryId = response.id();
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} RECEIVED: TCP [{}: {}], {}", channel, queryId, nameServerAddr, response);
+            }
+
+            DnsQueryContext qCtx = parent.queryContextManager.get(nameServerAddr, queryId);
+            if (qCtx instanceof TcpDnsQueryContext && contexts.contains(qCtx)) {
+                qCtx.finish(new DnsNameResolver.AddressedEnvelopeAdapter(
+                        (InetSocketAddress) channel.remoteAddress(),
+                        (InetSocketAddress) channel.localAddress(),
+                        response));
+            } else {
+                // The query may have timed out already.
+                response.release();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{} Received a DNS response with an unknown ID: {}", channel, queryId);
+                }
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} Error during processing response: TCP [{}]", channel, nameServerAddr, cause);
+            }
+            for (TcpDnsQueryContext qCtx : new ArrayList<TcpDnsQueryContext>(contexts)) {
+                qCtx.tryFailure("TCP error", cause, false);
+            }
+            ctx.close();
+        }
+    }
+}
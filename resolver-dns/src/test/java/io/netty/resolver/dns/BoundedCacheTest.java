@@ -0,0 +1,319 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheTest {
+
+    private EventLoopGroup group;
+    private EventLoop loop;
+
+    @Before
+    public void setUp() {
+        group = new DefaultEventLoopGroup(1);
+        loop = group.next();
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        TestCache cache = new TestCache(100);
+        for (int i = 0; i < 100; i++) {
+            cache.cache("host" + i, "a", 100, loop);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(0, cache.evictions());
+
+        cache.cache("host100", "a", 100, loop);
+        assertEquals(100, cache.size());
+        assertEquals(1, cache.evictions());
+        // The new hostname is always admitted to the window.
+        assertNotNull(cache.get("host100"));
+    }
+
+    @Test
+    public void testFrequentHostnameSurvivesScan() {
+        TestCache cache = new TestCache(10);
+        cache.cache("hot", "a", 100, loop);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("hot"));
+        }
+        // A plain LRU cache would evict "hot" as it is never looked up during the scan.
+        for (int i = 0; i < 100; i++) {
+            cache.cache("cold" + i, "a", 100, loop);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(91, cache.evictions());
+        assertNotNull(cache.get("hot"));
+        assertNotNull(cache.get("cold99"));
+    }
+
+    @Test
+    public void testHostnameLookedUpMoreOftenIsAdmitted() {
+        TestCache cache = new TestCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.cache("host" + i, "a", 100, loop);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.get("popular"));
+        }
+        cache.cache("popular", "a", 100, loop);
+        // Move "popular" out of the window, it wins against the least recently used hostname of the main segments.
+        cache.cache("other", "a", 100, loop);
+
+        assertEquals(10, cache.size());
+        assertEquals(2, cache.evictions());
+        assertNotNull(cache.get("popular"));
+        assertNotNull(cache.get("other"));
+        assertNull(cache.get("host0"));
+    }
+
+    @Test
+    public void testPromotedHostnameIsNotEvicted() {
+        TestCache cache = new TestCache(10);
+        cache.cache("promoted", "a", 100, loop);
+        cache.cache("host0", "a", 100, loop);
+        // "promoted" is in the probation segment now, a hit moves it to the protected segment.
+        assertNotNull(cache.get("promoted"));
+        for (int i = 1; i < 20; i++) {
+            cache.cache("host" + i, "a", 100, loop);
+            assertNotNull(cache.get("host" + i));
+        }
+        assertEquals(10, cache.size());
+        assertNotNull(cache.get("promoted"));
+    }
+
+    @Test
+    public void testExpiredEntryIsRemovedOnGet() {
+        TestCache cache = new TestCache(10);
+        cache.cache("netty.io", "a", 1, loop);
+        assertNotNull(cache.get("netty.io"));
+
+        cache.advance(1, TimeUnit.SECONDS);
+        assertNull(cache.get("netty.io"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.expirations());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testEarliestExpirationWins() {
+        TestCache cache = new TestCache(10);
+        cache.cache("netty.io", "a", 1, loop);
+        cache.cache("netty.io", "b", 100, loop);
+        List<? extends String> entries = cache.get("netty.io");
+        assertEquals(2, entries.size());
+        assertEquals("a", entries.get(0));
+        assertEquals("b", entries.get(1));
+
+        cache.advance(1, TimeUnit.SECONDS);
+        assertNull(cache.get("netty.io"));
+
+        // An expired hostname is replaced instead of merged.
+        cache.cache("netty.io", "c", 100, loop);
+        entries = cache.get("netty.io");
+        assertEquals(1, entries.size());
+        assertEquals("c", entries.get(0));
+    }
+
+    @Test
+    public void testSweepRemovesExpiredEntries() {
+        TestCache cache = new TestCache(10);
+        cache.cache("a.netty.io", "a", 1, loop);
+        cache.cache("b.netty.io", "a", 1, loop);
+        cache.cache("c.netty.io", "a", 100, loop);
+
+        cache.advance(1, TimeUnit.SECONDS);
+        cache.sweep();
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.expirations());
+        assertNotNull(cache.get("c.netty.io"));
+    }
+
+    @Test
+    public void testSweepIsScheduled() throws Exception {
+        final TestCache cache = new TestCache(10, 1);
+        cache.cache("netty.io", "a", 1, loop);
+        cache.advance(1, TimeUnit.SECONDS);
+
+        int size = loop.schedule(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return cache.size();
+            }
+        }, 1500, TimeUnit.MILLISECONDS).get();
+        assertEquals(0, size);
+        assertEquals(1, cache.expirations());
+    }
+
+    @Test
+    public void testClear() {
+        TestCache cache = new TestCache(10);
+        cache.cache("a.netty.io", "a", 100, loop);
+        cache.cache("b.netty.io", "a", 100, loop);
+        cache.cache("c.netty.io", "a", 1, loop);
+
+        assertTrue(cache.clear("a.netty.io"));
+        assertFalse(cache.clear("a.netty.io"));
+        cache.advance(1, TimeUnit.SECONDS);
+        assertFalse(cache.clear("c.netty.io"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("b.netty.io"));
+
+        // The cache is still usable after it was cleared.
+        for (int i = 0; i < 20; i++) {
+            cache.cache("host" + i, "a", 100, loop);
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testSizeOfOne() {
+        TestCache cache = new TestCache(1);
+        cache.cache("a.netty.io", "a", 100, loop);
+        cache.cache("b.netty.io", "a", 100, loop);
+        assertEquals(1, cache.size());
+        assertNull(cache.get("a.netty.io"));
+        assertNotNull(cache.get("b.netty.io"));
+    }
+
+    @Test
+    public void testManyLookupsAreApplied() {
+        TestCache cache = new TestCache(10);
+        cache.cache("promoted", "a", 100, loop);
+        cache.cache("host0", "a", 100, loop);
+        // More lookups than fit into a read buffer, the promotion must still be applied.
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(cache.get("promoted"));
+        }
+        for (int i = 1; i < 20; i++) {
+            cache.cache("host" + i, "a", 100, loop);
+        }
+        assertEquals(10, cache.size());
+        assertNotNull(cache.get("promoted"));
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentAccess() throws Throwable {
+        final TestCache cache = new TestCache(100);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 20000; i++) {
+                            String hostname = "host" + random.nextInt(300);
+                            if (cache.get(hostname) == null) {
+                                cache.cache(hostname, "a", 100, loop);
+                            }
+                        }
+                    } catch (Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(4 * 20000, cache.hits() + cache.misses());
+    }
+
+    @Test
+    public void testSketchRowsAreIndependent() {
+        BoundedCache.FrequencySketch sketch = new BoundedCache.FrequencySketch(256);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(15, sketch.frequency("hot"));
+        int collisions = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (sketch.frequency("host" + i) != 0) {
+                collisions++;
+            }
+        }
+        // A hostname only looks as popular as "hot" if it collides with it in all rows.
+        assertEquals(0, collisions);
+    }
+
+    private static final class TestCache extends BoundedCache<String> {
+        private long nanoTime = System.nanoTime();
+
+        TestCache(int maxSize) {
+            super(maxSize);
+        }
+
+        TestCache(int maxSize, int sweepIntervalSecs) {
+            super(maxSize, sweepIntervalSecs);
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            synchronized (this) {
+                nanoTime += unit.toNanos(duration);
+            }
+        }
+
+        @Override
+        synchronized long nanoTime() {
+            return nanoTime;
+        }
+
+        @Override
+        protected boolean shouldReplaceAll(String entry) {
+            return false;
+        }
+
+        @Override
+        protected boolean equals(String entry, String otherEntry) {
+            return entry.equals(otherEntry);
+        }
+    }
+}
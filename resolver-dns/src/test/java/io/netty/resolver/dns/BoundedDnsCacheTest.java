@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DefaultDnsOptEcsRecord;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.util.NetUtil;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedDnsCacheTest {
+
+    @Test
+    public void testExpire() throws Throwable {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final BoundedDnsCache cache = new BoundedDnsCache(16);
+            cache.cache("netty.io", null, addr1, 1, loop);
+            cache.cache("netty.io", null, addr2, 10000, loop);
+
+            Throwable error = loop.schedule(new Callable<Throwable>() {
+                @Override
+                public Throwable call() {
+                    try {
+                        assertNull(cache.get("netty.io", null));
+                        return null;
+                    } catch (Throwable cause) {
+                        return cause;
+                    }
+                }
+            }, 1, TimeUnit.SECONDS).get();
+            if (error != null) {
+                throw error;
+            }
+            assertEquals(1, cache.expirationCount());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            BoundedDnsCache cache = new BoundedDnsCache(8);
+            for (int i = 0; i < 16; i++) {
+                cache.cache("host" + i + ".netty.io", null, NetUtil.LOCALHOST, 100, loop);
+            }
+            assertEquals(8, cache.maxSize());
+            assertEquals(8, cache.size());
+            assertEquals(8, cache.evictionCount());
+            assertNotNull(cache.get("host15.netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            BoundedDnsCache cache = new BoundedDnsCache(8);
+            assertNull(cache.get("netty.io", null));
+            cache.cache("netty.io", null, NetUtil.LOCALHOST, 100, loop);
+            // The trailing dot is added to the hostname like it is done by DefaultDnsCache.
+            assertNotNull(cache.get("netty.io.", null));
+            assertNotNull(cache.get("netty.io", null));
+
+            assertEquals(2, cache.hitCount());
+            assertEquals(1, cache.missCount());
+            assertEquals(0, cache.evictionCount());
+            assertEquals(0, cache.expirationCount());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testAddMultipleAddressesForSameHostname() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            BoundedDnsCache cache = new BoundedDnsCache(8);
+            cache.cache("netty.io", null, addr1, 1, loop);
+            cache.cache("netty.io", null, addr2, 10000, loop);
+
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(2, entries.size());
+            assertEquals(addr1, entries.get(0).address());
+            assertEquals(addr2, entries.get(1).address());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testNegativeCache() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            BoundedDnsCache cache = new BoundedDnsCache(8, 0, 100, 0);
+            cache.cache("netty.io", null, new UnknownHostException(), loop);
+            assertNull(cache.get("netty.io", null));
+
+            cache = new BoundedDnsCache(8, 0, 100, 100);
+            UnknownHostException cause = new UnknownHostException();
+            cache.cache("netty.io", null, NetUtil.LOCALHOST, 100, loop);
+            cache.cache("netty.io", null, cause, loop);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertSame(cause, entries.get(0).cause());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testAdditionalsAreNotCached() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            BoundedDnsCache cache = new BoundedDnsCache(8);
+            DnsRecord[] additionals = { new DefaultDnsOptEcsRecord(1024, 24, NetUtil.LOCALHOST4.getAddress()) };
+            cache.cache("netty.io", additionals, NetUtil.LOCALHOST, 100, loop);
+            assertEquals(0, cache.size());
+            assertTrue(cache.get("netty.io", additionals).isEmpty());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testBuilderUsesBoundedCaches() {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+
+        try {
+            DnsNameResolver resolver = new DnsNameResolverBuilder(group.next())
+                    .channelType(NioDatagramChannel.class)
+                    .maxCacheSize(64)
+                    .build();
+            try {
+                assertTrue(resolver.resolveCache() instanceof BoundedDnsCache);
+                assertEquals(64, ((BoundedDnsCache) resolver.resolveCache()).maxSize());
+                assertTrue(resolver.cnameCache() instanceof BoundedDnsCnameCache);
+            } finally {
+                resolver.close();
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testBuilderRejectsCacheAndMaxCacheSize() {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            DnsNameResolverBuilder builder = new DnsNameResolverBuilder(group.next())
+                    .channelType(NioDatagramChannel.class)
+                    .resolveCache(new DefaultDnsCache())
+                    .maxCacheSize(64);
+            try {
+                builder.build();
+                fail();
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
@@ -30,9 +30,11 @@ import java.util.concurrent.TimeUnit;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DefaultDnsCacheTest {
 
@@ -198,4 +200,67 @@ public class DefaultDnsCacheTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test
+    public void testServeStale() throws Exception {
+        InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, Cache.MAX_SUPPORTED_TTL_SECS, 0, 0, 10);
+            cache.cache("netty.io", null, addr, 1, loop);
+            assertEquals(0, cache.staleServeCount());
+
+            Thread.sleep(1100);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr);
+            assertEquals(1, cache.staleServeCount());
+            assertTrue(cache.startRefresh(entries));
+            // Only one refresh at a time.
+            assertFalse(cache.startRefresh(entries));
+            assertEquals(1, cache.prefetchCount());
+
+            // The refreshed address replaces the stale one.
+            InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+            cache.cache("netty.io", null, addr2, 100, loop);
+            cache.refreshComplete(entries, true);
+            entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr2);
+            assertEquals(1, cache.staleServeCount());
+            assertFalse(cache.startRefresh(entries));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testRefreshIsRetriedLater() throws Exception {
+        InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, Cache.MAX_SUPPORTED_TTL_SECS, 0, 0.99f, 0);
+            cache.cache("netty.io", null, addr, 1, loop);
+
+            Thread.sleep(50);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertTrue(cache.startRefresh(entries));
+            cache.refreshComplete(entries, false);
+            // The refresh failed, so don't try again right away.
+            assertFalse(cache.startRefresh(entries));
+            assertEquals(1, cache.prefetchCount());
+            assertEquals(0, cache.staleServeCount());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrefetchRatio() {
+        new DefaultDnsCache(0, 100, 0, 1, 0);
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.resolver.ResolvedAddressTypes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class DnsNameResolverPrefetchTest {
+    private static final String HOSTNAME = "netty.io";
+
+    private EventLoopGroup group;
+    private TestTcpDnsServer dnsServer;
+    private DnsNameResolver resolver;
+
+    @Before
+    public void setUp() {
+        group = new NioEventLoopGroup(1);
+        dnsServer = new TestTcpDnsServer(1, 1);
+        dnsServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (resolver != null) {
+            resolver.close();
+        }
+        dnsServer.stop();
+        group.shutdownGracefully();
+    }
+
+    private DnsNameResolverBuilder newResolver() {
+        // Use TCP only so the server does not have to truncate the responses.
+        return new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .tcpFirstRecordTypes(Collections.singletonList(DnsRecordType.A))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer.localAddress()));
+    }
+
+    private InetAddress resolve() {
+        return resolver.resolve(HOSTNAME).syncUninterruptibly().getNow();
+    }
+
+    private static void assertGeneration(int generation, InetAddress address) {
+        assertEquals(generation, address.getAddress()[1]);
+    }
+
+    private void awaitQueries(int queries) throws InterruptedException {
+        while (dnsServer.tcpQueries.get() < queries) {
+            Thread.sleep(10);
+        }
+    }
+
+    private DefaultDnsCache cache() {
+        return (DefaultDnsCache) resolver.resolveCache();
+    }
+
+    @Test(timeout = 10000)
+    public void testRefreshAhead() throws Exception {
+        resolver = newResolver().prefetchRatio(0.5f).build();
+        assertGeneration(0, resolve());
+        assertEquals(1, dnsServer.tcpQueries.get());
+
+        // Still fresh, so nothing is refreshed.
+        assertGeneration(0, resolve());
+        assertEquals(0, cache().prefetchCount());
+
+        dnsServer.generation = 1;
+        Thread.sleep(600);
+        // The cached address is returned and refreshed in the background.
+        assertGeneration(0, resolve());
+        awaitQueries(2);
+        assertEquals(1, cache().prefetchCount());
+
+        // Wait for the refreshed address to be cached, it replaces the old one.
+        while (resolve().getAddress()[1] != 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, dnsServer.tcpQueries.get());
+        assertEquals(0, cache().staleServeCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testServeStale() throws Exception {
+        resolver = newResolver().maxStaleTtl(10).build();
+        assertGeneration(0, resolve());
+
+        dnsServer.generation = 1;
+        Thread.sleep(1100);
+        // The expired address is returned and refreshed in the background.
+        assertGeneration(0, resolve());
+        assertEquals(1, cache().staleServeCount());
+        awaitQueries(2);
+        assertEquals(1, cache().prefetchCount());
+
+        while (resolve().getAddress()[1] != 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, dnsServer.tcpQueries.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testServeStaleWhileNameServerFails() throws Exception {
+        resolver = newResolver().maxStaleTtl(10).build();
+        assertGeneration(0, resolve());
+
+        dnsServer.closeOnQuery = true;
+        Thread.sleep(1100);
+        assertGeneration(0, resolve());
+        awaitQueries(2);
+        // Wait for the refresh to fail.
+        Thread.sleep(100);
+
+        // The stale address is still served, but not refreshed again right away.
+        assertGeneration(0, resolve());
+        assertGeneration(0, resolve());
+        assertEquals(3, cache().staleServeCount());
+        assertEquals(1, cache().prefetchCount());
+        assertEquals(2, dnsServer.tcpQueries.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testExpiredWithoutServeStale() throws Exception {
+        resolver = newResolver().build();
+        assertGeneration(0, resolve());
+
+        dnsServer.generation = 1;
+        Thread.sleep(1100);
+        assertGeneration(1, resolve());
+        assertEquals(2, dnsServer.tcpQueries.get());
+        assertEquals(0, cache().prefetchCount());
+        assertEquals(0, cache().staleServeCount());
+    }
+}
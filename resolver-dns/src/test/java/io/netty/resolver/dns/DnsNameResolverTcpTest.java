@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DnsNameResolverTcpTest {
+    private static final int ANSWERS = 100;
+
+    private EventLoopGroup group;
+    private TestTcpDnsServer dnsServer;
+    private DnsNameResolver resolver;
+
+    @Before
+    public void setUp() {
+        group = new NioEventLoopGroup(1);
+        dnsServer = new TestTcpDnsServer(ANSWERS);
+        dnsServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (resolver != null) {
+            resolver.close();
+        }
+        dnsServer.stop();
+        group.shutdownGracefully();
+    }
+
+    private DnsNameResolverBuilder newResolver() {
+        return new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .socketChannelType(NioSocketChannel.class)
+                .queryTimeoutMillis(5000)
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(dnsServer.localAddress()));
+    }
+
+    private List<Future<AddressedEnvelope<DnsResponse, InetSocketAddress>>> query(int count) {
+        List<Future<AddressedEnvelope<DnsResponse, InetSocketAddress>>> futures =
+                new ArrayList<Future<AddressedEnvelope<DnsResponse, InetSocketAddress>>>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(resolver.query(new DefaultDnsQuestion("host" + i + ".netty.io.", DnsRecordType.A)));
+        }
+        return futures;
+    }
+
+    private static void assertAnswered(List<Future<AddressedEnvelope<DnsResponse, InetSocketAddress>>> futures) {
+        for (int i = 0; i < futures.size(); i++) {
+            AddressedEnvelope<DnsResponse, InetSocketAddress> envelope = futures.get(i).syncUninterruptibly().getNow();
+            try {
+                DnsResponse response = envelope.content();
+                assertFalse(response.isTruncated());
+                assertEquals("host" + i + ".netty.io.", response.recordAt(DnsSection.QUESTION).name());
+                assertEquals(ANSWERS, response.count(DnsSection.ANSWER));
+            } finally {
+                envelope.release();
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedResponsesArePipelinedOverOneConnection() {
+        resolver = newResolver().build();
+        assertAnswered(query(10));
+
+        assertEquals(10, dnsServer.udpQueries.get());
+        assertEquals(10, dnsServer.tcpQueries.get());
+        assertEquals(1, dnsServer.acceptedConnections.get());
+
+        // The connection is kept open and reused.
+        assertAnswered(query(5));
+        assertEquals(1, dnsServer.acceptedConnections.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testResolveAllOverTcp() throws Exception {
+        resolver = newResolver().build();
+        List<InetAddress> addresses = resolver.resolveAll("netty.io").syncUninterruptibly().getNow();
+        assertEquals(ANSWERS, addresses.size());
+        assertEquals(1, dnsServer.acceptedConnections.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testTcpFirstRecordTypes() {
+        resolver = newResolver()
+                .tcpFirstRecordTypes(Collections.singletonList(DnsRecordType.A))
+                .build();
+        assertAnswered(query(3));
+
+        assertEquals(0, dnsServer.udpQueries.get());
+        assertEquals(3, dnsServer.tcpQueries.get());
+        assertEquals(1, dnsServer.acceptedConnections.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testMoreConnectionsAreOpenedWhenBusy() {
+        resolver = newResolver()
+                .tcpFirstRecordTypes(Collections.singletonList(DnsRecordType.A))
+                .maxQueriesPerTcpConnection(2)
+                .maxTcpConnectionsPerNameServer(3)
+                .build();
+        assertAnswered(query(12));
+
+        assertEquals(12, dnsServer.tcpQueries.get());
+        assertEquals(3, dnsServer.acceptedConnections.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleConnectionIsClosed() throws Exception {
+        resolver = newResolver()
+                .tcpFirstRecordTypes(Collections.singletonList(DnsRecordType.A))
+                .tcpIdleTimeoutMillis(100)
+                .build();
+        assertAnswered(query(1));
+        assertEquals(1, dnsServer.acceptedConnections.get());
+
+        while (dnsServer.activeConnections.get() != 0) {
+            Thread.sleep(10);
+        }
+
+        // A new connection is opened for the next query.
+        assertAnswered(query(1));
+        assertEquals(2, dnsServer.acceptedConnections.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testQueriesFailWhenConnectionIsClosed() {
+        dnsServer.closeOnQuery = true;
+        resolver = newResolver()
+                .tcpFirstRecordTypes(Collections.singletonList(DnsRecordType.A))
+                .build();
+        for (Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future : query(3)) {
+            Throwable cause = future.awaitUninterruptibly().cause();
+            assertTrue(String.valueOf(cause), cause instanceof DnsNameResolverException);
+        }
+    }
+
+    @Test
+    public void testTcpFirstRecordTypesRequireSocketChannelFactory() {
+        try {
+            newResolver()
+                    .socketChannelFactory(null)
+                    .tcpFirstRecordTypes(Collections.singletonList(DnsRecordType.A))
+                    .build();
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.util.NetUtil;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A DNS server which runs in the same process and answers every {@code A} query with a fixed number of records.
+ * Responses sent over UDP are always truncated, so the resolver has to retry over TCP. Responses to queries which
+ * were read at the same time over TCP are sent in reverse order, to make sure the resolver matches responses to
+ * queries by their ID.
+ */
+final class TestTcpDnsServer {
+
+    private final int answersPerResponse;
+    private final int ttl;
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    final AtomicInteger udpQueries = new AtomicInteger();
+    final AtomicInteger tcpQueries = new AtomicInteger();
+    final AtomicInteger acceptedConnections = new AtomicInteger();
+    final AtomicInteger activeConnections = new AtomicInteger();
+    volatile boolean closeOnQuery;
+    // Used as the second octet of the returned addresses.
+    volatile int generation;
+    private Channel tcpChannel;
+    private Channel udpChannel;
+
+    TestTcpDnsServer(int answersPerResponse) {
+        this(answersPerResponse, 60);
+    }
+
+    TestTcpDnsServer(int answersPerResponse, int ttl) {
+        this.answersPerResponse = answersPerResponse;
+        this.ttl = ttl;
+    }
+
+    void start() {
+        tcpChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        acceptedConnections.incrementAndGet();
+                        ch.pipeline().addLast(
+                                new LengthFieldBasedFrameDecoder(65535, 0, 2, 0, 2),
+                                new LengthFieldPrepender(2),
+                                new PacketToByteBufEncoder(),
+                                new ByteBufToPacketDecoder(),
+                                new DatagramDnsQueryDecoder(),
+                                new DatagramDnsResponseEncoder(),
+                                new TcpQueryHandler());
+                    }
+                }).bind(NetUtil.LOCALHOST4, 0).syncUninterruptibly().channel();
+
+        int port = ((InetSocketAddress) tcpChannel.localAddress()).getPort();
+        udpChannel = new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<NioDatagramChannel>() {
+                    @Override
+                    protected void initChannel(NioDatagramChannel ch) {
+                        ch.pipeline().addLast(
+                                new DatagramDnsQueryDecoder(),
+                                new DatagramDnsResponseEncoder(),
+                                new UdpQueryHandler());
+                    }
+                }).bind(NetUtil.LOCALHOST4, port).syncUninterruptibly().channel();
+    }
+
+    InetSocketAddress localAddress() {
+        return (InetSocketAddress) tcpChannel.localAddress();
+    }
+
+    void stop() {
+        if (tcpChannel != null) {
+            tcpChannel.close().syncUninterruptibly();
+        }
+        if (udpChannel != null) {
+            udpChannel.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully().syncUninterruptibly();
+    }
+
+    private static DatagramDnsResponse newResponse(DatagramDnsQuery query) {
+        DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+        response.setRecursionAvailable(true);
+        DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+        response.addRecord(DnsSection.QUESTION, question);
+        return response;
+    }
+
+    private final class TcpQueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+        private final List<DatagramDnsResponse> responses = new ArrayList<DatagramDnsResponse>();
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            activeConnections.incrementAndGet();
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            activeConnections.decrementAndGet();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+            tcpQueries.incrementAndGet();
+            if (closeOnQuery) {
+                ctx.close();
+                return;
+            }
+            DatagramDnsResponse response = newResponse(query);
+            DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+            if (question.type() == DnsRecordType.A) {
+                byte generation = (byte) TestTcpDnsServer.this.generation;
+                for (int i = 0; i < answersPerResponse; i++) {
+                    response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(question.name(), DnsRecordType.A,
+                            ttl, Unpooled.wrappedBuffer(new byte[] { 10, generation, (byte) (i >>> 8), (byte) i })));
+                }
+            }
+            responses.add(response);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            for (int i = responses.size() - 1; i >= 0; i--) {
+                ctx.write(responses.get(i));
+            }
+            responses.clear();
+            ctx.flush();
+        }
+    }
+
+    private final class UdpQueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+            udpQueries.incrementAndGet();
+            DatagramDnsResponse response = newResponse(query);
+            response.setTruncated(true);
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    /**
+     * Adapts a TCP frame to a {@link DatagramPacket} so the datagram codec can be used.
+     */
+    private static final class ByteBufToPacketDecoder extends MessageToMessageDecoder<ByteBuf> {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+            out.add(new DatagramPacket(msg.retain(), (InetSocketAddress) ctx.channel().localAddress(),
+                    (InetSocketAddress) ctx.channel().remoteAddress()));
+        }
+    }
+
+    /**
+     * Unwraps the content of the {@link DatagramPacket}s written by the datagram codec.
+     */
+    private static final class PacketToByteBufEncoder extends MessageToMessageEncoder<DatagramPacket> {
+        @Override
+        protected void encode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) {
+            out.add(msg.content().retain());
+        }
+    }
+}
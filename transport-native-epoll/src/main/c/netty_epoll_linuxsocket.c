@@ -27,6 +27,7 @@
 #include <netinet/in.h>
 #include <sys/sendfile.h>
 #include <linux/tcp.h> // TCP_NOTSENT_LOWAT is a linux specific define
+#include <linux/errqueue.h>
 
 #include "netty_epoll_linuxsocket.h"
 #include "netty_unix_errors.h"
@@ -55,6 +56,60 @@
 #define SO_BUSY_POLL 46
 #endif
 
+// UDP_GRO is defined in linux 5.0. We define this here so older kernels can compile.
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif
+
+// SO_ZEROCOPY, MSG_ZEROCOPY and the related defines are defined in linux 4.14. We define these here so older kernels
+// can compile.
+#ifndef SO_ZEROCOPY
+#define SO_ZEROCOPY 60
+#endif
+
+#ifndef MSG_ZEROCOPY
+#define MSG_ZEROCOPY 0x4000000
+#endif
+
+#ifndef SO_EE_ORIGIN_ZEROCOPY
+#define SO_EE_ORIGIN_ZEROCOPY 5
+#endif
+
+#ifndef SO_EE_CODE_ZEROCOPY_COPIED
+#define SO_EE_CODE_ZEROCOPY_COPIED 1
+#endif
+
+// TCP_ULP and SOL_TLS are defined in linux 4.13. We define these here so older kernels can compile.
+#ifndef TCP_ULP
+#define TCP_ULP 31
+#endif
+
+#ifndef SOL_TLS
+#define SOL_TLS 282
+#endif
+
+// Mirrors the tls12_crypto_info_aes_gcm_* structs of linux/tls.h which is not available on older kernels.
+struct netty_tls12_crypto_info_aes_gcm_128 {
+    uint16_t version;
+    uint16_t cipher_type;
+    unsigned char iv[8];
+    unsigned char key[16];
+    unsigned char salt[4];
+    unsigned char rec_seq[8];
+};
+
+struct netty_tls12_crypto_info_aes_gcm_256 {
+    uint16_t version;
+    uint16_t cipher_type;
+    unsigned char iv[8];
+    unsigned char key[32];
+    unsigned char salt[4];
+    unsigned char rec_seq[8];
+};
+
 static jclass peerCredentialsClass = NULL;
 static jmethodID peerCredentialsMethodId = NULL;
 
@@ -118,6 +173,135 @@ static void netty_epoll_linuxsocket_setTcpNotSentLowAt(JNIEnv* env, jclass clazz
     netty_unix_socket_setOption(env, fd, IPPROTO_TCP, TCP_NOTSENT_LOWAT, &optval, sizeof(optval));
 }
 
+static void netty_epoll_linuxsocket_setUdpGro(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval));
+}
+
+static void netty_epoll_linuxsocket_setZeroCopy(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval));
+}
+
+// Throws an IOException and not a ChannelException like netty_unix_socket_setOption(...) as the caller can fall back
+// to user space if the kernel does not support TLS.
+static void netty_epoll_linuxsocket_setTlsOption(JNIEnv* env, jint fd, int level, int optname, const void* optval, socklen_t len) {
+    if (setsockopt(fd, level, optname, optval, len) < 0) {
+        netty_unix_errors_throwIOExceptionErrorNo(env, "setsockopt() failed: ", errno);
+    }
+}
+
+static void netty_epoll_linuxsocket_setTlsUlp(JNIEnv* env, jclass clazz, jint fd) {
+    netty_epoll_linuxsocket_setTlsOption(env, fd, IPPROTO_TCP, TCP_ULP, "tls", sizeof("tls"));
+}
+
+static int netty_epoll_linuxsocket_copyTlsBytes(JNIEnv* env, jbyteArray array, unsigned char* dst, jint length) {
+    if ((*env)->GetArrayLength(env, array) != length) {
+        netty_unix_errors_throwIOException(env, "Invalid length of crypto info");
+        return -1;
+    }
+    (*env)->GetByteArrayRegion(env, array, 0, length, (jbyte*) dst);
+    return 0;
+}
+
+// Fills the fields which all supported crypto info structs share. Evaluates to -1 if an exception was thrown.
+#define NETTY_EPOLL_FILL_TLS_CRYPTO_INFO(env, info, version, cipherType, iv, key, salt, recSeq) \
+    ((info).version = (uint16_t) (version), \
+     (info).cipher_type = (uint16_t) (cipherType), \
+     (netty_epoll_linuxsocket_copyTlsBytes(env, iv, (info).iv, sizeof((info).iv)) == -1 || \
+      netty_epoll_linuxsocket_copyTlsBytes(env, key, (info).key, sizeof((info).key)) == -1 || \
+      netty_epoll_linuxsocket_copyTlsBytes(env, salt, (info).salt, sizeof((info).salt)) == -1 || \
+      netty_epoll_linuxsocket_copyTlsBytes(env, recSeq, (info).rec_seq, sizeof((info).rec_seq)) == -1) ? -1 : 0)
+
+static void netty_epoll_linuxsocket_setTlsCryptoInfo(JNIEnv* env, jclass clazz, jint fd, jint direction, jint version, jint cipherType,
+        jbyteArray iv, jbyteArray key, jbyteArray salt, jbyteArray recSeq) {
+    union {
+        struct netty_tls12_crypto_info_aes_gcm_128 aes128;
+        struct netty_tls12_crypto_info_aes_gcm_256 aes256;
+    } info;
+    socklen_t len;
+    int res;
+
+    memset(&info, 0, sizeof(info));
+    // The key length is the only difference between the supported ciphers.
+    if ((*env)->GetArrayLength(env, key) == 16) {
+        res = NETTY_EPOLL_FILL_TLS_CRYPTO_INFO(env, info.aes128, version, cipherType, iv, key, salt, recSeq);
+        len = sizeof(info.aes128);
+    } else {
+        res = NETTY_EPOLL_FILL_TLS_CRYPTO_INFO(env, info.aes256, version, cipherType, iv, key, salt, recSeq);
+        len = sizeof(info.aes256);
+    }
+    if (res == 0) {
+        netty_epoll_linuxsocket_setTlsOption(env, fd, SOL_TLS, direction, &info, len);
+    }
+    // Do not leave the key on the stack.
+    memset(&info, 0, sizeof(info));
+}
+
+static jint netty_epoll_linuxsocket_sendAddressZeroCopy(JNIEnv* env, jclass clazz, jint fd, jlong address, jint pos, jint limit) {
+    void* buffer = (void*) (intptr_t) address;
+    ssize_t res;
+    int err;
+    do {
+       res = send(fd, buffer + pos, (size_t) (limit - pos), MSG_ZEROCOPY);
+       // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jint) res;
+}
+
+// Reads the zero copy completion notifications from the error queue of the socket. Each notification is stored as
+// three ints in the array: the first and last (inclusive) sequence number of the completed sends and the code, which is
+// SO_EE_CODE_ZEROCOPY_COPIED if the kernel had to copy the data after all.
+//
+// Returns the number of notifications or -errno.
+static jint netty_epoll_linuxsocket_readZeroCopyCompletions(JNIEnv* env, jclass clazz, jint fd, jintArray array) {
+    jint length = (*env)->GetArrayLength(env, array) / 3;
+    jint completions[3];
+    jint count = 0;
+    char control[CMSG_SPACE(sizeof(struct sock_extended_err)) + CMSG_SPACE(sizeof(struct sockaddr_in6))];
+    struct msghdr msg;
+    struct cmsghdr* cmsg;
+    struct sock_extended_err* serr;
+    ssize_t res;
+    int err;
+
+    while (count < length) {
+        memset(&msg, 0, sizeof(msg));
+        msg.msg_control = control;
+        msg.msg_controllen = sizeof(control);
+
+        do {
+            res = recvmsg(fd, &msg, MSG_ERRQUEUE);
+            // keep on reading if it was interrupted
+        } while (res == -1 && ((err = errno) == EINTR));
+
+        if (res < 0) {
+            if (err == EAGAIN || err == EWOULDBLOCK) {
+                // The error queue is empty.
+                break;
+            }
+            return -err;
+        }
+
+        for (cmsg = CMSG_FIRSTHDR(&msg); cmsg != NULL; cmsg = CMSG_NXTHDR(&msg, cmsg)) {
+            if ((cmsg->cmsg_level == SOL_IP && cmsg->cmsg_type == IP_RECVERR) ||
+                    (cmsg->cmsg_level == SOL_IPV6 && cmsg->cmsg_type == IPV6_RECVERR)) {
+                serr = (struct sock_extended_err*) CMSG_DATA(cmsg);
+                if (serr->ee_errno == 0 && serr->ee_origin == SO_EE_ORIGIN_ZEROCOPY) {
+                    completions[0] = (jint) serr->ee_info;
+                    completions[1] = (jint) serr->ee_data;
+                    completions[2] = (jint) (serr->ee_code & SO_EE_CODE_ZEROCOPY_COPIED);
+                    (*env)->SetIntArrayRegion(env, array, count * 3, 3, completions);
+                    count++;
+                }
+            }
+        }
+    }
+    return count;
+}
+
 static void netty_epoll_linuxsocket_setTcpFastOpen(JNIEnv* env, jclass clazz, jint fd, jint optval) {
     netty_unix_socket_setOption(env, fd, IPPROTO_TCP, TCP_FASTOPEN, &optval, sizeof(optval));
 }
@@ -570,6 +754,14 @@ static jint netty_epoll_linuxsocket_isTcpCork(JNIEnv* env, jclass clazz, jint fd
     return optval;
 }
 
+static jint netty_epoll_linuxsocket_isZeroCopy(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
 static jint netty_epoll_linuxsocket_getSoBusyPoll(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_BUSY_POLL, &optval, sizeof(optval)) == -1) {
@@ -594,6 +786,14 @@ static jint netty_epoll_linuxsocket_isTcpQuickAck(JNIEnv* env, jclass clazz, jin
     return optval;
 }
 
+static jint netty_epoll_linuxsocket_isUdpGro(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
 static jint netty_epoll_linuxsocket_isTcpFastOpenConnect(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     // We call netty_unix_socket_getOption0 directly so we can handle ENOPROTOOPT by ourself.
@@ -670,6 +870,14 @@ static const JNINativeMethod fixed_method_table[] = {
   { "getIpMulticastLoop", "(IZ)I", (void * ) netty_epoll_linuxsocket_getIpMulticastLoop },
   { "setTcpCork", "(II)V", (void *) netty_epoll_linuxsocket_setTcpCork },
   { "setSoBusyPoll", "(II)V", (void *) netty_epoll_linuxsocket_setSoBusyPoll },
+  { "setZeroCopy", "(II)V", (void *) netty_epoll_linuxsocket_setZeroCopy },
+  { "setUdpGro", "(II)V", (void *) netty_epoll_linuxsocket_setUdpGro },
+  { "isUdpGro", "(I)I", (void *) netty_epoll_linuxsocket_isUdpGro },
+  { "isZeroCopy", "(I)I", (void *) netty_epoll_linuxsocket_isZeroCopy },
+  { "sendAddressZeroCopy", "(IJII)I", (void *) netty_epoll_linuxsocket_sendAddressZeroCopy },
+  { "readZeroCopyCompletions", "(I[I)I", (void *) netty_epoll_linuxsocket_readZeroCopyCompletions },
+  { "setTlsUlp", "(I)V", (void *) netty_epoll_linuxsocket_setTlsUlp },
+  { "setTlsCryptoInfo", "(IIII[B[B[B[B)V", (void *) netty_epoll_linuxsocket_setTlsCryptoInfo },
   { "setTcpQuickAck", "(II)V", (void *) netty_epoll_linuxsocket_setTcpQuickAck },
   { "setTcpDeferAccept", "(II)V", (void *) netty_epoll_linuxsocket_setTcpDeferAccept },
   { "setTcpNotSentLowAt", "(II)V", (void *) netty_epoll_linuxsocket_setTcpNotSentLowAt },
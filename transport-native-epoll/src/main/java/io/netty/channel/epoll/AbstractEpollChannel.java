@@ -520,6 +520,14 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
             }
         }
 
+        /**
+         * Called once a EPOLLERR event is ready to be processed, before {@link #epollOutReady()} and
+         * {@link #epollInReady()}.
+         */
+        void epollErrReady() {
+            // NOOP by default, the error itself is picked up by the read or write.
+        }
+
         /**
          * Called once a EPOLLOUT event is ready to be processed
          */
@@ -31,6 +31,7 @@ import io.netty.channel.FileRegion;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.internal.ChannelUtils;
 import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Errors;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
 import io.netty.channel.unix.SocketWritableByteChannel;
@@ -78,6 +79,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     private WritableByteChannel byteChannel;
 
+    // Lazy init these if we write with MSG_ZEROCOPY.
+    private ZeroCopyCompletionQueue zeroCopyQueue;
+    private int[] zeroCopyCompletions;
+
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
     }
@@ -256,6 +261,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return 0;
         }
 
+        if (isZeroCopyWrite(buf)) {
+            return writeBytesZeroCopy(in, buf);
+        }
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
             return doWriteBytes(in, buf);
         } else {
@@ -265,6 +273,72 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * Returns the minimum number of readable bytes a {@link ByteBuf} needs to be written with {@code MSG_ZEROCOPY},
+     * or {@code -1} if zero copy writes are disabled.
+     */
+    int zeroCopyThreshold() {
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if the given read failure means that the remote peer closed the connection, in which case
+     * it is handled like an EOF.
+     */
+    boolean isReadEof(IOException cause) {
+        return false;
+    }
+
+    private boolean isZeroCopyWrite(ByteBuf buf) {
+        int threshold = zeroCopyThreshold();
+        // Stop using MSG_ZEROCOPY once the kernel told us it had to copy the data anyway (e.g. for loopback) as it
+        // only adds the overhead of the completion notifications then.
+        return threshold >= 0 && buf.readableBytes() >= threshold && buf.hasMemoryAddress() &&
+                (zeroCopyQueue == null || !zeroCopyQueue.isCopied());
+    }
+
+    /**
+     * Writes the {@link ByteBuf} with {@code MSG_ZEROCOPY}. A reference to the {@link ByteBuf} is held for every send
+     * until the kernel notified us that it does not need the memory anymore. Once the whole {@link ByteBuf} was sent it
+     * is removed from the {@link ChannelOutboundBuffer}, but its promise is only notified after the completions of all
+     * of its sends were received, so the memory is not reused while the kernel may still read it.
+     */
+    private int writeBytesZeroCopy(ChannelOutboundBuffer in, ByteBuf buf) throws Exception {
+        int readableBytes = buf.readableBytes();
+        int localFlushedAmount = socket.sendAddressZeroCopy(buf.memoryAddress(), buf.readerIndex(), buf.writerIndex());
+        if (localFlushedAmount == Errors.ERRNO_ENOBUFS_NEGATIVE) {
+            // The kernel could not pin the memory, fallback to a copying write.
+            return doWriteBytes(in, buf);
+        }
+        if (localFlushedAmount > 0) {
+            if (zeroCopyQueue == null) {
+                zeroCopyQueue = new ZeroCopyCompletionQueue();
+                zeroCopyCompletions = new int[3 * 16];
+            }
+            in.progress(localFlushedAmount);
+            if (localFlushedAmount < readableBytes) {
+                zeroCopyQueue.add(buf.retain(), null);
+                buf.readerIndex(buf.readerIndex() + localFlushedAmount);
+            } else {
+                // The queue takes over the reference of the ChannelOutboundBuffer.
+                zeroCopyQueue.add(buf, in.removeWithoutNotify());
+            }
+            return 1;
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    private void readZeroCopyCompletions() throws IOException {
+        final int[] completions = zeroCopyCompletions;
+        int count;
+        do {
+            count = socket.readZeroCopyCompletions(completions);
+            for (int i = 0; i < count; i++) {
+                zeroCopyQueue.complete(completions[i * 3], completions[i * 3 + 1], completions[i * 3 + 2] != 0);
+            }
+        } while (count == completions.length / 3);
+    }
+
     private void adjustMaxBytesPerGatheringWrite(long attempted, long written, long oldMaxBytesPerGatheringWrite) {
         // By default we track the SO_SNDBUF when ever it is explicitly set. However some OSes may dynamically change
         // SO_SNDBUF (and other characteristics that determine how much data can be written at once) so we should try
@@ -417,8 +491,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         int writeSpinCount = config().getWriteSpinCount();
         do {
             final int msgCount = in.size();
-            // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
-            if (msgCount > 1 && in.current() instanceof ByteBuf) {
+            // Do gathering write if the outbound buffer entries start with more than one ByteBuf, unless the first
+            // one is large enough to be written with MSG_ZEROCOPY.
+            final Object msg = in.current();
+            if (msgCount > 1 && msg instanceof ByteBuf && !isZeroCopyWrite((ByteBuf) msg)) {
                 writeSpinCount -= doWriteMultiple(in);
             } else if (msgCount == 0) {
                 // Wrote all messages.
@@ -667,6 +743,14 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     @Override
     protected void doClose() throws Exception {
+        if (zeroCopyQueue != null && !zeroCopyQueue.isEmpty()) {
+            // Pick up the completions which are already pending, the others are lost once the socket is closed.
+            try {
+                readZeroCopyCompletions();
+            } catch (IOException ignore) {
+                // Just fail the remaining writes below.
+            }
+        }
         try {
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
@@ -674,6 +758,13 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             safeClosePipe(pipeIn);
             safeClosePipe(pipeOut);
             clearSpliceQueue();
+            if (zeroCopyQueue != null && !zeroCopyQueue.isEmpty()) {
+                // No completions will be received anymore but the kernel may still send from the remaining buffers,
+                // so they must not be released.
+                logger.debug("Leaking the buffers of zero copy writes which were not completed before the close: {}",
+                        this);
+                zeroCopyQueue.failAll(new ClosedChannelException());
+            }
         }
     }
 
@@ -731,6 +822,18 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             }
         }
 
+        @Override
+        void epollErrReady() {
+            if (zeroCopyQueue == null || !isOpen()) {
+                return;
+            }
+            try {
+                readZeroCopyCompletions();
+            } catch (IOException e) {
+                pipeline().fireExceptionCaught(e);
+            }
+        }
+
         @Override
         EpollRecvByteAllocatorHandle newEpollHandle(RecvByteBufAllocator.ExtendedHandle handle) {
             return new EpollRecvByteAllocatorStreamingHandle(handle);
@@ -775,7 +878,16 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                     // we use a direct buffer here as the native implementations only be able
                     // to handle direct buffers.
                     byteBuf = allocHandle.allocate(allocator);
-                    allocHandle.lastBytesRead(doReadBytes(byteBuf));
+                    int localReadAmount;
+                    try {
+                        localReadAmount = doReadBytes(byteBuf);
+                    } catch (IOException e) {
+                        if (!isReadEof(e)) {
+                            throw e;
+                        }
+                        localReadAmount = -1;
+                    }
+                    allocHandle.lastBytesRead(localReadAmount);
                     if (allocHandle.lastBytesRead() <= 0) {
                         // nothing was read, release the buffer.
                         byteBuf.release();
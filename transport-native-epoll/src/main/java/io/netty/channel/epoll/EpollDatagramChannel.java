@@ -59,6 +59,7 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     private static final ChannelMetadata METADATA = new ChannelMetadata(true);
     private static final String EXPECTED_TYPES =
             " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+            StringUtil.simpleClassName(SegmentedDatagramPacket.class) + ", " +
             StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
             StringUtil.simpleClassName(ByteBuf.class) + ", " +
             StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
@@ -295,8 +296,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             }
 
             try {
-                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+
-                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1) {
+                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+. A
+                // SegmentedDatagramPacket is always written via sendmmsg(...) as it needs the UDP_SEGMENT cmsg.
+                if (Native.IS_SUPPORTING_SENDMMSG && (in.size() > 1 || msg instanceof SegmentedDatagramPacket)) {
                     NativeDatagramPacketArray array = cleanDatagramPacketArray();
                     array.add(in, isConnected());
                     int cnt = array.count();
@@ -321,6 +323,13 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                         }
                         continue;
                     }
+                    if (msg instanceof SegmentedDatagramPacket) {
+                        // Even on its own it did not fit, which is only the case if its content has too many
+                        // components. It must never be written via doWriteMessage(...) as this would send it as one
+                        // large datagram without the UDP_SEGMENT cmsg.
+                        throw new IOException("SegmentedDatagramPacket content has too many components to be " +
+                                "written with a single sendmmsg(...) call");
+                    }
                 }
                 boolean done = false;
                 for (int i = config().getWriteSpinCount(); i > 0; --i) {
@@ -401,6 +410,17 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     @Override
     protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof SegmentedDatagramPacket) {
+            if (!Native.IS_SUPPORTING_SENDMMSG || !Native.IS_SUPPORTING_UDP_SEGMENT) {
+                throw new UnsupportedOperationException(
+                        "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+            }
+            SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    packet.replace(newDirectBuffer(packet, content)) : msg;
+        }
+
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
@@ -479,6 +499,8 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             try {
                 try {
                     boolean connected = isConnected();
+                    // With UDP_GRO we need recvmmsg(...) even for a single message to get the segment size.
+                    boolean gro = Native.IS_SUPPORTING_RECVMMSG && config().isUdpGro();
                     do {
                         ByteBuf byteBuf = allocHandle.allocate(allocator);
                         final boolean read;
@@ -491,7 +513,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
                         try {
                             if (numDatagram <= 1) {
-                                if (connected) {
+                                if (gro) {
+                                    read = scatteringRead(allocHandle, byteBuf, byteBuf.writableBytes(), 1);
+                                } else if (connected) {
                                     read = connectedRead(allocHandle, byteBuf, datagramSize);
                                 } else {
                                     read = read(allocHandle, byteBuf, datagramSize);
@@ -604,7 +628,7 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             int bytesReceived = received * datagramSize;
             byteBuf.writerIndex(bytesReceived);
             InetSocketAddress local = localAddress();
-            if (received == 1) {
+            if (received == 1 && !packets[0].isCoalesced()) {
                 // Single packet fast-path
                 DatagramPacket packet = packets[0].newDatagramPacket(byteBuf, local);
                 allocHandle.lastBytesRead(datagramSize);
@@ -619,14 +643,15 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             // in a channelRead(...) method and so may re-use the NativeDatagramPacketArray again.
             bufferPackets = RecyclableArrayList.newInstance();
             for (int i = 0; i < received; i++) {
-                DatagramPacket packet = packets[i].newDatagramPacket(byteBuf.readRetainedSlice(datagramSize), local);
-                bufferPackets.add(packet);
+                // Splits the datagrams again if they were coalesced by UDP_GRO.
+                packets[i].addDatagramPackets(byteBuf.readRetainedSlice(datagramSize), local, bufferPackets);
             }
+            int numPackets = bufferPackets.size();
 
             allocHandle.lastBytesRead(bytesReceived);
-            allocHandle.incMessagesRead(received);
+            allocHandle.incMessagesRead(numPackets);
 
-            for (int i = 0; i < received; i++) {
+            for (int i = 0; i < numPackets; i++) {
                 pipeline().fireChannelRead(bufferPackets.set(i, Unpooled.EMPTY_BUFFER));
             }
             bufferPackets.recycle();
@@ -20,6 +20,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.TimedSelectStrategy;
 import io.netty.channel.epoll.AbstractEpollChannel.AbstractEpollUnsafe;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
@@ -63,6 +64,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
     private NativeDatagramPacketArray datagramPacketArray;
 
     private final SelectStrategy selectStrategy;
+    private final TimedSelectStrategy timedSelectStrategy;
     private final IntSupplier selectNowSupplier = new IntSupplier() {
         @Override
         public int get() throws Exception {
@@ -90,6 +92,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
         super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
                 rejectedExecutionHandler);
         selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
+        timedSelectStrategy = strategy instanceof TimedSelectStrategy ? (TimedSelectStrategy) strategy : null;
         if (maxEvents == 0) {
             allowGrowing = true;
             events = new EpollEventArray(4096);
@@ -342,6 +345,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
                         nextWakeupNanos.set(curDeadlineNanos);
                         try {
                             if (!hasTasks()) {
+                                final long selectStartNanos = timedSelectStrategy != null ? System.nanoTime() : 0;
                                 if (curDeadlineNanos == prevDeadlineNanos) {
                                     // No timer activity needed
                                     strategy = epollWaitNoTimerChange();
@@ -350,6 +354,14 @@ class EpollEventLoop extends SingleThreadEventLoop {
                                     prevDeadlineNanos = curDeadlineNanos;
                                     strategy = epollWait(curDeadlineNanos);
                                 }
+                                if (timedSelectStrategy != null) {
+                                    timedSelectStrategy.selected(System.nanoTime() - selectStartNanos);
+                                }
+                                // A timeout shows up as a single ready timerfd.
+                                if (isMetricEnabled() && strategy > 0 &&
+                                        (strategy > 1 || events.fd(0) != timerFd.intValue())) {
+                                    recordWakeup();
+                                }
                             }
                         } finally {
                             // Try get() first to avoid much more expensive CAS in the case we
@@ -363,12 +375,17 @@ class EpollEventLoop extends SingleThreadEventLoop {
                 }
 
                 final int ioRatio = this.ioRatio;
+                final boolean recordMetric = isMetricEnabled();
                 if (ioRatio == 100) {
+                    final long ioStartTime = recordMetric ? System.nanoTime() : 0;
                     try {
                         if (strategy > 0 && processReady(events, strategy)) {
                             prevDeadlineNanos = NONE;
                         }
                     } finally {
+                        if (recordMetric) {
+                            recordIteration(strategy, System.nanoTime() - ioStartTime);
+                        }
                         // Ensure we always run tasks.
                         runAllTasks();
                     }
@@ -381,9 +398,15 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (recordMetric) {
+                            recordIteration(strategy, ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
+                    if (recordMetric) {
+                        recordIteration(0, 0);
+                    }
                     runAllTasks(0); // This will run the minimum number of tasks
                 }
                 if (allowGrowing && strategy == events.length()) {
@@ -452,6 +475,12 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     // past.
                     AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) ch.unsafe();
 
+                    // Drain the error queue first (used for MSG_ZEROCOPY completions) so it is empty again
+                    // before we try to read or write.
+                    if ((ev & Native.EPOLLERR) != 0) {
+                        unsafe.epollErrReady();
+                    }
+
                     // First check for EPOLLOUT as we may need to fail the connect ChannelPromise before try
                     // to read from the file descriptor.
                     // See https://github.com/netty/netty/issues/3785
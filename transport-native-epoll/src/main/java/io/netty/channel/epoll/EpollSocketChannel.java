@@ -17,8 +17,11 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsCryptoInfo;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.unix.Errors;
 import io.netty.util.concurrent.GlobalEventExecutor;
 
 import java.io.IOException;
@@ -35,11 +38,14 @@ import static io.netty.channel.epoll.LinuxSocket.newSocketStream;
  * {@link SocketChannel} implementation that uses linux EPOLL Edge-Triggered Mode for
  * maximal performance.
  */
-public final class EpollSocketChannel extends AbstractEpollStreamChannel implements SocketChannel {
+public final class EpollSocketChannel extends AbstractEpollStreamChannel
+        implements SocketChannel, KernelTlsChannel {
 
     private final EpollSocketChannelConfig config;
 
     private volatile Collection<InetAddress> tcpMd5SigAddresses = Collections.emptyList();
+    private volatile boolean kernelTls;
+    private volatile boolean kernelTlsInputClosed;
 
     public EpollSocketChannel() {
         super(newSocketStream(), false);
@@ -100,6 +106,67 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         return config;
     }
 
+    @Override
+    int zeroCopyThreshold() {
+        // The kernel TLS implementation does not support MSG_ZEROCOPY.
+        return kernelTls ? -1 : config.zeroCopyThreshold();
+    }
+
+    @Override
+    public boolean isKernelTlsSupported(KernelTlsCryptoInfo.Cipher cipher) {
+        return cipher == KernelTlsCryptoInfo.Cipher.AES_GCM_128 || cipher == KernelTlsCryptoInfo.Cipher.AES_GCM_256;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The keys for the inbound direction are installed first, so if this fails because the kernel does not support
+     * it the connection can still be used from user space. If the keys for the outbound direction can not be installed
+     * afterwards the connection is unusable and so this {@link Channel} is closed.
+     * <p>
+     * Once enabled, a record which does not contain application data (like a {@code close_notify} or another alert)
+     * fails the read with {@code EIO}. This is handled like an EOF, see {@link #isKernelTlsInputClosed()}.
+     */
+    @Override
+    public void enableKernelTls(KernelTlsCryptoInfo tx, KernelTlsCryptoInfo rx) throws IOException {
+        assert eventLoop().inEventLoop();
+        if (kernelTls) {
+            throw new IllegalStateException("kernel TLS already enabled");
+        }
+        if (!isKernelTlsSupported(tx.cipher()) || !isKernelTlsSupported(rx.cipher())) {
+            throw new IllegalArgumentException("unsupported cipher: " + tx.cipher() + ", " + rx.cipher());
+        }
+        socket.setTlsUlp();
+        socket.setTlsCryptoInfo(false, rx);
+        try {
+            socket.setTlsCryptoInfo(true, tx);
+        } catch (IOException e) {
+            unsafe().close(voidPromise());
+            throw e;
+        }
+        kernelTls = true;
+    }
+
+    @Override
+    public boolean isKernelTlsEnabled() {
+        return kernelTls;
+    }
+
+    @Override
+    public boolean isKernelTlsInputClosed() {
+        return kernelTlsInputClosed;
+    }
+
+    @Override
+    boolean isReadEof(IOException cause) {
+        if (kernelTls && cause instanceof Errors.NativeIoException &&
+                ((Errors.NativeIoException) cause).expectedErr() == Errors.ERRNO_EIO_NEGATIVE) {
+            kernelTlsInputClosed = true;
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public ServerSocketChannel parent() {
         return (ServerSocketChannel) super.parent();
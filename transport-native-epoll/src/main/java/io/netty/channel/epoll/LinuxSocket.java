@@ -17,10 +17,12 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.ChannelException;
 import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.unix.Errors;
 import io.netty.channel.unix.NativeInetAddress;
 import io.netty.channel.unix.PeerCredentials;
 import io.netty.channel.unix.Socket;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.KernelTlsCryptoInfo;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SocketUtils;
 
@@ -41,6 +43,12 @@ final class LinuxSocket extends Socket {
     private static final InetAddress INET_ANY = unsafeInetAddrByName("0.0.0.0");
     private static final long MAX_UINT32_T = 0xFFFFFFFFL;
 
+    // See linux/tls.h
+    private static final int TLS_TX = 1;
+    private static final int TLS_RX = 2;
+    private static final int TLS_CIPHER_AES_GCM_128 = 51;
+    private static final int TLS_CIPHER_AES_GCM_256 = 52;
+
     LinuxSocket(int fd) {
         super(fd);
     }
@@ -160,6 +168,38 @@ final class LinuxSocket extends Socket {
         setTcpQuickAck(intValue(), quickAck ? 1 : 0);
     }
 
+    void setUdpGro(boolean gro) throws IOException {
+        setUdpGro(intValue(), gro ? 1 : 0);
+    }
+
+    void setZeroCopy(boolean zeroCopy) throws IOException {
+        setZeroCopy(intValue(), zeroCopy ? 1 : 0);
+    }
+
+    /**
+     * Attaches the {@code tls} upper layer protocol, which must be done before the keys can be installed via
+     * {@link #setTlsCryptoInfo(boolean, KernelTlsCryptoInfo)}.
+     */
+    void setTlsUlp() throws IOException {
+        setTlsUlp(intValue());
+    }
+
+    void setTlsCryptoInfo(boolean tx, KernelTlsCryptoInfo info) throws IOException {
+        final int cipherType;
+        switch (info.cipher()) {
+            case AES_GCM_128:
+                cipherType = TLS_CIPHER_AES_GCM_128;
+                break;
+            case AES_GCM_256:
+                cipherType = TLS_CIPHER_AES_GCM_256;
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported cipher: " + info.cipher());
+        }
+        setTlsCryptoInfo(intValue(), tx ? TLS_TX : TLS_RX, info.version(), cipherType,
+                info.iv(), info.key(), info.salt(), info.recordSequence());
+    }
+
     void setTcpCork(boolean tcpCork) throws IOException {
         setTcpCork(intValue(), tcpCork ? 1 : 0);
     }
@@ -244,6 +284,42 @@ final class LinuxSocket extends Socket {
         return isTcpQuickAck(intValue()) != 0;
     }
 
+    boolean isUdpGro() throws IOException {
+        return isUdpGro(intValue()) != 0;
+    }
+
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
+    /**
+     * Writes the memory between {@code pos} and {@code limit} with {@code MSG_ZEROCOPY}. The memory must not be
+     * reused before the kernel has notified the completion via {@link #readZeroCopyCompletions(int[])}.
+     * <p>
+     * Returns {@link Errors#ERRNO_ENOBUFS_NEGATIVE} if the kernel could not pin the memory, in which case the caller
+     * is expected to fall back to a normal write.
+     */
+    int sendAddressZeroCopy(long address, int pos, int limit) throws IOException {
+        int res = sendAddressZeroCopy(intValue(), address, pos, limit);
+        if (res >= 0 || res == Errors.ERRNO_ENOBUFS_NEGATIVE) {
+            return res;
+        }
+        return ioResult("sendAddressZeroCopy", res);
+    }
+
+    /**
+     * Reads the pending zero copy completions into {@code completions}. Every completion takes three slots: the first
+     * and the last (inclusive) completed sequence number and {@code 1} if the kernel copied the data after all.
+     * Returns the number of completions that were read.
+     */
+    int readZeroCopyCompletions(int[] completions) throws IOException {
+        int res = readZeroCopyCompletions(intValue(), completions);
+        if (res >= 0) {
+            return res;
+        }
+        return ioResult("readZeroCopyCompletions", res);
+    }
+
     long getTcpNotSentLowAt() throws IOException {
         return getTcpNotSentLowAt(intValue()) & MAX_UINT32_T;
     }
@@ -357,6 +433,8 @@ final class LinuxSocket extends Socket {
     private static native int getTcpDeferAccept(int fd) throws IOException;
     private static native int isTcpQuickAck(int fd) throws IOException;
     private static native int isTcpCork(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
+    private static native int isUdpGro(int fd) throws IOException;
     private static native int getSoBusyPoll(int fd) throws IOException;
     private static native int getTcpNotSentLowAt(int fd) throws IOException;
     private static native int getTcpKeepIdle(int fd) throws IOException;
@@ -374,6 +452,13 @@ final class LinuxSocket extends Socket {
     private static native void setTcpDeferAccept(int fd, int deferAccept) throws IOException;
     private static native void setTcpQuickAck(int fd, int quickAck) throws IOException;
     private static native void setTcpCork(int fd, int tcpCork) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
+    private static native int sendAddressZeroCopy(int fd, long address, int pos, int limit);
+    private static native int readZeroCopyCompletions(int fd, int[] completions);
+    private static native void setTlsUlp(int fd) throws IOException;
+    private static native void setTlsCryptoInfo(int fd, int direction, int version, int cipherType,
+                                                byte[] iv, byte[] key, byte[] salt, byte[] recSeq) throws IOException;
     private static native void setSoBusyPoll(int fd, int loopMicros) throws IOException;
     private static native void setTcpNotSentLowAt(int fd, int tcpNotSentLowAt) throws IOException;
     private static native void setTcpFastOpen(int fd, int tcpFastopenBacklog) throws IOException;
@@ -26,6 +26,7 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.List;
 
 import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
 import static io.netty.channel.unix.NativeInetAddress.copyIpv4MappedIpv6Address;
@@ -55,10 +56,10 @@ final class NativeDatagramPacketArray {
     }
 
     boolean addWritable(ByteBuf buf, int index, int len) {
-        return add0(buf, index, len, null);
+        return add0(buf, index, len, 0, null);
     }
 
-    private boolean add0(ByteBuf buf, int index, int len, InetSocketAddress recipient) {
+    private boolean add0(ByteBuf buf, int index, int len, int segmentSize, InetSocketAddress recipient) {
         if (count == packets.length) {
             // We already filled up to UIO_MAX_IOV messages. This is the max allowed per
             // recvmmsg(...) / sendmmsg(...) call, we will try again later.
@@ -73,7 +74,7 @@ final class NativeDatagramPacketArray {
             return false;
         }
         NativeDatagramPacket p = packets[count];
-        p.init(iovArray.memoryAddress(offset), iovArray.count() - offset, recipient);
+        p.init(iovArray.memoryAddress(offset), iovArray.count() - offset, segmentSize, recipient);
 
         count++;
         return true;
@@ -115,11 +116,16 @@ final class NativeDatagramPacketArray {
             if (msg instanceof DatagramPacket) {
                 DatagramPacket packet = (DatagramPacket) msg;
                 ByteBuf buf = packet.content();
-                return add0(buf, buf.readerIndex(), buf.readableBytes(), packet.recipient());
+                return add0(buf, buf.readerIndex(), buf.readableBytes(), 0, packet.recipient());
+            }
+            if (msg instanceof SegmentedDatagramPacket) {
+                SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+                ByteBuf buf = packet.content();
+                return add0(buf, buf.readerIndex(), buf.readableBytes(), packet.segmentSize(), packet.recipient());
             }
             if (msg instanceof ByteBuf && connected) {
                 ByteBuf buf = (ByteBuf) msg;
-                return add0(buf, buf.readerIndex(), buf.readableBytes(), null);
+                return add0(buf, buf.readerIndex(), buf.readableBytes(), 0, null);
             }
             return false;
         }
@@ -141,9 +147,14 @@ final class NativeDatagramPacketArray {
         private int scopeId;
         private int port;
 
-        private void init(long memoryAddress, int count, InetSocketAddress recipient) {
+        // The size of the datagrams the content is split into by UDP_SEGMENT when sending, or was coalesced from by
+        // UDP_GRO when receiving. 0 if not used.
+        private int segmentSize;
+
+        private void init(long memoryAddress, int count, int segmentSize, InetSocketAddress recipient) {
             this.memoryAddress = memoryAddress;
             this.count = count;
+            this.segmentSize = segmentSize;
 
             if (recipient == null) {
                 this.scopeId = 0;
@@ -164,6 +175,39 @@ final class NativeDatagramPacketArray {
         }
 
         DatagramPacket newDatagramPacket(ByteBuf buffer, InetSocketAddress localAddress) throws UnknownHostException {
+            return new DatagramPacket(buffer.writerIndex(count), localAddress, sender());
+        }
+
+        /**
+         * Returns {@code true} if the kernel coalesced multiple received datagrams into this packet (UDP_GRO).
+         */
+        boolean isCoalesced() {
+            return segmentSize > 0 && count > segmentSize;
+        }
+
+        /**
+         * Adds one {@link DatagramPacket} per received datagram to {@code out}, splitting the content if it was
+         * {@link #isCoalesced()}. The ownership of {@code buffer} is transferred.
+         */
+        void addDatagramPackets(ByteBuf buffer, InetSocketAddress localAddress, List<Object> out)
+                throws UnknownHostException {
+            if (!isCoalesced()) {
+                out.add(newDatagramPacket(buffer, localAddress));
+                return;
+            }
+            try {
+                buffer.writerIndex(count);
+                InetSocketAddress sender = sender();
+                while (buffer.isReadable()) {
+                    ByteBuf segment = buffer.readRetainedSlice(Math.min(buffer.readableBytes(), segmentSize));
+                    out.add(new DatagramPacket(segment, localAddress, sender));
+                }
+            } finally {
+                buffer.release();
+            }
+        }
+
+        private InetSocketAddress sender() throws UnknownHostException {
             final InetAddress address;
             if (addrLen == ipv4Bytes.length) {
                 System.arraycopy(addr, 0, ipv4Bytes, 0, addrLen);
@@ -171,8 +215,7 @@ final class NativeDatagramPacketArray {
             } else {
                 address = Inet6Address.getByAddress(null, addr, scopeId);
             }
-            return new DatagramPacket(buffer.writerIndex(count),
-                    localAddress, new InetSocketAddress(address, port));
+            return new InetSocketAddress(address, port);
         }
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.VoidChannelPromise;
+import io.netty.util.internal.PromiseNotificationUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Keeps the {@link ByteBuf}s which were written with {@code MSG_ZEROCOPY} alive until the kernel notified that it
+ * does not need their memory anymore, and only then notifies the {@link ChannelPromise}s of the writes.
+ * <p>
+ * The kernel assigns a sequence number to every successful zero copy send of a socket, starting at {@code 0}, and
+ * reports the completed sends as ranges of sequence numbers. The buffers are stored in a ring in the order of their
+ * sequence number so a completion can be mapped to its buffers without a lookup. As a single buffer may take more
+ * than one send, the promises are only notified in the order of the sequence numbers.
+ * <p>
+ * This class is not thread-safe and must only be used from the {@link EpollEventLoop}.
+ */
+final class ZeroCopyCompletionQueue {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ZeroCopyCompletionQueue.class);
+
+    private ByteBuf[] buffers = new ByteBuf[16];
+    private ChannelPromise[] promises = new ChannelPromise[16];
+    private int head;
+    private int size;
+    // The sequence number of the buffer at head.
+    private int headSeq;
+    private boolean copied;
+
+    /**
+     * Adds the given {@link ByteBuf} for the next sequence number. The ownership of the {@link ByteBuf} is transferred
+     * to this queue. The {@link ChannelPromise} may be {@code null} if the send did not complete the write.
+     */
+    void add(ByteBuf buf, ChannelPromise promise) {
+        if (size == buffers.length) {
+            int length = buffers.length;
+            ByteBuf[] newBuffers = new ByteBuf[length << 1];
+            ChannelPromise[] newPromises = new ChannelPromise[length << 1];
+            for (int i = 0; i < size; i++) {
+                int slot = head + i & length - 1;
+                newBuffers[i] = buffers[slot];
+                newPromises[i] = promises[slot];
+            }
+            buffers = newBuffers;
+            promises = newPromises;
+            head = 0;
+        }
+        int slot = head + size & buffers.length - 1;
+        buffers[slot] = buf;
+        promises[slot] = promise;
+        size++;
+    }
+
+    /**
+     * Releases the buffers of the sequence numbers between {@code lo} and {@code hi} (both inclusive) and notifies
+     * the promises of all writes whose sends were completed.
+     */
+    void complete(int lo, int hi, boolean copied) {
+        if (copied) {
+            this.copied = true;
+        }
+        // Sequence numbers are unsigned 32 bit and wrap around, so only ever compare differences.
+        int count = hi - lo + 1;
+        for (int i = 0; i < count; i++) {
+            int index = lo + i - headSeq;
+            if (index < 0 || index >= size) {
+                continue;
+            }
+            int slot = head + index & buffers.length - 1;
+            ByteBuf buf = buffers[slot];
+            if (buf != null) {
+                buffers[slot] = null;
+                buf.release();
+            }
+        }
+        while (size != 0 && buffers[head] == null) {
+            ChannelPromise promise = promises[head];
+            if (promise != null) {
+                promises[head] = null;
+                safeSuccess(promise);
+            }
+            head = head + 1 & buffers.length - 1;
+            headSeq++;
+            size--;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the kernel reported that it had to copy the data of at least one send, in which case
+     * zero copy only adds overhead for this socket.
+     */
+    boolean isCopied() {
+        return copied;
+    }
+
+    /**
+     * Returns {@code true} if there are no buffers waiting for their completion.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Fails all promises, used once the socket was closed and no more completions will be received. The kernel may
+     * still send from the memory of the remaining buffers, so they are not released: releasing them would allow the
+     * memory to be reused (for example by a pooled allocator) and overwritten while it is still on the wire. Their
+     * memory is leaked instead.
+     */
+    void failAll(Throwable cause) {
+        for (int i = 0; i < size; i++) {
+            int slot = head + i & buffers.length - 1;
+            buffers[slot] = null;
+            ChannelPromise promise = promises[slot];
+            if (promise != null) {
+                promises[slot] = null;
+                safeFailure(promise, cause);
+            }
+        }
+        headSeq += size;
+        head = 0;
+        size = 0;
+    }
+
+    private static void safeSuccess(ChannelPromise promise) {
+        // Only log if the given promise is not of type VoidChannelPromise as trySuccess(...) is expected to return
+        // false.
+        PromiseNotificationUtil.trySuccess(promise, null, promise instanceof VoidChannelPromise ? null : logger);
+    }
+
+    private static void safeFailure(ChannelPromise promise, Throwable cause) {
+        // Only log if the given promise is not of type VoidChannelPromise as tryFailure(...) is expected to return
+        // false.
+        PromiseNotificationUtil.tryFailure(promise, cause, promise instanceof VoidChannelPromise ? null : logger);
+    }
+}
@@ -15,8 +15,11 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.ChannelException;
+import org.junit.Assume;
 import org.junit.Test;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class EpollDatagramChannelConfigTest {
@@ -29,4 +32,25 @@ public class EpollDatagramChannelConfigTest {
         assertTrue(channel.config().getOption(EpollChannelOption.IP_FREEBIND));
         channel.fd().close();
     }
+
+    @Test
+    public void testUdpGro() throws Exception {
+        Epoll.ensureAvailability();
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        try {
+            assertFalse(channel.config().isUdpGro());
+            try {
+                channel.config().setOption(EpollChannelOption.UDP_GRO, true);
+            } catch (ChannelException e) {
+                // Requires Linux kernel 5.0 or later.
+                Assume.assumeNoException(e);
+            }
+            assertTrue(channel.config().getOption(EpollChannelOption.UDP_GRO));
+            assertTrue(channel.socket.isUdpGro());
+            channel.config().setUdpGro(false);
+            assertFalse(channel.socket.isUdpGro());
+        } finally {
+            channel.fd().close();
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.unix.Limits;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.NetUtil.LOCALHOST4;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EpollDatagramSegmentTest {
+    private static final int SEGMENT_SIZE = 1000;
+    private static final int NUM_SEGMENTS = 10;
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void beforeClass() {
+        Assume.assumeTrue(SegmentedDatagramPacket.isSupported());
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedDatagramPacket() throws Exception {
+        testSegmentedDatagramPacket(false, NUM_SEGMENTS * SEGMENT_SIZE);
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedDatagramPacketSmallLastSegment() throws Exception {
+        testSegmentedDatagramPacket(false, NUM_SEGMENTS * SEGMENT_SIZE - SEGMENT_SIZE / 2);
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedDatagramPacketWithGro() throws Exception {
+        testSegmentedDatagramPacket(true, NUM_SEGMENTS * SEGMENT_SIZE);
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedDatagramPacketSmallLastSegmentWithGro() throws Exception {
+        testSegmentedDatagramPacket(true, NUM_SEGMENTS * SEGMENT_SIZE - SEGMENT_SIZE / 2);
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedDatagramPacketDoesNotFit() throws Exception {
+        final BlockingQueue<DatagramPacket> received = new LinkedBlockingQueue<DatagramPacket>();
+        Bootstrap sb = new Bootstrap().group(group)
+                .channel(EpollDatagramChannel.class)
+                .handler(new SimpleChannelInboundHandler<DatagramPacket>(false) {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                        received.add(msg);
+                    }
+                });
+        Bootstrap cb = new Bootstrap().group(group)
+                .channel(EpollDatagramChannel.class)
+                .handler(new ChannelInboundHandlerAdapter());
+
+        Channel sc = sb.bind(new InetSocketAddress(LOCALHOST4, 0)).sync().channel();
+        Channel cc = cb.bind(new InetSocketAddress(LOCALHOST4, 0)).sync().channel();
+        try {
+            // Not copied into a single buffer on write, but does not fit into the IovArray either.
+            CompositeByteBuf content = Unpooled.compositeBuffer(Limits.IOV_MAX);
+            for (int i = 0; i < Limits.IOV_MAX; i++) {
+                content.addComponent(true, Unpooled.directBuffer(10).writeZero(10));
+            }
+            ChannelFuture future = cc.writeAndFlush(
+                    new SegmentedDatagramPacket(content, SEGMENT_SIZE, (InetSocketAddress) sc.localAddress()));
+            future.await();
+            assertTrue(future.cause() instanceof IOException);
+
+            // Must neither be sent as a single datagram nor break following writes.
+            ByteBuf data = Unpooled.directBuffer(SEGMENT_SIZE).writeZero(SEGMENT_SIZE);
+            cc.writeAndFlush(new SegmentedDatagramPacket(data, SEGMENT_SIZE,
+                    (InetSocketAddress) sc.localAddress())).sync();
+            DatagramPacket datagram = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(datagram);
+            try {
+                assertEquals(SEGMENT_SIZE, datagram.content().readableBytes());
+            } finally {
+                datagram.release();
+            }
+            assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            sc.close().sync();
+            cc.close().sync();
+        }
+    }
+
+    private static void testSegmentedDatagramPacket(boolean gro, int length) throws Exception {
+        final BlockingQueue<DatagramPacket> received = new LinkedBlockingQueue<DatagramPacket>();
+        Bootstrap sb = new Bootstrap().group(group)
+                .channel(EpollDatagramChannel.class)
+                // UDP_GRO may coalesce the datagrams, so use buffers that can hold all of them.
+                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(64 * 1024))
+                .handler(new SimpleChannelInboundHandler<DatagramPacket>(false) {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                        received.add(msg);
+                    }
+                });
+        Bootstrap cb = new Bootstrap().group(group)
+                .channel(EpollDatagramChannel.class)
+                .handler(new ChannelInboundHandlerAdapter());
+
+        EpollDatagramChannel sc = (EpollDatagramChannel) sb.bind(new InetSocketAddress(LOCALHOST4, 0)).sync().channel();
+        Channel cc = cb.bind(new InetSocketAddress(LOCALHOST4, 0)).sync().channel();
+        try {
+            if (gro) {
+                try {
+                    sc.config().setUdpGro(true);
+                } catch (ChannelException e) {
+                    // Requires Linux kernel 5.0 or later.
+                    Assume.assumeNoException(e);
+                }
+            }
+
+            ByteBuf content = Unpooled.directBuffer(length);
+            for (int i = 0; i < length; i++) {
+                content.writeByte(i / SEGMENT_SIZE);
+            }
+            SegmentedDatagramPacket packet = new SegmentedDatagramPacket(content, SEGMENT_SIZE, sc.localAddress());
+            assertEquals(NUM_SEGMENTS, packet.numSegments());
+            cc.writeAndFlush(packet).sync();
+
+            for (int i = 0; i < NUM_SEGMENTS; i++) {
+                DatagramPacket datagram = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(datagram);
+                try {
+                    ByteBuf buf = datagram.content();
+                    int expectedLength = Math.min(SEGMENT_SIZE, length - i * SEGMENT_SIZE);
+                    assertEquals(expectedLength, buf.readableBytes());
+                    for (int j = 0; j < expectedLength; j++) {
+                        assertEquals(i, buf.getByte(buf.readerIndex() + j));
+                    }
+                    assertEquals(cc.localAddress(), datagram.sender());
+                } finally {
+                    datagram.release();
+                }
+            }
+            assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            sc.close().sync();
+            cc.close().sync();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.KernelTlsCryptoInfo;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class EpollKernelTlsTest {
+
+    private static final byte[] FIRST_RECORD = { 0, 0, 0, 0, 0, 0, 0, 1 };
+
+    private static KernelTlsCryptoInfo newCryptoInfo(byte key) {
+        byte[] keyBytes = new byte[16];
+        Arrays.fill(keyBytes, key);
+        return new KernelTlsCryptoInfo(KernelTlsCryptoInfo.TLS_1_2_VERSION, KernelTlsCryptoInfo.Cipher.AES_GCM_128,
+                keyBytes, new byte[] { key, key, key, key }, FIRST_RECORD.clone(), FIRST_RECORD.clone());
+    }
+
+    private static void enableKernelTls(final EpollSocketChannel ch, final KernelTlsCryptoInfo tx,
+                                        final KernelTlsCryptoInfo rx) throws Throwable {
+        try {
+            ch.eventLoop().submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    ch.enableKernelTls(tx, rx);
+                    return null;
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testEnableKernelTls() throws Throwable {
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        final BlockingQueue<EpollSocketChannel> accepted = new LinkedBlockingQueue<EpollSocketChannel>();
+        final BlockingQueue<ByteBuf> received = new LinkedBlockingQueue<ByteBuf>();
+        Channel serverChannel = null;
+        EpollSocketChannel ch = null;
+        try {
+            serverChannel = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        public void channelActive(ChannelHandlerContext ctx) {
+                            accepted.add((EpollSocketChannel) ctx.channel());
+                        }
+
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            received.add(msg.retain());
+                        }
+                    })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+            ch = (EpollSocketChannel) new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+            EpollSocketChannel child = accepted.take();
+
+            KernelTlsCryptoInfo clientWrite = newCryptoInfo((byte) 1);
+            KernelTlsCryptoInfo serverWrite = newCryptoInfo((byte) 2);
+            try {
+                enableKernelTls(ch, clientWrite, serverWrite);
+            } catch (IOException e) {
+                // The connection must still be usable if the kernel does not support TLS.
+                Assert.assertTrue(ch.isOpen());
+                Assert.assertFalse(ch.isKernelTlsEnabled());
+                assertWrite(ch, received);
+                // Requires Linux kernel 4.17 or later with the tls module.
+                Assume.assumeNoException(e);
+            }
+            Assert.assertTrue(ch.isKernelTlsEnabled());
+            enableKernelTls(child, serverWrite, clientWrite);
+            Assert.assertTrue(child.isKernelTlsEnabled());
+
+            // Both sides encrypt and decrypt in the kernel, so the application only sees plaintext.
+            assertWrite(ch, received);
+        } finally {
+            if (ch != null) {
+                ch.close().syncUninterruptibly();
+            }
+            if (serverChannel != null) {
+                serverChannel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+        }
+    }
+
+    private static void assertWrite(Channel ch, BlockingQueue<ByteBuf> received) throws Exception {
+        byte[] data = new byte[64 * 1024];
+        new Random().nextBytes(data);
+        ch.writeAndFlush(Unpooled.wrappedBuffer(data)).syncUninterruptibly();
+        ByteBuf all = Unpooled.buffer(data.length);
+        try {
+            while (all.readableBytes() < data.length) {
+                ByteBuf buf = received.take();
+                all.writeBytes(buf);
+                buf.release();
+            }
+            Assert.assertEquals(Unpooled.wrappedBuffer(data), all);
+        } finally {
+            all.release();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testSslHandlerFileRegion() throws Throwable {
+        Assume.assumeTrue(OpenSsl.isAvailable());
+        SelfSignedCertificate ssc = new SelfSignedCertificate();
+        final SslContext serverContext = SslContextBuilder.forServer(ssc.certificate(), ssc.privateKey())
+                .sslProvider(SslProvider.OPENSSL)
+                .protocols("TLSv1.2")
+                .ciphers(Collections.singletonList("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"))
+                .build();
+        final SslContext clientContext = SslContextBuilder.forClient()
+                .sslProvider(SslProvider.OPENSSL)
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .protocols("TLSv1.2")
+                .build();
+
+        final byte[] data = new byte[1024 * 1024];
+        new Random().nextBytes(data);
+        final File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final BlockingQueue<SslHandler> serverHandlers = new LinkedBlockingQueue<SslHandler>();
+        Channel serverChannel = null;
+        Channel ch = null;
+        try {
+            serverChannel = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            SslHandler sslHandler = serverContext.newHandler(ch.alloc());
+                            sslHandler.setKernelTlsOffload(true);
+                            serverHandlers.add(sslHandler);
+                            ch.pipeline().addLast(sslHandler, new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+                                        throws Exception {
+                                    if (evt == SslHandshakeCompletionEvent.SUCCESS) {
+                                        // Written before the connection is handed over to the kernel, so this
+                                        // must be held back until it is known where the encryption happens.
+                                        ctx.writeAndFlush(Unpooled.wrappedBuffer(data, 0, 1024));
+                                    }
+                                    ctx.fireUserEventTriggered(evt);
+                                }
+
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                                    ((ByteBuf) msg).release();
+                                    EpollSocketChannel channel = (EpollSocketChannel) ctx.channel();
+                                    if (channel.isKernelTlsEnabled()) {
+                                        Assert.assertNull(ctx.pipeline().get(SslHandler.class));
+                                        ctx.writeAndFlush(new DefaultFileRegion(
+                                                new RandomAccessFile(file, "r").getChannel(), 1024,
+                                                data.length - 1024));
+                                    } else {
+                                        ctx.writeAndFlush(Unpooled.wrappedBuffer(data, 1024, data.length - 1024));
+                                    }
+                                }
+                            });
+                        }
+                    })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            ch = new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(clientContext.newHandler(ch.alloc()),
+                                    new SimpleChannelInboundHandler<ByteBuf>() {
+                                        @Override
+                                        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                                            if (evt == SslHandshakeCompletionEvent.SUCCESS) {
+                                                ctx.writeAndFlush(Unpooled.wrappedBuffer(new byte[] { 1 }));
+                                            }
+                                            ctx.fireUserEventTriggered(evt);
+                                        }
+
+                                        @Override
+                                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                                            received.writeBytes(msg);
+                                            if (received.readableBytes() == data.length) {
+                                                latch.countDown();
+                                            }
+                                        }
+                                    });
+                        }
+                    })
+                    .connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+
+            latch.await();
+            Assert.assertEquals(Unpooled.wrappedBuffer(data), received);
+
+            // The close_notify is received by the kernel, which must still complete the sslCloseFuture.
+            SslHandler serverHandler = serverHandlers.take();
+            ch.pipeline().get(SslHandler.class).closeOutbound();
+            Assert.assertTrue(serverHandler.sslCloseFuture().await().isSuccess());
+        } finally {
+            received.release();
+            if (ch != null) {
+                ch.close().syncUninterruptibly();
+            }
+            if (serverChannel != null) {
+                serverChannel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+            ssc.delete();
+        }
+    }
+}
@@ -134,6 +134,33 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testZeroCopy() {
+        assertFalse(ch.config().isZeroCopy());
+        try {
+            ch.config().setZeroCopy(true);
+        } catch (ChannelException e) {
+            // Requires Linux kernel 4.14 or later.
+            assumeNoException(e);
+        }
+        assertTrue(ch.config().getOption(EpollChannelOption.SO_ZEROCOPY));
+        ch.config().setOption(EpollChannelOption.SO_ZEROCOPY, false);
+        assertFalse(ch.config().isZeroCopy());
+    }
+
+    @Test
+    public void testZeroCopyThreshold() {
+        assertEquals(10 * 1024, ch.config().getZeroCopyThreshold());
+        ch.config().setOption(EpollChannelOption.ZEROCOPY_THRESHOLD, 4096);
+        assertEquals(4096, (int) ch.config().getOption(EpollChannelOption.ZEROCOPY_THRESHOLD));
+        try {
+            ch.config().setZeroCopyThreshold(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
     @Test
     public void testSetOptionWhenClosed() {
         ch.close().syncUninterruptibly();
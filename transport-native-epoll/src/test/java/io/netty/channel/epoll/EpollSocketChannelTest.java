@@ -16,13 +16,24 @@
 package io.netty.channel.epoll;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class EpollSocketChannelTest {
 
@@ -63,6 +74,66 @@ public class EpollSocketChannelTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testZeroCopyWrite() throws Exception {
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        final byte[] data = new byte[1024 * 1024];
+        new Random().nextBytes(data);
+        final byte[] received = new byte[data.length];
+        final CountDownLatch latch = new CountDownLatch(1);
+        Channel serverChannel = null;
+        EpollSocketChannel ch = null;
+        try {
+            ServerBootstrap sb = new ServerBootstrap();
+            serverChannel = sb.group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        private int offset;
+
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            int length = msg.readableBytes();
+                            msg.readBytes(received, offset, length);
+                            offset += length;
+                            if (offset == received.length) {
+                                latch.countDown();
+                            }
+                        }
+                    })
+                    .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+
+            Bootstrap bootstrap = new Bootstrap();
+            ch = (EpollSocketChannel) bootstrap.group(group)
+                    .channel(EpollSocketChannel.class)
+                    .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .option(EpollChannelOption.ZEROCOPY_THRESHOLD, 4096)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+            try {
+                ch.config().setZeroCopy(true);
+            } catch (ChannelException e) {
+                // Requires Linux kernel 4.14 or later.
+                Assume.assumeNoException(e);
+            }
+
+            ByteBuf buf = ch.alloc().directBuffer(data.length).writeBytes(data);
+            Assume.assumeTrue(buf.hasMemoryAddress());
+            ch.writeAndFlush(buf).syncUninterruptibly();
+            // The promise is only notified once the kernel notified the completion and the buffer was released.
+            Assert.assertEquals(0, buf.refCnt());
+            latch.await();
+            Assert.assertArrayEquals(data, received);
+        } finally {
+            if (ch != null) {
+                ch.close().syncUninterruptibly();
+            }
+            if (serverChannel != null) {
+                serverChannel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+        }
+    }
+
     private static void assertTcpInfo0(EpollTcpInfo info) throws Exception {
         Assert.assertNotNull(info);
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ZeroCopyCompletionQueueTest {
+
+    private static ByteBuf[] newBuffers(int count) {
+        ByteBuf[] buffers = new ByteBuf[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = Unpooled.buffer(1);
+        }
+        return buffers;
+    }
+
+    @Test
+    public void testCompleteInOrder() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(40);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf, null);
+        }
+        queue.complete(0, 9, false);
+        for (int i = 0; i < buffers.length; i++) {
+            assertEquals(i < 10 ? 0 : 1, buffers[i].refCnt());
+        }
+        queue.complete(10, 39, false);
+        for (ByteBuf buf : buffers) {
+            assertEquals(0, buf.refCnt());
+        }
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.isCopied());
+    }
+
+    @Test
+    public void testCompleteOutOfOrder() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(3);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf, null);
+        }
+        queue.complete(1, 2, true);
+        assertEquals(1, buffers[0].refCnt());
+        assertEquals(0, buffers[1].refCnt());
+        assertEquals(0, buffers[2].refCnt());
+        assertFalse(queue.isEmpty());
+        assertTrue(queue.isCopied());
+
+        // A duplicated completion must not release twice.
+        queue.complete(1, 1, false);
+        queue.complete(0, 0, false);
+        assertEquals(0, buffers[0].refCnt());
+        assertTrue(queue.isEmpty());
+
+        // The next buffer gets sequence number 3.
+        ByteBuf buf = Unpooled.buffer(1);
+        queue.add(buf, null);
+        queue.complete(3, 3, false);
+        assertEquals(0, buf.refCnt());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPromisesNotifiedInOrder() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        // The first buffer took two sends.
+        ByteBuf first = Unpooled.buffer(2);
+        ChannelPromise firstPromise = new DefaultChannelPromise(channel);
+        queue.add(first.retain(), null);
+        queue.add(first, firstPromise);
+        ByteBuf second = Unpooled.buffer(1);
+        ChannelPromise secondPromise = new DefaultChannelPromise(channel);
+        queue.add(second, secondPromise);
+
+        queue.complete(1, 2, false);
+        assertEquals(0, second.refCnt());
+        assertEquals(1, first.refCnt());
+        // Not notified before the completion of the first send of the first buffer.
+        assertFalse(firstPromise.isDone());
+        assertFalse(secondPromise.isDone());
+
+        queue.complete(0, 0, false);
+        assertEquals(0, first.refCnt());
+        assertTrue(firstPromise.isSuccess());
+        assertTrue(secondPromise.isSuccess());
+        assertTrue(queue.isEmpty());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testGrowAfterCompletions() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        int seq = 0;
+        // Move the head of the ring so growing it needs to copy around the end.
+        for (; seq < 20; seq++) {
+            queue.add(Unpooled.buffer(1), null);
+            queue.complete(seq, seq, false);
+        }
+        ByteBuf[] buffers = newBuffers(50);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf, null);
+        }
+        queue.complete(seq, seq + 48, false);
+        assertEquals(1, buffers[49].refCnt());
+        queue.complete(seq + 49, seq + 49, false);
+        for (ByteBuf buf : buffers) {
+            assertEquals(0, buf.refCnt());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testFailAll() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(20);
+        ChannelPromise promise = new DefaultChannelPromise(channel);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf, null);
+        }
+        queue.add(Unpooled.buffer(1), promise);
+        queue.complete(5, 5, false);
+        assertFalse(promise.isDone());
+        ClosedChannelException cause = new ClosedChannelException();
+        queue.failAll(cause);
+        // The kernel may still send from the buffers which were not completed, so they must not be released.
+        for (int i = 0; i < buffers.length; i++) {
+            assertEquals(i == 5 ? 0 : 1, buffers[i].refCnt());
+        }
+        assertSame(cause, promise.cause());
+        assertTrue(queue.isEmpty());
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,719 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.Errors.ERRNO_EINPROGRESS_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERROR_ENETUNREACH_NEGATIVE;
+import static io.netty.channel.unix.Errors.newIOException;
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringChannel.class);
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // The operations which may be in flight for a channel. As long as any of these is set the file descriptor must
+    // not be closed as the kernel may still access it and the memory that belongs to the operation.
+    static final int READ_SCHEDULED = 1;
+    static final int WRITE_SCHEDULED = 1 << 1;
+    static final int CONNECT_SCHEDULED = 1 << 2;
+    static final int POLL_IN_SCHEDULED = 1 << 3;
+    static final int POLL_OUT_SCHEDULED = 1 << 4;
+
+    // Used as data of the IORING_OP_POLL_ADD to know for which events we polled.
+    static final short POLL_IN = 1;
+    static final short POLL_OUT = 2;
+
+    final LinuxSocket socket;
+    int ioState;
+
+    // The user_data of the operations in flight, used to cancel them.
+    long readUserData;
+    long writeUserData;
+    private long connectUserData;
+    private long pollInUserData;
+    private long pollOutUserData;
+
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+    private ByteBuffer remoteAddressMemory;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    boolean inputClosedSeenErrorOnRead;
+
+    protected volatile boolean active;
+    // We can not use socket.isOpen() as the file descriptor is only closed once all operations that are in flight
+    // completed.
+    private volatile boolean open = true;
+
+    AbstractIOUringChannel(LinuxSocket fd) {
+        this(null, fd, false);
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent);
+        this.socket = checkNotNull(fd, "fd");
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            this.local = fd.localAddress();
+            this.remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent);
+        this.socket = checkNotNull(fd, "fd");
+        this.active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        this.local = fd.localAddress();
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public abstract IOUringChannelConfig config();
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    final IOUringSubmissionQueue submissionQueue() {
+        return ((IOUringEventLoop) eventLoop()).submissionQueue();
+    }
+
+    final AbstractUringUnsafe ioUringUnsafe() {
+        return (AbstractUringUnsafe) unsafe();
+    }
+
+    final boolean hasPendingOperations() {
+        return ioState != 0;
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        ((IOUringEventLoop) eventLoop()).add(this);
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        if (isOpen()) {
+            // Operations of a closed channel were already cancelled in doClose().
+            cancelPendingOperations();
+        }
+        ((IOUringEventLoop) eventLoop()).remove(this);
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        open = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(new ClosedChannelException());
+                connectPromise = null;
+            }
+
+            ScheduledFuture<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+        } finally {
+            if (isRegistered() && hasPendingOperations()) {
+                // The file descriptor will be closed by the IOUringEventLoop once all operations completed.
+                cancelPendingOperations();
+            } else {
+                closeFd();
+            }
+        }
+    }
+
+    /**
+     * Cancel all operations which are currently in flight.
+     */
+    private void cancelPendingOperations() {
+        if (!hasPendingOperations()) {
+            return;
+        }
+        IOUringSubmissionQueue submissionQueue = submissionQueue();
+        int fd = socket.intValue();
+        if ((ioState & READ_SCHEDULED) != 0) {
+            submissionQueue.addCancel(fd, readUserData);
+        }
+        if ((ioState & WRITE_SCHEDULED) != 0) {
+            submissionQueue.addCancel(fd, writeUserData);
+        }
+        if ((ioState & CONNECT_SCHEDULED) != 0) {
+            submissionQueue.addCancel(fd, connectUserData);
+        }
+        if ((ioState & POLL_IN_SCHEDULED) != 0) {
+            submissionQueue.addCancel(fd, pollInUserData);
+        }
+        if ((ioState & POLL_OUT_SCHEDULED) != 0) {
+            submissionQueue.addCancel(fd, pollOutUserData);
+        }
+    }
+
+    /**
+     * Close the file descriptor and release all native resources. Must only be called once no operations are in
+     * flight anymore.
+     */
+    final void closeFd() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the file descriptor of {}.", this, e);
+        } finally {
+            if (remoteAddressMemory != null) {
+                Buffer.free(remoteAddressMemory);
+                remoteAddressMemory = null;
+            }
+            releaseNativeResources();
+        }
+    }
+
+    /**
+     * Called once the file descriptor was closed and so all native memory that is used by the channel can be
+     * released.
+     */
+    void releaseNativeResources() {
+        // NOOP
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        // Channel.read() or ChannelHandlerContext.read() was called
+        final AbstractUringUnsafe unsafe = ioUringUnsafe();
+        unsafe.readPending = true;
+        if ((ioState & (READ_SCHEDULED | POLL_IN_SCHEDULED)) == 0) {
+            unsafe.scheduleRead();
+        }
+    }
+
+    final void clearReadPending() {
+        if (isRegistered()) {
+            final EventLoop loop = eventLoop();
+            final AbstractUringUnsafe unsafe = ioUringUnsafe();
+            if (loop.inEventLoop()) {
+                unsafe.readPending = false;
+            } else {
+                // Schedule a task as readPending is only accessed from within the EventLoop.
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!config().isAutoRead()) {
+                            unsafe.readPending = false;
+                        }
+                    }
+                });
+            }
+        } else {
+            // Not registered yet so there can not be any read in progress.
+            ioUringUnsafe().readPending = false;
+        }
+    }
+
+    final void schedulePollIn() {
+        assert (ioState & POLL_IN_SCHEDULED) == 0;
+        pollInUserData = submissionQueue().addPollAdd(socket.intValue(), Native.POLLIN, POLL_IN);
+        ioState |= POLL_IN_SCHEDULED;
+    }
+
+    final void schedulePollOut() {
+        assert (ioState & POLL_OUT_SCHEDULED) == 0;
+        pollOutUserData = submissionQueue().addPollAdd(socket.intValue(), Native.POLLOUT, POLL_OUT);
+        ioState |= POLL_OUT_SCHEDULED;
+    }
+
+    @Override
+    protected abstract AbstractUringUnsafe newUnsafe();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    /**
+     * Returns the memory address of the given index of a direct {@link ByteBuf}.
+     */
+    static long memoryAddress(ByteBuf buf, int index, int length) {
+        if (buf.hasMemoryAddress()) {
+            return buf.memoryAddress() + index;
+        }
+        ByteBuffer nioBuffer = buf.internalNioBuffer(index, length);
+        return Buffer.memoryAddress(nioBuffer) + nioBuffer.position();
+    }
+
+    /**
+     * Allocate a {@link ByteBuf} for a read operation. As the kernel writes into the memory directly it must be
+     * direct.
+     */
+    static ByteBuf allocateDirect(ByteBufAllocator alloc, AbstractUringUnsafe unsafe) {
+        ByteBuf byteBuf = unsafe.recvBufAllocHandle().allocate(alloc);
+        if (!byteBuf.isDirect()) {
+            int capacity = byteBuf.capacity();
+            byteBuf.release();
+            byteBuf = alloc.directBuffer(capacity);
+        }
+        return byteBuf;
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    protected abstract class AbstractUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+
+        /**
+         * Submit a read operation. Called when {@link #doBeginRead()} was called and no read is in flight.
+         */
+        abstract void scheduleRead();
+
+        /**
+         * Called once a read operation completed.
+         */
+        abstract void readComplete(int res, short data);
+
+        /**
+         * Called once a write operation completed.
+         */
+        void writeComplete(int res, short data) {
+            // NOOP
+        }
+
+        /**
+         * Dispatch a completion for an operation of this channel.
+         */
+        final void handle(byte op, int res, short data) {
+            switch (op) {
+                case Native.IORING_OP_ACCEPT:
+                case Native.IORING_OP_RECV:
+                case Native.IORING_OP_RECVMSG:
+                    ioState &= ~READ_SCHEDULED;
+                    readComplete(res, data);
+                    break;
+                case Native.IORING_OP_WRITEV:
+                case Native.IORING_OP_SENDMSG:
+                    ioState &= ~WRITE_SCHEDULED;
+                    writeComplete(res, data);
+                    break;
+                case Native.IORING_OP_CONNECT:
+                    ioState &= ~CONNECT_SCHEDULED;
+                    connectComplete(res);
+                    break;
+                case Native.IORING_OP_POLL_ADD:
+                    if (data == POLL_IN) {
+                        ioState &= ~POLL_IN_SCHEDULED;
+                        pollInComplete(res);
+                    } else {
+                        ioState &= ~POLL_OUT_SCHEDULED;
+                        pollOutComplete(res);
+                    }
+                    break;
+                default:
+                    // Completions of IORING_OP_ASYNC_CANCEL, there is nothing to do.
+                    break;
+            }
+        }
+
+        private void pollInComplete(int res) {
+            // We polled because the last read operation did not find anything to read, try it again now.
+            if (isOpen() && (ioState & READ_SCHEDULED) == 0) {
+                scheduleRead();
+            }
+        }
+
+        private void pollOutComplete(int res) {
+            if (!isOpen()) {
+                return;
+            }
+            if (connectPromise != null) {
+                // pending connect which is now complete so handle it.
+                finishConnect();
+            } else if (!socket.isOutputShutdown()) {
+                // directly call super.flush0() to force a flush now
+                super.flush0();
+            }
+        }
+
+        @Override
+        protected final void flush0() {
+            // Flush immediately only when there's no pending flush.
+            // If there's a pending flush operation, the event loop will call super.flush0() once the operation
+            // completed, and thus there's no need to call it now.
+            if ((ioState & (WRITE_SCHEDULED | POLL_OUT_SCHEDULED | CONNECT_SCHEDULED)) == 0) {
+                super.flush0();
+            }
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                ConnectTimeoutException cause =
+                                        new ConnectTimeoutException("connection timed out: " + remoteAddress);
+                                if (connectPromise != null && connectPromise.tryFailure(cause)) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void connectComplete(int res) {
+            if (remoteAddressMemory != null) {
+                Buffer.free(remoteAddressMemory);
+                remoteAddressMemory = null;
+            }
+            if (connectPromise == null) {
+                // Closed or cancelled in the meantime, the promise has been notified already.
+                return;
+            }
+            if (res == ERRNO_EINPROGRESS_NEGATIVE) {
+                // The socket is non-blocking so the connect may not have finished yet. Wait until it is writable.
+                schedulePollOut();
+                return;
+            }
+            if (res < 0) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(
+                        newConnectException(res), requestedRemoteAddress));
+                cancelConnectTimeout();
+                return;
+            }
+            finishConnect();
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        private void cancelConnectTimeout() {
+            // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+            // See https://github.com/netty/netty/issues/1770
+            if (connectTimeoutFuture != null) {
+                connectTimeoutFuture.cancel(false);
+            }
+            connectPromise = null;
+        }
+
+        private void finishConnect() {
+            // Note this method is invoked by the event loop only if the connection attempt was
+            // neither cancelled nor timed out.
+
+            assert eventLoop().inEventLoop();
+
+            boolean connectStillInProgress = false;
+            try {
+                boolean wasActive = isActive();
+                if (!doFinishConnect()) {
+                    connectStillInProgress = true;
+                    return;
+                }
+                fulfillConnectPromise(connectPromise, wasActive);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+            } finally {
+                if (!connectStillInProgress) {
+                    cancelConnectTimeout();
+                }
+            }
+            if (isActive()) {
+                // Write everything that was flushed while we were connecting.
+                flush0();
+            }
+        }
+
+        /**
+         * Finish the connect
+         */
+        private boolean doFinishConnect() throws Exception {
+            if (socket.finishConnect()) {
+                if (requestedRemoteAddress instanceof InetSocketAddress) {
+                    remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                }
+                requestedRemoteAddress = null;
+                local = socket.localAddress();
+                return true;
+            }
+            schedulePollOut();
+            return false;
+        }
+    }
+
+    private static IOException newConnectException(int res) {
+        if (res == ERROR_ENETUNREACH_NEGATIVE) {
+            return new NoRouteToHostException();
+        }
+        return new ConnectException(newIOException("connect", res).getMessage());
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+
+        InetSocketAddress remoteSocketAddr = remoteAddress instanceof InetSocketAddress
+                ? (InetSocketAddress) remoteAddress : null;
+        if (remoteSocketAddr != null) {
+            checkResolvable(remoteSocketAddr);
+        }
+
+        if (remote != null) {
+            // Check if already connected before trying to connect. This is needed as connect(...) will not return -1
+            // and set errno to EISCONN if a previous connect(...) attempt was setting errno to EINPROGRESS and finished
+            // later.
+            throw new AlreadyConnectedException();
+        }
+
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+
+        if (remoteSocketAddr == null) {
+            throw new UnsupportedOperationException("Unsupported address type: " + remoteAddress);
+        }
+        boolean success = false;
+        try {
+            remoteAddressMemory = Buffer.allocateDirectWithNativeOrder(Native.SIZEOF_SOCKADDR_STORAGE);
+            long remoteAddressMemoryAddress = Buffer.memoryAddress(remoteAddressMemory);
+            int addressLength = SockaddrIn.write(socket.isIPv6(), remoteAddressMemoryAddress, remoteSocketAddr);
+            connectUserData = submissionQueue().addConnect(
+                    socket.intValue(), remoteAddressMemoryAddress, addressLength, (short) 0);
+            ioState |= CONNECT_SCHEDULED;
+            success = true;
+        } finally {
+            if (!success) {
+                doClose();
+            }
+        }
+        // We always need to set the localAddress even if not connected yet as the bind already took place.
+        //
+        // See https://github.com/netty/netty/issues/3463
+        local = socket.localAddress();
+        return false;
+    }
+
+    void resetCachedAddresses() {
+        local = socket.localAddress();
+        remote = socket.remoteAddress();
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
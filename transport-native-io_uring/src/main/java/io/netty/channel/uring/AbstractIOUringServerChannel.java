@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.Errors;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+
+abstract class AbstractIOUringServerChannel extends AbstractIOUringChannel implements ServerChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+    AbstractIOUringServerChannel(LinuxSocket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected InetSocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected AbstractUringUnsafe newUnsafe() {
+        return new IOUringServerSocketUnsafe();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    abstract Channel newChildChannel(int fd) throws Exception;
+
+    final class IOUringServerSocketUnsafe extends AbstractUringUnsafe {
+        // true while an accept completion is processed, any read() which is requested in the meantime is handled once
+        // the processing is done.
+        private boolean acceptInProgress;
+
+        @Override
+        void scheduleRead() {
+            if (acceptInProgress || !isActive()) {
+                return;
+            }
+            recvBufAllocHandle().reset(config());
+            readUserData = submissionQueue().addAccept(socket.intValue(), (short) 0);
+            ioState |= READ_SCHEDULED;
+        }
+
+        @Override
+        void readComplete(int res, short data) {
+            if (!isOpen() || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                if (res >= 0) {
+                    // The channel was closed in the meantime, close the accepted connection.
+                    closeAccepted(res);
+                }
+                return;
+            }
+            if (res == ERRNO_EAGAIN_NEGATIVE) {
+                // The kernel did not wait for us, wait until there is a connection to accept and try again.
+                schedulePollIn();
+                return;
+            }
+            acceptInProgress = true;
+            try {
+                readComplete0(res);
+            } finally {
+                acceptInProgress = false;
+            }
+            if (readPending && (ioState & (READ_SCHEDULED | POLL_IN_SCHEDULED)) == 0) {
+                scheduleRead();
+            }
+        }
+
+        private void readComplete0(int res) {
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            Throwable exception = null;
+            if (res >= 0) {
+                allocHandle.lastBytesRead(1);
+                allocHandle.incMessagesRead(1);
+                readPending = false;
+                try {
+                    pipeline.fireChannelRead(newChildChannel(res));
+                } catch (Throwable t) {
+                    exception = t;
+                }
+            } else {
+                exception = Errors.newIOException("accept", res);
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+        }
+
+        private void closeAccepted(int fd) {
+            try {
+                new LinuxSocket(fd).close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+        }
+    }
+}
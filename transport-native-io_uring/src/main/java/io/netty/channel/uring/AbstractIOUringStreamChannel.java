@@ -0,0 +1,513 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.SocketWritableByteChannel;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.WritableByteChannel;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_ECONNRESET_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
+
+abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
+                    StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+
+    // Used as data of a IORING_OP_RECV which was submitted with MSG_DONTWAIT.
+    private static final short RECV_DONTWAIT = 1;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // Calling flush0 directly to ensure we not try to flush messages that were added via write(...) in the
+            // meantime.
+            ioUringUnsafe().flush0();
+        }
+    };
+
+    // The iovecs of the IORING_OP_WRITEV which is currently in flight. Lazy init as it is only used for writes.
+    private IovArray iovArray;
+    private WritableByteChannel byteChannel;
+    // Set when an IORING_OP_WRITEV failed and thrown on the next doWrite(...) so the failure is handled like any
+    // other write failure.
+    private IOException writeError;
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent, fd, active);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    @Override
+    protected AbstractUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        if (msg instanceof FileRegion) {
+            return msg;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        IOException error = writeError;
+        if (error != null) {
+            writeError = null;
+            throw error;
+        }
+        int writeSpinCount = config().getWriteSpinCount();
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                // Wrote all messages.
+                return;
+            }
+            if (msg instanceof ByteBuf) {
+                ByteBuf buf = (ByteBuf) msg;
+                if (!buf.isReadable()) {
+                    in.remove();
+                    continue;
+                }
+                scheduleWritev(in);
+                return;
+            }
+            if (msg instanceof FileRegion) {
+                // FileRegions are transferred directly and we only use io_uring to be notified once the socket is
+                // writable again.
+                if (!writeFileRegion(in, (FileRegion) msg)) {
+                    schedulePollOut();
+                    return;
+                }
+                if (--writeSpinCount == 0) {
+                    // Give other tasks a chance to run.
+                    eventLoop().execute(flushTask);
+                    return;
+                }
+                continue;
+            }
+            // Should never reach here.
+            throw new Error();
+        }
+    }
+
+    private void scheduleWritev(ChannelOutboundBuffer in) throws Exception {
+        IovArray array = iovArray;
+        if (array == null) {
+            iovArray = array = new IovArray();
+        } else {
+            array.clear();
+        }
+        array.maxBytes(config().getMaxBytesPerGatheringWrite());
+        in.forEachFlushedMessage(array);
+        writeUserData = submissionQueue().addWritev(socket.intValue(), array.memoryAddress(0), array.count(),
+                (short) 0);
+        ioState |= WRITE_SCHEDULED;
+    }
+
+    /**
+     * Write a {@link FileRegion} and return {@code false} if the socket is not writable at the moment.
+     */
+    private boolean writeFileRegion(ChannelOutboundBuffer in, FileRegion region) throws Exception {
+        if (region.transferred() >= region.count()) {
+            in.remove();
+            return true;
+        }
+
+        if (byteChannel == null) {
+            byteChannel = new IOUringSocketWritableByteChannel();
+        }
+        final long flushedAmount = region.transferTo(byteChannel, region.transferred());
+        if (flushedAmount > 0) {
+            in.progress(flushedAmount);
+            if (region.transferred() >= region.count()) {
+                in.remove();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    void releaseNativeResources() {
+        if (iovArray != null) {
+            iovArray.release();
+            iovArray = null;
+        }
+    }
+
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            shutdownInput0(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    private boolean shouldBreakReadReady(ChannelConfig config) {
+        return socket.isInputShutdown() && (inputClosedSeenErrorOnRead || !isAllowHalfClosure(config));
+    }
+
+    private static boolean isAllowHalfClosure(ChannelConfig config) {
+        return config instanceof SocketChannelConfig &&
+                ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    final class IOUringStreamUnsafe extends AbstractUringUnsafe {
+        // The buffer the IORING_OP_RECV which is currently in flight reads into.
+        private ByteBuf readBuffer;
+        // true while a read completion is processed, any read() which is requested in the meantime is handled once
+        // the processing is done.
+        private boolean readInProgress;
+
+        @Override
+        void scheduleRead() {
+            if (readInProgress || !isActive() || shouldBreakReadReady(config())) {
+                return;
+            }
+            recvBufAllocHandle().reset(config());
+            scheduleRecv(false);
+        }
+
+        private void scheduleRecv(boolean dontWait) {
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            ByteBuf byteBuf = allocateDirect(alloc(), this);
+            int writable = byteBuf.writableBytes();
+            allocHandle.attemptedBytesRead(writable);
+            long address = memoryAddress(byteBuf, byteBuf.writerIndex(), writable);
+            readBuffer = byteBuf;
+            // The first read of a read loop will complete once there is something to read, all following ones
+            // complete directly so we know once the socket was drained.
+            readUserData = submissionQueue().addRecv(socket.intValue(), address, 0, writable,
+                    dontWait ? Native.MSG_DONTWAIT : 0, dontWait ? RECV_DONTWAIT : 0);
+            ioState |= READ_SCHEDULED;
+        }
+
+        @Override
+        void readComplete(int res, short data) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (!isOpen() || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                byteBuf.release();
+                return;
+            }
+            readInProgress = true;
+            try {
+                readComplete0(res, data, byteBuf);
+            } finally {
+                readInProgress = false;
+            }
+            if (readPending && (ioState & (READ_SCHEDULED | POLL_IN_SCHEDULED)) == 0) {
+                // Channel.read() or ChannelHandlerContext.read() was called while we processed the completion.
+                scheduleRead();
+            }
+        }
+
+        private void readComplete0(int res, short data, ByteBuf byteBuf) {
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            if (res == ERRNO_EAGAIN_NEGATIVE) {
+                byteBuf.release();
+                if (data == RECV_DONTWAIT) {
+                    // Nothing left to read, this read loop is done.
+                    allocHandle.lastBytesRead(0);
+                    allocHandle.readComplete();
+                    pipeline.fireChannelReadComplete();
+                } else {
+                    // The kernel did not wait for us, wait until there is something to read and try again.
+                    schedulePollIn();
+                }
+                return;
+            }
+            if (res < 0) {
+                Throwable cause = res == ERRNO_ECONNRESET_NEGATIVE ?
+                        Errors.newConnectionResetException("recv", res) : Errors.newIOException("recv", res);
+                handleReadException(pipeline, byteBuf, cause, true, allocHandle);
+                return;
+            }
+            allocHandle.lastBytesRead(res);
+            if (res == 0) {
+                // EOF, the remote peer shutdown the output.
+                byteBuf.release();
+                readPending = false;
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+                shutdownInput(false);
+                return;
+            }
+            byteBuf.writerIndex(byteBuf.writerIndex() + res);
+            allocHandle.incMessagesRead(1);
+            readPending = false;
+            pipeline.fireChannelRead(byteBuf);
+
+            if (allocHandle.continueReading() && isActive() && !shouldBreakReadReady(config())) {
+                scheduleRecv(true);
+            } else {
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+            }
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
+                RecvByteBufAllocator.Handle allocHandle) {
+            if (byteBuf != null) {
+                if (byteBuf.isReadable()) {
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                } else {
+                    byteBuf.release();
+                }
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            pipeline.fireExceptionCaught(cause);
+            if (close || cause instanceof IOException) {
+                shutdownInput(false);
+            }
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        private void shutdownInput(boolean rdHup) {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure(config())) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        fireEventAndClose(ChannelInputShutdownEvent.INSTANCE);
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else if (!rdHup) {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        private void fireEventAndClose(Object evt) {
+            pipeline().fireUserEventTriggered(evt);
+            close(voidPromise());
+        }
+
+        @Override
+        void writeComplete(int res, short data) {
+            if (!isOpen() || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                return;
+            }
+            if (res >= 0) {
+                ChannelOutboundBuffer in = outboundBuffer();
+                if (in != null) {
+                    in.removeBytes(res);
+                }
+            } else if (res == ERRNO_EAGAIN_NEGATIVE) {
+                // The socket is not writable at the moment, try again once it is.
+                schedulePollOut();
+                return;
+            } else if (res == ERRNO_EPIPE_NEGATIVE || res == ERRNO_ECONNRESET_NEGATIVE) {
+                writeError = Errors.newConnectionResetException("writev", res);
+            } else {
+                writeError = Errors.newIOException("writev", res);
+            }
+            // Write everything that was flushed in the meantime or fail the pending writes if there was an error.
+            // Use flush0() as a handler may already have triggered a new write while we notified the promises.
+            flush0();
+        }
+    }
+
+    private final class IOUringSocketWritableByteChannel extends SocketWritableByteChannel {
+        IOUringSocketWritableByteChannel() {
+            super(socket);
+        }
+
+        @Override
+        protected ByteBufAllocator alloc() {
+            return AbstractIOUringStreamChannel.this.alloc();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERROR_ECONNREFUSED_NEGATIVE;
+
+/**
+ * {@link DatagramChannel} implementation that uses io_uring to submit {@code recvmsg} and {@code sendmsg}
+ * operations. Multicast is not supported yet.
+ */
+@UnstableApi
+public final class IOUringDatagramChannel extends AbstractIOUringChannel implements DatagramChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(true);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+                    StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
+                    StringUtil.simpleClassName(ByteBuf.class) + ", " +
+                    StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
+                    StringUtil.simpleClassName(ByteBuf.class) + ')';
+
+    // Used as data of a IORING_OP_RECVMSG which was submitted with MSG_DONTWAIT.
+    private static final short RECV_DONTWAIT = 1;
+
+    private volatile boolean connected;
+    private final IOUringDatagramChannelConfig config;
+
+    // The struct msghdr of the IORING_OP_RECVMSG and IORING_OP_SENDMSG which are in flight. Both are only released
+    // once the file descriptor was closed as the kernel may access them until then.
+    private ByteBuffer recvMsgHdrMemory;
+    private ByteBuffer sendMsgHdrMemory;
+
+    public IOUringDatagramChannel() {
+        this(null);
+    }
+
+    public IOUringDatagramChannel(InternetProtocolFamily family) {
+        super(null, family == null ?
+                LinuxSocket.newSocketDgram() : LinuxSocket.newSocketDgram(family == InternetProtocolFamily.IPv6),
+                false);
+        config = new IOUringDatagramChannelConfig(this);
+        recvMsgHdrMemory = Buffer.allocateDirectWithNativeOrder(MsgHdr.SIZE);
+        sendMsgHdrMemory = Buffer.allocateDirectWithNativeOrder(MsgHdr.SIZE);
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean isActive() {
+        return isOpen() && (config.getActiveOnOpen() && isRegistered() || active);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress) {
+        return joinGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return joinGroup(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()),
+                    null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return joinGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface,
+            ChannelPromise promise) {
+        return joinGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return joinGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress source, final ChannelPromise promise) {
+
+        ObjectUtil.checkNotNull(multicastAddress, "multicastAddress");
+        ObjectUtil.checkNotNull(networkInterface, "networkInterface");
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress) {
+        return leaveGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return leaveGroup(
+                    multicastAddress, NetworkInterface.getByInetAddress(localAddress().getAddress()), null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return leaveGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress,
+            NetworkInterface networkInterface, ChannelPromise promise) {
+        return leaveGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return leaveGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface, final InetAddress source,
+            final ChannelPromise promise) {
+        ObjectUtil.checkNotNull(multicastAddress, "multicastAddress");
+        ObjectUtil.checkNotNull(networkInterface, "networkInterface");
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, NetworkInterface networkInterface,
+            InetAddress sourceToBlock) {
+        return block(multicastAddress, networkInterface, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress sourceToBlock, final ChannelPromise promise) {
+        ObjectUtil.checkNotNull(multicastAddress, "multicastAddress");
+        ObjectUtil.checkNotNull(sourceToBlock, "sourceToBlock");
+        ObjectUtil.checkNotNull(networkInterface, "networkInterface");
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(InetAddress multicastAddress, InetAddress sourceToBlock) {
+        return block(multicastAddress, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, InetAddress sourceToBlock, ChannelPromise promise) {
+        try {
+            return block(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()),
+                    sourceToBlock, promise);
+        } catch (Throwable e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    protected AbstractUringUnsafe newUnsafe() {
+        return new IOUringDatagramChannelUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        super.doBind(localAddress);
+        active = true;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                // Wrote all messages.
+                return;
+            }
+            final ByteBuf data;
+            final InetSocketAddress remoteAddress;
+            if (msg instanceof AddressedEnvelope) {
+                @SuppressWarnings("unchecked")
+                AddressedEnvelope<ByteBuf, InetSocketAddress> envelope =
+                        (AddressedEnvelope<ByteBuf, InetSocketAddress>) msg;
+                data = envelope.content();
+                remoteAddress = envelope.recipient();
+            } else {
+                data = (ByteBuf) msg;
+                remoteAddress = null;
+            }
+            if (!data.isReadable()) {
+                in.remove();
+                continue;
+            }
+            scheduleSendmsg(data, remoteAddress);
+            return;
+        }
+    }
+
+    private void scheduleSendmsg(ByteBuf data, InetSocketAddress remoteAddress) {
+        long memory = Buffer.memoryAddress(sendMsgHdrMemory);
+        int addressLength = remoteAddress == null ? 0 :
+                SockaddrIn.write(socket.isIPv6(), MsgHdr.sockAddress(memory), remoteAddress);
+        int length = data.readableBytes();
+        MsgHdr.write(memory, memoryAddress(data, data.readerIndex(), length), length, addressLength);
+        writeUserData = submissionQueue().addSendmsg(socket.intValue(), memory, (short) 0);
+        ioState |= WRITE_SCHEDULED;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof DatagramPacket) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return isBufferCopyNeededForWrite(content) ?
+                    new DatagramPacket(newDirectBuffer(packet, content), packet.recipient()) : msg;
+        }
+
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return isBufferCopyNeededForWrite(buf) ? newDirectBuffer(buf) : buf;
+        }
+
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<Object, SocketAddress> e = (AddressedEnvelope<Object, SocketAddress>) msg;
+            if (e.content() instanceof ByteBuf &&
+                    (e.recipient() == null || e.recipient() instanceof InetSocketAddress)) {
+
+                ByteBuf content = (ByteBuf) e.content();
+                return isBufferCopyNeededForWrite(content) ?
+                        new DefaultAddressedEnvelope<ByteBuf, InetSocketAddress>(
+                                newDirectBuffer(e, content), (InetSocketAddress) e.recipient()) : e;
+            }
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    private static boolean isBufferCopyNeededForWrite(ByteBuf buf) {
+        // We always submit a single iovec so the data must be stored in one contiguous memory region.
+        return UnixChannelUtil.isBufferCopyNeededForWrite(buf) || buf.nioBufferCount() != 1;
+    }
+
+    @Override
+    public IOUringDatagramChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        socket.disconnect();
+        connected = active = false;
+        resetCachedAddresses();
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        // Connecting a datagram socket never blocks, so just do it directly.
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+        if (remoteAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) remoteAddress);
+        }
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+        socket.connect(remoteAddress);
+        resetCachedAddresses();
+        connected = true;
+        return true;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        super.doClose();
+        connected = false;
+    }
+
+    @Override
+    void releaseNativeResources() {
+        if (recvMsgHdrMemory != null) {
+            Buffer.free(recvMsgHdrMemory);
+            recvMsgHdrMemory = null;
+        }
+        if (sendMsgHdrMemory != null) {
+            Buffer.free(sendMsgHdrMemory);
+            sendMsgHdrMemory = null;
+        }
+    }
+
+    final class IOUringDatagramChannelUnsafe extends AbstractUringUnsafe {
+        // The buffer the IORING_OP_RECVMSG which is currently in flight reads into.
+        private ByteBuf readBuffer;
+        // true while a read completion is processed, any read() which is requested in the meantime is handled once
+        // the processing is done.
+        private boolean readInProgress;
+
+        @Override
+        void scheduleRead() {
+            if (readInProgress || !isActive()) {
+                return;
+            }
+            recvBufAllocHandle().reset(config());
+            scheduleRecvmsg(false);
+        }
+
+        private void scheduleRecvmsg(boolean dontWait) {
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            ByteBuf byteBuf = allocateDirect(alloc(), this);
+            int writable = byteBuf.writableBytes();
+            allocHandle.attemptedBytesRead(writable);
+            readBuffer = byteBuf;
+            long memory = Buffer.memoryAddress(recvMsgHdrMemory);
+            MsgHdr.write(memory, memoryAddress(byteBuf, byteBuf.writerIndex(), writable), writable,
+                    Native.SIZEOF_SOCKADDR_STORAGE);
+            readUserData = submissionQueue().addRecvmsg(socket.intValue(), memory,
+                    dontWait ? Native.MSG_DONTWAIT : 0, dontWait ? RECV_DONTWAIT : 0);
+            ioState |= READ_SCHEDULED;
+        }
+
+        @Override
+        void readComplete(int res, short data) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (!isOpen() || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                byteBuf.release();
+                return;
+            }
+            readInProgress = true;
+            try {
+                readComplete0(res, data, byteBuf);
+            } finally {
+                readInProgress = false;
+            }
+            if (readPending && (ioState & (READ_SCHEDULED | POLL_IN_SCHEDULED)) == 0) {
+                // Channel.read() or ChannelHandlerContext.read() was called while we processed the completion.
+                scheduleRead();
+            }
+        }
+
+        private void readComplete0(int res, short data, ByteBuf byteBuf) {
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            if (res == ERRNO_EAGAIN_NEGATIVE) {
+                byteBuf.release();
+                if (data == RECV_DONTWAIT) {
+                    // Nothing left to read, this read loop is done.
+                    allocHandle.lastBytesRead(0);
+                    allocHandle.readComplete();
+                    pipeline.fireChannelReadComplete();
+                } else {
+                    // The kernel did not wait for us, wait until there is something to read and try again.
+                    schedulePollIn();
+                }
+                return;
+            }
+            if (res < 0) {
+                byteBuf.release();
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+                pipeline.fireExceptionCaught(newReadException(res));
+                return;
+            }
+            allocHandle.lastBytesRead(res);
+            byteBuf.writerIndex(byteBuf.writerIndex() + res);
+            final InetSocketAddress sender;
+            if (isConnected()) {
+                sender = IOUringDatagramChannel.this.remoteAddress();
+            } else {
+                sender = SockaddrIn.read(MsgHdr.sockAddress(Buffer.memoryAddress(recvMsgHdrMemory)));
+            }
+            allocHandle.incMessagesRead(1);
+            readPending = false;
+            pipeline.fireChannelRead(new DatagramPacket(byteBuf, IOUringDatagramChannel.this.localAddress(), sender));
+
+            if (allocHandle.continueReading() && isActive()) {
+                scheduleRecvmsg(true);
+            } else {
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+            }
+        }
+
+        private IOException newReadException(int res) {
+            IOException cause = Errors.newIOException("recvmsg", res);
+            if (res == ERROR_ECONNREFUSED_NEGATIVE && isConnected()) {
+                // We need to correctly translate connect errors to match NIO behaviour.
+                PortUnreachableException error = new PortUnreachableException(cause.getMessage());
+                error.initCause(cause);
+                return error;
+            }
+            return cause;
+        }
+
+        @Override
+        void writeComplete(int res, short data) {
+            if (!isOpen() || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                return;
+            }
+            if (res == ERRNO_EAGAIN_NEGATIVE) {
+                // The socket is not writable at the moment, try again once it is.
+                schedulePollOut();
+                return;
+            }
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in != null) {
+                if (res >= 0) {
+                    in.remove();
+                } else {
+                    // Continue on write error as a DatagramChannel can write to multiple remote peers
+                    //
+                    // See https://github.com/netty/netty/issues/2665
+                    in.remove(Errors.newIOException("sendmsg", res));
+                }
+            }
+            // Use flush0() as a handler may already have triggered a new write while we notified the promises.
+            flush0();
+        }
+    }
+}
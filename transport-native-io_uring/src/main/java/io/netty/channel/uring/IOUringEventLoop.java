@@ -0,0 +1,393 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop implements IOUringCompletionQueueCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    private static final long AWAKE = -1L;
+    private static final long NONE = Long.MAX_VALUE;
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_DRAIN_ITERATIONS = 10;
+
+    private final RingBuffer ringBuffer;
+    private final FileDescriptor eventFd;
+    private final ByteBuffer eventFdReadBuffer;
+    private final long eventFdReadBufferAddress;
+    private final IntObjectMap<AbstractIOUringChannel> channels =
+            new IntObjectHashMap<AbstractIOUringChannel>(4096);
+
+    // nextWakeupNanos is:
+    //    AWAKE            when EL is awake
+    //    NONE             when EL is waiting with no wakeup scheduled
+    //    other value T    when EL is waiting with wakeup scheduled at time T
+    private final AtomicLong nextWakeupNanos = new AtomicLong(AWAKE);
+    private boolean pendingWakeup;
+    private volatile int ioRatio = 50;
+
+    // The deadline of the IORING_OP_TIMEOUT that is currently in flight, or NONE if there is none.
+    private long prevDeadlineNanos = NONE;
+    // Used to identify the IORING_OP_TIMEOUT that is currently in flight. Completions of timeouts that were removed
+    // before will carry an older id.
+    private short timeoutId;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     RejectedExecutionHandler rejectedExecutionHandler, EventLoopTaskQueueFactory queueFactory) {
+        super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
+                rejectedExecutionHandler);
+        boolean success = false;
+        RingBuffer ringBuffer = null;
+        FileDescriptor eventFd = null;
+        try {
+            this.ringBuffer = ringBuffer = Native.createRingBuffer(ringSize == 0 ? Native.DEFAULT_RING_SIZE : ringSize);
+            this.eventFd = eventFd = Native.newEventFd();
+            success = true;
+        } finally {
+            if (!success) {
+                if (ringBuffer != null) {
+                    ringBuffer.close();
+                }
+                if (eventFd != null) {
+                    try {
+                        eventFd.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        eventFdReadBuffer = Buffer.allocateDirectWithNativeOrder(8);
+        eventFdReadBufferAddress = Buffer.memoryAddress(eventFdReadBuffer);
+    }
+
+    private static Queue<Runnable> newTaskQueue(
+            EventLoopTaskQueueFactory queueFactory) {
+        if (queueFactory == null) {
+            return newTaskQueue0(DEFAULT_MAX_PENDING_TASKS);
+        }
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return newTaskQueue0(maxPendingTasks);
+    }
+
+    private static Queue<Runnable> newTaskQueue0(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return ringBuffer.submissionQueue();
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop}.
+     */
+    void add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        int fd = ch.socket.intValue();
+        AbstractIOUringChannel old = channels.put(fd, ch);
+
+        // We either expect to have no Channel in the map with the same FD or that the FD of the old Channel is already
+        // closed.
+        assert old == null || !old.isOpen();
+    }
+
+    /**
+     * Deregister the given channel from this {@link EventLoop}. If there are still operations in flight for the
+     * channel the mapping is kept until all of them completed.
+     */
+    void remove(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        if (ch.hasPendingOperations()) {
+            // Will be removed once the last completion was received.
+            return;
+        }
+        removeMapping(ch);
+    }
+
+    private void removeMapping(AbstractIOUringChannel ch) {
+        int fd = ch.socket.intValue();
+        AbstractIOUringChannel old = channels.remove(fd);
+        if (old != null && old != ch) {
+            // The Channel mapping was already replaced due FD reuse, put back the stored Channel.
+            channels.put(fd, old);
+
+            // If we found another Channel in the map that is mapped to the same FD the given Channel MUST be closed.
+            assert !ch.isOpen();
+        }
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
+            // write to the evfd which will then complete the pending read and so wake-up io_uring_enter(...)
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+        }
+    }
+
+    @Override
+    protected boolean beforeScheduledTaskSubmitted(long deadlineNanos) {
+        // Note this is also correct for the nextWakeupNanos == -1 (AWAKE) case
+        return deadlineNanos < nextWakeupNanos.get();
+    }
+
+    @Override
+    protected boolean afterScheduledTaskSubmitted(long deadlineNanos) {
+        // Note this is also correct for the nextWakeupNanos == -1 (AWAKE) case
+        return deadlineNanos < nextWakeupNanos.get();
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
+    public int registeredChannels() {
+        return channels.size();
+    }
+
+    private void addEventFdRead(IOUringSubmissionQueue submissionQueue) {
+        submissionQueue.addRead(eventFd.intValue(), eventFdReadBufferAddress, 0, 8, (short) 0);
+    }
+
+    private void updateTimeout(IOUringSubmissionQueue submissionQueue, long curDeadlineNanos) {
+        int fd = eventFd.intValue();
+        if (prevDeadlineNanos != NONE) {
+            submissionQueue.addTimeoutRemove(fd, UserData.encode(fd, Native.IORING_OP_TIMEOUT, timeoutId));
+        }
+        prevDeadlineNanos = curDeadlineNanos;
+        if (curDeadlineNanos != NONE) {
+            submissionQueue.addTimeout(fd, deadlineToDelayNanos(curDeadlineNanos), ++timeoutId);
+        }
+    }
+
+    @Override
+    protected void run() {
+        final IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+        final IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+        submissionQueue.completionQueue(completionQueue, this);
+
+        // Always keep a read for the eventfd in flight so we are woken up once wakeup(...) was called.
+        addEventFdRead(submissionQueue);
+
+        for (;;) {
+            try {
+                long curDeadlineNanos = nextScheduledTaskDeadlineNanos();
+                if (curDeadlineNanos == -1L) {
+                    curDeadlineNanos = NONE; // nothing on the calendar
+                }
+                nextWakeupNanos.set(curDeadlineNanos);
+                try {
+                    if (!hasTasks() && !completionQueue.hasCompletions()) {
+                        if (curDeadlineNanos != prevDeadlineNanos) {
+                            // The IORING_OP_TIMEOUT needs to be re-armed or removed.
+                            updateTimeout(submissionQueue, curDeadlineNanos);
+                        }
+                        submissionQueue.submitAndWait();
+                    } else {
+                        submissionQueue.submit();
+                    }
+                } finally {
+                    // Try get() first to avoid much more expensive CAS in the case we
+                    // were woken via the wakeup() method (submitted task)
+                    if (nextWakeupNanos.get() == AWAKE || nextWakeupNanos.getAndSet(AWAKE) == AWAKE) {
+                        pendingWakeup = true;
+                    }
+                }
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    try {
+                        completionQueue.process(this);
+                    } finally {
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+                    try {
+                        completionQueue.process(this);
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    @Override
+    public void handle(int fd, int res, int flags, byte op, short data) {
+        if (fd == eventFd.intValue()) {
+            if (op == Native.IORING_OP_READ) {
+                pendingWakeup = false;
+                addEventFdRead(ringBuffer.submissionQueue());
+            } else if (op == Native.IORING_OP_TIMEOUT && data == timeoutId && res != Native.ERRNO_ECANCELED_NEGATIVE) {
+                // The timeout fired, nothing is in flight anymore.
+                prevDeadlineNanos = NONE;
+            }
+            return;
+        }
+        AbstractIOUringChannel ch = channels.get(fd);
+        if (ch == null) {
+            return;
+        }
+        ch.ioUringUnsafe().handle(op, res, data);
+        if (!ch.hasPendingOperations()) {
+            if (!ch.isOpen()) {
+                // All operations completed so we can finally close the file descriptor.
+                ch.closeFd();
+            }
+            if (!ch.isRegistered()) {
+                removeMapping(ch);
+            }
+        }
+    }
+
+    /**
+     * Visible only for testing!
+     */
+    void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        AbstractIOUringChannel[] localChannels = channels.values().toArray(new AbstractIOUringChannel[0]);
+
+        for (AbstractIOUringChannel ch: localChannels) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    private boolean hasPendingChannelOperations() {
+        for (AbstractIOUringChannel ch: channels.values()) {
+            if (ch.hasPendingOperations()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void cleanup() {
+        IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+        IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+        try {
+            // Ensure any in-flight wakeup writes have been performed and all operations that were cancelled while
+            // closing the channels completed before we release the memory that is used by them.
+            for (int i = 0; i < MAX_DRAIN_ITERATIONS && (pendingWakeup || hasPendingChannelOperations()); i++) {
+                updateTimeout(submissionQueue, nanoTime() + DRAIN_TIMEOUT_NANOS);
+                submissionQueue.submitAndWait();
+                completionQueue.process(this);
+            }
+            if (pendingWakeup) {
+                logger.warn("Missed eventfd write (not seen after > {} ms)",
+                        TimeUnit.NANOSECONDS.toMillis(DRAIN_TIMEOUT_NANOS) * MAX_DRAIN_ITERATIONS);
+            }
+        } catch (Throwable t) {
+            logger.warn("Failed to drain the completion queue.", t);
+        }
+        try {
+            eventFd.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the event fd.", e);
+        }
+        try {
+            ringBuffer.close();
+        } finally {
+            // Everything is gone now so close the file descriptors of all channels that were waiting for pending
+            // operations.
+            for (AbstractIOUringChannel ch: channels.values()) {
+                if (!ch.isOpen()) {
+                    ch.closeFd();
+                }
+            }
+            channels.clear();
+            Buffer.free(eventFdReadBuffer);
+        }
+    }
+}
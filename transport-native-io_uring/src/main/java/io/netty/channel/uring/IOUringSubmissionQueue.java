@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.Buffer;
+import io.netty.util.internal.PlatformDependent;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.newIOException;
+
+/**
+ * The submission queue of an io_uring instance. Entries are written directly into the memory that is shared with the
+ * kernel and only become visible to it once {@link #submit()} or {@link #submitAndWait()} is called.
+ * <p>
+ * Instances are not thread-safe and must only be used from the {@link IOUringEventLoop} that owns them.
+ */
+final class IOUringSubmissionQueue {
+
+    private static final int SQE_SIZE = 64;
+    private static final int INT_SIZE = 4;
+    private static final int KERNEL_TIMESPEC_SIZE = 16;
+    private static final int KERNEL_TIMESPEC_TV_SEC_FIELD = 0;
+    private static final int KERNEL_TIMESPEC_TV_NSEC_FIELD = 8;
+
+    private static final int SQE_OP_CODE_FIELD = 0;
+    private static final int SQE_FLAGS_FIELD = 1;
+    private static final int SQE_IOPRIO_FIELD = 2;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_RW_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+    private static final int SQE_PAD_FIELD = 40;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    final long submissionQueueArrayAddress;
+
+    final int ringEntries;
+    private final int ringMask;
+    final int ringSize;
+    final long ringAddress;
+    final int ringFd;
+
+    private final ByteBuffer timeoutMemory;
+    private final long timeoutMemoryAddress;
+
+    private int head;
+    private int tail;
+
+    private IOUringCompletionQueue completionQueue;
+    private IOUringCompletionQueueCallback callback;
+
+    IOUringSubmissionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long kFlagsAddress, long kDroppedAddress, long kArrayAddress,
+                           long submissionQueueArrayAddress, int ringSize, long ringAddress, int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.submissionQueueArrayAddress = submissionQueueArrayAddress;
+        this.ringSize = ringSize;
+        this.ringAddress = ringAddress;
+        this.ringFd = ringFd;
+        ringEntries = PlatformDependent.getIntVolatile(kRingEntriesAddress);
+        ringMask = PlatformDependent.getIntVolatile(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getIntVolatile(kTailAddress);
+
+        timeoutMemory = Buffer.allocateDirectWithNativeOrder(KERNEL_TIMESPEC_SIZE);
+        timeoutMemoryAddress = Buffer.memoryAddress(timeoutMemory);
+
+        // Use the same index for the submission queue entry and its slot in the array, this way we never need to
+        // update the array again.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(kArrayAddress + (long) i * INT_SIZE, i);
+        }
+    }
+
+    /**
+     * Sets the {@link IOUringCompletionQueue} which is processed with the given callback when the queue is full and
+     * the kernel does not accept new entries until completions were processed.
+     */
+    void completionQueue(IOUringCompletionQueue completionQueue, IOUringCompletionQueueCallback callback) {
+        this.completionQueue = completionQueue;
+        this.callback = callback;
+    }
+
+    private long enqueueSqe(byte op, int rwFlags, int fd, long address, int length, long offset, long userData) {
+        // The completions may add entries as well, so check again after they were processed.
+        while (tail - head == ringEntries) {
+            // The queue is full, submit what we have to make room for the new entry.
+            if (submit() == 0) {
+                // The kernel did not accept any entry because the completion queue overflowed (or it is temporary
+                // out of resources). Process the completions so the kernel can flush the overflowed ones and try
+                // again.
+                processCompletions();
+            }
+        }
+        long sqe = submissionQueueArrayAddress + (long) (tail++ & ringMask) * SQE_SIZE;
+        PlatformDependent.putByte(sqe + SQE_OP_CODE_FIELD, op);
+        PlatformDependent.putByte(sqe + SQE_FLAGS_FIELD, (byte) 0);
+        PlatformDependent.putShort(sqe + SQE_IOPRIO_FIELD, (short) 0);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, length);
+        PlatformDependent.putInt(sqe + SQE_RW_FLAGS_FIELD, rwFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+        // buf_index, personality and the padding.
+        PlatformDependent.putLong(sqe + SQE_PAD_FIELD, 0);
+        PlatformDependent.putLong(sqe + SQE_PAD_FIELD + 8, 0);
+        PlatformDependent.putLong(sqe + SQE_PAD_FIELD + 16, 0);
+        return userData;
+    }
+
+    long addRead(int fd, long bufferAddress, int pos, int limit, short data) {
+        return enqueueSqe(Native.IORING_OP_READ, 0, fd, bufferAddress + pos, limit - pos, 0,
+                UserData.encode(fd, Native.IORING_OP_READ, data));
+    }
+
+    long addRecv(int fd, long bufferAddress, int pos, int limit, int msgFlags, short data) {
+        return enqueueSqe(Native.IORING_OP_RECV, msgFlags, fd, bufferAddress + pos, limit - pos, 0,
+                UserData.encode(fd, Native.IORING_OP_RECV, data));
+    }
+
+    long addWritev(int fd, long iovecArrayAddress, int length, short data) {
+        return enqueueSqe(Native.IORING_OP_WRITEV, 0, fd, iovecArrayAddress, length, 0,
+                UserData.encode(fd, Native.IORING_OP_WRITEV, data));
+    }
+
+    long addRecvmsg(int fd, long msgHdrAddress, int msgFlags, short data) {
+        return enqueueSqe(Native.IORING_OP_RECVMSG, msgFlags, fd, msgHdrAddress, 1, 0,
+                UserData.encode(fd, Native.IORING_OP_RECVMSG, data));
+    }
+
+    long addSendmsg(int fd, long msgHdrAddress, short data) {
+        return enqueueSqe(Native.IORING_OP_SENDMSG, 0, fd, msgHdrAddress, 1, 0,
+                UserData.encode(fd, Native.IORING_OP_SENDMSG, data));
+    }
+
+    long addAccept(int fd, short data) {
+        // We are not interested in the remote address here as we will obtain it via getpeername(...) later.
+        return enqueueSqe(Native.IORING_OP_ACCEPT, Native.SOCK_NONBLOCK | Native.SOCK_CLOEXEC, fd, 0, 0, 0,
+                UserData.encode(fd, Native.IORING_OP_ACCEPT, data));
+    }
+
+    long addConnect(int fd, long socketAddress, int socketAddressLength, short data) {
+        return enqueueSqe(Native.IORING_OP_CONNECT, 0, fd, socketAddress, 0, socketAddressLength,
+                UserData.encode(fd, Native.IORING_OP_CONNECT, data));
+    }
+
+    long addPollAdd(int fd, int pollMask, short data) {
+        return enqueueSqe(Native.IORING_OP_POLL_ADD, pollMask, fd, 0, 0, 0,
+                UserData.encode(fd, Native.IORING_OP_POLL_ADD, data));
+    }
+
+    long addTimeout(int fd, long nanoSeconds, short data) {
+        long seconds;
+        long nanos;
+        if (nanoSeconds <= 0) {
+            seconds = 0;
+            nanos = 0;
+        } else {
+            seconds = TimeUnit.NANOSECONDS.toSeconds(nanoSeconds);
+            nanos = nanoSeconds - TimeUnit.SECONDS.toNanos(seconds);
+        }
+        PlatformDependent.putLong(timeoutMemoryAddress + KERNEL_TIMESPEC_TV_SEC_FIELD, seconds);
+        PlatformDependent.putLong(timeoutMemoryAddress + KERNEL_TIMESPEC_TV_NSEC_FIELD, nanos);
+        // The kernel copies the timespec while preparing the request, which happens at the latest on the next submit.
+        // As there is only ever one timeout in flight per ring this memory can be shared.
+        return enqueueSqe(Native.IORING_OP_TIMEOUT, 0, fd, timeoutMemoryAddress, 1, 0,
+                UserData.encode(fd, Native.IORING_OP_TIMEOUT, data));
+    }
+
+    long addTimeoutRemove(int fd, long timeoutUserData) {
+        return enqueueSqe(Native.IORING_OP_TIMEOUT_REMOVE, 0, fd, timeoutUserData, 0, 0,
+                UserData.encode(fd, Native.IORING_OP_TIMEOUT_REMOVE, (short) 0));
+    }
+
+    long addCancel(int fd, long userDataToCancel) {
+        return enqueueSqe(Native.IORING_OP_ASYNC_CANCEL, 0, fd, userDataToCancel, 0, 0,
+                UserData.encode(fd, Native.IORING_OP_ASYNC_CANCEL, (short) 0));
+    }
+
+    /**
+     * Returns the number of entries that were added but not submitted yet.
+     */
+    int count() {
+        return tail - head;
+    }
+
+    /**
+     * Submit all pending entries to the kernel without waiting for any completion.
+     */
+    int submit() {
+        int submit = tail - head;
+        return submit > 0 ? submit(submit, 0, 0) : 0;
+    }
+
+    /**
+     * Submit all pending entries to the kernel and wait until at least one completion is available.
+     */
+    int submitAndWait() {
+        return submit(tail - head, 1, Native.IORING_ENTER_GETEVENTS);
+    }
+
+    private int submit(int toSubmit, int minComplete, int flags) {
+        PlatformDependent.putIntOrdered(kTailAddress, tail);
+        int ret = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        if (ret < 0) {
+            if (ret == Native.ERRNO_EBUSY_NEGATIVE || ret == ERRNO_EAGAIN_NEGATIVE) {
+                // The completion queue overflowed or the kernel is temporary out of resources, the entries will be
+                // submitted again once we processed some completions.
+                return 0;
+            }
+            throw new RuntimeException(newIOException("io_uring_enter", ret));
+        }
+        return ret;
+    }
+
+    private void processCompletions() {
+        if (completionQueue == null) {
+            throw new IllegalStateException("submission queue is full and no completion queue was set");
+        }
+        if (completionQueue.process(callback) == 0) {
+            // Nothing to process yet, let the kernel flush the overflowed completions into the queue.
+            submit(tail - head, 0, Native.IORING_ENTER_GETEVENTS);
+            completionQueue.process(callback);
+        }
+    }
+
+    void release() {
+        Buffer.free(timeoutMemory);
+    }
+}
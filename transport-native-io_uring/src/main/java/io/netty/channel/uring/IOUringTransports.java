@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Selects the io_uring transport if {@link IOUring#isAvailable()} and falls back to the epoll transport otherwise,
+ * for example when the kernel is too old to support all the needed io_uring operations.
+ * <p>
+ * The {@link EventLoopGroup} and the {@link io.netty.channel.Channel} types must always be obtained from this class
+ * together as they are not compatible across transports.
+ */
+@UnstableApi
+public final class IOUringTransports {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringTransports.class);
+
+    static {
+        if (!IOUring.isAvailable()) {
+            logger.debug("io_uring is not available, using epoll instead", IOUring.unavailabilityCause());
+        }
+    }
+
+    /**
+     * Returns {@code true} if the io_uring transport is used, {@code false} if epoll is used as fallback.
+     */
+    public static boolean isIOUringUsed() {
+        return IOUring.isAvailable();
+    }
+
+    /**
+     * Create a new {@link EventLoopGroup} using the specified number of threads and the default
+     * {@link ThreadFactory}.
+     */
+    public static EventLoopGroup newEventLoopGroup(int nThreads) {
+        return newEventLoopGroup(nThreads, null);
+    }
+
+    /**
+     * Create a new {@link EventLoopGroup} using the specified number of threads and the given {@link ThreadFactory}.
+     */
+    public static EventLoopGroup newEventLoopGroup(int nThreads, ThreadFactory threadFactory) {
+        return isIOUringUsed() ? new IOUringEventLoopGroup(nThreads, threadFactory) :
+                new EpollEventLoopGroup(nThreads, threadFactory);
+    }
+
+    /**
+     * Returns the {@link SocketChannel} type that can be used with {@link #newEventLoopGroup(int)}.
+     */
+    public static Class<? extends SocketChannel> socketChannelClass() {
+        return isIOUringUsed() ? IOUringSocketChannel.class : EpollSocketChannel.class;
+    }
+
+    /**
+     * Returns the {@link ServerSocketChannel} type that can be used with {@link #newEventLoopGroup(int)}.
+     */
+    public static Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+        return isIOUringUsed() ? IOUringServerSocketChannel.class : EpollServerSocketChannel.class;
+    }
+
+    /**
+     * Returns the {@link DatagramChannel} type that can be used with {@link #newEventLoopGroup(int)}.
+     */
+    public static Class<? extends DatagramChannel> datagramChannelClass() {
+        return isIOUringUsed() ? IOUringDatagramChannel.class : EpollDatagramChannel.class;
+    }
+
+    private IOUringTransports() { }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Writes a {@code struct msghdr} with a single {@code struct iovec} to native memory.
+ */
+final class MsgHdr {
+
+    /**
+     * The number of bytes that are needed to store the {@code struct msghdr}, its {@code struct iovec} and the
+     * {@code struct sockaddr_storage} for the address.
+     */
+    static final int SIZE = Native.SIZEOF_MSGHDR + Native.SIZEOF_IOVEC + Native.SIZEOF_SOCKADDR_STORAGE;
+
+    /**
+     * Returns the address of the {@code struct sockaddr_storage} that belongs to the {@code struct msghdr} which is
+     * stored at the given address.
+     */
+    static long sockAddress(long memory) {
+        return memory + Native.SIZEOF_MSGHDR + Native.SIZEOF_IOVEC;
+    }
+
+    /**
+     * Write a {@code struct msghdr} which uses a single {@code struct iovec} pointing to {@code length} bytes at
+     * {@code bufferAddress}. If {@code sockAddressLength} is {@code 0} no address is used.
+     */
+    static void write(long memory, long bufferAddress, int length, int sockAddressLength) {
+        long iovAddress = memory + Native.SIZEOF_MSGHDR;
+        long sockAddress = sockAddress(memory);
+        PlatformDependent.setMemory(memory, Native.SIZEOF_MSGHDR, (byte) 0);
+        if (Native.SIZEOF_IOVEC == 16) {
+            PlatformDependent.putLong(iovAddress, bufferAddress);
+            PlatformDependent.putLong(iovAddress + 8, length);
+            PlatformDependent.putLong(memory + Native.MSGHDR_OFFSETOF_MSG_IOV, iovAddress);
+            PlatformDependent.putLong(memory + Native.MSGHDR_OFFSETOF_MSG_IOVLEN, 1);
+            PlatformDependent.putLong(memory + Native.MSGHDR_OFFSETOF_MSG_NAME,
+                    sockAddressLength == 0 ? 0 : sockAddress);
+        } else {
+            assert Native.SIZEOF_IOVEC == 8;
+            PlatformDependent.putInt(iovAddress, (int) bufferAddress);
+            PlatformDependent.putInt(iovAddress + 4, length);
+            PlatformDependent.putInt(memory + Native.MSGHDR_OFFSETOF_MSG_IOV, (int) iovAddress);
+            PlatformDependent.putInt(memory + Native.MSGHDR_OFFSETOF_MSG_IOVLEN, 1);
+            PlatformDependent.putInt(memory + Native.MSGHDR_OFFSETOF_MSG_NAME,
+                    sockAddressLength == 0 ? 0 : (int) sockAddress);
+        }
+        PlatformDependent.putInt(memory + Native.MSGHDR_OFFSETOF_MSG_NAMELEN, sockAddressLength);
+    }
+
+    private MsgHdr() { }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            NativeStaticallyReferencedJniMethods.sizeofIovec();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        }
+        Socket.initialize();
+    }
+
+    static final int DEFAULT_RING_SIZE = Math.max(64, SystemPropertyUtil.getInt("io.netty.iouring.ringSize", 4096));
+
+    static final int SOCK_NONBLOCK = NativeStaticallyReferencedJniMethods.sockNonblock();
+    static final int SOCK_CLOEXEC = NativeStaticallyReferencedJniMethods.sockCloexec();
+    static final int MSG_DONTWAIT = NativeStaticallyReferencedJniMethods.msgDontwait();
+    static final int POLLIN = NativeStaticallyReferencedJniMethods.pollin();
+    static final int POLLOUT = NativeStaticallyReferencedJniMethods.pollout();
+    static final int POLLRDHUP = NativeStaticallyReferencedJniMethods.pollrdhup();
+    static final int ERRNO_ECANCELED_NEGATIVE = -NativeStaticallyReferencedJniMethods.errnoEcanceled();
+    static final int ERRNO_ETIME_NEGATIVE = -NativeStaticallyReferencedJniMethods.errnoEtime();
+    static final int ERRNO_EBUSY_NEGATIVE = -NativeStaticallyReferencedJniMethods.errnoEbusy();
+
+    static final int AF_INET = NativeStaticallyReferencedJniMethods.afInet();
+    static final int AF_INET6 = NativeStaticallyReferencedJniMethods.afInet6();
+    static final int SIZEOF_SOCKADDR_IN = NativeStaticallyReferencedJniMethods.sizeofSockaddrIn();
+    static final int SIZEOF_SOCKADDR_IN6 = NativeStaticallyReferencedJniMethods.sizeofSockaddrIn6();
+    static final int SIZEOF_SOCKADDR_STORAGE = NativeStaticallyReferencedJniMethods.sizeofSockaddrStorage();
+    static final int SOCKADDR_IN_OFFSETOF_SIN_FAMILY =
+            NativeStaticallyReferencedJniMethods.sockaddrInOffsetofSinFamily();
+    static final int SOCKADDR_IN_OFFSETOF_SIN_PORT = NativeStaticallyReferencedJniMethods.sockaddrInOffsetofSinPort();
+    static final int SOCKADDR_IN_OFFSETOF_SIN_ADDR = NativeStaticallyReferencedJniMethods.sockaddrInOffsetofSinAddr();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_FAMILY =
+            NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6Family();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_PORT =
+            NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6Port();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_FLOWINFO =
+            NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6Flowinfo();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_ADDR =
+            NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6Addr();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID =
+            NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6ScopeId();
+
+    static final int SIZEOF_MSGHDR = NativeStaticallyReferencedJniMethods.sizeofMsghdr();
+    static final int MSGHDR_OFFSETOF_MSG_NAME = NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgName();
+    static final int MSGHDR_OFFSETOF_MSG_NAMELEN = NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgNamelen();
+    static final int MSGHDR_OFFSETOF_MSG_IOV = NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgIov();
+    static final int MSGHDR_OFFSETOF_MSG_IOVLEN = NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgIovlen();
+    static final int SIZEOF_IOVEC = NativeStaticallyReferencedJniMethods.sizeofIovec();
+
+    static final String KERNEL_VERSION = NativeStaticallyReferencedJniMethods.kernelVersion();
+
+    // io_uring opcodes, these are part of the stable kernel ABI.
+    static final byte IORING_OP_NOP = 0;
+    static final byte IORING_OP_READV = 1;
+    static final byte IORING_OP_WRITEV = 2;
+    static final byte IORING_OP_POLL_ADD = 6;
+    static final byte IORING_OP_POLL_REMOVE = 7;
+    static final byte IORING_OP_SENDMSG = 9;
+    static final byte IORING_OP_RECVMSG = 10;
+    static final byte IORING_OP_TIMEOUT = 11;
+    static final byte IORING_OP_TIMEOUT_REMOVE = 12;
+    static final byte IORING_OP_ACCEPT = 13;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_CONNECT = 16;
+    static final byte IORING_OP_READ = 22;
+    static final byte IORING_OP_WRITE = 23;
+    static final byte IORING_OP_SEND = 26;
+    static final byte IORING_OP_RECV = 27;
+
+    // All operations which are used by this transport and so must be supported by the running kernel.
+    static final int[] REQUIRED_IORING_OPS = {
+            IORING_OP_POLL_ADD,
+            IORING_OP_WRITEV,
+            IORING_OP_SENDMSG,
+            IORING_OP_RECVMSG,
+            IORING_OP_TIMEOUT,
+            IORING_OP_TIMEOUT_REMOVE,
+            IORING_OP_ACCEPT,
+            IORING_OP_ASYNC_CANCEL,
+            IORING_OP_CONNECT,
+            IORING_OP_READ,
+            IORING_OP_RECV
+    };
+
+    static final int IORING_ENTER_GETEVENTS = 1 << 0;
+
+    static RingBuffer createRingBuffer(int ringSize) {
+        long[][] values = ioUringSetup(ringSize);
+        assert values.length == 3;
+        long[] submissionQueueArgs = values[0];
+        assert submissionQueueArgs.length == 10;
+        int ringFd = (int) values[2][0];
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                submissionQueueArgs[0],
+                submissionQueueArgs[1],
+                submissionQueueArgs[2],
+                submissionQueueArgs[3],
+                submissionQueueArgs[4],
+                submissionQueueArgs[5],
+                submissionQueueArgs[6],
+                submissionQueueArgs[7],
+                (int) submissionQueueArgs[8],
+                submissionQueueArgs[9],
+                ringFd);
+        long[] completionQueueArgs = values[1];
+        assert completionQueueArgs.length == 8;
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                completionQueueArgs[0],
+                completionQueueArgs[1],
+                completionQueueArgs[2],
+                completionQueueArgs[3],
+                completionQueueArgs[4],
+                completionQueueArgs[5],
+                (int) completionQueueArgs[6],
+                completionQueueArgs[7],
+                ringFd);
+        return new RingBuffer(submissionQueue, completionQueue);
+    }
+
+    static RingBuffer createRingBuffer() {
+        return createRingBuffer(DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * Returns {@code true} if all of the given io_uring operations are supported by the kernel.
+     */
+    static boolean ioUringProbe(RingBuffer ringBuffer, int[] ops) {
+        return ioUringProbe(ringBuffer.fd(), ops);
+    }
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    private static native long[][] ioUringSetup(int entries);
+    private static native boolean ioUringProbe(int ringFd, int[] ops);
+    static native int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags);
+    static native void ioUringExit(long submissionQueueArrayAddress, int submissionQueueRingEntries,
+                                   long submissionQueueRingAddress, int submissionQueueRingSize,
+                                   long completionQueueRingAddress, int completionQueueRingSize,
+                                   int ringFd);
+
+    private static native int eventFd();
+    static native void eventFdWrite(int fd, long value);
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
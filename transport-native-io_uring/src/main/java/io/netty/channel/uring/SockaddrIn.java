@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Reads and writes {@code struct sockaddr_in} and {@code struct sockaddr_in6} from and to native memory.
+ */
+final class SockaddrIn {
+    private static final byte[] IPV4_MAPPED_IPV6_PREFIX = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff };
+    private static final int IPV4_ADDRESS_LENGTH = 4;
+    private static final int IPV6_ADDRESS_LENGTH = 16;
+
+    /**
+     * Write the given {@link InetSocketAddress} to the memory and return the number of bytes that were written.
+     */
+    static int write(boolean ipv6, long memory, InetSocketAddress address) {
+        if (ipv6) {
+            return writeIPv6(memory, address.getAddress(), address.getPort());
+        }
+        return writeIPv4(memory, address.getAddress(), address.getPort());
+    }
+
+    static int writeIPv4(long memory, InetAddress address, int port) {
+        PlatformDependent.setMemory(memory, Native.SIZEOF_SOCKADDR_IN, (byte) 0);
+        PlatformDependent.putShort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_FAMILY, (short) Native.AF_INET);
+        PlatformDependent.putShort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_PORT, handleNetworkOrder((short) port));
+        byte[] bytes = address.getAddress();
+        int offset = 0;
+        if (bytes.length == IPV6_ADDRESS_LENGTH) {
+            // An IPv4 mapped IPv6 address, just use the IPv4 part.
+            offset = IPV4_MAPPED_IPV6_PREFIX.length;
+        }
+        PlatformDependent.copyMemory(bytes, offset, memory + Native.SOCKADDR_IN_OFFSETOF_SIN_ADDR,
+                IPV4_ADDRESS_LENGTH);
+        return Native.SIZEOF_SOCKADDR_IN;
+    }
+
+    static int writeIPv6(long memory, InetAddress address, int port) {
+        PlatformDependent.setMemory(memory, Native.SIZEOF_SOCKADDR_IN6, (byte) 0);
+        PlatformDependent.putShort(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_FAMILY, (short) Native.AF_INET6);
+        PlatformDependent.putShort(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_PORT,
+                handleNetworkOrder((short) port));
+        byte[] bytes = address.getAddress();
+        long addressMemory = memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_ADDR;
+        if (bytes.length == IPV4_ADDRESS_LENGTH) {
+            PlatformDependent.copyMemory(IPV4_MAPPED_IPV6_PREFIX, 0, addressMemory, IPV4_MAPPED_IPV6_PREFIX.length);
+            PlatformDependent.copyMemory(bytes, 0, addressMemory + IPV4_MAPPED_IPV6_PREFIX.length,
+                    IPV4_ADDRESS_LENGTH);
+        } else {
+            PlatformDependent.copyMemory(bytes, 0, addressMemory, IPV6_ADDRESS_LENGTH);
+            PlatformDependent.putInt(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID,
+                    ((Inet6Address) address).getScopeId());
+        }
+        return Native.SIZEOF_SOCKADDR_IN6;
+    }
+
+    /**
+     * Read the {@code struct sockaddr_in} or {@code struct sockaddr_in6} that is stored in the memory.
+     */
+    static InetSocketAddress read(long memory) {
+        short family = PlatformDependent.getShort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_FAMILY);
+        try {
+            if (family == Native.AF_INET6) {
+                return readIPv6(memory);
+            }
+            return readIPv4(memory);
+        } catch (UnknownHostException e) {
+            // Should never happen as the length of the address is always valid.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static InetSocketAddress readIPv4(long memory) throws UnknownHostException {
+        byte[] bytes = new byte[IPV4_ADDRESS_LENGTH];
+        PlatformDependent.copyMemory(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_ADDR, bytes, 0, bytes.length);
+        int port = handleNetworkOrder(PlatformDependent.getShort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_PORT))
+                & 0xFFFF;
+        return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+    }
+
+    private static InetSocketAddress readIPv6(long memory) throws UnknownHostException {
+        byte[] bytes = new byte[IPV6_ADDRESS_LENGTH];
+        PlatformDependent.copyMemory(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_ADDR, bytes, 0, bytes.length);
+        int port = handleNetworkOrder(PlatformDependent.getShort(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_PORT))
+                & 0xFFFF;
+        if (isIPv4Mapped(bytes)) {
+            byte[] ipv4 = new byte[IPV4_ADDRESS_LENGTH];
+            System.arraycopy(bytes, IPV4_MAPPED_IPV6_PREFIX.length, ipv4, 0, IPV4_ADDRESS_LENGTH);
+            return new InetSocketAddress(InetAddress.getByAddress(ipv4), port);
+        }
+        int scopeId = PlatformDependent.getInt(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID);
+        return new InetSocketAddress(Inet6Address.getByAddress(null, bytes, scopeId), port);
+    }
+
+    private static boolean isIPv4Mapped(byte[] bytes) {
+        for (int i = 0; i < IPV4_MAPPED_IPV6_PREFIX.length; i++) {
+            if (bytes[i] != IPV4_MAPPED_IPV6_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static short handleNetworkOrder(short v) {
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? v : Short.reverseBytes(v);
+    }
+
+    private SockaddrIn() { }
+}
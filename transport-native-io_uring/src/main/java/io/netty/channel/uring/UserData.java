@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * Encodes and decodes the {@code user_data} of submission and completion queue entries. The 64 bits are split into
+ * the file descriptor (upper 32 bits), the io_uring opcode (16 bits) and 16 bits of operation specific data.
+ */
+final class UserData {
+
+    static long encode(int fd, byte op, short data) {
+        return ((long) fd << 32) | ((op & 0xFFL) << 16) | (data & 0xFFFFL);
+    }
+
+    static int decodeFd(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    static byte decodeOp(long userData) {
+        return (byte) (userData >>> 16);
+    }
+
+    static short decodeData(long userData) {
+        return (short) userData;
+    }
+
+    private UserData() {
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class IOUringSubmissionQueueTest {
+
+    @BeforeClass
+    public static void loadJNI() {
+        assumeTrue(IOUring.isAvailable());
+    }
+
+    @Test
+    public void testEnqueueMoreThanRingSize() {
+        RingBuffer ringBuffer = Native.createRingBuffer(4);
+        try {
+            IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+            IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+            final int[] completions = new int[1];
+            IOUringCompletionQueueCallback callback = new IOUringCompletionQueueCallback() {
+                @Override
+                public void handle(int fd, int res, int flags, byte op, short data) {
+                    completions[0]++;
+                }
+            };
+            submissionQueue.completionQueue(completionQueue, callback);
+
+            // Cancels of unknown requests complete right away, so this overflows the completion queue many times.
+            int entries = 1024;
+            for (int i = 0; i < entries; i++) {
+                submissionQueue.addCancel(-1, i);
+            }
+            while (completions[0] < entries) {
+                submissionQueue.submitAndWait();
+                completionQueue.process(callback);
+            }
+            assertEquals(entries, completions[0]);
+        } finally {
+            ringBuffer.close();
+        }
+    }
+}
@@ -20,6 +20,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.TimedSelectStrategy;
 import io.netty.channel.kqueue.AbstractKQueueChannel.AbstractKQueueUnsafe;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
@@ -59,6 +60,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
     private final KQueueEventArray changeList;
     private final KQueueEventArray eventList;
     private final SelectStrategy selectStrategy;
+    private final TimedSelectStrategy timedSelectStrategy;
     private final IovArray iovArray = new IovArray();
     private final IntSupplier selectNowSupplier = new IntSupplier() {
         @Override
@@ -77,6 +79,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
         super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
                 rejectedExecutionHandler);
         this.selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
+        timedSelectStrategy = strategy instanceof TimedSelectStrategy ? (TimedSelectStrategy) strategy : null;
         this.kqueueFd = Native.newKQueue();
         if (maxEvents == 0) {
             allowGrowing = true;
@@ -235,7 +238,11 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                         // fall-through to SELECT since the busy-wait is not supported with kqueue
 
                     case SelectStrategy.SELECT:
+                        final long selectStartNanos = timedSelectStrategy != null ? System.nanoTime() : 0;
                         strategy = kqueueWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        if (timedSelectStrategy != null) {
+                            timedSelectStrategy.selected(System.nanoTime() - selectStartNanos);
+                        }
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
                         // before calling 'selector.wakeup()' to reduce the wake-up
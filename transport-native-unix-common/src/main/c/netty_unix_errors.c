@@ -122,6 +122,14 @@ static jint netty_unix_errors_errnoEINPROGRESS(JNIEnv* env, jclass clazz) {
     return EINPROGRESS;
 }
 
+static jint netty_unix_errors_errnoENOBUFS(JNIEnv* env, jclass clazz) {
+    return ENOBUFS;
+}
+
+static jint netty_unix_errors_errnoEIO(JNIEnv* env, jclass clazz) {
+    return EIO;
+}
+
 static jint netty_unix_errors_errorECONNREFUSED(JNIEnv* env, jclass clazz) {
     return ECONNREFUSED;
 }
@@ -153,6 +161,8 @@ static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "errnoEAGAIN", "()I", (void *) netty_unix_errors_errnoEAGAIN },
   { "errnoEWOULDBLOCK", "()I", (void *) netty_unix_errors_errnoEWOULDBLOCK },
   { "errnoEINPROGRESS", "()I", (void *) netty_unix_errors_errnoEINPROGRESS },
+  { "errnoENOBUFS", "()I", (void *) netty_unix_errors_errnoENOBUFS },
+  { "errnoEIO", "()I", (void *) netty_unix_errors_errnoEIO },
   { "errorECONNREFUSED", "()I", (void *) netty_unix_errors_errorECONNREFUSED },
   { "errorEISCONN", "()I", (void *) netty_unix_errors_errorEISCONN },
   { "errorEALREADY", "()I", (void *) netty_unix_errors_errorEALREADY },
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.IntSupplier;
+
+/**
+ * {@link SelectStrategy} created by the {@link AdaptiveSelectStrategyFactory}.
+ * <p>
+ * All methods of the {@link SelectStrategy} are only called from the event loop, the fields which back the metrics
+ * are volatile so they can be read from other threads.
+ */
+final class AdaptiveSelectStrategy implements TimedSelectStrategy, AdaptiveSelectStrategyMetric {
+    // The weight of a new sample in the moving average of the idle time is 1 / 2^IDLE_AVG_SHIFT.
+    private static final int IDLE_AVG_SHIFT = 3;
+    private static final long NOT_PARKED = -1;
+
+    private final long maxSpinNanos;
+    // Moving average of the time until the next event arrived once the event loop became idle.
+    private long avgIdleNanos;
+    // How long the event loop spun before it fell back to a blocking select the last time, NOT_PARKED once the time
+    // until the next event was accounted.
+    private long parkSpinNanos = NOT_PARKED;
+
+    private volatile long spinTimeNanos;
+    private volatile long parkTimeNanos;
+    private volatile long numSpinHits;
+    private volatile long numSpinMisses;
+    private volatile long spinWindowNanos;
+
+    AdaptiveSelectStrategy(long maxSpinNanos) {
+        this.maxSpinNanos = maxSpinNanos;
+        // Start with the maximum window, it shrinks if events do not arrive that fast.
+        spinWindowNanos = maxSpinNanos;
+    }
+
+    @Override
+    public int calculateStrategy(IntSupplier selectSupplier, boolean hasTasks) throws Exception {
+        if (parkSpinNanos != NOT_PARKED) {
+            // The event loop did not select at all, so there was something to do as soon as the spinning ended.
+            updateIdleTime(parkSpinNanos);
+            parkSpinNanos = NOT_PARKED;
+        }
+        if (hasTasks) {
+            return selectSupplier.get();
+        }
+
+        long spinNanos = 0;
+        long window = spinWindowNanos;
+        if (window != 0) {
+            long startNanos = System.nanoTime();
+            long deadlineNanos = startNanos + window;
+            for (;;) {
+                int selected = selectSupplier.get();
+                long nowNanos = System.nanoTime();
+                if (selected != 0) {
+                    spinTimeNanos += nowNanos - startNanos;
+                    numSpinHits++;
+                    updateIdleTime(nowNanos - startNanos);
+                    return selected;
+                }
+                if (nowNanos - deadlineNanos >= 0) {
+                    spinNanos = nowNanos - startNanos;
+                    spinTimeNanos += spinNanos;
+                    numSpinMisses++;
+                    break;
+                }
+            }
+        }
+        parkSpinNanos = spinNanos;
+        return SelectStrategy.SELECT;
+    }
+
+    @Override
+    public void selected(long selectNanos) {
+        if (parkSpinNanos == NOT_PARKED) {
+            return;
+        }
+        parkTimeNanos += selectNanos;
+        updateIdleTime(parkSpinNanos + selectNanos);
+        parkSpinNanos = NOT_PARKED;
+    }
+
+    private void updateIdleTime(long idleNanos) {
+        // Cap the sample so a single long idle period does not stop the spinning for a long time.
+        long sample = Math.min(idleNanos, maxSpinNanos << 2);
+        long avg = avgIdleNanos + (sample - avgIdleNanos >> IDLE_AVG_SHIFT);
+        avgIdleNanos = avg;
+        long window = avg << 1;
+        spinWindowNanos = window <= maxSpinNanos ? window : 0;
+    }
+
+    @Override
+    public long spinTimeNanos() {
+        return spinTimeNanos;
+    }
+
+    @Override
+    public long parkTimeNanos() {
+        return parkTimeNanos;
+    }
+
+    @Override
+    public long numSpinHits() {
+        return numSpinHits;
+    }
+
+    @Override
+    public long numSpinMisses() {
+        return numSpinMisses;
+    }
+
+    @Override
+    public long spinWindowNanos() {
+        return spinWindowNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveSelectStrategy(spinTimeNanos: " + spinTimeNanos + ", parkTimeNanos: " + parkTimeNanos +
+                ", spinHits: " + numSpinHits + ", spinMisses: " + numSpinMisses +
+                ", spinWindowNanos: " + spinWindowNanos + ')';
+    }
+}
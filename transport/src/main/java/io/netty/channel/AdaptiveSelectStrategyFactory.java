@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory which creates a {@link SelectStrategy} that spins on a non-blocking select for a bounded window before it
+ * falls back to a blocking select. This trades CPU for latency when events arrive shortly after the event loop became
+ * idle, without burning a whole core like {@link SelectStrategy#BUSY_WAIT}.
+ * <p>
+ * The spin window of each event loop adapts to the recent idle times: it is twice the moving average of the time it
+ * took for the next event to arrive once the event loop had nothing to do, and {@code 0} once that average exceeds the
+ * maximum spin time. Tasks that are submitted from other threads while the event loop spins are only picked up once
+ * the window ends, so the maximum spin time should be small. The time the event loop spends blocked in the select is
+ * reported through {@link TimedSelectStrategy}, so the time spent processing I/O and running tasks does not count as
+ * idle.
+ * <p>
+ * Use it via the constructors of the event loop groups which accept a {@link SelectStrategyFactory}, for example
+ * {@code new NioEventLoopGroup(nThreads, executor, new AdaptiveSelectStrategyFactory())}.
+ */
+public final class AdaptiveSelectStrategyFactory implements SelectStrategyFactory {
+    private static final long DEFAULT_MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final long maxSpinNanos;
+    // Held weakly so the factory does not keep the strategies of event loops which were shut down reachable.
+    // Guarded by itself.
+    private final List<WeakReference<AdaptiveSelectStrategy>> strategies =
+            new ArrayList<WeakReference<AdaptiveSelectStrategy>>();
+
+    /**
+     * Creates a new instance which spins for at most {@code 50} microseconds.
+     */
+    public AdaptiveSelectStrategyFactory() {
+        this(DEFAULT_MAX_SPIN_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSpinTime   the maximum time to spin before falling back to a blocking select, {@code 0} disables
+     *                      spinning.
+     * @param unit          the {@link TimeUnit} of {@code maxSpinTime}.
+     */
+    public AdaptiveSelectStrategyFactory(long maxSpinTime, TimeUnit unit) {
+        ObjectUtil.checkPositiveOrZero(maxSpinTime, "maxSpinTime");
+        ObjectUtil.checkNotNull(unit, "unit");
+        maxSpinNanos = unit.toNanos(maxSpinTime);
+    }
+
+    @Override
+    public SelectStrategy newSelectStrategy() {
+        AdaptiveSelectStrategy strategy = new AdaptiveSelectStrategy(maxSpinNanos);
+        synchronized (strategies) {
+            expungeStaleStrategies(null);
+            strategies.add(new WeakReference<AdaptiveSelectStrategy>(strategy));
+        }
+        return strategy;
+    }
+
+    /**
+     * Return the metrics of all {@link SelectStrategy}s created by this factory which are still in use, one per
+     * event loop.
+     */
+    public List<AdaptiveSelectStrategyMetric> metrics() {
+        List<AdaptiveSelectStrategyMetric> metrics = new ArrayList<AdaptiveSelectStrategyMetric>();
+        synchronized (strategies) {
+            expungeStaleStrategies(metrics);
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    private void expungeStaleStrategies(List<AdaptiveSelectStrategyMetric> live) {
+        Iterator<WeakReference<AdaptiveSelectStrategy>> i = strategies.iterator();
+        while (i.hasNext()) {
+            AdaptiveSelectStrategy strategy = i.next().get();
+            if (strategy == null) {
+                i.remove();
+            } else if (live != null) {
+                live.add(strategy);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+/**
+ * Expose metrics for the {@link SelectStrategy} of a single event loop which was created by an
+ * {@link AdaptiveSelectStrategyFactory}.
+ */
+public interface AdaptiveSelectStrategyMetric {
+
+    /**
+     * Return the total time in nanoseconds the event loop spent spinning on a non-blocking select.
+     */
+    long spinTimeNanos();
+
+    /**
+     * Return the total time in nanoseconds the event loop was blocked in a select after it fell back to a blocking
+     * select.
+     */
+    long parkTimeNanos();
+
+    /**
+     * Return the number of times an event was picked up while spinning.
+     */
+    long numSpinHits();
+
+    /**
+     * Return the number of times no event was picked up while spinning, so the event loop fell back to a blocking
+     * select.
+     */
+    long numSpinMisses();
+
+    /**
+     * Return the current spin window in nanoseconds, {@code 0} if the event loop does not spin at the moment.
+     */
+    long spinWindowNanos();
+}
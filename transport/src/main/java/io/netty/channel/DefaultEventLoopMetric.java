@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.AbstractEventExecutor.LazyRunnable;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link EventLoopMetric} of a {@link SingleThreadEventLoop}.
+ * <p>
+ * All the {@code record*} methods and the tasks returned by {@link #newTimedTask(Runnable)} must only be called from
+ * the event loop, so the counters have a single writer and do not need any atomic read-modify-write operation.
+ * <p>
+ * To not allocate a wrapper for every submitted task only every {@code sampleInterval}-th task is timed.
+ */
+final class DefaultEventLoopMetric implements EventLoopMetric {
+    private static final int HISTOGRAM_BUCKETS = 24;
+
+    private final SingleThreadEventLoop eventLoop;
+    private final int sampleMask;
+    private final AtomicLongArray taskQueueLatency = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray taskExecutionTime = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray ioEventsPerIteration = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    private volatile long numSampledTasks;
+    private volatile long taskTimeNanos;
+    private volatile long ioTimeNanos;
+    private volatile long numWakeups;
+    private volatile long numIterations;
+    private volatile long numIoEvents;
+
+    // Updated by all submitting threads without synchronization, a lost update only shifts the sampling a bit.
+    private int numSubmittedTasks;
+
+    DefaultEventLoopMetric(SingleThreadEventLoop eventLoop, int sampleInterval) {
+        this.eventLoop = eventLoop;
+        sampleMask = MathUtil.safeFindNextPositivePowerOfTwo(sampleInterval) - 1;
+    }
+
+    /**
+     * Wrap the given task so the time it spent in the task queue and its execution time are recorded once it is run,
+     * if it is sampled. Otherwise the task is returned as it is.
+     */
+    Runnable newTimedTask(Runnable task) {
+        if ((numSubmittedTasks++ & sampleMask) != 0) {
+            return task;
+        }
+        long submitNanos = System.nanoTime();
+        return task instanceof LazyRunnable ? new LazyTimedTask(task, submitNanos) : new TimedTask(task, submitNanos);
+    }
+
+    void recordTaskTime(long nanos) {
+        taskTimeNanos += nanos;
+    }
+
+    void recordWakeup() {
+        numWakeups++;
+    }
+
+    void recordIteration(int ioEvents, long ioNanos) {
+        numIterations++;
+        if (ioEvents > 0) {
+            numIoEvents += ioEvents;
+            ioTimeNanos += ioNanos;
+            increment(ioEventsPerIteration, ioEvents);
+        } else {
+            // The select strategy may be negative if there was no select at all.
+            increment(ioEventsPerIteration, 0);
+        }
+    }
+
+    private static void increment(AtomicLongArray histogram, long value) {
+        int bucket = Math.min(Long.SIZE - Long.numberOfLeadingZeros(value), HISTOGRAM_BUCKETS - 1);
+        // Single writer, so a lazySet is enough.
+        histogram.lazySet(bucket, histogram.get(bucket) + 1);
+    }
+
+    private static long[] snapshot(AtomicLongArray histogram) {
+        long[] values = new long[histogram.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = histogram.get(i);
+        }
+        return values;
+    }
+
+    @Override
+    public long numSampledTasks() {
+        return numSampledTasks;
+    }
+
+    @Override
+    public long[] taskQueueLatencyHistogram() {
+        return snapshot(taskQueueLatency);
+    }
+
+    @Override
+    public long[] taskExecutionTimeHistogram() {
+        return snapshot(taskExecutionTime);
+    }
+
+    @Override
+    public long taskTimeNanos() {
+        return taskTimeNanos;
+    }
+
+    @Override
+    public long ioTimeNanos() {
+        return ioTimeNanos;
+    }
+
+    @Override
+    public long numWakeups() {
+        return numWakeups;
+    }
+
+    @Override
+    public long numIterations() {
+        return numIterations;
+    }
+
+    @Override
+    public long numIoEvents() {
+        return numIoEvents;
+    }
+
+    @Override
+    public long[] ioEventsPerIterationHistogram() {
+        return snapshot(ioEventsPerIteration);
+    }
+
+    @Override
+    public int pendingTasks() {
+        return eventLoop.pendingTasks();
+    }
+
+    @Override
+    public int pendingScheduledTasks() {
+        return eventLoop.scheduledTaskBacklog();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(256)
+                .append(StringUtil.simpleClassName(this))
+                .append("(sampledTasks: ").append(numSampledTasks)
+                .append(", taskTimeNanos: ").append(taskTimeNanos)
+                .append(", ioTimeNanos: ").append(ioTimeNanos)
+                .append(", wakeups: ").append(numWakeups)
+                .append(", iterations: ").append(numIterations)
+                .append(", ioEvents: ").append(numIoEvents)
+                .append(", taskQueueLatency: ").append(Arrays.toString(taskQueueLatencyHistogram()))
+                .append(", taskExecutionTime: ").append(Arrays.toString(taskExecutionTimeHistogram()))
+                .append(", ioEventsPerIteration: ").append(Arrays.toString(ioEventsPerIterationHistogram()))
+                .append(')').toString();
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitNanos;
+
+        TimedTask(Runnable task, long submitNanos) {
+            this.task = task;
+            this.submitNanos = submitNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                // Histograms are in microseconds, a shift is close enough and cheaper than a division.
+                increment(taskQueueLatency, startNanos - submitNanos >>> 10);
+                increment(taskExecutionTime, System.nanoTime() - startNanos >>> 10);
+                numSampledTasks++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    private final class LazyTimedTask extends TimedTask implements LazyRunnable {
+        LazyTimedTask(Runnable task, long submitNanos) {
+            super(task, submitNanos);
+        }
+    }
+}
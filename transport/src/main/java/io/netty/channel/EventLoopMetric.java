@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Expose metrics for a {@link SingleThreadEventLoop}.
+ * <p>
+ * The histograms returned by this interface use power of two buckets: the bucket {@code 0} counts the value
+ * {@code 0} and the bucket {@code i > 0} counts the values in {@code [2^(i-1), 2^i)}. The last bucket also counts all
+ * values which are larger than that.
+ * <p>
+ * All values are only updated by the event loop itself, so they may be slightly stale when read from another thread.
+ * <p>
+ * The task histograms are only built from a sample of the submitted tasks: every n-th task, configured via
+ * {@code -Dio.netty.eventLoop.metricSampleInterval} (default {@code 16}), is timed.
+ */
+@UnstableApi
+public interface EventLoopMetric {
+
+    /**
+     * Return the number of sampled tasks that were submitted via {@link EventLoop#execute(Runnable)} and have been
+     * run.
+     */
+    long numSampledTasks();
+
+    /**
+     * Return a histogram of the time in microseconds that sampled tasks spent in the task queue before they were run.
+     */
+    long[] taskQueueLatencyHistogram();
+
+    /**
+     * Return a histogram of the time in microseconds that it took to run a sampled task.
+     */
+    long[] taskExecutionTimeHistogram();
+
+    /**
+     * Return the total time in nanoseconds the event loop spent running tasks, including scheduled tasks.
+     */
+    long taskTimeNanos();
+
+    /**
+     * Return the total time in nanoseconds the event loop spent processing I/O events.
+     */
+    long ioTimeNanos();
+
+    /**
+     * Return the number of times the event loop woke up from a blocking select because of I/O events or submitted
+     * tasks. Selects which just timed out are not counted.
+     */
+    long numWakeups();
+
+    /**
+     * Return the number of iterations of the event loop.
+     */
+    long numIterations();
+
+    /**
+     * Return the total number of I/O events, like selected keys, the event loop processed.
+     */
+    long numIoEvents();
+
+    /**
+     * Return a histogram of the number of I/O events that were processed per iteration of the event loop.
+     */
+    long[] ioEventsPerIterationHistogram();
+
+    /**
+     * Return the number of tasks that are pending for processing, see {@link SingleThreadEventLoop#pendingTasks()}.
+     */
+    int pendingTasks();
+
+    /**
+     * Return the number of scheduled tasks which were not fetched for processing yet.
+     */
+    int pendingScheduledTasks();
+}
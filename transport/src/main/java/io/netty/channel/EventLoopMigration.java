@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Utility to move a registered {@link Channel} to another {@link EventLoop}, for example to rebalance the load of
+ * the {@link EventLoop}s of an {@link EventLoopGroup}.
+ */
+@UnstableApi
+public final class EventLoopMigration {
+
+    private EventLoopMigration() { }
+
+    /**
+     * Move the given {@link Channel} to the given {@link EventLoop} by deregistering it from its current
+     * {@link EventLoop} and registering it with the new one. The {@link Channel} stays open and active, and its
+     * {@link ChannelPipeline} is kept as it is.
+     * <p>
+     * Only idle {@link Channel}s can be migrated: the migration fails with an {@link IllegalStateException} if the
+     * {@link Channel} has outbound data which was not written yet. Operations which are issued on the
+     * {@link Channel} while it is migrated may still be executed by the old {@link EventLoop}, so the caller should
+     * not write to the {@link Channel} until the returned {@link ChannelFuture} is complete. If the {@link Channel}
+     * can not be registered with the new {@link EventLoop}, for example because it is not compatible with it, the
+     * {@link Channel} is registered with its old {@link EventLoop} again and the migration fails.
+     *
+     * @param channel   the {@link Channel} to migrate.
+     * @param eventLoop the {@link EventLoop} to migrate the {@link Channel} to.
+     * @return          the {@link ChannelFuture} which is notified once the {@link Channel} is registered with
+     *                  {@code eventLoop}.
+     */
+    public static ChannelFuture migrate(final Channel channel, final EventLoop eventLoop) {
+        ObjectUtil.checkNotNull(channel, "channel");
+        ObjectUtil.checkNotNull(eventLoop, "eventLoop");
+        final ChannelPromise promise = channel.newPromise();
+        if (!channel.isRegistered()) {
+            return promise.setFailure(new IllegalStateException("channel not registered: " + channel));
+        }
+        final EventLoop current = channel.eventLoop();
+        if (current == eventLoop) {
+            return promise.setSuccess();
+        }
+        current.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!channel.isRegistered()) {
+                    promise.setFailure(new IllegalStateException("channel not registered: " + channel));
+                    return;
+                }
+                ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+                if (outboundBuffer != null && outboundBuffer.totalPendingWriteBytes() != 0) {
+                    promise.setFailure(new IllegalStateException("channel has pending writes: " + channel));
+                    return;
+                }
+                channel.deregister().addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            promise.setFailure(future.cause());
+                            return;
+                        }
+                        eventLoop.register(channel).addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(ChannelFuture future) {
+                                if (future.isSuccess()) {
+                                    promise.setSuccess();
+                                    return;
+                                }
+                                final Throwable cause = future.cause();
+                                // Move the channel back so it is not left deregistered.
+                                current.register(channel).addListener(new ChannelFutureListener() {
+                                    @Override
+                                    public void operationComplete(ChannelFuture future) {
+                                        promise.setFailure(cause);
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return promise;
+    }
+}
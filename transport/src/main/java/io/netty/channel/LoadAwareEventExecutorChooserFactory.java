@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Random;
+
+/**
+ * {@link EventExecutorChooserFactory} which uses the "power of two choices" to choose the next {@link EventExecutor}:
+ * it picks two {@link EventExecutor}s at random and returns the one with the lower load. Compared to round-robin this
+ * avoids that a few heavy, long-lived {@link Channel}s pile up on the same {@link EventLoop}, while it is still cheap
+ * and does not need any coordination between the callers.
+ * <p>
+ * The load of a {@link SingleThreadEventLoop} is the number of its {@link SingleThreadEventLoop#registeredChannels()}
+ * plus its {@link SingleThreadEventLoop#pendingTasks()}. Other {@link SingleThreadEventExecutor}s only use their
+ * pending tasks, while all other {@link EventExecutor}s are considered to have no load at all.
+ * <p>
+ * {@link EventLoopMigration#migrate(Channel, EventLoop)} can be used to move an idle {@link Channel} to a less loaded
+ * {@link EventLoop} later on.
+ */
+@UnstableApi
+public final class LoadAwareEventExecutorChooserFactory implements EventExecutorChooserFactory {
+
+    public static final LoadAwareEventExecutorChooserFactory INSTANCE = new LoadAwareEventExecutorChooserFactory();
+
+    private LoadAwareEventExecutorChooserFactory() { }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        return new PowerOfTwoChoicesEventExecutorChooser(executors);
+    }
+
+    static int load(EventExecutor executor) {
+        if (executor instanceof SingleThreadEventLoop) {
+            SingleThreadEventLoop eventLoop = (SingleThreadEventLoop) executor;
+            // -1 if counting the registered channels is not supported.
+            return Math.max(0, eventLoop.registeredChannels()) + eventLoop.pendingTasks();
+        }
+        if (executor instanceof SingleThreadEventExecutor) {
+            return ((SingleThreadEventExecutor) executor).pendingTasks();
+        }
+        return 0;
+    }
+
+    private static final class PowerOfTwoChoicesEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+
+        PowerOfTwoChoicesEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors.clone();
+        }
+
+        @Override
+        public EventExecutor next() {
+            EventExecutor[] executors = this.executors;
+            if (executors.length == 1) {
+                return executors[0];
+            }
+            Random random = PlatformDependent.threadLocalRandom();
+            int first = random.nextInt(executors.length);
+            // Pick a second index which is different from the first one.
+            int second = random.nextInt(executors.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            EventExecutor a = executors[first];
+            EventExecutor b = executors[second];
+            return load(b) < load(a) ? b : a;
+        }
+    }
+}
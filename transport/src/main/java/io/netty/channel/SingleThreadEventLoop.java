@@ -21,6 +21,8 @@ import io.netty.util.concurrent.SingleThreadEventExecutor;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.Queue;
 import java.util.concurrent.Executor;
@@ -35,7 +37,21 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     protected static final int DEFAULT_MAX_PENDING_TASKS = Math.max(16,
             SystemPropertyUtil.getInt("io.netty.eventLoop.maxPendingTasks", Integer.MAX_VALUE));
 
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(SingleThreadEventLoop.class);
+    private static final boolean METRIC_ENABLED = SystemPropertyUtil.getBoolean("io.netty.eventLoop.metric", false);
+    private static final int METRIC_SAMPLE_INTERVAL = Math.max(1,
+            SystemPropertyUtil.getInt("io.netty.eventLoop.metricSampleInterval", 16));
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.eventLoop.metric: {}", METRIC_ENABLED);
+            logger.debug("-Dio.netty.eventLoop.metricSampleInterval: {}", METRIC_SAMPLE_INTERVAL);
+        }
+    }
+
     private final Queue<Runnable> tailTasks;
+    private final DefaultEventLoopMetric metric = METRIC_ENABLED ?
+            new DefaultEventLoopMetric(this, METRIC_SAMPLE_INTERVAL) : null;
 
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory, boolean addTaskWakesUp) {
         this(parent, threadFactory, addTaskWakesUp, DEFAULT_MAX_PENDING_TASKS, RejectedExecutionHandlers.reject());
@@ -130,6 +146,54 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return tailTasks.remove(ObjectUtil.checkNotNull(task, "task"));
     }
 
+    @Override
+    public void execute(Runnable task) {
+        DefaultEventLoopMetric metric = this.metric;
+        if (metric == null) {
+            super.execute(task);
+        } else {
+            super.execute(metric.newTimedTask(ObjectUtil.checkNotNull(task, "task")));
+        }
+    }
+
+    @Override
+    public void lazyExecute(Runnable task) {
+        DefaultEventLoopMetric metric = this.metric;
+        if (metric == null) {
+            super.lazyExecute(task);
+        } else {
+            super.lazyExecute(metric.newTimedTask(ObjectUtil.checkNotNull(task, "task")));
+        }
+    }
+
+    @Override
+    protected boolean runAllTasks() {
+        DefaultEventLoopMetric metric = this.metric;
+        if (metric == null) {
+            return super.runAllTasks();
+        }
+        long startNanos = System.nanoTime();
+        try {
+            return super.runAllTasks();
+        } finally {
+            metric.recordTaskTime(System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    protected boolean runAllTasks(long timeoutNanos) {
+        DefaultEventLoopMetric metric = this.metric;
+        if (metric == null) {
+            return super.runAllTasks(timeoutNanos);
+        }
+        long startNanos = System.nanoTime();
+        try {
+            return super.runAllTasks(timeoutNanos);
+        } finally {
+            metric.recordTaskTime(System.nanoTime() - startNanos);
+        }
+    }
+
     @Override
     protected void afterRunningAllTasks() {
         runAllTasksFrom(tailTasks);
@@ -154,4 +218,42 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     public int registeredChannels() {
         return -1;
     }
+
+    /**
+     * Returns the {@link EventLoopMetric} of this {@link EventLoop} or {@code null} if the metrics are not enabled
+     * via {@code -Dio.netty.eventLoop.metric=true}.
+     */
+    @UnstableApi
+    public EventLoopMetric metric() {
+        return metric;
+    }
+
+    /**
+     * Returns {@code true} if the {@link EventLoopMetric} is enabled, in which case the implementation should call
+     * {@link #recordWakeup()} and {@link #recordIteration(int, long)}.
+     */
+    protected final boolean isMetricEnabled() {
+        return metric != null;
+    }
+
+    /**
+     * Records that the {@link EventLoop} woke up from a blocking select because of I/O events or submitted tasks, but
+     * not because the select timed out. Must only be called from the {@link EventLoop} while
+     * {@link #isMetricEnabled()}.
+     */
+    protected final void recordWakeup() {
+        metric.recordWakeup();
+    }
+
+    /**
+     * Records an iteration of the {@link EventLoop} which processed {@code ioEvents} I/O events in {@code ioNanos}
+     * nanoseconds. Must only be called from the {@link EventLoop} while {@link #isMetricEnabled()}.
+     */
+    protected final void recordIteration(int ioEvents, long ioNanos) {
+        metric.recordIteration(ioEvents, ioNanos);
+    }
+
+    int scheduledTaskBacklog() {
+        return pendingScheduledTasks();
+    }
 }
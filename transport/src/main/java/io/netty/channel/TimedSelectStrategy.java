@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+/**
+ * A {@link SelectStrategy} which is told how long the event loop was blocked in the select which followed
+ * {@link #SELECT}. This excludes the time the event loop spent processing I/O and running tasks, which is also
+ * between two calls of {@link #calculateStrategy(io.netty.util.IntSupplier, boolean)}.
+ */
+public interface TimedSelectStrategy extends SelectStrategy {
+
+    /**
+     * Called by the event loop once the blocking select which followed {@link #SELECT} returned. This is not called
+     * if the event loop did not select at all, for example because tasks were submitted in the meantime.
+     *
+     * @param selectNanos   the time in nanoseconds the event loop was blocked in the select.
+     */
+    void selected(long selectNanos);
+}
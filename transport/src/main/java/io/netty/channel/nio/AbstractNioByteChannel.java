@@ -268,7 +268,7 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
     protected final Object filterOutboundMessage(Object msg) {
         if (msg instanceof ByteBuf) {
             ByteBuf buf = (ByteBuf) msg;
-            if (buf.isDirect()) {
+            if (buf.isDirect() || isCopiedOnWrite(buf)) {
                 return msg;
             }
 
@@ -283,6 +283,14 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
                 "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
     }
 
+    /**
+     * Returns {@code true} if the given heap {@link ByteBuf} will be copied into a direct buffer when it is written
+     * anyway, so {@link #filterOutboundMessage(Object)} does not need to copy it into a new direct buffer.
+     */
+    protected boolean isCopiedOnWrite(ByteBuf buf) {
+        return false;
+    }
+
     protected final void incompleteWrite(boolean setOpWrite) {
         // Did not write completely.
         if (setOpWrite) {
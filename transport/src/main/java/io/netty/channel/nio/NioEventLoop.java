@@ -22,6 +22,7 @@ import io.netty.channel.EventLoopException;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.TimedSelectStrategy;
 import io.netty.util.IntSupplier;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
@@ -127,6 +128,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     private final AtomicLong nextWakeupNanos = new AtomicLong(AWAKE);
 
     private final SelectStrategy selectStrategy;
+    private final TimedSelectStrategy timedSelectStrategy;
 
     private volatile int ioRatio = 50;
     private int cancelledKeys;
@@ -139,6 +141,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 rejectedExecutionHandler);
         this.provider = ObjectUtil.checkNotNull(selectorProvider, "selectorProvider");
         this.selectStrategy = ObjectUtil.checkNotNull(strategy, "selectStrategy");
+        timedSelectStrategy = strategy instanceof TimedSelectStrategy ? (TimedSelectStrategy) strategy : null;
         final SelectorTuple selectorTuple = openSelector();
         this.selector = selectorTuple.selector;
         this.unwrappedSelector = selectorTuple.unwrappedSelector;
@@ -454,7 +457,15 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         nextWakeupNanos.set(curDeadlineNanos);
                         try {
                             if (!hasTasks()) {
+                                final long selectStartNanos = timedSelectStrategy != null ? System.nanoTime() : 0;
                                 strategy = select(curDeadlineNanos);
+                                if (timedSelectStrategy != null) {
+                                    timedSelectStrategy.selected(System.nanoTime() - selectStartNanos);
+                                }
+                                // Woken up by wakeup() if there are tasks now, otherwise the select timed out.
+                                if (isMetricEnabled() && (strategy > 0 || hasTasks())) {
+                                    recordWakeup();
+                                }
                             }
                         } finally {
                             // This update is just to help block unnecessary selector wakeups
@@ -477,13 +488,18 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 cancelledKeys = 0;
                 needsToSelectAgain = false;
                 final int ioRatio = this.ioRatio;
+                final boolean recordMetric = isMetricEnabled();
                 boolean ranTasks;
                 if (ioRatio == 100) {
+                    final long ioStartTime = recordMetric ? System.nanoTime() : 0;
                     try {
                         if (strategy > 0) {
                             processSelectedKeys();
                         }
                     } finally {
+                        if (recordMetric) {
+                            recordIteration(strategy, System.nanoTime() - ioStartTime);
+                        }
                         // Ensure we always run tasks.
                         ranTasks = runAllTasks();
                     }
@@ -494,9 +510,15 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (recordMetric) {
+                            recordIteration(strategy, ioTime);
+                        }
                         ranTasks = runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
+                    if (recordMetric) {
+                        recordIteration(0, 0);
+                    }
                     ranTasks = runAllTasks(0); // This will run the minimum number of tasks
                 }
 
@@ -0,0 +1,761 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * {@link ChannelPool} implementation which keeps the idle {@link Channel}s of each {@link EventLoop} of the
+ * {@link Bootstrap}'s {@link EventLoopGroup} in a shard of their own, and enforces a maximum number of concurrent
+ * connections.
+ * <p>
+ * An acquire is served by the shard of the calling {@link EventLoop}, or of {@link EventLoopGroup#next()} if it is
+ * not called from one of the {@link EventLoop}s of the group, in the following order:
+ * <ol>
+ *     <li>the most recently released idle {@link Channel} of the shard,</li>
+ *     <li>a new {@link Channel} which is registered on the {@link EventLoop} of the shard, as long as the shard has
+ *     not used up its share of the maximum number of connections,</li>
+ *     <li>an idle {@link Channel} stolen from another shard,</li>
+ *     <li>a new {@link Channel} which uses the share of another shard,</li>
+ *     <li>the first {@link Channel} which becomes available, once the acquire made it to the head of the pending
+ *     acquires of the shard.</li>
+ * </ol>
+ * This way a caller which runs on an {@link EventLoop} mostly gets a {@link Channel} which is registered on the same
+ * {@link EventLoop}, and acquires and releases of different shards don't contend with each other. The idle
+ * {@link Channel}s are kept in lock-free deques and the connection count is striped over the shards, so only the
+ * pending acquires are confined to the {@link EventLoop} of their shard.
+ */
+public class ShardedChannelPool implements ChannelPool {
+    private static final AttributeKey<ShardedChannelPool> POOL_KEY =
+            AttributeKey.newInstance("io.netty.channel.pool.ShardedChannelPool");
+
+    private final Bootstrap bootstrap;
+    private final ChannelPoolHandler handler;
+    private final ChannelHealthChecker healthCheck;
+    private final EventLoopGroup group;
+    private final Shard[] shards;
+    private final Map<EventExecutor, Shard> shardsByLoop;
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final long acquireTimeoutNanos;
+
+    private final AtomicInteger channelCount = new AtomicInteger();
+    private final AtomicInteger acquiredChannelCount = new AtomicInteger();
+    private final AtomicInteger pendingAcquireCount = new AtomicInteger();
+    private final LongCounter acquireCount = PlatformDependent.newLongCounter();
+    private final LongCounter acquireTimeNanos = PlatformDependent.newLongCounter();
+    private final LongCounter stealCount = PlatformDependent.newLongCounter();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap         the {@link Bootstrap} that is used for connections
+     * @param handler           the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections    the number of maximal active connections, once this is reached new tries to acquire
+     *                          a {@link Channel} will be delayed until a connection is returned to the pool again.
+     */
+    public ShardedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnections) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE, maxConnections, Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck           the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                              still healthy when obtained from or released to the {@link ChannelPool}
+     * @param maxConnections        the number of maximal active connections, once this is reached new tries to
+     *                              acquire a {@link Channel} will be delayed until a connection is returned to the
+     *                              pool again.
+     * @param maxPendingAcquires    the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                              be failed.
+     * @param acquireTimeoutMillis  the time (in milliseconds) after which a pending acquire is failed with a
+     *                              {@link TimeoutException}, or {@code 0} to wait forever.
+     */
+    public ShardedChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                              int maxConnections, int maxPendingAcquires, long acquireTimeoutMillis) {
+        this.handler = checkNotNull(handler, "handler");
+        this.healthCheck = checkNotNull(healthCheck, "healthCheck");
+        this.maxConnections = checkPositive(maxConnections, "maxConnections");
+        this.maxPendingAcquires = checkPositive(maxPendingAcquires, "maxPendingAcquires");
+        acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                checkPositiveOrZero(acquireTimeoutMillis, "acquireTimeoutMillis"));
+        // Clone the original Bootstrap as we want to set our own handler
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                assert ch.eventLoop().inEventLoop();
+                handler.channelCreated(ch);
+            }
+        });
+        group = checkNotNull(this.bootstrap.config().group(), "bootstrap.config().group()");
+
+        List<EventLoop> loops = new ArrayList<EventLoop>();
+        for (EventExecutor executor : group) {
+            loops.add((EventLoop) executor);
+        }
+        shards = new Shard[loops.size()];
+        shardsByLoop = new IdentityHashMap<EventExecutor, Shard>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            // Spread the connections over the shards, the first ones get the remainder.
+            int share = maxConnections / shards.length + (i < maxConnections % shards.length ? 1 : 0);
+            shards[i] = new Shard(i, loops.get(i), share);
+            shardsByLoop.put(shards[i].loop, shards[i]);
+        }
+    }
+
+    /**
+     * Returns the maximum number of concurrent connections.
+     */
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Returns the number of open {@link Channel}s, including the ones which are still connecting.
+     */
+    public int channelCount() {
+        return channelCount.get();
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which are acquired and not released yet.
+     */
+    public int acquiredChannelCount() {
+        return acquiredChannelCount.get();
+    }
+
+    /**
+     * Returns the number of idle {@link Channel}s in the pool.
+     */
+    public int idleChannelCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.idleCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of acquires which wait for a {@link Channel} to become available.
+     */
+    public int pendingAcquireCount() {
+        return pendingAcquireCount.get();
+    }
+
+    /**
+     * Returns the number of successful acquires.
+     */
+    public long acquireCount() {
+        return acquireCount.value();
+    }
+
+    /**
+     * Returns the total time in nanoseconds the successful acquires took, including the time they were pending.
+     */
+    public long acquireTimeNanos() {
+        return acquireTimeNanos.value();
+    }
+
+    /**
+     * Returns the number of acquires which were served with an idle {@link Channel} of another shard.
+     */
+    public long stealCount() {
+        return stealCount.value();
+    }
+
+    @Override
+    public final Future<Channel> acquire() {
+        return acquire(shard().loop.<Channel>newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        checkNotNull(promise, "promise");
+        final AcquireTask task = new AcquireTask(shard(), promise);
+        try {
+            EventLoop loop = task.shard.loop;
+            if (loop.inEventLoop()) {
+                acquire0(task);
+            } else {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        acquire0(task);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    /**
+     * Returns the shard of the calling {@link EventLoop}, or of {@link EventLoopGroup#next()} if the caller does not
+     * run on one of the {@link EventLoop}s of the group.
+     */
+    private Shard shard() {
+        for (Shard shard : shards) {
+            if (shard.loop.inEventLoop()) {
+                return shard;
+            }
+        }
+        Shard shard = shardsByLoop.get(group.next());
+        return shard != null ? shard : shards[0];
+    }
+
+    private void acquire0(AcquireTask task) {
+        assert task.shard.loop.inEventLoop();
+
+        if (closed) {
+            task.promise.tryFailure(new IllegalStateException("ShardedChannelPool was closed"));
+            return;
+        }
+        if (tryAcquire(task)) {
+            return;
+        }
+        if (pendingAcquireCount.incrementAndGet() > maxPendingAcquires) {
+            pendingAcquireCount.decrementAndGet();
+            task.promise.tryFailure(new IllegalStateException("Too many outstanding acquire operations"));
+            return;
+        }
+        task.shard.addPending(task);
+        // A Channel may have become available since we looked, and the Channel (or permit) was only offered
+        // before the acquire was added.
+        task.shard.runPending();
+    }
+
+    /**
+     * Starts to acquire a {@link Channel} for the given task without waiting for one to become available.
+     *
+     * @return {@code false} if there is no idle {@link Channel} and the maximum number of connections is reached.
+     */
+    private boolean tryAcquire(AcquireTask task) {
+        Shard shard = task.shard;
+        Channel ch = shard.pollIdle(true);
+        if (ch != null) {
+            checkHealth(ch, task);
+            return true;
+        }
+        if (shard.tryAcquirePermit()) {
+            connect(task, shard);
+            return true;
+        }
+        for (int i = 1; i < shards.length; i++) {
+            Shard other = shards[(shard.index + i) % shards.length];
+            // Steal from the other end of the deque, the least recently used Channels are the least likely to be
+            // reused by the other shard soon.
+            ch = other.pollIdle(false);
+            if (ch != null) {
+                stealCount.increment();
+                checkHealth(ch, task);
+                return true;
+            }
+        }
+        for (int i = 1; i < shards.length; i++) {
+            Shard other = shards[(shard.index + i) % shards.length];
+            if (other.tryAcquirePermit()) {
+                connect(task, other);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void connect(final AcquireTask task, final Shard permitShard) {
+        final ChannelFuture f;
+        try {
+            f = connectChannel(bootstrap.clone(task.shard.loop));
+        } catch (Throwable cause) {
+            permitShard.releasePermit();
+            task.promise.tryFailure(cause);
+            return;
+        }
+        channelCount.incrementAndGet();
+        if (f.isDone()) {
+            notifyConnect(f, task, permitShard);
+        } else {
+            f.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    notifyConnect(future, task, permitShard);
+                }
+            });
+        }
+    }
+
+    private void notifyConnect(ChannelFuture future, AcquireTask task, final Shard permitShard) {
+        Channel ch = future.channel();
+        if (!future.isSuccess()) {
+            ch.close();
+            channelCount.decrementAndGet();
+            permitShard.releasePermit();
+            task.promise.tryFailure(future.cause());
+            runPending(permitShard);
+            return;
+        }
+        // The permit is returned once the Channel is closed.
+        ch.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                channelClosed(future.channel(), permitShard);
+            }
+        });
+        notifyAcquired(ch, task);
+    }
+
+    /**
+     * Bootstrap a new {@link Channel}. The default implementation uses {@link Bootstrap#connect()}, sub-classes may
+     * override this.
+     * <p>
+     * The {@link Bootstrap} that is passed in here is cloned via {@link Bootstrap#clone(EventLoopGroup)} with the
+     * {@link EventLoop} of the shard the {@link Channel} is created for, so it is safe to modify.
+     */
+    protected ChannelFuture connectChannel(Bootstrap bs) {
+        return bs.connect();
+    }
+
+    private void checkHealth(final Channel ch, final AcquireTask task) {
+        EventLoop loop = ch.eventLoop();
+        if (loop.inEventLoop()) {
+            doHealthCheck(ch, task);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    doHealthCheck(ch, task);
+                }
+            });
+        }
+    }
+
+    private void doHealthCheck(final Channel ch, final AcquireTask task) {
+        assert ch.eventLoop().inEventLoop();
+
+        Future<Boolean> f = healthCheck.isHealthy(ch);
+        if (f.isDone()) {
+            notifyHealthCheck(f, ch, task);
+        } else {
+            f.addListener(new FutureListener<Boolean>() {
+                @Override
+                public void operationComplete(Future<Boolean> future) {
+                    notifyHealthCheck(future, ch, task);
+                }
+            });
+        }
+    }
+
+    private void notifyHealthCheck(Future<Boolean> future, Channel ch, final AcquireTask task) {
+        if (future.isSuccess() && future.getNow()) {
+            notifyAcquired(ch, task);
+            return;
+        }
+        ch.close();
+        EventLoop loop = task.shard.loop;
+        if (loop.inEventLoop()) {
+            acquire0(task);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    acquire0(task);
+                }
+            });
+        }
+    }
+
+    private void notifyAcquired(Channel ch, AcquireTask task) {
+        assert ch.eventLoop().inEventLoop();
+
+        try {
+            ch.attr(POOL_KEY).set(this);
+            handler.channelAcquired(ch);
+        } catch (Throwable cause) {
+            ch.attr(POOL_KEY).set(null);
+            ch.close();
+            task.promise.tryFailure(cause);
+            return;
+        }
+        acquiredChannelCount.incrementAndGet();
+        if (task.promise.trySuccess(ch)) {
+            acquireCount.increment();
+            acquireTimeNanos.add(System.nanoTime() - task.startNanos);
+        } else {
+            // Promise was completed in the meantime (like cancelled), just release the channel again
+            release(ch);
+        }
+    }
+
+    @Override
+    public final Future<Void> release(Channel channel) {
+        return release(channel, channel.eventLoop().<Void>newPromise());
+    }
+
+    @Override
+    public Future<Void> release(final Channel channel, final Promise<Void> promise) {
+        checkNotNull(channel, "channel");
+        checkNotNull(promise, "promise");
+        try {
+            EventLoop loop = channel.eventLoop();
+            if (loop.inEventLoop()) {
+                doReleaseChannel(channel, promise);
+            } else {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        doReleaseChannel(channel, promise);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+        return promise;
+    }
+
+    private void doReleaseChannel(final Channel channel, final Promise<Void> promise) {
+        assert channel.eventLoop().inEventLoop();
+        // Remove the POOL_KEY attribute from the Channel and check if it was acquired from this pool, if not fail.
+        if (channel.attr(POOL_KEY).getAndSet(null) != this) {
+            closeAndFail(channel,
+                         // Better include a stacktrace here as this is an user error.
+                         new IllegalArgumentException(
+                                 "Channel " + channel + " was not acquired from this ChannelPool"),
+                         promise);
+            return;
+        }
+        acquiredChannelCount.decrementAndGet();
+        if (closed) {
+            // Since the pool is closed, we have no choice but to close the channel
+            closeAndFail(channel, new IllegalStateException("ShardedChannelPool was closed"), promise);
+            return;
+        }
+        try {
+            Future<Boolean> f = healthCheck.isHealthy(channel);
+            if (f.isDone()) {
+                releaseAndOfferIfHealthy(channel, promise, f);
+            } else {
+                f.addListener(new FutureListener<Boolean>() {
+                    @Override
+                    public void operationComplete(Future<Boolean> future) {
+                        releaseAndOfferIfHealthy(channel, promise, future);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+    }
+
+    private void releaseAndOfferIfHealthy(Channel channel, Promise<Void> promise, Future<Boolean> future) {
+        try {
+            handler.channelReleased(channel);
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+            return;
+        }
+        Shard shard = shardsByLoop.get(channel.eventLoop());
+        if (shard != null && future.isSuccess() && future.getNow()) {
+            shard.offerIdle(channel);
+            if (closed) {
+                // The pool was closed concurrently and may have missed the Channel.
+                if (shard.removeIdle(channel)) {
+                    channel.close();
+                }
+            } else {
+                runPending(shard);
+            }
+        } else {
+            // The Channel is not healthy, its permit is returned once it is closed.
+            channel.close();
+        }
+        promise.setSuccess(null);
+    }
+
+    private static void closeAndFail(Channel channel, Throwable cause, Promise<?> promise) {
+        channel.attr(POOL_KEY).set(null);
+        channel.close();
+        promise.tryFailure(cause);
+    }
+
+    private void channelClosed(Channel ch, Shard permitShard) {
+        Shard shard = shardsByLoop.get(ch.eventLoop());
+        if (shard != null) {
+            shard.removeIdle(ch);
+        }
+        channelCount.decrementAndGet();
+        permitShard.releasePermit();
+        if (!closed) {
+            runPending(shard != null ? shard : permitShard);
+        }
+    }
+
+    /**
+     * Lets pending acquires try again after a {@link Channel} was offered to the given shard or a permit was
+     * returned.
+     */
+    private void runPending(Shard preferred) {
+        if (pendingAcquireCount.get() == 0) {
+            return;
+        }
+        if (preferred.pendingCount.get() > 0) {
+            preferred.scheduleRunPending();
+        }
+        for (Shard shard : shards) {
+            if (shard != preferred && shard.pendingCount.get() > 0) {
+                shard.scheduleRunPending();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeAsync().await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the pool in an async manner. Pending acquires are failed, idle {@link Channel}s are closed and
+     * acquired {@link Channel}s are closed once they are released.
+     *
+     * @return Future which represents completion of the close task
+     */
+    public Future<Void> closeAsync() {
+        if (closed) {
+            return GlobalEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+        closed = true;
+        for (final Shard shard : shards) {
+            shard.loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shard.failPending();
+                }
+            });
+        }
+        // Ensure we dispatch this on another Thread as we may be called from an EventLoop and we need to ensure we
+        // will not block in an EventLoop.
+        return GlobalEventExecutor.INSTANCE.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (Shard shard : shards) {
+                    for (;;) {
+                        Channel channel = shard.pollIdle(true);
+                        if (channel == null) {
+                            break;
+                        }
+                        // Just ignore any errors that are reported back from close().
+                        channel.close().awaitUninterruptibly();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * The state of a single {@link EventLoop} of the pool.
+     */
+    private final class Shard {
+        final int index;
+        final EventLoop loop;
+        // Accessed from any thread, the idle Channels may be stolen by other shards.
+        final Deque<Channel> idle = PlatformDependent.newConcurrentDeque();
+        final AtomicInteger idleCount = new AtomicInteger();
+        // The share of the maximum number of connections which is not used yet. May be used by other shards.
+        final AtomicInteger permits;
+        // Only accessed from the EventLoop of this shard.
+        final Deque<AcquireTask> pending = new ArrayDeque<AcquireTask>();
+        final AtomicInteger pendingCount = new AtomicInteger();
+        private final Runnable runPendingTask = new Runnable() {
+            @Override
+            public void run() {
+                runPending();
+            }
+        };
+
+        Shard(int index, EventLoop loop, int permits) {
+            this.index = index;
+            this.loop = loop;
+            this.permits = new AtomicInteger(permits);
+        }
+
+        Channel pollIdle(boolean mostRecentlyUsed) {
+            Channel ch = mostRecentlyUsed ? idle.pollLast() : idle.pollFirst();
+            if (ch != null) {
+                idleCount.decrementAndGet();
+            }
+            return ch;
+        }
+
+        void offerIdle(Channel ch) {
+            idle.offerLast(ch);
+            idleCount.incrementAndGet();
+        }
+
+        boolean removeIdle(Channel ch) {
+            if (idle.remove(ch)) {
+                idleCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        boolean tryAcquirePermit() {
+            for (;;) {
+                int current = permits.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (permits.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void releasePermit() {
+            permits.incrementAndGet();
+        }
+
+        void addPending(AcquireTask task) {
+            assert loop.inEventLoop();
+            pending.addLast(task);
+            pendingCount.incrementAndGet();
+            if (acquireTimeoutNanos > 0) {
+                task.timeoutFuture = loop.schedule(task, acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        boolean removePending(AcquireTask task) {
+            assert loop.inEventLoop();
+            if (!pending.remove(task)) {
+                return false;
+            }
+            pendingCount.decrementAndGet();
+            pendingAcquireCount.decrementAndGet();
+            return true;
+        }
+
+        void scheduleRunPending() {
+            if (loop.inEventLoop()) {
+                runPending();
+            } else {
+                loop.execute(runPendingTask);
+            }
+        }
+
+        void runPending() {
+            assert loop.inEventLoop();
+            AcquireTask task;
+            while (!closed && (task = pending.pollFirst()) != null) {
+                // The task is removed before it is tried as the listeners of the acquire may be notified right away
+                // and may modify the pending acquires.
+                if (!tryAcquire(task)) {
+                    pending.addFirst(task);
+                    break;
+                }
+                pendingCount.decrementAndGet();
+                pendingAcquireCount.decrementAndGet();
+                task.cancelTimeout();
+            }
+        }
+
+        void failPending() {
+            assert loop.inEventLoop();
+            AcquireTask task;
+            while ((task = pending.pollFirst()) != null) {
+                pendingCount.decrementAndGet();
+                pendingAcquireCount.decrementAndGet();
+                task.cancelTimeout();
+                task.promise.tryFailure(new ClosedChannelException());
+            }
+        }
+    }
+
+    /**
+     * An acquire and the shard which serves it. Runs as the timeout of the acquire when it is pending.
+     */
+    private final class AcquireTask implements Runnable {
+        final Shard shard;
+        final Promise<Channel> promise;
+        final long startNanos = System.nanoTime();
+        ScheduledFuture<?> timeoutFuture;
+
+        AcquireTask(Shard shard, Promise<Channel> promise) {
+            this.shard = shard;
+            this.promise = promise;
+        }
+
+        @Override
+        public void run() {
+            if (shard.removePending(this)) {
+                promise.tryFailure(new TimeoutException(
+                        "Acquire operation took longer then configured maximum time") {
+                    @Override
+                    public Throwable fillInStackTrace() {
+                        return this;
+                    }
+                });
+            }
+        }
+
+        void cancelTimeout() {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+                timeoutFuture = null;
+            }
+        }
+    }
+}
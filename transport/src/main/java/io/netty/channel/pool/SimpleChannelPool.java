@@ -26,10 +26,14 @@ import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.PlatformDependent;
 
 import java.util.Deque;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.util.internal.ObjectUtil.*;
 
@@ -38,17 +42,34 @@ import static io.netty.util.internal.ObjectUtil.*;
  * a {@link Channel} but none is in the pool atm. No limit on the maximal concurrent {@link Channel}s is enforced.
  *
  * This implementation uses LIFO order for {@link Channel}s in the {@link ChannelPool}.
- *
+ * <p>
+ * Optionally the pool keeps a minimum number of idle {@link Channel}s connected, see {@link #warmUp()}, and evicts
+ * idle {@link Channel}s which are idle or open for too long. The idle {@link Channel}s are checked periodically with
+ * the {@link ChannelHealthChecker} on their own {@link EventLoop}, so a dead {@link Channel} is usually evicted before
+ * it is acquired.
  */
 public class SimpleChannelPool implements ChannelPool {
     private static final AttributeKey<SimpleChannelPool> POOL_KEY =
         AttributeKey.newInstance("io.netty.channel.pool.SimpleChannelPool");
+    private static final AttributeKey<Long> CREATION_NANOS_KEY =
+        AttributeKey.newInstance("io.netty.channel.pool.SimpleChannelPool.creationNanos");
+    private static final AttributeKey<Long> IDLE_NANOS_KEY =
+        AttributeKey.newInstance("io.netty.channel.pool.SimpleChannelPool.idleNanos");
     private final Deque<Channel> deque = PlatformDependent.newConcurrentDeque();
     private final ChannelPoolHandler handler;
     private final ChannelHealthChecker healthCheck;
     private final Bootstrap bootstrap;
     private final boolean releaseHealthCheck;
     private final boolean lastRecentUsed;
+    private final int minIdleChannels;
+    private final long maxIdleTimeNanos;
+    private final long maxLifetimeNanos;
+    private final ScheduledFuture<?> maintenanceFuture;
+    private final AtomicInteger warmingUpCount = new AtomicInteger();
+    private final LongCounter idleEvictionCount = PlatformDependent.newLongCounter();
+    private final LongCounter lifetimeEvictionCount = PlatformDependent.newLongCounter();
+    private final LongCounter unhealthyEvictionCount = PlatformDependent.newLongCounter();
+    private volatile boolean closed;
 
     /**
      * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
@@ -100,6 +121,34 @@ public class SimpleChannelPool implements ChannelPool {
      */
     public SimpleChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
                              boolean releaseHealthCheck, boolean lastRecentUsed) {
+        this(bootstrap, handler, healthCheck, releaseHealthCheck, lastRecentUsed, 0, 0, 0, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap                 the {@link Bootstrap} that is used for connections
+     * @param handler                   the {@link ChannelPoolHandler} that will be notified for the different pool
+     *                                  actions
+     * @param healthCheck               the {@link ChannelHealthChecker} that will be used to check if a
+     *                                  {@link Channel} is still healthy when obtain from the {@link ChannelPool}, and
+     *                                  periodically while it is idle
+     * @param releaseHealthCheck        will check channel health before offering back if this parameter set to
+     *                                  {@code true}; otherwise, channel health is only checked at acquisition time
+     * @param lastRecentUsed            {@code true} {@link Channel} selection will be LIFO, if {@code false} FIFO.
+     * @param minIdleChannels           the number of idle {@link Channel}s which {@link #warmUp()} and the periodic
+     *                                  maintenance keep connected, or {@code 0} to not create idle {@link Channel}s.
+     * @param maintenanceIntervalMillis the interval (in milliseconds) at which the idle {@link Channel}s are
+     *                                  checked, evicted and topped up to {@code minIdleChannels}, or {@code 0} to
+     *                                  disable the periodic maintenance.
+     * @param maxIdleTimeMillis         the time (in milliseconds) after which an idle {@link Channel} is evicted, or
+     *                                  {@code 0} to keep idle {@link Channel}s forever.
+     * @param maxLifetimeMillis         the time (in milliseconds) after which a {@link Channel} is evicted once it is
+     *                                  idle, or {@code 0} to not limit the lifetime of {@link Channel}s.
+     */
+    public SimpleChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                             boolean releaseHealthCheck, boolean lastRecentUsed, int minIdleChannels,
+                             long maintenanceIntervalMillis, long maxIdleTimeMillis, long maxLifetimeMillis) {
         this.handler = checkNotNull(handler, "handler");
         this.healthCheck = checkNotNull(healthCheck, "healthCheck");
         this.releaseHealthCheck = releaseHealthCheck;
@@ -109,10 +158,27 @@ public class SimpleChannelPool implements ChannelPool {
             @Override
             protected void initChannel(Channel ch) throws Exception {
                 assert ch.eventLoop().inEventLoop();
+                if (maxLifetimeNanos > 0) {
+                    ch.attr(CREATION_NANOS_KEY).set(System.nanoTime());
+                }
                 handler.channelCreated(ch);
             }
         });
         this.lastRecentUsed = lastRecentUsed;
+        this.minIdleChannels = checkPositiveOrZero(minIdleChannels, "minIdleChannels");
+        checkPositiveOrZero(maintenanceIntervalMillis, "maintenanceIntervalMillis");
+        maxIdleTimeNanos = TimeUnit.MILLISECONDS.toNanos(checkPositiveOrZero(maxIdleTimeMillis, "maxIdleTimeMillis"));
+        maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(checkPositiveOrZero(maxLifetimeMillis, "maxLifetimeMillis"));
+        if (maintenanceIntervalMillis > 0) {
+            maintenanceFuture = this.bootstrap.config().group().next().scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    maintain();
+                }
+            }, maintenanceIntervalMillis, maintenanceIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            maintenanceFuture = null;
+        }
     }
 
     /**
@@ -152,6 +218,183 @@ public class SimpleChannelPool implements ChannelPool {
         return releaseHealthCheck;
     }
 
+    /**
+     * Returns the number of idle {@link Channel}s which were evicted because they were idle for too long.
+     */
+    public long idleEvictionCount() {
+        return idleEvictionCount.value();
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which were evicted because they were open for too long.
+     */
+    public long lifetimeEvictionCount() {
+        return lifetimeEvictionCount.value();
+    }
+
+    /**
+     * Returns the number of idle {@link Channel}s which were evicted because the periodic health check failed.
+     */
+    public long unhealthyEvictionCount() {
+        return unhealthyEvictionCount.value();
+    }
+
+    /**
+     * Connects new {@link Channel}s until the pool holds the minimum number of idle {@link Channel}s it was created
+     * with, counting the ones which are still connecting. This is also done by the periodic maintenance, but may be
+     * called to warm up the pool before the first acquire.
+     *
+     * @return a {@link Future} which is notified once the new {@link Channel}s are connected, and failed with the
+     *         cause of the first failed connect, or failed if the pool was closed.
+     */
+    public Future<Void> warmUp() {
+        final Promise<Void> promise = bootstrap.config().group().next().newPromise();
+        if (closed) {
+            return promise.setFailure(new IllegalStateException("ChannelPool was closed"));
+        }
+        int needed = minIdleChannels - deque.size() - warmingUpCount.get();
+        if (needed <= 0) {
+            return promise.setSuccess(null);
+        }
+        warmingUpCount.addAndGet(needed);
+        final AtomicInteger remaining = new AtomicInteger(needed);
+        ChannelFutureListener listener = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                warmingUpCount.decrementAndGet();
+                Channel ch = future.channel();
+                if (!future.isSuccess()) {
+                    promise.tryFailure(future.cause());
+                } else if (closed) {
+                    ch.close();
+                } else {
+                    offerWarmedUp(ch, promise);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    promise.trySuccess(null);
+                }
+            }
+        };
+        for (int i = 0; i < needed; i++) {
+            try {
+                connectChannel(bootstrap.clone()).addListener(listener);
+            } catch (Throwable cause) {
+                warmingUpCount.addAndGet(-(needed - i));
+                promise.tryFailure(cause);
+                break;
+            }
+        }
+        return promise;
+    }
+
+    private void offerWarmedUp(Channel ch, Promise<Void> promise) {
+        // Every idle Channel in the pool must have been seen as released by the handler.
+        try {
+            handler.channelReleased(ch);
+        } catch (Throwable cause) {
+            closeAndFail(ch, cause, promise);
+            return;
+        }
+        markIdle(ch);
+        if (!offerChannel(ch)) {
+            ch.close();
+        } else if (closed && deque.remove(ch)) {
+            // The pool was closed while the Channel was offered, so close() may have missed it.
+            ch.close();
+        }
+    }
+
+    /**
+     * Evicts the idle {@link Channel}s which are expired, checks the health of the others on their own
+     * {@link EventLoop} and tops up the idle {@link Channel}s.
+     */
+    private void maintain() {
+        long nanoTime = System.nanoTime();
+        for (final Channel ch : deque) {
+            LongCounter evictionCount = expiredEvictionCount(ch, nanoTime);
+            if (evictionCount != null) {
+                // Only count and close the Channel if it was not acquired in the meantime.
+                if (deque.remove(ch)) {
+                    evictionCount.increment();
+                    closeChannel(ch);
+                }
+                continue;
+            }
+            try {
+                ch.eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        checkIdleHealth(ch);
+                    }
+                });
+            } catch (Throwable cause) {
+                // The EventLoop is shutting down, the Channel will be closed anyway.
+            }
+        }
+        if (minIdleChannels > 0) {
+            warmUp();
+        }
+    }
+
+    private void checkIdleHealth(final Channel ch) {
+        assert ch.eventLoop().inEventLoop();
+        if (!deque.contains(ch)) {
+            // Acquired in the meantime, the acquire checks its health.
+            return;
+        }
+        Future<Boolean> f;
+        try {
+            f = healthCheck.isHealthy(ch);
+        } catch (Throwable cause) {
+            f = ch.eventLoop().newFailedFuture(cause);
+        }
+        if (f.isDone()) {
+            evictIfUnhealthy(f, ch);
+        } else {
+            f.addListener(new FutureListener<Boolean>() {
+                @Override
+                public void operationComplete(Future<Boolean> future) {
+                    evictIfUnhealthy(future, ch);
+                }
+            });
+        }
+    }
+
+    private void evictIfUnhealthy(Future<Boolean> future, Channel ch) {
+        if ((!future.isSuccess() || !future.getNow()) && deque.remove(ch)) {
+            unhealthyEvictionCount.increment();
+            closeChannel(ch);
+        }
+    }
+
+    /**
+     * Returns the eviction count to increment if the given idle {@link Channel} was idle or open for too long, or
+     * {@code null} if it is not expired.
+     */
+    private LongCounter expiredEvictionCount(Channel ch, long nanoTime) {
+        if (isLifetimeExceeded(ch, nanoTime)) {
+            return lifetimeEvictionCount;
+        }
+        if (maxIdleTimeNanos > 0 && isOlderThan(ch.attr(IDLE_NANOS_KEY).get(), nanoTime, maxIdleTimeNanos)) {
+            return idleEvictionCount;
+        }
+        return null;
+    }
+
+    private boolean isLifetimeExceeded(Channel ch, long nanoTime) {
+        return maxLifetimeNanos > 0 && isOlderThan(ch.attr(CREATION_NANOS_KEY).get(), nanoTime, maxLifetimeNanos);
+    }
+
+    private static boolean isOlderThan(Long startNanos, long nanoTime, long maxNanos) {
+        return startNanos != null && nanoTime - startNanos >= maxNanos;
+    }
+
+    private void markIdle(Channel ch) {
+        if (maxIdleTimeNanos > 0) {
+            ch.attr(IDLE_NANOS_KEY).set(System.nanoTime());
+        }
+    }
+
     @Override
     public final Future<Channel> acquire() {
         return acquire(bootstrap.config().group().next().<Channel>newPromise());
@@ -169,7 +412,7 @@ public class SimpleChannelPool implements ChannelPool {
      */
     private Future<Channel> acquireHealthyFromPoolOrNew(final Promise<Channel> promise) {
         try {
-            final Channel ch = pollChannel();
+            final Channel ch = pollUnexpiredChannel();
             if (ch == null) {
                 // No Channel left in the pool bootstrap a new Channel
                 Bootstrap bs = bootstrap.clone();
@@ -204,6 +447,25 @@ public class SimpleChannelPool implements ChannelPool {
         return promise;
     }
 
+    private Channel pollUnexpiredChannel() {
+        if (maxIdleTimeNanos == 0 && maxLifetimeNanos == 0) {
+            return pollChannel();
+        }
+        long nanoTime = System.nanoTime();
+        for (;;) {
+            Channel ch = pollChannel();
+            if (ch == null) {
+                return null;
+            }
+            LongCounter evictionCount = expiredEvictionCount(ch, nanoTime);
+            if (evictionCount == null) {
+                return ch;
+            }
+            evictionCount.increment();
+            closeChannel(ch);
+        }
+    }
+
     private void notifyConnect(ChannelFuture future, Promise<Channel> promise) throws Exception {
         if (future.isSuccess()) {
             Channel channel = future.channel();
@@ -346,6 +608,15 @@ public class SimpleChannelPool implements ChannelPool {
     }
 
     private void releaseAndOffer(Channel channel, Promise<Void> promise) throws Exception {
+        if (isLifetimeExceeded(channel, System.nanoTime())) {
+            // Don't bother to offer the Channel, it would be evicted on the next acquire.
+            lifetimeEvictionCount.increment();
+            handler.channelReleased(channel);
+            closeChannel(channel);
+            promise.setSuccess(null);
+            return;
+        }
+        markIdle(channel);
         if (offerChannel(channel)) {
             handler.channelReleased(channel);
             promise.setSuccess(null);
@@ -393,6 +664,10 @@ public class SimpleChannelPool implements ChannelPool {
 
     @Override
     public void close() {
+        closed = true;
+        if (maintenanceFuture != null) {
+            maintenanceFuture.cancel(false);
+        }
         for (;;) {
             Channel channel = pollChannel();
             if (channel == null) {
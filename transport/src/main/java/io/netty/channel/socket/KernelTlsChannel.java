@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket;
+
+import io.netty.channel.Channel;
+import io.netty.channel.FileRegion;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.IOException;
+
+/**
+ * A {@link Channel} which can hand the record layer of an established TLS connection over to the kernel, so the data
+ * written to and read from it is plaintext and {@link FileRegion}s can be transferred without copying them into
+ * user space.
+ */
+@UnstableApi
+public interface KernelTlsChannel extends Channel {
+
+    /**
+     * Returns {@code true} if the kernel can take over records of the given {@link KernelTlsCryptoInfo.Cipher}.
+     * A return value of {@code true} does not guarantee that {@link #enableKernelTls(KernelTlsCryptoInfo,
+     * KernelTlsCryptoInfo)} will succeed, for example if the {@code tls} module was not loaded.
+     */
+    boolean isKernelTlsSupported(KernelTlsCryptoInfo.Cipher cipher);
+
+    /**
+     * Installs the keys of the TLS connection in the kernel. From now on everything written to this {@link Channel}
+     * is encrypted by the kernel and everything read from it was decrypted by the kernel.
+     * <p>
+     * This method must be called from the {@link io.netty.channel.EventLoop} of this {@link Channel} and only when
+     * neither unread records were received nor unwritten records are pending, otherwise the record sequence numbers
+     * will be out of sync with the remote peer.
+     *
+     * @param tx    the crypto state used to encrypt the outbound records.
+     * @param rx    the crypto state used to decrypt the inbound records.
+     * @throws IOException  if the kernel refused to take over the connection. If this happens before any key was
+     *                      installed the connection can still be used from user space.
+     */
+    void enableKernelTls(KernelTlsCryptoInfo tx, KernelTlsCryptoInfo rx) throws IOException;
+
+    /**
+     * Returns {@code true} if the kernel handles the TLS records of this {@link Channel}.
+     */
+    boolean isKernelTlsEnabled();
+
+    /**
+     * Returns {@code true} if the kernel received a record which does not contain application data, like the
+     * {@code close_notify} of the remote peer. As the kernel can not decrypt anything after such a record the input of
+     * this {@link Channel} is handled as if an EOF was received.
+     */
+    boolean isKernelTlsInputClosed();
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * The state of one direction of a TLS connection as needed by {@link KernelTlsChannel#enableKernelTls(
+ * KernelTlsCryptoInfo, KernelTlsCryptoInfo)}.
+ */
+@UnstableApi
+public final class KernelTlsCryptoInfo {
+
+    /**
+     * The TLS 1.2 protocol version.
+     */
+    public static final int TLS_1_2_VERSION = 0x0303;
+
+    /**
+     * The ciphers which may be handled by the kernel.
+     */
+    public enum Cipher {
+        AES_GCM_128(16),
+        AES_GCM_256(32);
+
+        private final int keyLength;
+
+        Cipher(int keyLength) {
+            this.keyLength = keyLength;
+        }
+
+        /**
+         * Returns the length of the key in bytes.
+         */
+        public int keyLength() {
+            return keyLength;
+        }
+    }
+
+    private final int version;
+    private final Cipher cipher;
+    private final byte[] key;
+    private final byte[] salt;
+    private final byte[] iv;
+    private final byte[] recordSequence;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param version           the protocol version, e.g. {@link #TLS_1_2_VERSION}.
+     * @param cipher            the negotiated {@link Cipher}.
+     * @param key               the write key of this direction.
+     * @param salt              the 4 byte implicit part of the nonce.
+     * @param iv                the 8 byte explicit part of the nonce which is used for the next record.
+     * @param recordSequence    the 8 byte sequence number of the next record.
+     */
+    public KernelTlsCryptoInfo(int version, Cipher cipher, byte[] key, byte[] salt, byte[] iv,
+                               byte[] recordSequence) {
+        this.version = version;
+        this.cipher = ObjectUtil.checkNotNull(cipher, "cipher");
+        this.key = checkLength(key, cipher.keyLength(), "key");
+        this.salt = checkLength(salt, 4, "salt");
+        this.iv = checkLength(iv, 8, "iv");
+        this.recordSequence = checkLength(recordSequence, 8, "recordSequence");
+    }
+
+    private static byte[] checkLength(byte[] bytes, int length, String name) {
+        ObjectUtil.checkNotNull(bytes, name);
+        if (bytes.length != length) {
+            throw new IllegalArgumentException(name + ".length: " + bytes.length + " (expected: " + length + ')');
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the protocol version.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Returns the {@link Cipher}.
+     */
+    public Cipher cipher() {
+        return cipher;
+    }
+
+    /**
+     * Returns the write key. The returned array must not be modified.
+     */
+    public byte[] key() {
+        return key;
+    }
+
+    /**
+     * Returns the implicit part of the nonce. The returned array must not be modified.
+     */
+    public byte[] salt() {
+        return salt;
+    }
+
+    /**
+     * Returns the explicit part of the nonce. The returned array must not be modified.
+     */
+    public byte[] iv() {
+        return iv;
+    }
+
+    /**
+     * Returns the sequence number of the next record. The returned array must not be modified.
+     */
+    public byte[] recordSequence() {
+        return recordSequence;
+    }
+
+    @Override
+    public String toString() {
+        // Never include the key material.
+        return "KernelTlsCryptoInfo(version: 0x" + Integer.toHexString(version) + ", cipher: " + cipher + ')';
+    }
+}
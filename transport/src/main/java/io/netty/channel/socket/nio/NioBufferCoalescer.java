@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies runs of small {@link ByteBuffer}s of a gathering write into a single direct staging buffer, so the write
+ * is done with fewer, larger buffers and heap buffers do not need to be copied by the JDK.
+ * <p>
+ * Small heap buffers are always copied, even if they are the only small buffer, as {@link NioSocketChannel} does not
+ * copy them into a direct buffer when they are written. If the staging buffer is full the write stops before the
+ * next small heap buffer, so it is never handed to the JDK which would copy it into a temporary direct buffer again.
+ * <p>
+ * Must only be used from the {@link io.netty.channel.EventLoop} of the {@link NioSocketChannel}.
+ */
+final class NioBufferCoalescer {
+    private final ByteBuffer[] nioBuffers;
+    private ByteBuf staging;
+    private long attemptedBytes;
+
+    NioBufferCoalescer(int maxCount) {
+        nioBuffers = new ByteBuffer[maxCount];
+    }
+
+    /**
+     * Coalesce all buffers with less than {@code threshold} remaining bytes, up to {@code maxBytes} in total.
+     * The {@link ByteBuffer}s themselves are not modified. The result may only contain a prefix of the given buffers,
+     * see {@link #attemptedBytes()}.
+     *
+     * @return the number of buffers in {@link #nioBuffers()} or {@code -1} if there was nothing to coalesce, in
+     *         which case the given buffers should be written as they are.
+     */
+    int coalesce(ByteBufAllocator alloc, ByteBuffer[] buffers, int count, int threshold, int maxBytes) {
+        assert staging == null;
+        int smallBytes = 0;
+        int smallCount = 0;
+        boolean smallHeap = false;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = buffers[i];
+            int remaining = buffer.remaining();
+            if (remaining < threshold) {
+                smallBytes += remaining;
+                smallCount++;
+                smallHeap |= !buffer.isDirect();
+            }
+        }
+        int capacity = Math.min(smallBytes, maxBytes);
+        if (capacity == 0 || smallCount < 2 && !smallHeap) {
+            return -1;
+        }
+        ByteBuf staging = newStagingBuffer(alloc, capacity);
+        if (staging == null) {
+            return -1;
+        }
+        this.staging = staging;
+
+        ByteBuffer[] nioBuffers = this.nioBuffers;
+        int nioBufferCount = 0;
+        int runStart = -1;
+        long attemptedBytes = 0;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = buffers[i];
+            int remaining = buffer.remaining();
+            if (remaining < threshold) {
+                if (staging.writableBytes() >= remaining) {
+                    if (runStart == -1) {
+                        runStart = staging.writerIndex();
+                    }
+                    // Keep the position as the ByteBuffer may be cached by the ChannelOutboundBuffer.
+                    int position = buffer.position();
+                    staging.writeBytes(buffer);
+                    buffer.position(position);
+                    attemptedBytes += remaining;
+                    continue;
+                }
+                if (!buffer.isDirect()) {
+                    // Leave it for the next write, the JDK would copy it into a temporary direct buffer otherwise.
+                    break;
+                }
+            }
+            if (runStart != -1) {
+                nioBuffers[nioBufferCount++] = staging.nioBuffer(runStart, staging.writerIndex() - runStart);
+                runStart = -1;
+            }
+            nioBuffers[nioBufferCount++] = buffer;
+            attemptedBytes += remaining;
+        }
+        if (runStart != -1) {
+            nioBuffers[nioBufferCount++] = staging.nioBuffer(runStart, staging.writerIndex() - runStart);
+        }
+        if (nioBufferCount == 0) {
+            release();
+            return -1;
+        }
+        this.attemptedBytes = attemptedBytes;
+        return nioBufferCount;
+    }
+
+    /**
+     * Return the number of bytes in {@link #nioBuffers()} after
+     * {@link #coalesce(ByteBufAllocator, ByteBuffer[], int, int, int)} was called.
+     */
+    long attemptedBytes() {
+        return attemptedBytes;
+    }
+
+    private static ByteBuf newStagingBuffer(ByteBufAllocator alloc, int capacity) {
+        if (alloc.isDirectBufferPooled()) {
+            return alloc.directBuffer(capacity, capacity);
+        }
+        // Only coalesce what fits into the thread-local buffer, allocating and deallocating an unpooled direct
+        // buffer is very expensive.
+        return ByteBufUtil.threadLocalDirectBuffer();
+    }
+
+    /**
+     * Return the coalesced buffers after {@link #coalesce(ByteBufAllocator, ByteBuffer[], int, int, int)} was called.
+     */
+    ByteBuffer[] nioBuffers() {
+        return nioBuffers;
+    }
+
+    /**
+     * Release the staging buffer once the coalesced buffers were written.
+     */
+    void release() {
+        ByteBuf staging = this.staging;
+        if (staging != null) {
+            this.staging = null;
+            staging.release();
+            // Do not keep references to the buffers of the ChannelOutboundBuffer.
+            for (int i = 0; i < nioBuffers.length && nioBuffers[i] != null; i++) {
+                nioBuffers[i] = null;
+            }
+        }
+    }
+}
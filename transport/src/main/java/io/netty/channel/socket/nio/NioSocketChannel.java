@@ -50,6 +50,7 @@ import java.util.Map;
 import java.util.concurrent.Executor;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 /**
  * {@link io.netty.channel.socket.SocketChannel} which uses NIO selector based implementation.
@@ -57,6 +58,8 @@ import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRI
 public class NioSocketChannel extends AbstractNioByteChannel implements io.netty.channel.socket.SocketChannel {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(NioSocketChannel.class);
     private static final SelectorProvider DEFAULT_SELECTOR_PROVIDER = SelectorProvider.provider();
+    private static final int MAX_NIO_BUFFERS = 1024;
+    private static final int DEFAULT_WRITE_COALESCE_MAX_BYTES = 64 * 1024;
 
     private static SocketChannel newSocket(SelectorProvider provider) {
         try {
@@ -73,6 +76,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
     }
 
     private final SocketChannelConfig config;
+    // Only used from the EventLoop and created lazily once write coalescing is used.
+    private NioBufferCoalescer coalescer;
 
     /**
      * Create a new instance
@@ -375,6 +380,17 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
         }
     }
 
+    @Override
+    protected boolean isCopiedOnWrite(ByteBuf buf) {
+        // Small heap buffers are always copied into the direct staging buffer when they are flushed, see
+        // NioBufferCoalescer. This is only guaranteed if the staging buffer can be allocated from a pool with a
+        // capacity that fits the buffer, otherwise the JDK would copy it into a temporary direct buffer instead.
+        NioSocketChannelConfig config = (NioSocketChannelConfig) this.config;
+        int readableBytes = buf.readableBytes();
+        return readableBytes < config.getWriteCoalesceThreshold() &&
+                readableBytes <= config.getWriteCoalesceMaxBytes() && alloc().isDirectBufferPooled();
+    }
+
     @Override
     protected void doWrite(ChannelOutboundBuffer in) throws Exception {
         SocketChannel ch = javaChannel();
@@ -388,10 +404,42 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
             }
 
             // Ensure the pending writes are made of ByteBufs only.
-            int maxBytesPerGatheringWrite = ((NioSocketChannelConfig) config).getMaxBytesPerGatheringWrite();
-            ByteBuffer[] nioBuffers = in.nioBuffers(1024, maxBytesPerGatheringWrite);
+            NioSocketChannelConfig config = (NioSocketChannelConfig) this.config;
+            int maxBytesPerGatheringWrite = config.getMaxBytesPerGatheringWrite();
+            ByteBuffer[] nioBuffers = in.nioBuffers(MAX_NIO_BUFFERS, maxBytesPerGatheringWrite);
             int nioBufferCnt = in.nioBufferCount();
 
+            int coalesceThreshold = config.getWriteCoalesceThreshold();
+            if (coalesceThreshold > 0 && nioBufferCnt > 0) {
+                NioBufferCoalescer coalescer = this.coalescer;
+                if (coalescer == null) {
+                    this.coalescer = coalescer = new NioBufferCoalescer(MAX_NIO_BUFFERS);
+                }
+                int coalescedCnt = coalescer.coalesce(alloc(), nioBuffers, nioBufferCnt, coalesceThreshold,
+                        config.getWriteCoalesceMaxBytes());
+                if (coalescedCnt != -1) {
+                    // The coalesced buffers contain the same bytes, so they are removed from the
+                    // ChannelOutboundBuffer as usual.
+                    long attemptedBytes = coalescer.attemptedBytes();
+                    final long localWrittenBytes;
+                    try {
+                        localWrittenBytes = coalescedCnt == 1 ? ch.write(coalescer.nioBuffers()[0])
+                                : ch.write(coalescer.nioBuffers(), 0, coalescedCnt);
+                    } finally {
+                        coalescer.release();
+                    }
+                    if (localWrittenBytes <= 0) {
+                        incompleteWrite(true);
+                        return;
+                    }
+                    adjustMaxBytesPerGatheringWrite((int) attemptedBytes, (int) localWrittenBytes,
+                            maxBytesPerGatheringWrite);
+                    in.removeBytes(localWrittenBytes);
+                    --writeSpinCount;
+                    continue;
+                }
+            }
+
             // Always us nioBuffers() to workaround data-corruption.
             // See https://github.com/netty/netty/issues/2761
             switch (nioBufferCnt) {
@@ -466,6 +514,8 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
 
     private final class NioSocketChannelConfig extends DefaultSocketChannelConfig {
         private volatile int maxBytesPerGatheringWrite = Integer.MAX_VALUE;
+        private volatile int writeCoalesceThreshold;
+        private volatile int writeCoalesceMaxBytes = DEFAULT_WRITE_COALESCE_MAX_BYTES;
         private NioSocketChannelConfig(NioSocketChannel channel, Socket javaSocket) {
             super(channel, javaSocket);
             calculateMaxBytesPerGatheringWrite();
@@ -488,23 +538,58 @@ public class NioSocketChannel extends AbstractNioByteChannel implements io.netty
             if (PlatformDependent.javaVersion() >= 7 && option instanceof NioChannelOption) {
                 return NioChannelOption.setOption(jdkChannel(), (NioChannelOption<T>) option, value);
             }
+            if (option == NioSocketChannelOption.WRITE_COALESCE_THRESHOLD) {
+                validate(option, value);
+                setWriteCoalesceThreshold((Integer) value);
+                return true;
+            }
+            if (option == NioSocketChannelOption.WRITE_COALESCE_MAX_BYTES) {
+                validate(option, value);
+                setWriteCoalesceMaxBytes((Integer) value);
+                return true;
+            }
             return super.setOption(option, value);
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public <T> T getOption(ChannelOption<T> option) {
             if (PlatformDependent.javaVersion() >= 7 && option instanceof NioChannelOption) {
                 return NioChannelOption.getOption(jdkChannel(), (NioChannelOption<T>) option);
             }
+            if (option == NioSocketChannelOption.WRITE_COALESCE_THRESHOLD) {
+                return (T) Integer.valueOf(getWriteCoalesceThreshold());
+            }
+            if (option == NioSocketChannelOption.WRITE_COALESCE_MAX_BYTES) {
+                return (T) Integer.valueOf(getWriteCoalesceMaxBytes());
+            }
             return super.getOption(option);
         }
 
         @Override
         public Map<ChannelOption<?>, Object> getOptions() {
+            Map<ChannelOption<?>, Object> options = getOptions(super.getOptions(),
+                    NioSocketChannelOption.WRITE_COALESCE_THRESHOLD, NioSocketChannelOption.WRITE_COALESCE_MAX_BYTES);
             if (PlatformDependent.javaVersion() >= 7) {
-                return getOptions(super.getOptions(), NioChannelOption.getOptions(jdkChannel()));
+                return getOptions(options, NioChannelOption.getOptions(jdkChannel()));
             }
-            return super.getOptions();
+            return options;
+        }
+
+        void setWriteCoalesceThreshold(int writeCoalesceThreshold) {
+            this.writeCoalesceThreshold = checkPositiveOrZero(writeCoalesceThreshold, "writeCoalesceThreshold");
+        }
+
+        int getWriteCoalesceThreshold() {
+            return writeCoalesceThreshold;
+        }
+
+        void setWriteCoalesceMaxBytes(int writeCoalesceMaxBytes) {
+            this.writeCoalesceMaxBytes = checkPositiveOrZero(writeCoalesceMaxBytes, "writeCoalesceMaxBytes");
+        }
+
+        int getWriteCoalesceMaxBytes() {
+            return writeCoalesceMaxBytes;
         }
 
         void setMaxBytesPerGatheringWrite(int maxBytesPerGatheringWrite) {
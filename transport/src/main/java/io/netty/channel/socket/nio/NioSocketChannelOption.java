@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import io.netty.channel.ChannelOption;
+
+/**
+ * {@link ChannelOption}s which are only supported by the {@link NioSocketChannel}.
+ */
+public final class NioSocketChannelOption<T> extends ChannelOption<T> {
+
+    /**
+     * Buffers with less readable bytes than this are copied into a single direct staging buffer when they are
+     * flushed, so they are written with fewer, larger buffers per gathering write. If the {@link
+     * io.netty.buffer.ByteBufAllocator} pools direct buffers, small heap buffers are then also not copied into a new
+     * direct buffer when they are written, as they are copied into the staging buffer instead. {@code 0}, the
+     * default, disables the coalescing.
+     */
+    public static final ChannelOption<Integer> WRITE_COALESCE_THRESHOLD =
+            valueOf(NioSocketChannelOption.class, "WRITE_COALESCE_THRESHOLD");
+
+    /**
+     * The maximum number of bytes which are coalesced into the direct staging buffer per gathering write, the
+     * default is {@code 65536}.
+     */
+    public static final ChannelOption<Integer> WRITE_COALESCE_MAX_BYTES =
+            valueOf(NioSocketChannelOption.class, "WRITE_COALESCE_MAX_BYTES");
+
+    @SuppressWarnings({ "unused", "deprecation" })
+    private NioSocketChannelOption() {
+        super(null);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.IntSupplier;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveSelectStrategyTest {
+
+    private static final class CountingSupplier implements IntSupplier {
+        int calls;
+        int readyAfter = -1;
+
+        @Override
+        public int get() {
+            calls++;
+            return calls == readyAfter ? 1 : 0;
+        }
+    }
+
+    @Test
+    public void testSelectNowIfHasTasks() throws Exception {
+        AdaptiveSelectStrategy strategy = new AdaptiveSelectStrategy(TimeUnit.MILLISECONDS.toNanos(10));
+        CountingSupplier supplier = new CountingSupplier();
+        assertEquals(0, strategy.calculateStrategy(supplier, true));
+        assertEquals(1, supplier.calls);
+        assertEquals(0, strategy.numSpinHits() + strategy.numSpinMisses());
+    }
+
+    @Test
+    public void testSpinHit() throws Exception {
+        AdaptiveSelectStrategy strategy = new AdaptiveSelectStrategy(TimeUnit.SECONDS.toNanos(10));
+        CountingSupplier supplier = new CountingSupplier();
+        supplier.readyAfter = 3;
+        assertEquals(1, strategy.calculateStrategy(supplier, false));
+        assertEquals(3, supplier.calls);
+        assertEquals(1, strategy.numSpinHits());
+        assertEquals(0, strategy.numSpinMisses());
+        assertTrue(strategy.spinTimeNanos() > 0);
+        assertEquals(0, strategy.parkTimeNanos());
+    }
+
+    @Test
+    public void testSpinMissFallsBackToSelect() throws Exception {
+        AdaptiveSelectStrategy strategy = new AdaptiveSelectStrategy(TimeUnit.MICROSECONDS.toNanos(100));
+        CountingSupplier supplier = new CountingSupplier();
+        assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(supplier, false));
+        assertTrue(supplier.calls > 0);
+        assertEquals(0, strategy.numSpinHits());
+        assertEquals(1, strategy.numSpinMisses());
+
+        strategy.selected(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), strategy.parkTimeNanos());
+    }
+
+    @Test
+    public void testProcessingIsNotIdle() throws Exception {
+        AdaptiveSelectStrategy strategy = new AdaptiveSelectStrategy(TimeUnit.MILLISECONDS.toNanos(1));
+        CountingSupplier supplier = new CountingSupplier();
+        assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(supplier, false));
+        // An event arrived as soon as the event loop blocked.
+        strategy.selected(0);
+        long window = strategy.spinWindowNanos();
+        assertTrue(window > 0);
+
+        // Processing the event takes longer than the maximum spin time.
+        Thread.sleep(10);
+        strategy.calculateStrategy(supplier, true);
+        assertEquals(window, strategy.spinWindowNanos());
+        assertEquals(0, strategy.parkTimeNanos());
+    }
+
+    @Test
+    public void testStopsSpinningWhenIdleForLong() throws Exception {
+        AdaptiveSelectStrategy strategy = new AdaptiveSelectStrategy(TimeUnit.MICROSECONDS.toNanos(100));
+        CountingSupplier supplier = new CountingSupplier();
+        for (int i = 0; i < 32 && strategy.spinWindowNanos() != 0; i++) {
+            assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(supplier, false));
+            strategy.selected(TimeUnit.MILLISECONDS.toNanos(1));
+            strategy.calculateStrategy(supplier, true);
+        }
+        assertEquals(0, strategy.spinWindowNanos());
+
+        // No spinning at all anymore.
+        supplier.calls = 0;
+        assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(supplier, false));
+        assertEquals(0, supplier.calls);
+    }
+
+    @Test
+    public void testSpinningDisabled() throws Exception {
+        AdaptiveSelectStrategyFactory factory = new AdaptiveSelectStrategyFactory(0, TimeUnit.NANOSECONDS);
+        SelectStrategy strategy = factory.newSelectStrategy();
+        CountingSupplier supplier = new CountingSupplier();
+        assertEquals(SelectStrategy.SELECT, strategy.calculateStrategy(supplier, false));
+        assertEquals(0, supplier.calls);
+
+        List<AdaptiveSelectStrategyMetric> metrics = factory.metrics();
+        assertEquals(1, metrics.size());
+        assertEquals(0, metrics.get(0).spinWindowNanos());
+        assertSame(strategy, metrics.get(0));
+    }
+
+    @Test(timeout = 5000L)
+    public void testUnusedStrategiesCanBeCollected() throws Exception {
+        AdaptiveSelectStrategyFactory factory = new AdaptiveSelectStrategyFactory();
+        factory.newSelectStrategy();
+        while (!factory.metrics().isEmpty()) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(50);
+        }
+    }
+}
@@ -124,6 +124,29 @@ public class ChannelOutboundBufferTest {
         buf.release();
     }
 
+    @Test
+    public void testRemoveWithoutNotify() {
+        TestChannel channel = new TestChannel();
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+
+        ByteBuf buf = copiedBuffer("buf1", CharsetUtil.US_ASCII);
+        ChannelPromise promise = channel.newPromise();
+        buffer.addMessage(buf, buf.readableBytes(), promise);
+        buffer.addFlush();
+        assertTrue(buffer.totalPendingWriteBytes() > 0);
+
+        assertSame(promise, buffer.removeWithoutNotify());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+        // Neither released nor notified, this is up to the caller now.
+        assertEquals(1, buf.refCnt());
+        assertFalse(promise.isDone());
+        assertNull(buffer.removeWithoutNotify());
+
+        buf.release();
+        release(buffer);
+    }
+
     private static void release(ChannelOutboundBuffer buffer) {
         for (;;) {
             if (!buffer.remove()) {
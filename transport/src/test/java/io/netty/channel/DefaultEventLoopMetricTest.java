@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.AbstractEventExecutor.LazyRunnable;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultEventLoopMetricTest {
+
+    private final DefaultEventLoop eventLoop = new DefaultEventLoop();
+    private final DefaultEventLoopMetric metric = new DefaultEventLoopMetric(eventLoop, 1);
+
+    @After
+    public void tearDown() {
+        eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private static long sum(long[] histogram) {
+        long sum = 0;
+        for (long value : histogram) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testTimedTask() throws Exception {
+        final boolean[] ran = new boolean[1];
+        Runnable task = metric.newTimedTask(new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        assertFalse(task instanceof LazyRunnable);
+        Thread.sleep(5);
+        task.run();
+
+        assertTrue(ran[0]);
+        assertEquals(1, metric.numSampledTasks());
+        assertEquals(1, sum(metric.taskExecutionTimeHistogram()));
+        long[] latency = metric.taskQueueLatencyHistogram();
+        assertEquals(1, sum(latency));
+        // At least 4096 microseconds, so neither of the first 13 buckets.
+        for (int i = 0; i < 13; i++) {
+            assertEquals(0, latency[i]);
+        }
+    }
+
+    @Test
+    public void testOnlySampledTasksAreWrapped() {
+        DefaultEventLoopMetric metric = new DefaultEventLoopMetric(eventLoop, 4);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        int wrapped = 0;
+        for (int i = 0; i < 16; i++) {
+            Runnable timed = metric.newTimedTask(task);
+            if (timed != task) {
+                wrapped++;
+            }
+            timed.run();
+        }
+        assertEquals(4, wrapped);
+        assertEquals(4, metric.numSampledTasks());
+        assertEquals(4, sum(metric.taskExecutionTimeHistogram()));
+    }
+
+    @Test
+    public void testLazyTimedTask() {
+        Runnable task = metric.newTimedTask(new LazyRunnable() {
+            @Override
+            public void run() {
+            }
+        });
+        assertTrue(task instanceof LazyRunnable);
+    }
+
+    @Test
+    public void testTimedTaskThrows() {
+        Runnable task = metric.newTimedTask(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+        try {
+            task.run();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(1, metric.numSampledTasks());
+    }
+
+    @Test
+    public void testRecordIteration() {
+        metric.recordWakeup();
+        metric.recordIteration(3, 100);
+        metric.recordIteration(0, 0);
+        metric.recordIteration(SelectStrategy.SELECT, 0);
+        metric.recordIteration(1 << 30, 10);
+
+        assertEquals(1, metric.numWakeups());
+        assertEquals(4, metric.numIterations());
+        assertEquals(3 + (1 << 30), metric.numIoEvents());
+        assertEquals(110, metric.ioTimeNanos());
+        long[] histogram = metric.ioEventsPerIterationHistogram();
+        assertEquals(2, histogram[0]);
+        assertEquals(1, histogram[2]);
+        assertEquals(1, histogram[histogram.length - 1]);
+    }
+
+    @Test
+    public void testPendingTasks() {
+        assertEquals(0, metric.pendingTasks());
+        assertEquals(0, metric.pendingScheduledTasks());
+    }
+}
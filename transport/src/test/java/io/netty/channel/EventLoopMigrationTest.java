@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopMigrationTest {
+
+    @Test(timeout = 10000)
+    public void testMigrate() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(2);
+        final BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+        Channel serverChannel = null;
+        Channel clientChannel = null;
+        try {
+            serverChannel = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            // Echo back.
+                            ctx.writeAndFlush(msg);
+                        }
+                    }).bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+            clientChannel = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ByteBuf buf = (ByteBuf) msg;
+                            received.add(buf.readByte());
+                            buf.release();
+                        }
+                    }).connect(serverChannel.localAddress()).sync().channel();
+
+            EventLoop current = clientChannel.eventLoop();
+            EventLoop target = group.next();
+            if (target == current) {
+                target = group.next();
+            }
+            EventLoopMigration.migrate(clientChannel, target).sync();
+            assertSame(target, clientChannel.eventLoop());
+            assertTrue(clientChannel.isActive());
+
+            clientChannel.writeAndFlush(Unpooled.wrappedBuffer(new byte[] { 42 })).sync();
+            assertEquals((byte) 42, received.take());
+            assertTrue(EventLoopMigration.migrate(clientChannel, target).isSuccess());
+        } finally {
+            if (clientChannel != null) {
+                clientChannel.close().syncUninterruptibly();
+            }
+            if (serverChannel != null) {
+                serverChannel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testMigrateUnregistered() {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            ChannelFuture future = EventLoopMigration.migrate(new NioSocketChannel(), group.next());
+            assertFalse(future.isSuccess());
+            assertTrue(future.cause() instanceof IllegalStateException);
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateToIncompatibleEventLoop() throws Exception {
+        NioEventLoopGroup nioGroup = new NioEventLoopGroup(1);
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            Channel channel = new NioSocketChannel();
+            nioGroup.register(channel).sync();
+            ChannelFuture future = EventLoopMigration.migrate(channel, group.next()).await();
+            assertFalse(future.isSuccess());
+            // Moved back to the old event loop.
+            assertTrue(channel.isRegistered());
+            assertSame(nioGroup.next(), channel.eventLoop());
+            channel.close().sync();
+        } finally {
+            nioGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
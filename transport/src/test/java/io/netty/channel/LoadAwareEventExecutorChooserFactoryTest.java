@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
+import org.junit.Test;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LoadAwareEventExecutorChooserFactoryTest {
+
+    @Test(timeout = 10000)
+    public void testChoosesLessLoaded() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(2);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            EventExecutor[] executors = { group.next(), group.next() };
+            // Block the first executor and queue up some tasks behind it.
+            for (int i = 0; i < 10; i++) {
+                executors[0].execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            EventExecutorChooser chooser = LoadAwareEventExecutorChooserFactory.INSTANCE.newChooser(executors);
+            for (int i = 0; i < 100; i++) {
+                assertSame(executors[1], chooser.next());
+            }
+        } finally {
+            latch.countDown();
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testSingleExecutor() {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            EventExecutor executor = group.next();
+            EventExecutorChooser chooser =
+                    LoadAwareEventExecutorChooserFactory.INSTANCE.newChooser(new EventExecutor[] { executor });
+            assertSame(executor, chooser.next());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRegistersWithLessLoaded() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(2, null, LoadAwareEventExecutorChooserFactory.INSTANCE,
+                SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE);
+        try {
+            // Every new channel goes to the event loop with the least registered channels, so they are spread evenly.
+            int[] counts = new int[2];
+            EventLoop first = null;
+            for (int i = 0; i < 8; i++) {
+                Channel channel = new NioSocketChannel();
+                group.register(channel).sync();
+                if (first == null) {
+                    first = channel.eventLoop();
+                }
+                counts[channel.eventLoop() == first ? 0 : 1]++;
+            }
+            assertEquals(4, counts[0]);
+            assertEquals(4, counts[1]);
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
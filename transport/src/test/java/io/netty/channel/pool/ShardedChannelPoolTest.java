@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.netty.channel.pool.ChannelPoolTestUtils.getLocalAddrId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedChannelPoolTest {
+    private EventLoopGroup group;
+    private EventLoop loop1;
+    private EventLoop loop2;
+    private Channel serverChannel;
+    private Bootstrap bootstrap;
+    private CountingChannelPoolHandler handler;
+    private ShardedChannelPool pool;
+
+    @Before
+    public void setUp() {
+        group = new DefaultEventLoopGroup(2);
+        Iterator<?> loops = group.iterator();
+        loop1 = (EventLoop) loops.next();
+        loop2 = (EventLoop) loops.next();
+
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    public void initChannel(LocalChannel ch) {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+                    }
+                })
+                .bind(addr).syncUninterruptibly().channel();
+        bootstrap = new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .remoteAddress(addr);
+        handler = new CountingChannelPoolHandler();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        serverChannel.close().syncUninterruptibly();
+        group.shutdownGracefully();
+    }
+
+    private Future<Channel> acquireOn(EventLoop loop) throws Exception {
+        return loop.submit(new Callable<Future<Channel>>() {
+            @Override
+            public Future<Channel> call() {
+                return pool.acquire();
+            }
+        }).sync().getNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testChannelIsRegisteredOnCallerLoop() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, 4);
+
+        Channel channel1 = acquireOn(loop1).sync().getNow();
+        Channel channel2 = acquireOn(loop2).sync().getNow();
+        assertSame(loop1, channel1.eventLoop());
+        assertSame(loop2, channel2.eventLoop());
+        assertEquals(2, pool.channelCount());
+        assertEquals(2, pool.acquiredChannelCount());
+
+        pool.release(channel1).sync();
+        pool.release(channel2).sync();
+        assertEquals(2, pool.idleChannelCount());
+        assertEquals(0, pool.acquiredChannelCount());
+
+        // Each loop gets its own Channel back.
+        assertSame(channel2, acquireOn(loop2).sync().getNow());
+        assertSame(channel1, acquireOn(loop1).sync().getNow());
+        assertEquals(2, handler.channelCount());
+        assertEquals(4, handler.acquiredCount());
+        assertEquals(2, handler.releasedCount());
+        assertEquals(4, pool.acquireCount());
+        assertTrue(pool.acquireTimeNanos() > 0);
+        assertEquals(0, pool.stealCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleChannelIsStolen() throws Exception {
+        // The only connection is in the share of the first loop.
+        pool = new ShardedChannelPool(bootstrap, handler, 1);
+
+        Channel channel = acquireOn(loop1).sync().getNow();
+        pool.release(channel).sync();
+
+        assertSame(channel, acquireOn(loop2).sync().getNow());
+        assertEquals(1, pool.stealCount());
+        assertEquals(1, handler.channelCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testShareOfOtherLoopIsUsed() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, 2);
+
+        Channel channel1 = acquireOn(loop1).sync().getNow();
+        Channel channel2 = acquireOn(loop1).sync().getNow();
+        assertNotSame(channel1, channel2);
+        assertSame(loop1, channel2.eventLoop());
+        assertEquals(2, pool.channelCount());
+
+        Future<Channel> future = acquireOn(loop2);
+        assertFalse(future.await(100));
+        assertEquals(1, pool.pendingAcquireCount());
+
+        // The pending acquire steals the released Channel.
+        pool.release(channel2).sync();
+        assertSame(channel2, future.sync().getNow());
+        assertEquals(0, pool.pendingAcquireCount());
+        assertEquals(1, pool.stealCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testPendingAcquireIsServedWhenChannelIsClosed() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, 1);
+
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Channel> future = pool.acquire();
+        assertFalse(future.await(100));
+
+        // Closing the Channel frees up its connection for the pending acquire.
+        channel.close().sync();
+        Channel channel2 = future.sync().getNow();
+        assertNotSame(channel, channel2);
+        assertEquals(1, pool.channelCount());
+        assertEquals(2, handler.channelCount());
+
+        pool.release(channel).sync();
+        assertEquals(1, pool.acquiredChannelCount());
+        assertEquals(0, pool.idleChannelCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testClosedIdleChannelIsRemoved() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, 1);
+
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).sync();
+        assertEquals(1, pool.idleChannelCount());
+
+        channel.close().sync();
+        assertEquals(0, pool.idleChannelCount());
+        assertEquals(0, pool.channelCount());
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel, channel2);
+    }
+
+    @Test(timeout = 10000, expected = TimeoutException.class)
+    public void testAcquireTimeout() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE, 1, Integer.MAX_VALUE, 100);
+
+        pool.acquire().sync();
+        Future<Channel> future = pool.acquire();
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.pendingAcquireCount());
+        future.sync();
+    }
+
+    @Test(timeout = 10000, expected = IllegalStateException.class)
+    public void testAcquireBoundQueue() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE, 1, 1, 0);
+
+        pool.acquire().sync();
+        Future<Channel> future = pool.acquire();
+        assertFalse(future.isDone());
+        pool.acquire().sync();
+    }
+
+    @Test(timeout = 10000, expected = IllegalArgumentException.class)
+    public void testReleaseDifferentPool() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, 1);
+        ShardedChannelPool pool2 = new ShardedChannelPool(bootstrap, handler, 1);
+
+        Channel channel = pool.acquire().sync().getNow();
+        try {
+            pool2.release(channel).sync();
+        } finally {
+            pool2.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseFailsPendingAcquires() throws Exception {
+        pool = new ShardedChannelPool(bootstrap, handler, 1);
+
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Channel> future = pool.acquire();
+        assertFalse(future.await(100));
+        pool.close();
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cause() instanceof ClosedChannelException);
+        assertEquals(0, pool.pendingAcquireCount());
+
+        assertTrue(pool.release(channel).await(5, TimeUnit.SECONDS));
+        channel.closeFuture().sync();
+        pool = null;
+    }
+}
@@ -352,4 +352,187 @@ public class SimpleChannelPoolTest {
         pool.close();
         group.shutdownGracefully();
     }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        Channel sc = bindServer(group, addr);
+        Bootstrap bootstrap = new Bootstrap()
+                .channel(LocalChannel.class).group(group).remoteAddress(addr);
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(
+                bootstrap, handler, ChannelHealthChecker.ACTIVE, true, true, 2, 0, 0, 0);
+
+        pool.warmUp().sync();
+        assertEquals(2, handler.channelCount());
+        assertEquals(2, handler.releasedCount());
+        // Already warm.
+        pool.warmUp().sync();
+        assertEquals(2, handler.channelCount());
+
+        Channel channel1 = pool.acquire().sync().getNow();
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel1, channel2);
+        assertEquals(2, handler.channelCount());
+        assertEquals(2, handler.acquiredCount());
+
+        pool.release(channel1).sync();
+        pool.release(channel2).sync();
+        sc.close().sync();
+        pool.close();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testWarmUpAfterClose() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        Channel sc = bindServer(group, addr);
+        Bootstrap bootstrap = new Bootstrap()
+                .channel(LocalChannel.class).group(group).remoteAddress(addr);
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(
+                bootstrap, handler, ChannelHealthChecker.ACTIVE, true, true, 2, 0, 0, 0);
+        pool.close();
+
+        Future<Void> future = pool.warmUp().await();
+        assertThat(future.cause(), CoreMatchers.instanceOf(IllegalStateException.class));
+        assertEquals(0, handler.channelCount());
+
+        sc.close().sync();
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleChannelsAreToppedUp() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        Channel sc = bindServer(group, addr);
+        Bootstrap bootstrap = new Bootstrap()
+                .channel(LocalChannel.class).group(group).remoteAddress(addr);
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(
+                bootstrap, handler, ChannelHealthChecker.ACTIVE, true, true, 1, 20, 0, 0);
+
+        while (handler.channelCount() < 1) {
+            Thread.sleep(10);
+        }
+        // Give the Channel time to connect.
+        Thread.sleep(100);
+        Channel channel = pool.acquire().sync().getNow();
+        assertEquals(1, handler.channelCount());
+
+        // The acquired Channel is not idle, so a new one is created.
+        while (handler.channelCount() < 2) {
+            Thread.sleep(10);
+        }
+        pool.release(channel).sync();
+        Thread.sleep(100);
+        assertEquals(2, handler.channelCount());
+
+        sc.close().sync();
+        pool.close();
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleChannelIsEvicted() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        Channel sc = bindServer(group, addr);
+        Bootstrap bootstrap = new Bootstrap()
+                .channel(LocalChannel.class).group(group).remoteAddress(addr);
+        SimpleChannelPool pool = new SimpleChannelPool(
+                bootstrap, new CountingChannelPoolHandler(), ChannelHealthChecker.ACTIVE, true, true, 0, 20, 100, 0);
+
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).sync();
+        channel.closeFuture().sync();
+        assertEquals(1, pool.idleEvictionCount());
+        assertEquals(0, pool.lifetimeEvictionCount());
+        assertEquals(0, pool.unhealthyEvictionCount());
+
+        assertNotSame(channel, pool.acquire().sync().getNow());
+
+        sc.close().sync();
+        pool.close();
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testUnhealthyIdleChannelIsEvicted() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        Channel sc = bindServer(group, addr);
+        Bootstrap bootstrap = new Bootstrap()
+                .channel(LocalChannel.class).group(group).remoteAddress(addr);
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        final Channel[] unhealthy = new Channel[1];
+        SimpleChannelPool pool = new SimpleChannelPool(bootstrap, handler, new ChannelHealthChecker() {
+            @Override
+            public Future<Boolean> isHealthy(Channel channel) {
+                return channel.eventLoop().newSucceededFuture(channel != unhealthy[0]);
+            }
+        }, true, true, 0, 20, 0, 0);
+
+        Channel channel = pool.acquire().sync().getNow();
+        pool.release(channel).sync();
+        unhealthy[0] = channel;
+        channel.closeFuture().sync();
+        assertEquals(1, pool.unhealthyEvictionCount());
+        assertEquals(0, pool.idleEvictionCount());
+
+        assertNotSame(channel, pool.acquire().sync().getNow());
+        assertEquals(2, handler.channelCount());
+
+        sc.close().sync();
+        pool.close();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testChannelLifetime() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        Channel sc = bindServer(group, addr);
+        Bootstrap bootstrap = new Bootstrap()
+                .channel(LocalChannel.class).group(group).remoteAddress(addr);
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(
+                bootstrap, handler, ChannelHealthChecker.ACTIVE, true, true, 0, 0, 0, 100);
+
+        Channel channel1 = pool.acquire().sync().getNow();
+        Channel channel2 = pool.acquire().sync().getNow();
+        pool.release(channel1).sync();
+        Thread.sleep(150);
+
+        // The idle Channel is evicted on acquire, and the acquired one on release.
+        Channel channel3 = pool.acquire().sync().getNow();
+        assertNotSame(channel1, channel3);
+        assertFalse(channel1.isOpen());
+        pool.release(channel2).sync();
+        assertFalse(channel2.isOpen());
+        assertEquals(2, pool.lifetimeEvictionCount());
+        assertEquals(3, handler.channelCount());
+        assertEquals(2, handler.releasedCount());
+
+        pool.release(channel3).sync();
+        sc.close().sync();
+        pool.close();
+        group.shutdownGracefully();
+    }
+
+    private static Channel bindServer(EventLoopGroup group, LocalAddress addr) {
+        return new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel ch) throws Exception {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+                    }
+                })
+                .bind(addr).syncUninterruptibly().channel();
+    }
 }
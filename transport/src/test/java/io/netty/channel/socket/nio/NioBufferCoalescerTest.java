@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket.nio;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NioBufferCoalescerTest {
+
+    private static ByteBuffer buffer(int length, int value) {
+        return fill(ByteBuffer.allocate(length + 2), length, value);
+    }
+
+    private static ByteBuffer directBuffer(int length, int value) {
+        return fill(ByteBuffer.allocateDirect(length + 2), length, value);
+    }
+
+    private static ByteBuffer fill(ByteBuffer buffer, int length, int value) {
+        buffer.position(1);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) value);
+        }
+        buffer.flip();
+        buffer.position(1);
+        return buffer;
+    }
+
+    private static byte[] bytes(ByteBuffer[] buffers, int count) {
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += buffers[i].remaining();
+        }
+        ByteBuffer result = ByteBuffer.allocate(length);
+        for (int i = 0; i < count; i++) {
+            result.put(buffers[i].duplicate());
+        }
+        return result.array();
+    }
+
+    @Test
+    public void testCoalesceRuns() {
+        ByteBuffer[] buffers = { buffer(10, 1), buffer(20, 2), buffer(1000, 3), buffer(30, 4), buffer(40, 5) };
+        byte[] expected = bytes(buffers, buffers.length);
+        NioBufferCoalescer coalescer = new NioBufferCoalescer(16);
+
+        int count = coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, buffers.length, 100, 1024);
+        assertEquals(3, count);
+        assertEquals(expected.length, coalescer.attemptedBytes());
+        ByteBuffer[] coalesced = coalescer.nioBuffers();
+        assertTrue(coalesced[0].isDirect());
+        assertEquals(30, coalesced[0].remaining());
+        assertSame(buffers[2], coalesced[1]);
+        assertTrue(coalesced[2].isDirect());
+        assertEquals(70, coalesced[2].remaining());
+        assertEquals(ByteBuffer.wrap(expected), ByteBuffer.wrap(bytes(coalesced, count)));
+
+        // The original buffers are not modified.
+        assertEquals(1, buffers[0].position());
+        assertEquals(10, buffers[0].remaining());
+
+        coalescer.release();
+        assertNull(coalescer.nioBuffers()[0]);
+    }
+
+    @Test
+    public void testMaxBytes() {
+        ByteBuffer[] buffers = { directBuffer(10, 1), directBuffer(20, 2), directBuffer(30, 3) };
+        byte[] expected = bytes(buffers, buffers.length);
+        NioBufferCoalescer coalescer = new NioBufferCoalescer(16);
+
+        int count = coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, buffers.length, 100, 35);
+        assertEquals(2, count);
+        assertEquals(30, coalescer.nioBuffers()[0].remaining());
+        assertSame(buffers[2], coalescer.nioBuffers()[1]);
+        assertEquals(ByteBuffer.wrap(expected), ByteBuffer.wrap(bytes(coalescer.nioBuffers(), count)));
+        coalescer.release();
+    }
+
+    @Test
+    public void testMaxBytesStopsBeforeHeapBuffer() {
+        ByteBuffer[] buffers = { buffer(10, 1), buffer(20, 2), buffer(30, 3), directBuffer(1000, 4) };
+        NioBufferCoalescer coalescer = new NioBufferCoalescer(16);
+
+        // The third buffer does not fit anymore, it must not be written as a heap buffer.
+        int count = coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, buffers.length, 100, 35);
+        assertEquals(1, count);
+        assertTrue(coalescer.nioBuffers()[0].isDirect());
+        assertEquals(30, coalescer.nioBuffers()[0].remaining());
+        assertEquals(30, coalescer.attemptedBytes());
+        coalescer.release();
+    }
+
+    @Test
+    public void testCoalesceSingleHeapBuffer() {
+        ByteBuffer[] buffers = { buffer(10, 1), directBuffer(1000, 2) };
+        byte[] expected = bytes(buffers, buffers.length);
+        NioBufferCoalescer coalescer = new NioBufferCoalescer(16);
+
+        int count = coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, 1, 100, 1024);
+        assertEquals(1, count);
+        assertTrue(coalescer.nioBuffers()[0].isDirect());
+        assertEquals(10, coalescer.attemptedBytes());
+        coalescer.release();
+
+        count = coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, buffers.length, 100, 1024);
+        assertEquals(2, count);
+        assertTrue(coalescer.nioBuffers()[0].isDirect());
+        assertSame(buffers[1], coalescer.nioBuffers()[1]);
+        assertEquals(ByteBuffer.wrap(expected), ByteBuffer.wrap(bytes(coalescer.nioBuffers(), count)));
+        coalescer.release();
+    }
+
+    @Test
+    public void testNothingToCoalesce() {
+        ByteBuffer[] buffers = { directBuffer(10, 1), buffer(200, 2), buffer(300, 3) };
+        NioBufferCoalescer coalescer = new NioBufferCoalescer(16);
+        assertEquals(-1, coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, buffers.length, 100, 1024));
+        assertEquals(-1, coalescer.coalesce(PooledByteBufAllocator.DEFAULT, buffers, buffers.length, 1000, 0));
+        coalescer.release();
+    }
+
+    @Test
+    public void testUnpooledAllocatorWithoutThreadLocalBuffer() {
+        ByteBufAllocator alloc = new UnpooledByteBufAllocator(true);
+        assertFalse(alloc.isDirectBufferPooled());
+        ByteBuffer[] buffers = { buffer(10, 1), buffer(20, 2) };
+        NioBufferCoalescer coalescer = new NioBufferCoalescer(16);
+        // -Dio.netty.threadLocalDirectBufferSize is 0 by default, so there is no staging buffer to use.
+        assertEquals(-1, coalescer.coalesce(alloc, buffers, buffers.length, 100, 1024));
+        coalescer.release();
+    }
+}
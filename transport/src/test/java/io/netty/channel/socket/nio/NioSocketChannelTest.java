@@ -158,6 +158,80 @@ public class NioSocketChannelTest extends AbstractNioChannelTest<NioSocketChanne
         }
     }
 
+    @Test(timeout = 10000)
+    public void testWriteCoalescing() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            final byte[] expected = new byte[1024 * 1024];
+            PlatformDependent.threadLocalRandom().nextBytes(expected);
+
+            ServerBootstrap sb = new ServerBootstrap();
+            sb.group(group).channel(NioServerSocketChannel.class);
+            // Use a small send buffer so there are partial writes.
+            sb.childOption(ChannelOption.SO_SNDBUF, 4096);
+            sb.childOption(NioSocketChannelOption.WRITE_COALESCE_THRESHOLD, 128);
+            sb.childOption(NioSocketChannelOption.WRITE_COALESCE_MAX_BYTES, 1024);
+            sb.childHandler(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelActive(ChannelHandlerContext ctx) {
+                    int offset = 0;
+                    int i = 0;
+                    while (offset < expected.length) {
+                        // Mix small heap, small direct, composite and large buffers.
+                        int length = Math.min(expected.length - offset, i % 10 == 0 ? 3000 : 1 + i % 200);
+                        ByteBuf buf;
+                        switch (i++ % 3) {
+                            case 0:
+                                buf = Unpooled.wrappedBuffer(expected, offset, length);
+                                break;
+                            case 1:
+                                buf = ctx.alloc().directBuffer(length).writeBytes(expected, offset, length);
+                                break;
+                            default:
+                                int half = length >>> 1;
+                                buf = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(expected, offset, half),
+                                        ctx.alloc().directBuffer().writeBytes(expected, offset + half, length - half));
+                                break;
+                        }
+                        ctx.write(buf);
+                        offset += length;
+                    }
+                    ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+                }
+            });
+
+            SocketAddress address = sb.bind(0).sync().channel().localAddress();
+
+            Socket s = new Socket(NetUtil.LOCALHOST, ((InetSocketAddress) address).getPort());
+            try {
+                DataInput in = new DataInputStream(s.getInputStream());
+                byte[] buf = new byte[expected.length];
+                in.readFully(buf);
+                assertArrayEquals(expected, buf);
+                assertEquals(-1, s.getInputStream().read());
+            } finally {
+                s.close();
+            }
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    @Test
+    public void testWriteCoalescingOptions() {
+        NioSocketChannel channel = new NioSocketChannel();
+        try {
+            assertEquals(0, (int) channel.config().getOption(NioSocketChannelOption.WRITE_COALESCE_THRESHOLD));
+            assertTrue(channel.config().setOption(NioSocketChannelOption.WRITE_COALESCE_THRESHOLD, 512));
+            assertTrue(channel.config().setOption(NioSocketChannelOption.WRITE_COALESCE_MAX_BYTES, 8192));
+            assertEquals(512, (int) channel.config().getOption(NioSocketChannelOption.WRITE_COALESCE_THRESHOLD));
+            assertEquals(8192, (int) channel.config().getOption(NioSocketChannelOption.WRITE_COALESCE_MAX_BYTES));
+            assertTrue(channel.config().getOptions().containsKey(NioSocketChannelOption.WRITE_COALESCE_THRESHOLD));
+        } finally {
+            channel.unsafe().closeForcibly();
+        }
+    }
+
     // Test for https://github.com/netty/netty/issues/4805
     @Test(timeout = 3000)
     public void testChannelReRegisterReadSameEventLoop() throws Exception {